@@ -33,6 +33,9 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +71,154 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading from memory mapped segments of a file
+   * (see {@link #mapFile(RandomAccessFile)}). Segments are duplicated so
+   * the same mapping could be shared between several streams.
+   */
+  public static CodedInputStream newInstance(ByteBuffer[] mappedSegments) {
+    return new CodedInputStream(mappedSegments);
+  }
+
+  /**
+   * Maps whole file into memory as a sequence of read-only segments
+   * of {@link #MAPPED_SEGMENT_SIZE} bytes (last one could be smaller),
+   * so files bigger than 2 GB could be mapped as well.
+   */
+  public static ByteBuffer[] mapFile(RandomAccessFile raf) throws IOException {
+    FileChannel channel = raf.getChannel();
+    long length = channel.size();
+    int segments = (int) ((length + MAPPED_SEGMENT_SIZE - 1) / MAPPED_SEGMENT_SIZE);
+    ByteBuffer[] mapped = new ByteBuffer[segments];
+    for (int i = 0; i < segments; i++) {
+      long start = (long) i * MAPPED_SEGMENT_SIZE;
+      mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPED_SEGMENT_SIZE, length - start));
+    }
+    return mapped;
+  }
+
+  public boolean isMemoryMapped() {
+    return mappedSegments != null;
+  }
+
+  /**
+   * Sets fixed number of bytes read from file on every buffer refill (default 5 KB).
+   * Applies to RandomAccessFile and memory mapped streams, disables adaptive mode.
+   */
+  public void setBufferSize(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Buffer size should be positive: " + size);
+    }
+    adaptiveBuffer = false;
+    minBufferSize = maxBufferSize = refillSize = size;
+  }
+
+  /**
+   * Enables adaptive buffer: refill size doubles (up to maxSize) while file is read sequentially
+   * and halves (down to minSize) when seek leaves buffer mostly unread.
+   * In adaptive mode size of the block pushed right after seek is used as read ahead hint,
+   * so the whole block (if it fits maxSize) is read with one refill.
+   */
+  public void setAdaptiveBufferSize(int minSize, int maxSize) {
+    if (minSize <= 0 || maxSize < minSize) {
+      throw new IllegalArgumentException("Incorrect buffer sizes: " + minSize + " " + maxSize);
+    }
+    adaptiveBuffer = true;
+    minBufferSize = minSize;
+    maxBufferSize = maxSize;
+    refillSize = Math.max(minSize, Math.min(maxSize, refillSize));
+  }
+
+  public boolean isAdaptiveBuffer() {
+    return adaptiveBuffer;
+  }
+
+  /**
+   * Hints that {@code length} bytes will be read sequentially from the current position,
+   * used by the next buffer refill in adaptive mode.
+   */
+  public void setReadAheadHint(long length) {
+    readAheadHint = length;
+  }
+
+  /** Number of buffer refills (reads from underlying file). */
+  public long getRefillCount() {
+    return refillCount;
+  }
+
+  /** Number of bytes loaded from underlying file. */
+  public long getBytesLoaded() {
+    return bytesLoaded;
+  }
+
+  private int nextRefillSize() {
+    if (adaptiveBuffer) {
+      if (readAheadHint > 0) {
+        refillSize = (int) Math.max(minBufferSize, Math.min(maxBufferSize, readAheadHint));
+      } else if (refillsSinceSeek > 0) {
+        refillSize = Math.min(maxBufferSize, refillSize * 2);
+      }
+    }
+    readAheadHint = 0;
+    refillsSinceSeek++;
+    if (buffer.length < refillSize) {
+      // buffer is fully consumed at this point, nothing to copy
+      buffer = new byte[refillSize];
+    }
+    return refillSize;
+  }
+
+  /**
+   * osmand change: compacts the buffer and appends bytes from the file, so that {@code size} bytes
+   * from the current position are available in the buffer and could be decoded without intermediate arrays.
+   * Bytes which are already buffered are moved, not read again.
+   */
+  private boolean ensureContiguous(int size) throws IOException {
+    if ((raf == null && mappedSegments == null) || size > MAX_CONTIGUOUS_READ) {
+      return false;
+    }
+    final long pos = totalBytesRetired + bufferPos;
+    if (pos + size > currentLimit) {
+      return false;
+    }
+    // bytes after limit are buffered as well and file pointer is right after them
+    final int buffered = bufferSize + bufferSizeAfterLimit - bufferPos;
+    final long fileEnd = pos + buffered;
+    final long fileLength = mappedSegments != null ? mappedLength : raf.length();
+    final int required = (int) Math.min(Math.max(size, refillSize), fileLength - pos);
+    if (required < size) {
+      return false;
+    }
+    if (buffer.length < required) {
+      byte[] newBuffer = new byte[required];
+      System.arraycopy(buffer, bufferPos, newBuffer, 0, buffered);
+      buffer = newBuffer;
+    } else if (bufferPos > 0) {
+      System.arraycopy(buffer, bufferPos, buffer, 0, buffered);
+    }
+    int read = buffered;
+    if (mappedSegments != null) {
+      mappedPointer = fileEnd;
+      while (read < required) {
+        read += readMapped(buffer, read, required - read);
+      }
+    } else {
+      if (raf.getFilePointer() != fileEnd) {
+        raf.seek(fileEnd);
+      }
+      raf.readFully(buffer, read, required - read);
+      read = required;
+    }
+    refillCount++;
+    bytesLoaded += required - buffered;
+    totalBytesRetired = pos;
+    bufferPos = 0;
+    bufferSize = read;
+    bufferSizeAfterLimit = 0;
+    recomputeBufferSizeAfterLimit();
+    return size <= bufferSize;
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -221,16 +372,25 @@ public final class CodedInputStream {
 
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
+    return readString(null);
+  }
+
+  /**
+   * osmand change: read a {@code string} field value, short strings are taken
+   * from (and stored to) the cache if it's not null.
+   */
+  public String readString(Utf8StringCache cache) throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (size > 0 && (size <= (bufferSize - bufferPos) || ensureContiguous(size))) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
-      //   just copy directly from it.
-      final String result = new String(buffer, bufferPos, size, "UTF-8");
+      //   just decode directly from it.
+      final String result = cache != null ? cache.decode(buffer, bufferPos, size) :
+          new String(buffer, bufferPos, size, StandardCharsets.UTF_8);
       bufferPos += size;
       return result;
     } else {
       // Slow path:  Build a byte array first then copy it.
-      return new String(readRawBytes(size), "UTF-8");
+      return new String(readRawBytes(size), StandardCharsets.UTF_8);
     }
   }
 
@@ -330,9 +490,13 @@ public final class CodedInputStream {
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
       bufferPos += size;
       return result;
+    } else if (ensureContiguous(size)) {
+      final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
+      bufferPos += size;
+      return result;
     } else {
-      // Slow path:  Build a byte array first then copy it.
-      return ByteString.copyFrom(readRawBytes(size));
+      // Slow path:  Build a byte array first and wrap it (osmand change: without second copy).
+      return new LiteralByteString(readRawBytes(size));
     }
   }
 
@@ -537,8 +701,13 @@ public final class CodedInputStream {
 
   // -----------------------------------------------------------------
 
-  private final byte[] buffer;
+  // osmand change: not final, buffer could grow in adaptive mode
+  private byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change: memory mapped mode, mappedPointer plays role of raf file pointer
+  private ByteBuffer[] mappedSegments;
+  private long mappedLength;
+  private long mappedPointer;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -570,6 +739,20 @@ public final class CodedInputStream {
   public static final long DEFAULT_SIZE_LIMIT = Integer.MAX_VALUE;// 64 << 20;  // 64MB
   public static final long MAX_DEFAULT_SIZE_LIMIT = 8l << 40; // 8 TB
   private static final int BUFFER_SIZE = 5 * 1024;
+  public static final int MIN_ADAPTIVE_BUFFER_SIZE = 1024;
+  public static final int MAX_ADAPTIVE_BUFFER_SIZE = 256 * 1024;
+
+  // osmand change: buffer sizing and read statistics
+  private int refillSize = BUFFER_SIZE;
+  private boolean adaptiveBuffer;
+  private int minBufferSize = BUFFER_SIZE;
+  private int maxBufferSize = BUFFER_SIZE;
+  private long readAheadHint;
+  private int refillsSinceSeek;
+  private long refillCount;
+  private long bytesLoaded;
+  public static final int MAX_CONTIGUOUS_READ = 64 * 1024;
+  public static final int MAPPED_SEGMENT_SIZE = 1 << 30; // 1 GB
 
   private CodedInputStream(final byte[] buffer, final int off, final int len) {
     this.buffer = buffer;
@@ -589,6 +772,20 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	// osmand change
+	private CodedInputStream(final ByteBuffer[] mappedSegments) {
+		buffer = new byte[BUFFER_SIZE];
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.mappedSegments = new ByteBuffer[mappedSegments.length];
+		for (int i = 0; i < mappedSegments.length; i++) {
+			this.mappedSegments[i] = mappedSegments[i].duplicate();
+			mappedLength += mappedSegments[i].capacity();
+		}
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -682,6 +879,10 @@ public final class CodedInputStream {
     currentLimit = byteLimit;
 
     recomputeBufferSizeAfterLimit();
+    if (adaptiveBuffer && refillsSinceSeek <= 1) {
+      // block pushed right after seek: read the rest of it at once
+      readAheadHint = Math.max(readAheadHint, currentLimit - totalBytesRetired - bufferSize);
+    }
 
     return oldLimit;
   }
@@ -767,11 +968,19 @@ public final class CodedInputStream {
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
-    if (raf != null) {
+    if (mappedSegments != null) {
+    	// osmand change
+    	totalBytesRetired = mappedPointer;
+    	int size = nextRefillSize();
+    	bufferSize = readMapped(buffer, 0, size);
+    	if (bufferSize == 0) {
+    		bufferSize = -1;
+    	}
+    } else if (raf != null) {
     	// osmand change
     	totalBytesRetired = raf.getFilePointer();
     	long remain = raf.length() - raf.getFilePointer();
-    	bufferSize = (int) Math.min(remain, buffer.length);
+    	bufferSize = (int) Math.min(remain, nextRefillSize());
     	if(bufferSize > 0) {
     		raf.readFully(buffer, 0, bufferSize);
     	} else {
@@ -793,6 +1002,8 @@ public final class CodedInputStream {
         return false;
       }
     } else {
+      refillCount++;
+      bytesLoaded += bufferSize;
       recomputeBufferSizeAfterLimit();
       final long totalBytesRead =
         totalBytesRetired + bufferSize + bufferSizeAfterLimit;
@@ -895,7 +1106,12 @@ public final class CodedInputStream {
         while (pos < chunk.length) {
         	final int n;
         	// osmand change
-        	if(raf != null) {
+        	if (mappedSegments != null) {
+        		n = readMapped(chunk, pos, chunk.length - pos);
+        		if (n == 0) {
+        			throw InvalidProtocolBufferException.truncatedMessage();
+        		}
+        	} else if(raf != null) {
         		raf.readFully(chunk, pos, chunk.length - pos);
         		n = chunk.length - pos;
         	} else {
@@ -906,6 +1122,7 @@ public final class CodedInputStream {
             throw InvalidProtocolBufferException.truncatedMessage();
           }
           totalBytesRetired += n;
+          bytesLoaded += n;
           pos += n;
         }
         sizeLeft -= chunk.length;
@@ -957,7 +1174,13 @@ public final class CodedInputStream {
       long pos = bufferSize - bufferPos;
       bufferPos = bufferSize;
 
-      if(raf != null) {
+      refillsSinceSeek = 0;
+      if (mappedSegments != null) {
+         bufferPos = 0;
+         bufferSize = 0;
+         mappedPointer += size - pos;
+         totalBytesRetired = mappedPointer;
+      } else if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
          raf.seek(raf.getFilePointer() + (size - pos));
@@ -985,11 +1208,35 @@ public final class CodedInputStream {
 		  }
 		  bufferPos = (int) (pointer - totalBytesRetired);
 	  } else {
+		  if (adaptiveBuffer && bufferPos < bufferSize / 2) {
+			  // most of the buffer was read for nothing
+			  refillSize = Math.max(minBufferSize, refillSize / 2);
+		  }
 		  totalBytesRetired = pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  refillsSinceSeek = 0;
+		  if (mappedSegments != null) {
+			  mappedPointer = pointer;
+		  } else {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
   }
+
+  // osmand change
+  private int readMapped(byte[] dest, int off, int len) {
+	  if (mappedPointer >= mappedLength) {
+		  return 0;
+	  }
+	  ByteBuffer segment = mappedSegments[(int) (mappedPointer / MAPPED_SEGMENT_SIZE)];
+	  int segmentPos = (int) (mappedPointer % MAPPED_SEGMENT_SIZE);
+	  // don't cross segment border, next refill will continue from the next segment
+	  int read = Math.min(len, segment.capacity() - segmentPos);
+	  segment.position(segmentPos);
+	  segment.get(dest, off, read);
+	  mappedPointer += read;
+	  return read;
+  }
 }
@@ -0,0 +1,81 @@
+package com.google.protobuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * osmand change: bounded cache of decoded UTF-8 strings keyed by their encoded bytes,
+ * so repeated names and tag values are returned without decoding or allocation.
+ * Cache is direct mapped (new entry replaces old one with the same slot), entries are immutable
+ * so the cache could be shared between threads without locking (concurrent puts could only be lost).
+ */
+public final class Utf8StringCache {
+
+  public static final int MAX_CACHED_LENGTH = 64;
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final Entry[] table;
+  private final int mask;
+
+  private static final class Entry {
+    final byte[] bytes;
+    final String value;
+    final int hash;
+
+    Entry(byte[] bytes, String value, int hash) {
+      this.bytes = bytes;
+      this.value = value;
+      this.hash = hash;
+    }
+  }
+
+  public Utf8StringCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity number of slots, rounded up to power of 2
+   */
+  public Utf8StringCache(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    table = new Entry[size];
+    mask = size - 1;
+  }
+
+  public String decode(byte[] buf, int off, int len) {
+    if (len == 0) {
+      return "";
+    }
+    if (len > MAX_CACHED_LENGTH) {
+      return new String(buf, off, len, StandardCharsets.UTF_8);
+    }
+    int hash = 1;
+    for (int i = off; i < off + len; i++) {
+      hash = 31 * hash + buf[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    Entry e = table[slot];
+    if (e != null && e.hash == hash && equalBytes(e.bytes, buf, off, len)) {
+      return e.value;
+    }
+    String value = new String(buf, off, len, StandardCharsets.UTF_8);
+    table[slot] = new Entry(Arrays.copyOfRange(buf, off, off + len), value, hash);
+    return value;
+  }
+
+  public void clear() {
+    Arrays.fill(table, null);
+  }
+
+  private static boolean equalBytes(byte[] bytes, byte[] buf, int off, int len) {
+    if (bytes.length != len) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (bytes[i] != buf[off + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -138,6 +138,32 @@ public class TspAnt {
 //			System.out.println(Arrays.toString(graph[i]));
 		}
 		
+        return allocate();
+    }
+
+    // Read graph from cost table calculated by router (start is first town, end is last town if keepEndPoint),
+    // i.e. HHRouteMatrix.getCostTable()
+    public TspAnt readGraph(double[][] costTable, boolean keepEndPoint) {
+        n = costTable.length;
+        graph = new double[n][n];
+        double maxSum = 0;
+        for (int i = 0; i < n; i++) {
+            double maxIWeight = 0;
+            for (int j = 1; j < n; j++) {
+                double d = Math.rint(costTable[i][j]) + 0.1;
+                maxIWeight = Math.max(d, maxIWeight);
+                graph[i][j] = d;
+            }
+            maxSum += maxIWeight;
+        }
+        maxSum = Math.rint(maxSum) + 1;
+        for (int i = 0; i < n; i++) {
+            graph[i][0] = keepEndPoint && i == n - 1 ? 0.1 : maxSum;
+        }
+        return allocate();
+    }
+
+    private TspAnt allocate() {
         m = (int) (n * numAntFactor);
         // all memory allocations done here
         trails = new double[n][n];
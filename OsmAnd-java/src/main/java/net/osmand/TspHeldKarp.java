@@ -43,6 +43,23 @@ public class TspHeldKarp {
 		
 		return this;
 	}
+
+	// cost table calculated by router (i.e. HHRouteMatrix.getCostTable())
+	public TspHeldKarp readInput(double[][] costTable, boolean returnToInitialPoint) {
+		n = costTable.length;
+		order = new int[n];
+		cost = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (!returnToInitialPoint && (j == 0)) {
+					cost[i][j] = 0;
+				} else {
+					cost[i][j] = Math.rint(costTable[i][j]);
+				}
+			}
+		}
+		return this;
+	}
   //
   
 
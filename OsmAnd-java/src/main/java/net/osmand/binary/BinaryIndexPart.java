@@ -1,10 +1,24 @@
 package net.osmand.binary;
 
+import com.google.protobuf.Utf8StringCache;
+
 public abstract class BinaryIndexPart {
 
 	String name;
 	long length;
 	long filePointer;
+	// repeated names and tag values of this part are decoded once (shared by readers of the same file)
+	private Utf8StringCache stringCache;
+	
+	public Utf8StringCache getStringCache() {
+		Utf8StringCache cache = stringCache;
+		if (cache == null) {
+			// concurrent creation is harmless, one of the caches is dropped
+			cache = new Utf8StringCache();
+			stringCache = cache;
+		}
+		return cache;
+	}
 	
 	abstract public String getPartName();
 
@@ -0,0 +1,190 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoded map data used by {@link BinaryMapIndexReader#searchMapIndex(BinaryMapIndexReader.SearchRequest)}.
+ * It keeps all objects of map data blocks (not filtered by request bbox or type filter) and tree nodes of map roots,
+ * so repeated search of the same area doesn't read file at all. Size is limited by estimated size of objects in bytes.
+ * Cache could be shared by many readers and threads, requests get copies of cached objects
+ * (see {@link BinaryMapDataObject#BinaryMapDataObject(BinaryMapDataObject)}), so cached ones are never modified.
+ */
+public class BinaryMapDataCache {
+
+	public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+	// estimated sizes of java objects in bytes
+	private static final int OBJECT_SIZE = 96;
+	private static final int ARRAY_SIZE = 16;
+	private static final int TREE_NODE_SIZE = 64;
+	private static final int NAME_SIZE = 48;
+
+	private final long maxSize;
+	private final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	static final class Key {
+		final File file;
+		final long rootPointer;
+		final int minZoom;
+		final int maxZoom;
+		// 0 for tree nodes of root
+		final long blockPointer;
+
+		Key(File file, long rootPointer, int minZoom, int maxZoom, long blockPointer) {
+			this.file = file;
+			this.rootPointer = rootPointer;
+			this.minZoom = minZoom;
+			this.maxZoom = maxZoom;
+			this.blockPointer = blockPointer;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = file.hashCode();
+			result = 31 * result + (int) (rootPointer ^ (rootPointer >>> 32));
+			result = 31 * result + minZoom;
+			result = 31 * result + maxZoom;
+			result = 31 * result + (int) (blockPointer ^ (blockPointer >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return rootPointer == other.rootPointer && blockPointer == other.blockPointer && minZoom == other.minZoom
+					&& maxZoom == other.maxZoom && file.equals(other.file);
+		}
+	}
+
+	private static final class Entry {
+		final List<?> data;
+		final long size;
+
+		Entry(List<?> data, long size) {
+			this.data = data;
+			this.size = size;
+		}
+	}
+
+	public BinaryMapDataCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public BinaryMapDataCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	@SuppressWarnings("unchecked")
+	synchronized <T> List<T> get(Key key) {
+		Entry e = cache.get(key);
+		if (e == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return (List<T>) e.data;
+	}
+
+	/**
+	 * @return number of evicted entries
+	 */
+	synchronized int put(Key key, List<?> data, long estimatedSize) {
+		Entry prev = cache.put(key, new Entry(data, estimatedSize));
+		if (prev != null) {
+			size -= prev.size;
+		}
+		size += estimatedSize;
+		int evicted = 0;
+		Iterator<Entry> it = cache.values().iterator();
+		// keep at least the last entry even if it is bigger than cache
+		while (size > maxSize && cache.size() > 1 && it.hasNext()) {
+			Entry e = it.next();
+			size -= e.size;
+			it.remove();
+			evicted++;
+		}
+		evictions += evicted;
+		return evicted;
+	}
+
+	public synchronized void removeFile(File file) {
+		Iterator<Map.Entry<Key, Entry>> it = cache.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			if (e.getKey().file.equals(file)) {
+				size -= e.getValue().size;
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		size = 0;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getEntriesCount() {
+		return cache.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	static long estimateTreeNodesSize(int nodes) {
+		return ARRAY_SIZE + (long) nodes * TREE_NODE_SIZE;
+	}
+
+	static long estimateSize(List<BinaryMapDataObject> objects) {
+		long sz = ARRAY_SIZE + 4L * objects.size();
+		for (BinaryMapDataObject o : objects) {
+			sz += OBJECT_SIZE + arraySize(o.coordinates) + arraySize(o.types) + arraySize(o.additionalTypes);
+			if (o.polygonInnerCoordinates != null) {
+				sz += ARRAY_SIZE;
+				for (int[] inner : o.polygonInnerCoordinates) {
+					sz += arraySize(inner);
+				}
+			}
+			if (o.objectNames != null) {
+				for (String name : o.objectNames.valueCollection()) {
+					sz += NAME_SIZE + 2L * name.length();
+				}
+			}
+		}
+		return sz;
+	}
+
+	private static long arraySize(int[] array) {
+		return array == null ? 0 : ARRAY_SIZE + 4L * array.length;
+	}
+}
@@ -45,6 +45,21 @@ public class BinaryMapDataObject {
 		this.labelX = labelX;
 		this.labelY = labelY;
 	}
+
+	/**
+	 * Copy of object with own names and mutable fields, coordinate and type arrays are shared.
+	 */
+	public BinaryMapDataObject(BinaryMapDataObject o) {
+		this(o.id, o.coordinates, o.polygonInnerCoordinates, o.objectType, o.area, o.types, o.additionalTypes,
+				o.labelX, o.labelY);
+		this.mapIndex = o.mapIndex;
+		if (o.objectNames != null) {
+			this.objectNames = new TIntObjectHashMap<String>(o.objectNames);
+		}
+		if (o.namesOrder != null) {
+			this.namesOrder = new TIntArrayList(o.namesOrder);
+		}
+	}
 	
 	protected void setCoordinates(int[] coordinates) {
 		this.coordinates = coordinates;
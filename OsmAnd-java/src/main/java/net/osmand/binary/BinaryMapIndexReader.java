@@ -10,6 +10,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -38,6 +39,7 @@ import org.xml.sax.SAXException;
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Utf8StringCache;
 import com.google.protobuf.WireFormat;
 
 import gnu.trove.list.array.TIntArrayList;
@@ -107,6 +109,12 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	// not null if file is read through memory mapped segments (shared between readers of the same file)
+	private final ByteBuffer[] mappedSegments;
+	// not null for shallow readers sharing index structures (see BinaryMapReaderPool)
+	private BinaryMapIndexReader shallowReference;
+	// optional cache of decoded map data (could be shared between readers)
+	private BinaryMapDataCache mapDataCache;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -134,22 +142,27 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		hhAdapter = new BinaryHHRouteReaderAdapter(this);
-		init();
+		this(raf, file, true);
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped read file through memory mapped segments instead of buffered RandomAccessFile reads,
+	 *                     seeks don't produce system calls and OS page cache is shared between readers
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped) throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		if (memoryMapped) {
+			mappedSegments = CodedInputStream.mapFile(raf);
+			codedIS = CodedInputStream.newInstance(mappedSegments);
+		} else {
+			mappedSegments = null;
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -164,7 +177,12 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		this.mappedSegments = referenceToSameFile.mappedSegments;
+		if (mappedSegments != null) {
+			codedIS = CodedInputStream.newInstance(mappedSegments);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -181,9 +199,46 @@ public class BinaryMapIndexReader {
 		hhIndexes = new ArrayList<HHRouteRegion>(referenceToSameFile.hhIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		mapDataCache = referenceToSameFile.mapDataCache;
 		calculateCenterPointForRegions();
 	}
 
+	/**
+	 * Shallow reader which shares index structures (and memory mapping if present) with referenceToSameFile
+	 * and keeps only own read position. Index lists are not copied and must not be modified.
+	 * If reference is memory mapped, raf could be null and no file handle is opened.
+	 */
+	BinaryMapIndexReader(BinaryMapIndexReader referenceToSameFile, RandomAccessFile raf) throws IOException {
+		this.shallowReference = referenceToSameFile;
+		this.file = referenceToSameFile.file;
+		this.mappedSegments = referenceToSameFile.mappedSegments;
+		if (mappedSegments != null) {
+			this.raf = referenceToSameFile.raf;
+			codedIS = CodedInputStream.newInstance(mappedSegments);
+		} else {
+			this.raf = raf;
+			codedIS = CodedInputStream.newInstance(raf);
+		}
+		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
+		version = referenceToSameFile.version;
+		dateCreated = referenceToSameFile.dateCreated;
+		owner = referenceToSameFile.owner;
+		transportAdapter = new BinaryMapTransportReaderAdapter(this);
+		addressAdapter = new BinaryMapAddressReaderAdapter(this);
+		poiAdapter = new BinaryMapPoiReaderAdapter(this);
+		routeAdapter = new BinaryMapRouteReaderAdapter(this);
+		hhAdapter = new BinaryHHRouteReaderAdapter(this);
+		mapIndexes = referenceToSameFile.mapIndexes;
+		poiIndexes = referenceToSameFile.poiIndexes;
+		addressIndexes = referenceToSameFile.addressIndexes;
+		transportIndexes = referenceToSameFile.transportIndexes;
+		routingIndexes = referenceToSameFile.routingIndexes;
+		hhIndexes = referenceToSameFile.hhIndexes;
+		indexes = referenceToSameFile.indexes;
+		basemap = referenceToSameFile.basemap;
+		mapDataCache = referenceToSameFile.mapDataCache;
+	}
+
 
 	public long getDateCreated() {
 		return dateCreated;
@@ -455,6 +510,33 @@ public class BinaryMapIndexReader {
 		return raf;
 	}
 
+	public boolean isMemoryMapped() {
+		return mappedSegments != null;
+	}
+
+	/**
+	 * Sets cache of decoded map objects used by searchMapIndex (null to disable).
+	 */
+	public void setMapDataCache(BinaryMapDataCache mapDataCache) {
+		this.mapDataCache = mapDataCache;
+	}
+
+	public BinaryMapDataCache getMapDataCache() {
+		return mapDataCache;
+	}
+
+	public void setReadBufferSize(int bufferSize) {
+		codedIS.setBufferSize(bufferSize);
+	}
+
+	/**
+	 * Buffer grows up to maxBufferSize while file is scanned sequentially and shrinks
+	 * down to minBufferSize on random access, blocks are read ahead after seek.
+	 */
+	public void setAdaptiveReadBuffer(int minBufferSize, int maxBufferSize) {
+		codedIS.setAdaptiveBufferSize(minBufferSize, maxBufferSize);
+	}
+
 	public File getFile() {
 		return file;
 	}
@@ -650,6 +732,8 @@ public class BinaryMapIndexReader {
 				|| index.bottom < req.top) {
 			return req.getSearchResults();
 		}
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		codedIS.seek(index.stopsFileOffset);
 		long oldLimit = codedIS.pushLimitLong((long) index.stopsFileLength);
 		int offset = req.searchResults.size();
@@ -661,6 +745,7 @@ public class BinaryMapIndexReader {
 			TransportStop st = req.searchResults.get(i);
 			transportAdapter.initializeNames(indexedStringTable, st);
 		}
+		req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
 		return req.getSearchResults();
 	}
 	
@@ -724,6 +809,8 @@ public class BinaryMapIndexReader {
 	public List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher, StringMatcher matcher,  
 			int cityType) throws IOException {
 		List<City> cities = new ArrayList<City>();
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		for (CitiesBlock block : region.cities) {
 			if (block.type == cityType) {
 				codedIS.seek(block.filePointer);
@@ -732,6 +819,9 @@ public class BinaryMapIndexReader {
 				codedIS.popLimit(old);
 			}
 		}
+		if (resultMatcher != null) {
+			resultMatcher.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
+		}
 		return cities;
 	}
 
@@ -742,11 +832,16 @@ public class BinaryMapIndexReader {
 		} catch (IllegalArgumentException e) {
 			throw new IOException(e.getMessage() + " while reading " + c + " (id: " + c.getId() + ")");
 		}
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		codedIS.seek(c.getFileOffset());
 		int size = codedIS.readRawVarint32();
 		long old = codedIS.pushLimitLong((long) size);
 		addressAdapter.readCityStreets(resultMatcher, c, reg.attributeTagsTable);
 		codedIS.popLimit(old);
+		if (resultMatcher != null) {
+			resultMatcher.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
+		}
 		return size;
 	}
 
@@ -762,6 +857,8 @@ public class BinaryMapIndexReader {
 
 	public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
 		AddressRegion reg = checkAddressIndex(s.getFileOffset());
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		codedIS.seek(s.getFileOffset());
 		long size = codedIS.readRawVarint32();
 		long old = codedIS.pushLimitLong((long) size);
@@ -769,6 +866,9 @@ public class BinaryMapIndexReader {
 		addressAdapter.readStreet(s, resultMatcher, true, 0, 0, city != null && city.isPostcode() ? city.getName() : null,
 				reg.attributeTagsTable);
 		codedIS.popLimit(old);
+		if (resultMatcher != null) {
+			resultMatcher.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
+		}
 	}
 
 
@@ -957,17 +1057,21 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		List<MapTree> foundSubtrees = new ArrayList<MapTree>();
 		for (MapIndex mapIndex : mapIndexes) {
 			if(filterMapIndex != null && mapIndex != filterMapIndex) {
 				continue;
 			}
 			// lazy initializing rules
-			if (mapIndex.encodingRules.isEmpty()) {
-				codedIS.seek(mapIndex.filePointer);
-				long oldLimit = codedIS.pushLimitLong((long) mapIndex.length);
-				readMapIndex(mapIndex, true);
-				codedIS.popLimit(oldLimit);
+			synchronized (mapIndex) {
+				if (mapIndex.encodingRules.isEmpty()) {
+					codedIS.seek(mapIndex.filePointer);
+					long oldLimit = codedIS.pushLimitLong((long) mapIndex.length);
+					readMapIndex(mapIndex, true);
+					codedIS.popLimit(oldLimit);
+				}
 			}
 			for (MapRoot index : mapIndex.getRoots()) {
 				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
@@ -978,22 +1082,29 @@ public class BinaryMapIndexReader {
 
 
 					// lazy initializing trees
-					if (index.trees == null) {
-						index.trees = new ArrayList<MapTree>();
-						codedIS.seek(index.filePointer);
-						long oldLimit = codedIS.pushLimitLong((long) index.length);
-						readMapLevel(index);
-						codedIS.popLimit(oldLimit);
+					synchronized (index) {
+						if (index.trees == null) {
+							index.trees = new ArrayList<MapTree>();
+							codedIS.seek(index.filePointer);
+							long oldLimit = codedIS.pushLimitLong((long) index.length);
+							readMapLevel(index);
+							codedIS.popLimit(oldLimit);
+						}
 					}
 
-					for (MapTree tree : index.trees) {
-						if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
-							continue;
+					BinaryMapDataCache cache = READ_STATS ? null : mapDataCache;
+					if (cache != null) {
+						searchCachedTreeNodes(cache, index, req, foundSubtrees);
+					} else {
+						for (MapTree tree : index.trees) {
+							if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
+								continue;
+							}
+							codedIS.seek(tree.filePointer);
+							long oldLimit = codedIS.pushLimitLong((long) tree.length);
+							searchMapTreeBounds(tree, index, req, foundSubtrees, null);
+							codedIS.popLimit(oldLimit);
 						}
-						codedIS.seek(tree.filePointer);
-						long oldLimit = codedIS.pushLimitLong((long) tree.length);
-						searchMapTreeBounds(tree, index, req, foundSubtrees);
-						codedIS.popLimit(oldLimit);
 					}
 
 					Collections.sort(foundSubtrees, new Comparator<MapTree>() {
@@ -1003,7 +1114,11 @@ public class BinaryMapIndexReader {
 						}
 					});
 					for (MapTree tree : foundSubtrees) {
-						if (!req.isCancelled()) {
+						if (cache != null) {
+							if (!req.isCancelled()) {
+								searchCachedMapDataBlock(cache, index, tree, req, mapIndex);
+							}
+						} else if (!req.isCancelled()) {
 							codedIS.seek(tree.mapDataBlock);
 							int length = codedIS.readRawVarint32();
 							long oldLimit = codedIS.pushLimitLong((long) length);
@@ -1016,6 +1131,7 @@ public class BinaryMapIndexReader {
 
 			}
 		}
+		req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
 		if (req.numberOfVisitedObjects > 0 && req.log) {
 			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
@@ -1026,17 +1142,25 @@ public class BinaryMapIndexReader {
 	
 
 	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
-		List<BinaryMapDataObject> tempResults = null;
+		readMapDataBlocks(req, tree, root, null);
+	}
+
+	/**
+	 * @param blockObjects if not null all objects of block are read (without request filters) to this list instead of publishing
+	 */
+	private void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root,
+			List<BinaryMapDataObject> blockObjects) throws IOException {
+		List<BinaryMapDataObject> tempResults = blockObjects;
 		long baseId = 0;
 		while (true) {
-			if (req.isCancelled()) {
+			if (blockObjects == null && req.isCancelled()) {
 				return;
 			}
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
 			switch (tag) {
 			case 0:
-				if(tempResults != null) {
+				if (tempResults != null && blockObjects == null) {
 					for(BinaryMapDataObject obj : tempResults) {
 						req.publish(obj);
 					}
@@ -1055,7 +1179,7 @@ public class BinaryMapIndexReader {
 					req.stat.lastObjectSize += length;
 					req.stat.addBlockHeader(MapDataBlock.DATAOBJECTS_FIELD_NUMBER, length);
 				}
-				BinaryMapDataObject mapObject = readMapDataObject(tree, req, root);
+				BinaryMapDataObject mapObject = readMapDataObject(tree, req, root, blockObjects == null);
 				if (mapObject != null) {
 					mapObject.setId(mapObject.getId() + baseId);
 					if (READ_STATS) {
@@ -1076,7 +1200,7 @@ public class BinaryMapIndexReader {
 					req.stat.lastBlockStringTableSize += length;
 				}
 				if (tempResults != null) {
-					List<String> stringTable = readStringTable();
+					List<String> stringTable = readStringTable(root);
 					for (int i = 0; i < tempResults.size(); i++) {
 						BinaryMapDataObject rs = tempResults.get(i);
 						if (rs.objectNames != null) {
@@ -1099,8 +1223,117 @@ public class BinaryMapIndexReader {
 
 	}
 
+	private void searchCachedTreeNodes(BinaryMapDataCache cache, MapRoot index, SearchRequest<BinaryMapDataObject> req,
+			List<MapTree> foundSubtrees) throws IOException {
+		BinaryMapDataCache.Key key = new BinaryMapDataCache.Key(file, index.filePointer, index.minZoom, index.maxZoom, 0);
+		List<MapTree> nodes = cache.get(key);
+		if (nodes == null) {
+			req.stat.cacheMisses++;
+			// read whole tree once (data and ocean nodes) and filter it by bbox later
+			SearchRequest<BinaryMapDataObject> all = new SearchRequest<BinaryMapDataObject>();
+			all.left = 0;
+			all.top = 0;
+			all.right = Integer.MAX_VALUE;
+			all.bottom = Integer.MAX_VALUE;
+			List<MapTree> dataNodes = new ArrayList<MapTree>();
+			List<MapTree> oceanNodes = new ArrayList<MapTree>();
+			for (MapTree tree : index.trees) {
+				codedIS.seek(tree.filePointer);
+				long oldLimit = codedIS.pushLimitLong((long) tree.length);
+				searchMapTreeBounds(tree, index, all, dataNodes, oceanNodes);
+				codedIS.popLimit(oldLimit);
+			}
+			nodes = new ArrayList<MapTree>(dataNodes.size() + oceanNodes.size());
+			for (MapTree o : oceanNodes) {
+				// separate node without data block to publish ocean flag
+				MapTree ocean = new MapTree();
+				ocean.left = o.left;
+				ocean.right = o.right;
+				ocean.top = o.top;
+				ocean.bottom = o.bottom;
+				ocean.ocean = o.ocean;
+				nodes.add(ocean);
+			}
+			nodes.addAll(dataNodes);
+			req.stat.cacheEvictions += cache.put(key, nodes, BinaryMapDataCache.estimateTreeNodesSize(nodes.size()));
+		} else {
+			req.stat.cacheHits++;
+		}
+		for (MapTree node : nodes) {
+			if (node.right < req.left || node.left > req.right || node.top > req.bottom || node.bottom < req.top) {
+				continue;
+			}
+			req.numberOfAcceptedSubtrees++;
+			if (node.mapDataBlock != 0) {
+				foundSubtrees.add(node);
+			} else if (node.ocean != null) {
+				req.publishOceanTile(node.ocean);
+			}
+		}
+	}
+
+	private void searchCachedMapDataBlock(BinaryMapDataCache cache, MapRoot index, MapTree tree,
+			SearchRequest<BinaryMapDataObject> req, MapIndex mapIndex) throws IOException {
+		BinaryMapDataCache.Key key = new BinaryMapDataCache.Key(file, index.filePointer, index.minZoom, index.maxZoom,
+				tree.mapDataBlock);
+		List<BinaryMapDataObject> objects = cache.get(key);
+		if (objects == null) {
+			req.stat.cacheMisses++;
+			objects = new ArrayList<BinaryMapDataObject>();
+			codedIS.seek(tree.mapDataBlock);
+			int length = codedIS.readRawVarint32();
+			long oldLimit = codedIS.pushLimitLong((long) length);
+			// block is decoded without filter, objects are counted as accepted below
+			int acceptedObjects = req.numberOfAcceptedObjects;
+			readMapDataBlocks(req, tree, mapIndex, objects);
+			req.numberOfAcceptedObjects = acceptedObjects;
+			codedIS.popLimit(oldLimit);
+			req.stat.cacheEvictions += cache.put(key, objects, BinaryMapDataCache.estimateSize(objects));
+		} else {
+			req.stat.cacheHits++;
+			req.numberOfVisitedObjects += objects.size();
+		}
+		for (BinaryMapDataObject obj : objects) {
+			if (req.isCancelled()) {
+				return;
+			}
+			if (!intersects(obj.coordinates, req)) {
+				continue;
+			}
+			if (req.searchFilter != null) {
+				req.cacheTypes.clear();
+				req.cacheTypes.add(obj.types);
+				if (!req.searchFilter.accept(req.cacheTypes, mapIndex)) {
+					continue;
+				}
+			}
+			req.numberOfAcceptedObjects++;
+			// cached objects are shared between requests
+			req.publish(new BinaryMapDataObject(obj));
+		}
+	}
+
+	private static boolean intersects(int[] coordinates, SearchRequest<?> req) {
+		int minX = Integer.MAX_VALUE;
+		int maxX = 0;
+		int minY = Integer.MAX_VALUE;
+		int maxY = 0;
+		for (int i = 0; i < coordinates.length - 1; i += 2) {
+			int x = coordinates[i];
+			int y = coordinates[i + 1];
+			if (req.left <= x && req.right >= x && req.top <= y && req.bottom >= y) {
+				return true;
+			}
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		return maxX >= req.left && minX <= req.right && minY <= req.bottom && maxY >= req.top;
+	}
+
 	protected void searchMapTreeBounds(MapTree current, MapTree parent,
-			SearchRequest<BinaryMapDataObject> req, List<MapTree> foundSubtrees) throws IOException {
+			SearchRequest<BinaryMapDataObject> req, List<MapTree> foundSubtrees, List<MapTree> oceanSubtrees) throws IOException {
 		int init = 0;
 		req.numberOfReadSubtrees++;
 		while (true) {
@@ -1149,6 +1382,9 @@ public class BinaryMapIndexReader {
 					current.ocean = Boolean.FALSE;
 				}
 				req.publishOceanTile(current.ocean);
+				if (oceanSubtrees != null) {
+					oceanSubtrees.add(current);
+				}
 				break;
 			case MapDataBox.BOXES_FIELD_NUMBER :
 				// left, ... already initialized
@@ -1159,7 +1395,7 @@ public class BinaryMapIndexReader {
 				if(current.ocean != null ){
 					child.ocean = current.ocean;
 				}
-				searchMapTreeBounds(child, current, req, foundSubtrees);
+				searchMapTreeBounds(child, current, req, foundSubtrees, oceanSubtrees);
 				codedIS.popLimit(oldLimit);
 				codedIS.seek(child.filePointer + child.length);
 				break;
@@ -1172,7 +1408,7 @@ public class BinaryMapIndexReader {
 
 	private int MASK_TO_READ = ~((1 << SHIFT_COORDINATES) - 1);
 	private BinaryMapDataObject readMapDataObject(MapTree tree , SearchRequest<BinaryMapDataObject> req, 
-			MapIndex root) throws IOException {
+			MapIndex root, boolean filter) throws IOException {
 		int tag = WireFormat.getTagFieldNumber(codedIS.readTag());
 		boolean area = OsmandOdb.MapData.AREACOORDINATES_FIELD_NUMBER == tag;
 		if (!area && OsmandOdb.MapData.COORDINATES_FIELD_NUMBER != tag) {
@@ -1218,7 +1454,7 @@ public class BinaryMapIndexReader {
 
 		}
 		codedIS.popLimit(old);
-		if (!contains) {
+		if (!contains && filter) {
 			codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 			return null;
 		}
@@ -1293,7 +1529,7 @@ public class BinaryMapIndexReader {
 				}
 				codedIS.popLimit(old);
 				boolean accept = true;
-				if (req.searchFilter != null) {
+				if (req.searchFilter != null && filter) {
 					accept = req.searchFilter.accept(req.cacheTypes, root);
 				}
 				if (!accept) {
@@ -1381,6 +1617,8 @@ public class BinaryMapIndexReader {
 	}
 
 	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		for (AddressRegion reg : addressIndexes) {
 			if (reg.indexNameOffset != -1) {
 				codedIS.seek(reg.indexNameOffset);
@@ -1390,6 +1628,7 @@ public class BinaryMapIndexReader {
 				codedIS.popLimit(old);
 			}
 		}
+		req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
 		return req.getSearchResults();
 	}
 
@@ -1411,6 +1650,8 @@ public class BinaryMapIndexReader {
 		if (req.nameQuery == null || req.nameQuery.length() == 0) {
 			throw new IllegalArgumentException();
 		}
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		for (PoiRegion poiIndex : poiIndexes) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
@@ -1418,6 +1659,7 @@ public class BinaryMapIndexReader {
 			poiAdapter.searchPoiByName(poiIndex, req);
 			codedIS.popLimit(old);
 		}
+		req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
 		return req.getSearchResults();
 	}
 
@@ -1483,6 +1725,8 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 		for (PoiRegion poiIndex : poiIndexes) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
@@ -1490,6 +1734,7 @@ public class BinaryMapIndexReader {
 			poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
 			codedIS.popLimit(old);
 		}
+		req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
 
 		return req.getSearchResults();
 	}
@@ -1499,17 +1744,25 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
+		long refills = codedIS.getRefillCount();
+		long bytesLoaded = codedIS.getBytesLoaded();
 
 		poiAdapter.initCategories(poiIndex);
 		codedIS.seek(poiIndex.filePointer);
 		long old = codedIS.pushLimitLong((long) poiIndex.length);
 		poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
 		codedIS.popLimit(old);
+		req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
 		return req.getSearchResults();
 	}
 
 	protected List<String> readStringTable() throws IOException {
+		return readStringTable(null);
+	}
+
+	protected List<String> readStringTable(BinaryIndexPart part) throws IOException {
 		List<String> list = new ArrayList<String>();
+		Utf8StringCache cache = part == null ? null : part.getStringCache();
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -1517,7 +1770,7 @@ public class BinaryMapIndexReader {
 			case 0:
 				return list;
 			case OsmandOdb.StringTable.S_FIELD_NUMBER :
-				list.add(codedIS.readString());
+				list.add(codedIS.readString(cache));
 				break;
 			default:
 				skipUnknownField(t);
@@ -1710,11 +1963,15 @@ public class BinaryMapIndexReader {
 
 	public void close() throws IOException {
 		if (codedIS != null) {
-			raf.close();
+			if (shallowReference == null || raf != shallowReference.raf) {
+				raf.close();
+			}
 			codedIS = null;
-			mapIndexes.clear();
-			addressIndexes.clear();
-			transportIndexes.clear();
+			if (shallowReference == null) {
+				mapIndexes.clear();
+				addressIndexes.clear();
+				transportIndexes.clear();
+			}
 		}
 	}
 
@@ -1750,6 +2007,20 @@ public class BinaryMapIndexReader {
 		public int lastBlockStringTableSize;
 		public int lastBlockHeaderInfo;
 
+		// file reads done by request (buffer refills and loaded bytes)
+		public long bufferRefills;
+		public long bytesLoaded;
+
+		// decoded map data cache usage by request
+		public int cacheHits;
+		public int cacheMisses;
+		public int cacheEvictions;
+
+		public void addReadStats(long refills, long bytes) {
+			bufferRefills += refills;
+			bytesLoaded += bytes;
+		}
+
 		public void addBlockHeader(int typesFieldNumber, int sizeL) {
 			lastBlockHeaderInfo +=
 					CodedOutputStream.computeTagSize(typesFieldNumber) +
@@ -1954,6 +2225,32 @@ public class BinaryMapIndexReader {
 		public boolean isBboxSpecified() {
 			return left != 0 || right != 0;
 		}
+
+		/**
+		 * Copies search parameters (bbox, zoom, filters, name query) to a new request
+		 * with own results and caches, so it could be executed in parallel with this one.
+		 */
+		SearchRequest<T> copyRequest(ResultMatcher<T> resultMatcher, ResultMatcher<T> rawDataCollector) {
+			SearchRequest<T> request = new SearchRequest<T>();
+			request.resultMatcher = resultMatcher;
+			request.rawDataCollector = rawDataCollector;
+			request.x = x;
+			request.y = y;
+			request.left = left;
+			request.right = right;
+			request.top = top;
+			request.bottom = bottom;
+			request.zoom = zoom;
+			request.tiles = tiles;
+			request.radius = radius;
+			request.nameQuery = nameQuery;
+			request.matcherMode = matcherMode;
+			request.searchFilter = searchFilter;
+			request.poiTypeFilter = poiTypeFilter;
+			request.poiAdditionalFilter = poiAdditionalFilter;
+			request.log = log;
+			return request;
+		}
 	}
 
 
@@ -2789,9 +3086,13 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
 		if (routeAdapter != null) {
+			long refills = codedIS.getRefillCount();
+			long bytesLoaded = codedIS.getBytesLoaded();
 			routeAdapter.initRouteTypesIfNeeded(req, list);
-			return routeAdapter.searchRouteRegionTree(req, list,
+			List<RouteSubregion> res = routeAdapter.searchRouteRegionTree(req, list,
 					new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>());
+			req.stat.addReadStats(codedIS.getRefillCount() - refills, codedIS.getBytesLoaded() - bytesLoaded);
+			return res;
 		}
 		return Collections.emptyList();
 	}
@@ -298,11 +298,14 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			long oldLimit = codedIS.pushLimitLong((long) region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		// region structures could be shared between readers of the same file
+		synchronized (region) {
+			if (region.categories.isEmpty()) {
+				codedIS.seek(region.filePointer);
+				long oldLimit = codedIS.pushLimitLong((long) region.length);
+				readPoiIndex(region, true);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -861,7 +864,7 @@ public class BinaryMapPoiReaderAdapter {
 				}
 				break;
 			case OsmandOdb.OsmAndPoiBoxDataAtom.TEXTVALUES_FIELD_NUMBER:
-				String str = codedIS.readString();
+				String str = codedIS.readString(region.getStringCache());
 				if (textTags != null && !textTags.isEmpty()) {
 					am.setAdditionalInfo(textTags.poll(), str);
 				}
@@ -903,7 +906,7 @@ public class BinaryMapPoiReaderAdapter {
 				am.setEnName(codedIS.readString());
 				break;
 			case OsmandOdb.OsmAndPoiBoxDataAtom.OPENINGHOURS_FIELD_NUMBER:
-				am.setOpeningHours(codedIS.readString());
+				am.setOpeningHours(codedIS.readString(region.getStringCache()));
 				break;
 			case OsmandOdb.OsmAndPoiBoxDataAtom.SITE_FIELD_NUMBER:
 				am.setSite(codedIS.readString());
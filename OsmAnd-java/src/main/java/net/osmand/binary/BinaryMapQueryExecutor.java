@@ -0,0 +1,226 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.data.MapObject;
+
+/**
+ * Runs one search request over many obf files at once (for example border cities covered by several regions).
+ * Readers which don't intersect request bbox are skipped, the rest are searched in parallel on IO executor
+ * (blocking file reads are not done on fork join pool), by default it's a shared pool of {@link #DEFAULT_IO_THREADS}
+ * daemon threads which is stopped by {@link #shutdownDefaultExecutor()} (next search starts it again).
+ * Every file is searched with own copy of request, found objects are published to the original request
+ * one by one under its lock. Result matcher of original request (both publish and isCancelled) is only called
+ * under the same lock, so it's never called concurrently and doesn't need to be thread safe.
+ * Search stops in all files when request is cancelled or its limit is exceeded.
+ * The same reader instance is never read by 2 threads of executor, access is synchronized on reader. Reader itself
+ * isn't thread safe and doesn't lock, so code which reads the same reader outside of executor while it's searched
+ * must synchronize on reader too (or use own reader, see {@link BinaryMapReaderPool}).
+ */
+public class BinaryMapQueryExecutor {
+
+	public static final int DEFAULT_IO_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+	private static ExecutorService defaultExecutor;
+
+	// null - default executor
+	private final ExecutorService executor;
+
+	public interface ReaderSearch<T> {
+		void search(BinaryMapIndexReader reader, SearchRequest<T> req) throws IOException;
+	}
+
+	public BinaryMapQueryExecutor() {
+		this(null);
+	}
+
+	public BinaryMapQueryExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			final AtomicInteger threads = new AtomicInteger();
+			defaultExecutor = Executors.newFixedThreadPool(DEFAULT_IO_THREADS, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "BinaryMapQuery-" + threads.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Stops threads of default executor when searches are not needed anymore, running searches are finished.
+	 */
+	public static synchronized void shutdownDefaultExecutor() {
+		if (defaultExecutor != null) {
+			defaultExecutor.shutdown();
+			defaultExecutor = null;
+		}
+	}
+
+	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req,
+			Collection<BinaryMapIndexReader> readers) throws IOException {
+		List<BinaryMapIndexReader> filtered = new ArrayList<>();
+		for (BinaryMapIndexReader r : readers) {
+			if (r.containsMapData(req.left, req.top, req.right, req.bottom, req.zoom)) {
+				filtered.add(r);
+			}
+		}
+		return execute(req, filtered, BinaryMapIndexReader::searchMapIndex);
+	}
+
+	public List<Amenity> searchPoi(SearchRequest<Amenity> req, Collection<BinaryMapIndexReader> readers) throws IOException {
+		List<BinaryMapIndexReader> filtered = new ArrayList<>();
+		for (BinaryMapIndexReader r : readers) {
+			if (r.containsPoiData(req.left, req.top, req.right, req.bottom)) {
+				filtered.add(r);
+			}
+		}
+		return execute(req, filtered, BinaryMapIndexReader::searchPoi);
+	}
+
+	public List<Amenity> searchPoiByName(SearchRequest<Amenity> req, Collection<BinaryMapIndexReader> readers) throws IOException {
+		List<BinaryMapIndexReader> filtered = new ArrayList<>();
+		for (BinaryMapIndexReader r : readers) {
+			if (req.isBboxSpecified() ? r.containsPoiData(req.left, req.top, req.right, req.bottom) : r.containsPoiData()) {
+				filtered.add(r);
+			}
+		}
+		return execute(req, filtered, BinaryMapIndexReader::searchPoiByName);
+	}
+
+	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req,
+			Collection<BinaryMapIndexReader> readers) throws IOException {
+		List<BinaryMapIndexReader> filtered = new ArrayList<>();
+		for (BinaryMapIndexReader r : readers) {
+			if (req.isBboxSpecified() ? r.containsAddressData(req.left, req.top, req.right, req.bottom)
+					: r.containsAddressData()) {
+				filtered.add(r);
+			}
+		}
+		return execute(req, filtered, BinaryMapIndexReader::searchAddressDataByName);
+	}
+
+	/**
+	 * Searches all given readers (without any filtering) and returns results of original request. Every reader is
+	 * read under its lock (see class comment).
+	 */
+	public <T> List<T> execute(final SearchRequest<T> req, List<BinaryMapIndexReader> readers,
+			final ReaderSearch<T> search) throws IOException {
+		if (readers.size() == 1) {
+			BinaryMapIndexReader reader = readers.get(0);
+			synchronized (reader) {
+				search.search(reader, req);
+			}
+			return req.getSearchResults();
+		}
+		final AtomicBoolean stop = new AtomicBoolean();
+		ResultMatcher<T> matcher = new ResultMatcher<T>() {
+
+			@Override
+			public boolean publish(T object) {
+				synchronized (req) {
+					if (!stop.get()) {
+						req.publish(object);
+						if (req.limitExceeded() || req.isCancelled()) {
+							stop.set(true);
+						}
+					}
+				}
+				// results are collected by original request
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				if (!stop.get()) {
+					synchronized (req) {
+						if (req.isCancelled()) {
+							stop.set(true);
+						}
+					}
+				}
+				return stop.get();
+			}
+		};
+		ResultMatcher<T> rawDataCollector = new ResultMatcher<T>() {
+
+			@Override
+			public boolean publish(T object) {
+				synchronized (req) {
+					req.collectRawData(object);
+				}
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return stop.get();
+			}
+		};
+		ExecutorService executor = this.executor != null ? this.executor : getDefaultExecutor();
+		List<SearchRequest<T>> requests = new ArrayList<>();
+		List<Future<Void>> tasks = new ArrayList<>();
+		for (final BinaryMapIndexReader reader : readers) {
+			final SearchRequest<T> fileRequest = req.copyRequest(matcher, rawDataCollector);
+			requests.add(fileRequest);
+			tasks.add(executor.submit(() -> {
+				synchronized (reader) {
+					search.search(reader, fileRequest);
+				}
+				return (Void) null;
+			}));
+		}
+		IOException error = null;
+		for (Future<Void> task : tasks) {
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				stop.set(true);
+				req.setInterrupted(true);
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				stop.set(true);
+				if (error == null) {
+					error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+				}
+			}
+		}
+		for (SearchRequest<T> fileRequest : requests) {
+			req.stat.addReadStats(fileRequest.stat.bufferRefills, fileRequest.stat.bytesLoaded);
+			req.numberOfVisitedObjects += fileRequest.numberOfVisitedObjects;
+			req.numberOfAcceptedObjects += fileRequest.numberOfAcceptedObjects;
+			req.numberOfReadSubtrees += fileRequest.numberOfReadSubtrees;
+			req.numberOfAcceptedSubtrees += fileRequest.numberOfAcceptedSubtrees;
+			if (fileRequest.isOcean()) {
+				req.publishOceanTile(true);
+			}
+			if (fileRequest.isLand()) {
+				req.publishOceanTile(false);
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+		return req.getSearchResults();
+	}
+}
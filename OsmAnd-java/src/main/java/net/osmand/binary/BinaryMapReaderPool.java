@@ -0,0 +1,112 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+
+/**
+ * Pool of readers for the same obf file which could be used by many threads at once.
+ * Pooled readers are shallow: they share index structures with initial reader and
+ * differ only by own read position, so index lists are not duplicated per thread.
+ * If initial reader is memory mapped, pooled readers don't open file handles at all,
+ * otherwise number of opened file handles is limited by max number of idle readers + readers in use.
+ */
+public class BinaryMapReaderPool {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapReaderPool.class);
+
+	private final BinaryMapIndexReader initialReader;
+	private final int maxIdleReaders;
+	private final ConcurrentLinkedQueue<BinaryMapIndexReader> idleReaders = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleSize = new AtomicInteger();
+	private final AtomicInteger createdReaders = new AtomicInteger();
+	private volatile boolean closed;
+
+	public interface ReaderTask<T> {
+		T run(BinaryMapIndexReader reader) throws IOException;
+	}
+
+	public BinaryMapReaderPool(BinaryMapIndexReader initialReader) {
+		this(initialReader, Runtime.getRuntime().availableProcessors());
+	}
+
+	public BinaryMapReaderPool(BinaryMapIndexReader initialReader, int maxIdleReaders) {
+		this.initialReader = initialReader;
+		this.maxIdleReaders = maxIdleReaders;
+	}
+
+	public BinaryMapIndexReader getInitialReader() {
+		return initialReader;
+	}
+
+	public BinaryMapIndexReader acquire() throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Reader pool is closed " + initialReader.getFile().getName());
+		}
+		BinaryMapIndexReader reader = idleReaders.poll();
+		if (reader != null) {
+			idleSize.decrementAndGet();
+			return reader;
+		}
+		createdReaders.incrementAndGet();
+		if (initialReader.isMemoryMapped()) {
+			return new BinaryMapIndexReader(initialReader, null);
+		}
+		RandomAccessFile raf = new RandomAccessFile(initialReader.getFile(), "r");
+		return new BinaryMapIndexReader(initialReader, raf);
+	}
+
+	public void release(BinaryMapIndexReader reader) {
+		if (!closed) {
+			if (idleSize.incrementAndGet() <= maxIdleReaders) {
+				idleReaders.offer(reader);
+				if (closed) {
+					// pool was closed concurrently
+					close();
+				}
+				return;
+			}
+			idleSize.decrementAndGet();
+		}
+		closeReader(reader);
+	}
+
+	public <T> T execute(ReaderTask<T> task) throws IOException {
+		BinaryMapIndexReader reader = acquire();
+		try {
+			return task.run(reader);
+		} finally {
+			release(reader);
+		}
+	}
+
+	public int getCreatedReaders() {
+		return createdReaders.get();
+	}
+
+	/**
+	 * Closes idle pooled readers, initial reader is not closed.
+	 * Readers in use are closed once they are released.
+	 */
+	public void close() {
+		closed = true;
+		BinaryMapIndexReader reader;
+		while ((reader = idleReaders.poll()) != null) {
+			idleSize.decrementAndGet();
+			closeReader(reader);
+		}
+	}
+
+	private void closeReader(BinaryMapIndexReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			log.error("Fail to close " + initialReader.getFile().getName(), e);
+		}
+	}
+}
@@ -22,9 +22,11 @@ import org.apache.commons.logging.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -304,6 +306,26 @@ public class BinaryMapRouteReaderAdapter {
 		}
 	}
 
+	static class TypesCombination {
+		final int[] types;
+		final int id;
+
+		TypesCombination(int[] types, int id) {
+			this.types = types;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(types);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TypesCombination && Arrays.equals(types, ((TypesCombination) obj).types);
+		}
+	}
+
 	public static class RouteRegion extends BinaryIndexPart {
 		public int regionsRead;
 		public List<RouteTypeRule> routeEncodingRules = new ArrayList<BinaryMapRouteReaderAdapter.RouteTypeRule>();
@@ -328,6 +350,8 @@ public class BinaryMapRouteReaderAdapter {
 		int destinationTypeRule = -1;
 		int destinationRefTypeRule = -1;
 		private RouteRegion referenceRouteRegion;
+		// dense ids of road types combinations (routers keep evaluated values in arrays by these ids)
+		private final Map<TypesCombination, TypesCombination> typesCombinations = new HashMap<>();
 
 		public String getPartName() {
 			return "Routing";
@@ -357,6 +381,19 @@ public class BinaryMapRouteReaderAdapter {
 			return nameTypeRule;
 		}
 
+		public synchronized int getTypesCombinationId(int[] types) {
+			TypesCombination c = typesCombinations.get(new TypesCombination(types, -1));
+			if (c == null) {
+				c = new TypesCombination(types.clone(), typesCombinations.size());
+				typesCombinations.put(c, c);
+			}
+			return c.id;
+		}
+
+		public synchronized int getTypesCombinationsSize() {
+			return typesCombinations.size();
+		}
+
 		public int getRefTypeRule() {
 			return refTypeRule;
 		}
@@ -964,7 +1001,7 @@ public class BinaryMapRouteReaderAdapter {
 			case RouteDataBlock.STRINGTABLE_FIELD_NUMBER :
 				length = codedIS.readRawVarint32();
 				oldLimit = codedIS.pushLimitLong((long) length);
-				stringTable = map.readStringTable();
+				stringTable = map.readStringTable(routeTree.routeReg);
 //				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				codedIS.popLimit(oldLimit);
 				break;
@@ -1079,11 +1116,14 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException, InvalidProtocolBufferException {
-		if (routeReg.routeEncodingRules.isEmpty()) {
-			codedIS.seek(routeReg.filePointer);
-			long oldLimit = codedIS.pushLimitLong((long) routeReg.length);
-			readRouteIndex(routeReg);
-			codedIS.popLimit(oldLimit);
+		// region structures could be shared between readers of the same file
+		synchronized (routeReg) {
+			if (routeReg.routeEncodingRules.isEmpty()) {
+				codedIS.seek(routeReg.filePointer);
+				long oldLimit = codedIS.pushLimitLong((long) routeReg.length);
+				readRouteIndex(routeReg);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -1091,16 +1131,18 @@ public class BinaryMapRouteReaderAdapter {
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			long oldLimit = codedIS.pushLimitLong((long) limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
+		synchronized (rs) {
+			if (rs.dataObjects == null) {
+				codedIS.seek(rs.filePointer + rs.shiftToData);
+				int limit = codedIS.readRawVarint32();
+				long oldLimit = codedIS.pushLimitLong((long) limit);
+				readRouteTreeData(rs, idMap, restrictionMap);
+				codedIS.popLimit(oldLimit);
+			}
+			List<RouteDataObject> res = rs.dataObjects;
+			rs.dataObjects = null;
+			return res;
 		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
-		return res;
 	}
 	
 	public void loadRouteRegionData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
@@ -1115,14 +1157,20 @@ public class BinaryMapRouteReaderAdapter {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				long oldLimit = codedIS.pushLimitLong((long) limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
+			List<RouteDataObject> dataObjects;
+			synchronized (rs) {
+				if (rs.dataObjects == null) {
+					codedIS.seek(rs.filePointer + rs.shiftToData);
+					int limit = codedIS.readRawVarint32();
+					long oldLimit = codedIS.pushLimitLong((long) limit);
+					readRouteTreeData(rs, idMap, restrictionMap);
+					codedIS.popLimit(oldLimit);
+				}
+				dataObjects = rs.dataObjects;
+				// free objects
+				rs.dataObjects = null;
 			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			for (RouteDataObject ro : dataObjects) {
 				if (ro != null) {
 					matcher.publish(ro);
 				}
@@ -1130,8 +1178,6 @@ public class BinaryMapRouteReaderAdapter {
 					break;
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
 			if (matcher.isCancelled()) {
 				break;
 			}
@@ -1142,11 +1188,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					long old = codedIS.pushLimitLong((long) rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						long old = codedIS.pushLimitLong((long) rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -1163,11 +1211,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					long old = codedIS.pushLimitLong((long) rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						long old = codedIS.pushLimitLong((long) rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 				if (rs.shiftToData != 0) {
@@ -492,30 +492,34 @@ public class BinaryMapTransportReaderAdapter {
 
 	protected TIntObjectHashMap<String> initializeStringTable(TransportIndex ind,
 			TIntObjectHashMap<String> requested) throws IOException {
-		if (ind.stringTable.stringTable == null) {
-			ind.stringTable.stringTable = new TIntObjectHashMap<>();
-			codedIS.seek(ind.stringTable.fileOffset);
-			long oldLimit = codedIS.pushLimitLong((long) ind.stringTable.length);
-			int current = 0;
-			while (codedIS.getBytesUntilLimit() > 0) {
-				int t = codedIS.readTag();
-				int tag = WireFormat.getTagFieldNumber(t);
-				switch (tag) {
-				case 0:
-					break;
-				case OsmandOdb.StringTable.S_FIELD_NUMBER:
-					String value = codedIS.readString();
-					ind.stringTable.stringTable.put(current, value);
-					current++;
-					break;
-				default:
-					skipUnknownField(t);
-					break;
+		// string table could be shared between readers of the same file, it's published when it's read completely
+		synchronized (ind.stringTable) {
+			if (ind.stringTable.stringTable == null) {
+				TIntObjectHashMap<String> stringTable = new TIntObjectHashMap<>();
+				codedIS.seek(ind.stringTable.fileOffset);
+				long oldLimit = codedIS.pushLimitLong((long) ind.stringTable.length);
+				int current = 0;
+				while (codedIS.getBytesUntilLimit() > 0) {
+					int t = codedIS.readTag();
+					int tag = WireFormat.getTagFieldNumber(t);
+					switch (tag) {
+					case 0:
+						break;
+					case OsmandOdb.StringTable.S_FIELD_NUMBER:
+						String value = codedIS.readString();
+						stringTable.put(current, value);
+						current++;
+						break;
+					default:
+						skipUnknownField(t);
+						break;
+					}
 				}
+				codedIS.popLimit(oldLimit);
+				ind.stringTable.stringTable = stringTable;
 			}
-			codedIS.popLimit(oldLimit);
+			return ind.stringTable.stringTable;
 		}
-		return ind.stringTable.stringTable;
 	}
 
 	protected void initializeNames(boolean onlyDescription, net.osmand.data.TransportRoute dataObject,
@@ -0,0 +1,314 @@
+package net.osmand.binary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.router.RoutingMemoryUsage;
+
+/**
+ * Compact storage of route objects of one routing tile: all arrays of all objects are kept in one flat int array
+ * and strings are deduplicated, so it takes several times less memory than list of {@link RouteDataObject}.
+ * Coordinates, ids and types are accessible without unpacking, {@link #unpack()} creates new objects which could be modified.
+ */
+public class PackedRouteDataObjects {
+
+	// object header: points, types, names, restrictions, restrictions via, point types, point name types, point names
+	private static final int HEADER_SIZE = 8;
+	private static final int NULL = -1;
+
+	private final RouteRegion region;
+	private final long[] ids;
+	private final int[] offsets;
+	private final int[] data;
+	private final String[] strings;
+
+	private PackedRouteDataObjects(RouteRegion region, long[] ids, int[] offsets, int[] data, String[] strings) {
+		this.region = region;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.data = data;
+		this.strings = strings;
+	}
+
+	public static PackedRouteDataObjects pack(RouteRegion region, List<RouteDataObject> objects) {
+		Packer p = new Packer();
+		List<RouteDataObject> nonNull = new ArrayList<RouteDataObject>(objects.size());
+		for (RouteDataObject o : objects) {
+			if (o != null) {
+				nonNull.add(o);
+			}
+		}
+		long[] ids = new long[nonNull.size()];
+		int[] offsets = new int[nonNull.size()];
+		for (int i = 0; i < nonNull.size(); i++) {
+			RouteDataObject o = nonNull.get(i);
+			ids[i] = o.id;
+			offsets[i] = p.size;
+			p.pack(o);
+		}
+		int[] data = new int[p.size];
+		System.arraycopy(p.data, 0, data, 0, p.size);
+		return new PackedRouteDataObjects(region, ids, offsets, data, p.strings.toArray(new String[0]));
+	}
+
+	public RouteRegion getRegion() {
+		return region;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public long getId(int obj) {
+		return ids[obj];
+	}
+
+	public int getPointsLength(int obj) {
+		return data[offsets[obj]];
+	}
+
+	public int getPoint31XTile(int obj, int point) {
+		return data[offsets[obj] + HEADER_SIZE + point];
+	}
+
+	public int getPoint31YTile(int obj, int point) {
+		int off = offsets[obj];
+		return data[off + HEADER_SIZE + data[off] + point];
+	}
+
+	public int getTypesLength(int obj) {
+		return Math.max(data[offsets[obj] + 1], 0);
+	}
+
+	public int getType(int obj, int ind) {
+		int off = offsets[obj];
+		return data[off + HEADER_SIZE + 2 * data[off] + ind];
+	}
+
+	public RouteDataObject unpack(int obj) {
+		return unpack(obj, region);
+	}
+
+	/**
+	 * Unpacks object with another instance of the same region (e.g. region of other reader of the same file).
+	 */
+	public RouteDataObject unpack(int obj, RouteRegion region) {
+		int off = offsets[obj];
+		int pos = off + HEADER_SIZE;
+		RouteDataObject o = new RouteDataObject(region);
+		o.id = ids[obj];
+		int points = data[off];
+		o.pointsX = new int[points];
+		o.pointsY = new int[points];
+		System.arraycopy(data, pos, o.pointsX, 0, points);
+		pos += points;
+		System.arraycopy(data, pos, o.pointsY, 0, points);
+		pos += points;
+		int len = data[off + 1];
+		if (len != NULL) {
+			o.types = new int[len];
+			System.arraycopy(data, pos, o.types, 0, len);
+			pos += len;
+		}
+		len = data[off + 2];
+		if (len != NULL) {
+			o.nameIds = new int[len];
+			o.names = new TIntObjectHashMap<String>();
+			for (int i = 0; i < len; i++) {
+				o.nameIds[i] = data[pos++];
+				o.names.put(o.nameIds[i], strings[data[pos++]]);
+			}
+		}
+		len = data[off + 3];
+		if (len != NULL) {
+			o.restrictions = new long[len];
+			for (int i = 0; i < len; i++, pos += 2) {
+				o.restrictions[i] = toLong(data[pos], data[pos + 1]);
+			}
+		}
+		len = data[off + 4];
+		if (len != NULL) {
+			o.restrictionsVia = new long[len];
+			for (int i = 0; i < len; i++, pos += 2) {
+				o.restrictionsVia[i] = toLong(data[pos], data[pos + 1]);
+			}
+		}
+		len = data[off + 5];
+		if (len != NULL) {
+			o.pointTypes = new int[len][];
+			pos = unpackArrays(o.pointTypes, pos);
+		}
+		len = data[off + 6];
+		if (len != NULL) {
+			o.pointNameTypes = new int[len][];
+			pos = unpackArrays(o.pointNameTypes, pos);
+		}
+		len = data[off + 7];
+		if (len != NULL) {
+			int[][] nameInds = new int[len][];
+			unpackArrays(nameInds, pos);
+			o.pointNames = new String[len][];
+			for (int i = 0; i < len; i++) {
+				if (nameInds[i] != null) {
+					o.pointNames[i] = new String[nameInds[i].length];
+					for (int j = 0; j < nameInds[i].length; j++) {
+						o.pointNames[i][j] = strings[nameInds[i][j]];
+					}
+				}
+			}
+		}
+		return o;
+	}
+
+	public List<RouteDataObject> unpack() {
+		return unpack(region);
+	}
+
+	public List<RouteDataObject> unpack(RouteRegion region) {
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			res.add(unpack(i, region));
+		}
+		return res;
+	}
+
+	// bytes of object layout as sizes of loaded tiles (see RoutingMemoryUsage), strings are counted once
+	public int getEstimatedSize() {
+		return RoutingMemoryUsage.objectSize(5, 0) + RoutingMemoryUsage.sizeOf(ids) + RoutingMemoryUsage.sizeOf(offsets)
+				+ RoutingMemoryUsage.sizeOf(data) + RoutingMemoryUsage.sizeOf(strings);
+	}
+
+	private int unpackArrays(int[][] arrays, int pos) {
+		for (int i = 0; i < arrays.length; i++) {
+			int len = data[pos++];
+			if (len != NULL) {
+				arrays[i] = new int[len];
+				System.arraycopy(data, pos, arrays[i], 0, len);
+				pos += len;
+			}
+		}
+		return pos;
+	}
+
+	private static long toLong(int hi, int lo) {
+		return (((long) hi) << 32) | (lo & 0xffffffffL);
+	}
+
+	private static class Packer {
+		int[] data = new int[1024];
+		int size;
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+		void pack(RouteDataObject o) {
+			int header = size;
+			ensure(HEADER_SIZE);
+			size += HEADER_SIZE;
+			int[] h = new int[HEADER_SIZE];
+			h[0] = o.pointsX.length;
+			add(o.pointsX);
+			add(o.pointsY);
+			h[1] = o.types == null ? NULL : o.types.length;
+			add(o.types);
+			h[2] = packNames(o);
+			h[3] = add(o.restrictions);
+			h[4] = add(o.restrictionsVia);
+			h[5] = add(o.pointTypes);
+			h[6] = add(o.pointNameTypes);
+			int[][] nameInds = null;
+			if (o.pointNames != null) {
+				nameInds = new int[o.pointNames.length][];
+				for (int i = 0; i < nameInds.length; i++) {
+					if (o.pointNames[i] != null) {
+						nameInds[i] = new int[o.pointNames[i].length];
+						for (int j = 0; j < nameInds[i].length; j++) {
+							nameInds[i][j] = string(o.pointNames[i][j]);
+						}
+					}
+				}
+			}
+			h[7] = add(nameInds);
+			// data could be reallocated while adding arrays
+			System.arraycopy(h, 0, data, header, HEADER_SIZE);
+		}
+
+		private int packNames(RouteDataObject o) {
+			if (o.names == null) {
+				return NULL;
+			}
+			int[] nameIds = o.nameIds;
+			if (nameIds == null) {
+				nameIds = new int[o.names.size()];
+				TIntObjectIterator<String> it = o.names.iterator();
+				for (int i = 0; it.hasNext(); i++) {
+					it.advance();
+					nameIds[i] = it.key();
+				}
+			}
+			ensure(2 * nameIds.length);
+			for (int id : nameIds) {
+				data[size++] = id;
+				data[size++] = string(o.names.get(id));
+			}
+			return nameIds.length;
+		}
+
+		private int string(String s) {
+			if (s == null) {
+				s = "";
+			}
+			Integer ind = stringIndexes.get(s);
+			if (ind == null) {
+				ind = strings.size();
+				strings.add(s);
+				stringIndexes.put(s, ind);
+			}
+			return ind;
+		}
+
+		private void add(int[] array) {
+			if (array != null) {
+				ensure(array.length);
+				System.arraycopy(array, 0, data, size, array.length);
+				size += array.length;
+			}
+		}
+
+		private int add(long[] array) {
+			if (array == null) {
+				return NULL;
+			}
+			ensure(2 * array.length);
+			for (long l : array) {
+				data[size++] = (int) (l >>> 32);
+				data[size++] = (int) l;
+			}
+			return array.length;
+		}
+
+		private int add(int[][] arrays) {
+			if (arrays == null) {
+				return NULL;
+			}
+			for (int[] array : arrays) {
+				ensure(1);
+				data[size++] = array == null ? NULL : array.length;
+				add(array);
+			}
+			return arrays.length;
+		}
+
+		private void ensure(int extra) {
+			if (size + extra > data.length) {
+				int[] n = new int[Math.max(data.length * 2, size + extra)];
+				System.arraycopy(data, 0, n, 0, size);
+				data = n;
+			}
+		}
+	}
+}
@@ -11,6 +11,7 @@ import gnu.trove.map.hash.TIntObjectHashMap;
 import net.osmand.Location;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.TypesCombination;
 import net.osmand.data.LatLon;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
@@ -39,6 +40,8 @@ public class RouteDataObject {
 	// mixed array [0, height, cumulative_distance height, cumulative_distance, height, ...] - length is length(points)*2
 	public float[] heightDistanceArray = null;
 	public float heightByCurrentLocation = Float.NaN;
+	// id of types combination in region, valid while types array is the same
+	private TypesCombination typesCombination;
 
 	public RouteDataObject(RouteRegion region) {
 		this.region = region;
@@ -531,7 +534,24 @@ public class RouteDataObject {
 		return types;
 	}
 
+	/**
+	 * @return dense id of types combination in region or -1 without region / types
+	 */
+	public int getTypesCombinationId() {
+		TypesCombination c = typesCombination;
+		if (c == null || c.types != types) {
+			if (region == null || types == null) {
+				return -1;
+			}
+			c = new TypesCombination(types, region.getTypesCombinationId(types));
+			typesCombination = c;
+		}
+		return c.id;
+	}
+
 	public void processConditionalTags(long conditionalTime) {
+		// types could be changed in place
+		typesCombination = null;
 		int sz = types.length;
 		for (int i = 0; i < sz; i++) {
 			RouteTypeRule r = region.quickGetEncodingRule(types[i]);
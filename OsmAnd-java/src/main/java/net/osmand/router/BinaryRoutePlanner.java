@@ -6,10 +6,18 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
@@ -25,8 +33,6 @@ public class BinaryRoutePlanner {
 
 
 	private static final int REVERSE_WAY_RESTRICTION_ONLY = 1024;
-	/*private*/ static final int STANDARD_ROAD_IN_QUEUE_OVERHEAD = 220;
-	/*private*/ static final int STANDARD_ROAD_VISITED_OVERHEAD = 150;
 
 	protected static final Log log = PlatformUtil.getLog(BinaryRoutePlanner.class);
 
@@ -48,32 +54,10 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegmentCost> {
-		@Override
-		public int compare(RouteSegmentCost o1, RouteSegmentCost o2) {
-			return Double.compare(o1.cost, o2.cost);
-		}
-	}
-	
 	private static float cost(float distanceFromStart, float distanceToEnd, RoutingContext ctx) {
 		return ctx.config.heuristicCoefficient * distanceToEnd + distanceFromStart;
 	}
 
-	private static class RouteSegmentCost {
-		float cost;
-		RouteSegment segment;
-		
-		public RouteSegmentCost(RouteSegment segment, RoutingContext ctx) {
-			this.cost = cost(segment.distanceFromStart, segment.distanceToEnd, ctx);
-			this.segment = segment;
-		}
-
-		@Override
-		public String toString() {
-			return String.format("%.2f %s", cost, segment);
-		}
-	}
-
 	/**
 	 * Calculate route between start.segmentEnd and end.segmentStart (using A* algorithm)
 	 * return list of segments
@@ -82,9 +66,11 @@ public class BinaryRoutePlanner {
 			TLongObjectMap<RouteSegment> boundaries) throws InterruptedException, IOException {
 		// measure time
 		ctx.memoryOverhead = 1000;
+		ctx.visitedSegmentsMemory = 0;
+		ctx.queueSegmentsMemory = 0;
 		// Initializing priority queue to visit way segments 
-		PriorityQueue<RouteSegmentCost> graphDirectSegments = new PriorityQueue<>(50, new SegmentsComparator());
-		PriorityQueue<RouteSegmentCost> graphReverseSegments = new PriorityQueue<>(50, new SegmentsComparator());
+		RouteSegmentQueue graphDirectSegments = ctx.config.segmentQueue.create();
+		RouteSegmentQueue graphReverseSegments = ctx.config.segmentQueue.create();
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
 		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
@@ -104,15 +90,53 @@ public class BinaryRoutePlanner {
 			end.others = null;
 			forwardSearch = false;
 		}
-		PriorityQueue<RouteSegmentCost> graphSegments = forwardSearch ?  graphDirectSegments : graphReverseSegments;
+		// costs of visited segments of tree are exact only with admissible heuristic
+		boolean reuseTree = ctx.reverseSearchTree != null && ctx.dijkstraMode == 0 && ctx.planRouteIn2Directions()
+				&& boundaries == null && ctx.precalculatedRouteDirection == null
+				&& ctx.config.heuristicCoefficient <= 1 && ctx.reverseSearchTree.prepare(ctx, end);
+		// roads kept by reused tree are not counted in tiles of context
+		int treeMemory = 0;
+		if (reuseTree) {
+			// continue reverse search of previous calculation
+			treeMemory = ctx.reverseSearchTree.roadsMemory;
+			visitedOppositeSegments = ctx.reverseSearchTree.visited;
+			graphReverseSegments = ctx.config.segmentQueue.create();
+			for (RouteSegment s : ctx.reverseSearchTree.queue) {
+				s.distanceToEnd = h(ctx, s.getRoad().getPoint31XTile(s.getSegmentStart()),
+						s.getRoad().getPoint31YTile(s.getSegmentStart()), ctx.startX, ctx.startY);
+				addToQueue(ctx, graphReverseSegments, s);
+			}
+		}
+		if (ctx.dijkstraMode == 0) {
+			// tree is consumed or outdated, new one is saved after search
+			ctx.reverseSearchTree = null;
+		}
+		if (ctx.config.parallelSearch && ctx.dijkstraMode == 0 && ctx.planRouteIn2Directions() && boundaries == null
+				&& ctx.visitor == null && ctx.precalculatedRouteDirection == null && !reuseTree
+				&& ctx.config.heuristicCoefficient <= 1 && ctx.getRouter() instanceof GeneralRouter) {
+			ParallelSearchState parallel = searchRouteParallel(ctx, start, end, graphDirectSegments,
+					graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
+			if (parallel != null) {
+				return parallel.best;
+			}
+		}
+		RouteSegmentQueue graphSegments = forwardSearch ?  graphDirectSegments : graphReverseSegments;
 		float[] minCost = new float[] { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
 		while (!graphSegments.isEmpty()) {
-			RouteSegmentCost cst = graphSegments.poll();
-			RouteSegment segment = cst.segment;
+			float segmentCost = graphSegments.peekCost();
+			RouteSegment segment = graphSegments.poll();
 			int visitedCnt = (start != null ? visitedDirectSegments.size() : 0) + (end != null ? visitedOppositeSegments.size() : 0);
 			// use accumulative approach
-			ctx.memoryOverhead = visitedCnt * STANDARD_ROAD_VISITED_OVERHEAD +
-					(graphDirectSegments.size() + graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			ctx.visitedSegmentsMemory = visitedCnt * RoutingMemoryUsage.VISITED_ENTRY_SIZE;
+			ctx.queueSegmentsMemory = (int) (graphDirectSegments.getEstimatedSize() + graphReverseSegments.getEstimatedSize());
+			ctx.memoryOverhead = treeMemory + ctx.visitedSegmentsMemory + ctx.queueSegmentsMemory;
+			if (forwardSearch) {
+				ctx.frontierDirectX = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+				ctx.frontierDirectY = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+			} else {
+				ctx.frontierReverseX = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+				ctx.frontierReverseY = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+			}
 			if (TRACE_ROUTING) {
 				printRoad(">", segment, !forwardSearch);
 			}
@@ -122,11 +146,18 @@ public class BinaryRoutePlanner {
 				}
 				break;
 			}
+			if (ctx.maxDistanceFromStart > 0 && segment.distanceFromStart > ctx.maxDistanceFromStart) {
+				// out of limited area (isochrones)
+				if (ctx.config.heuristicCoefficient <= 1) {
+					// queue is ordered by cost which is not smaller than distance from start, so the rest is out too
+					break;
+				}
+				continue;
+			}
 			boolean skipSegment = false;
 			if (segment instanceof FinalRouteSegment) {
 				if (RoutingContext.SHOW_GC_SIZE) {
-					log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
-					printMemoryConsumption("Memory occupied after calculation : ");
+					log.warn(ctx.getMemoryUsage().toString());
 				}
 				if (TRACE_ROUTING) {
 					println(" >>FINAL segment: " + segment);
@@ -149,7 +180,7 @@ public class BinaryRoutePlanner {
 			}
 			
 			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.9 && RoutingContext.SHOW_GC_SIZE) {
-				printMemoryConsumption("Memory occupied before exception : ");
+				log.warn(ctx.getMemoryUsage().toString());
 			}
 			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.9) {
 				throw new IllegalStateException(
@@ -168,13 +199,13 @@ public class BinaryRoutePlanner {
 					println("  " + segment.segEnd + ">> Already visited by minimum");
 				}
 				skipSegment = true;
-			} else if (cst.cost + 5.0 < minCost[forwardSearch ? 1 : 0] && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
+			} else if (segmentCost + 5.0 < minCost[forwardSearch ? 1 : 0] && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
 				// squareRootDist doesn't follow Triangle-inequality and it breaks A* algorithm. Maximum error on the optimal route could be constant (5.0)
 				if (ctx.config.heuristicCoefficient <= 1) {
-					throw new IllegalStateException(cst.cost + " < ???  " + minCost[forwardSearch ? 1 : 0]);
+					throw new IllegalStateException(segmentCost + " < ???  " + minCost[forwardSearch ? 1 : 0]);
 				}
 			} else {
-				minCost[forwardSearch ? 1 : 0] = cst.cost;
+				minCost[forwardSearch ? 1 : 0] = segmentCost;
 			}
 			if (!skipSegment) {
 				if (forwardSearch) {
@@ -208,17 +239,18 @@ public class BinaryRoutePlanner {
 					graphSegments = graphDirectSegments.isEmpty() ? graphReverseSegments : graphDirectSegments;
 					if (finalSegment == null) {
 						while (!graphSegments.isEmpty()) {
-							RouteSegmentCost pc = graphSegments.poll();
-							if (pc.segment instanceof FinalRouteSegment) {
-								finalSegment = (FinalRouteSegment) pc.segment;
+							RouteSegment pc = graphSegments.poll();
+							if (pc instanceof FinalRouteSegment) {
+								finalSegment = (FinalRouteSegment) pc;
 								break;
 							}
 						}
 					}
+					saveReverseSearchTree(ctx, end, finalSegment, visitedOppositeSegments, graphReverseSegments);
 					return finalSegment;
 				} else {
-					RouteSegment fw = graphDirectSegments.peek().segment;
-					RouteSegment bw = graphReverseSegments.peek().segment;
+					RouteSegment fw = graphDirectSegments.peek();
+					RouteSegment bw = graphReverseSegments.peek();
 					forwardSearch = Double.compare(cost(fw.distanceFromStart, fw.distanceToEnd, ctx), 
 							cost(bw.distanceFromStart, bw.distanceToEnd,ctx)) <= 0;
 				}
@@ -249,11 +281,234 @@ public class BinaryRoutePlanner {
 			ctx.calculationProgress.directQueueSize += graphDirectSegments.size(); // Math.max(ctx.directQueueSize, graphDirectSegments.size());
 			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
 		}
+		saveReverseSearchTree(ctx, end, finalSegment, visitedOppositeSegments, graphReverseSegments);
 		return finalSegment;
 	}
 
+	private static class ParallelSearchState {
+		volatile boolean stop;
+		volatile boolean directExhausted;
+		volatile boolean reverseExhausted;
+		volatile float bestCost = Float.POSITIVE_INFINITY;
+		FinalRouteSegment best;
+		// memory estimates of each direction: [direct, reverse]
+		final int[] visited = new int[2];
+		final int[] visitedMemory = new int[2];
+		final int[] queueMemory = new int[2];
+
+		synchronized void offer(FinalRouteSegment segment, float cost) {
+			if (cost < bestCost) {
+				best = segment;
+				bestCost = cost;
+			}
+		}
+
+		/**
+		 * Updates memory estimates of direction and context (both directions write the same context fields).
+		 * @return number of visited segments of both directions
+		 */
+		synchronized int update(RoutingContext ctx, boolean reverseWaySearch,
+				TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegmentQueue graphSegments) {
+			int dir = reverseWaySearch ? 1 : 0;
+			visited[dir] = visitedSegments.size();
+			visitedMemory[dir] = visited[dir] * RoutingMemoryUsage.VISITED_ENTRY_SIZE;
+			queueMemory[dir] = (int) graphSegments.getEstimatedSize();
+			ctx.visitedSegmentsMemory = visitedMemory[0] + visitedMemory[1];
+			ctx.queueSegmentsMemory = queueMemory[0] + queueMemory[1];
+			ctx.memoryOverhead = ctx.visitedSegmentsMemory + ctx.queueSegmentsMemory;
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.visitedSegments++;
+			}
+			return visited[0] + visited[1];
+		}
+	}
+
+	// threads for reverse direction of parallel search (legs of route are calculated on own threads)
+	public static final int MAX_PARALLEL_SEARCHES = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static ExecutorService reverseSearchExecutor;
+
+	private static synchronized ExecutorService getReverseSearchExecutor() {
+		if (reverseSearchExecutor == null) {
+			final AtomicInteger threads = new AtomicInteger();
+			// no queue: when all threads are busy route is calculated in one thread
+			reverseSearchExecutor = new ThreadPoolExecutor(0, MAX_PARALLEL_SEARCHES, 30, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "RouteReverseSearch-" + threads.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		return reverseSearchExecutor;
+	}
+
+	/**
+	 * Runs direct search in current thread and reverse search in another thread. Each direction evaluates own copy
+	 * of router, tiles are loaded under context lock and visited segments are checked with opposite direction
+	 * under locks of both maps. Each direction stops when the cheapest segment of its queue is not cheaper than
+	 * the best final segment found by any direction, so with admissible heuristic (heuristicCoefficient <= 1)
+	 * cost of the route doesn't depend on timing of threads.
+	 * @return null if there is no free thread for reverse search (route should be calculated in one thread)
+	 */
+	private ParallelSearchState searchRouteParallel(final RoutingContext ctx, final RouteSegmentPoint start,
+			final RouteSegmentPoint end, final RouteSegmentQueue graphDirectSegments,
+			final RouteSegmentQueue graphReverseSegments, final TLongObjectHashMap<RouteSegment> visitedDirectSegments,
+			final TLongObjectHashMap<RouteSegment> visitedOppositeSegments) throws InterruptedException, IOException {
+		final ParallelSearchState state = new ParallelSearchState();
+		GeneralRouter router = (GeneralRouter) ctx.getRouter();
+		final GeneralRouter reverseRouter = router.copyForThread();
+		ctx.setThreadRouter(router.copyForThread());
+		Throwable error = null;
+		try {
+			Future<?> reverse;
+			try {
+				reverse = getReverseSearchExecutor().submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						ctx.setThreadRouter(reverseRouter);
+						try {
+							searchDirection(ctx, true, end, graphReverseSegments, visitedOppositeSegments,
+									visitedDirectSegments, state);
+						} catch (Exception | Error e) {
+							state.stop = true;
+							throw e;
+						} finally {
+							ctx.setThreadRouter(null);
+						}
+						return null;
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				return null;
+			}
+			try {
+				searchDirection(ctx, false, start, graphDirectSegments, visitedDirectSegments,
+						visitedOppositeSegments, state);
+			} catch (Exception | Error e) {
+				state.stop = true;
+				error = e;
+			}
+			try {
+				reverse.get();
+			} catch (ExecutionException e) {
+				if (error == null) {
+					error = e.getCause();
+				}
+			}
+		} finally {
+			// stop reverse search if current thread was interrupted while waiting
+			state.stop = true;
+			// restore router of current thread (set by caller for parallel legs)
+			ctx.setThreadRouter(router == ctx.config.router ? null : router);
+		}
+		if (error instanceof InterruptedException) {
+			throw (InterruptedException) error;
+		} else if (error instanceof IOException) {
+			throw (IOException) error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		} else if (error != null) {
+			throw new IllegalStateException(error);
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
+			ctx.calculationProgress.directQueueSize += graphDirectSegments.size();
+			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
+		}
+		return state;
+	}
+
+	private void searchDirection(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentPoint pnt,
+			RouteSegmentQueue graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments,
+			TLongObjectHashMap<RouteSegment> oppositeSegments, ParallelSearchState state) throws InterruptedException {
+		float minCost = Float.NEGATIVE_INFINITY;
+		while (!state.stop) {
+			if (graphSegments.isEmpty()) {
+				// try other start (end) points as one thread search does
+				if (checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, pnt, visitedSegments,
+						reverseWaySearch ? "Route is not found to selected target point." : "Route is not found from selected start point.")) {
+					minCost = Float.NEGATIVE_INFINITY;
+					continue;
+				}
+				if (reverseWaySearch) {
+					state.reverseExhausted = true;
+				} else {
+					state.directExhausted = true;
+				}
+				break;
+			}
+			if (reverseWaySearch ? state.directExhausted : state.reverseExhausted) {
+				// opposite search can't proceed any more - take the best final segment already found
+				while (!graphSegments.isEmpty()) {
+					float cost = graphSegments.peekCost();
+					RouteSegment pc = graphSegments.poll();
+					if (pc instanceof FinalRouteSegment) {
+						state.offer((FinalRouteSegment) pc, cost);
+						break;
+					}
+				}
+				break;
+			}
+			float segmentCost = graphSegments.peekCost();
+			if (segmentCost >= state.bestCost) {
+				// no segment in this direction could improve the found route
+				break;
+			}
+			RouteSegment segment = graphSegments.poll();
+			if (segment instanceof FinalRouteSegment) {
+				state.offer((FinalRouteSegment) segment, segmentCost);
+				break;
+			}
+			int visitedCnt = state.update(ctx, reverseWaySearch, visitedSegments, graphSegments);
+			if (reverseWaySearch) {
+				ctx.frontierReverseX = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+				ctx.frontierReverseY = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+			} else {
+				ctx.frontierDirectX = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+				ctx.frontierDirectY = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+			}
+			if (TRACE_ROUTING) {
+				printRoad(">", segment, reverseWaySearch);
+			}
+			if (ctx.config.MAX_VISITED > 0 && visitedCnt > ctx.config.MAX_VISITED) {
+				state.stop = true;
+				break;
+			}
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.9) {
+				throw new IllegalStateException(
+						String.format("There is not enough memory %.5f, %.5f -> %.5f, %.5f - limit  %d  MB",
+								MapUtils.get31LatitudeY(ctx.startY), MapUtils.get31LongitudeX(ctx.startX),
+								MapUtils.get31LatitudeY(ctx.targetY), MapUtils.get31LongitudeX(ctx.targetX),
+								ctx.config.memoryLimitation / (1 << 20)));
+			}
+			if (visitedSegments.containsKey(calculateRoutePointId(segment))) {
+				if (TRACE_ROUTING) {
+					println("  " + segment.segEnd + ">> Already visited by minimum");
+				}
+			} else {
+				if (segmentCost + 5.0 < minCost && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
+					throw new IllegalStateException(segmentCost + " < ???  " + minCost);
+				}
+				minCost = Math.max(minCost, segmentCost);
+				processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment,
+						oppositeSegments, null, false);
+			}
+			updateCalculationProgress(ctx, reverseWaySearch ? null : graphSegments, reverseWaySearch ? graphSegments : null);
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+	}
+
 	protected boolean checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegmentCost> graphSegments, RouteSegmentPoint pnt, TLongObjectMap<RouteSegment> visited,
+			boolean reverseWaySearch, RouteSegmentQueue graphSegments, RouteSegmentPoint pnt, TLongObjectMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -268,7 +523,7 @@ public class BinaryRoutePlanner {
 						pos.setParentRoute(null);
 						pos.distanceFromStart = 0;
 						pos.distanceToEnd = estimatedDistance;
-						graphSegments.add(new RouteSegmentCost(pos, ctx));
+						addToQueue(ctx, graphSegments, pos);
 					}
 					RouteSegment neg = next.initRouteSegment(false);
 					if (neg != null && !visited.containsKey(calculateRoutePointId(neg)) && 
@@ -276,7 +531,7 @@ public class BinaryRoutePlanner {
 						neg.setParentRoute(null);
 						neg.distanceFromStart = 0;
 						neg.distanceToEnd = estimatedDistance;
-						graphSegments.add(new RouteSegmentCost(neg, ctx));
+						addToQueue(ctx, graphSegments, neg);
 					}
 					if (!graphSegments.isEmpty()) {
 						println("Reiterate point with new " + (!reverseWaySearch ? "start " : "destination ")
@@ -292,7 +547,7 @@ public class BinaryRoutePlanner {
 		return false;
 	}
 
-	public RouteSegment initEdgeSegment(final RoutingContext ctx, RouteSegmentPoint pnt, boolean originalDir, PriorityQueue<RouteSegmentCost> graphSegments, boolean reverseSearchWay) {
+	public RouteSegment initEdgeSegment(final RoutingContext ctx, RouteSegmentPoint pnt, boolean originalDir, RouteSegmentQueue graphSegments, boolean reverseSearchWay) {
 		if (pnt == null) {
 			return null;
 		}
@@ -336,7 +591,7 @@ public class BinaryRoutePlanner {
 		}
 		if (checkMovementAllowed(ctx, reverseSearchWay, seg)) {
 			seg.distanceToEnd = estimatedDistance(seg, reverseSearchWay, ctx);
-			graphSegments.add(new RouteSegmentCost(seg, ctx));
+			addToQueue(ctx, graphSegments, seg);
 			return seg;
 		}
 		return null;
@@ -352,8 +607,23 @@ public class BinaryRoutePlanner {
 	}
 	
 
+	private void saveReverseSearchTree(RoutingContext ctx, RouteSegmentPoint end, FinalRouteSegment finalSegment,
+			TLongObjectHashMap<RouteSegment> visitedOppositeSegments, RouteSegmentQueue graphReverseSegments) {
+		if (ctx.config.incrementalRerouting && ctx.dijkstraMode == 0 && finalSegment != null
+				&& ctx.precalculatedRouteDirection == null && ctx.config.heuristicCoefficient <= 1
+				&& !visitedOppositeSegments.isEmpty()
+				&& visitedOppositeSegments.size() * RoutingMemoryUsage.VISITED_ENTRY_SIZE < ctx.config.memoryLimitation / 2) {
+			ReverseSearchTree tree = new ReverseSearchTree(ctx, end, visitedOppositeSegments, graphReverseSegments);
+			// roads of tree are charged to memory of next search
+			if (visitedOppositeSegments.size() * RoutingMemoryUsage.VISITED_ENTRY_SIZE + tree.roadsMemory
+					< ctx.config.memoryLimitation / 2) {
+				ctx.reverseSearchTree = tree;
+			}
+		}
+	}
+
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
-			PriorityQueue<RouteSegmentCost> graphDirectSegments, PriorityQueue<RouteSegmentCost> graphReverseSegments) {
+			RouteSegmentQueue graphDirectSegments, RouteSegmentQueue graphReverseSegments) {
 		if (ctx.precalculatedRouteDirection != null) {
 			ctx.precalculatedRouteDirection.updatePreciseStartEnd(
 					(start != null) ? start.preciseX : 0, (start != null) ? start.preciseY : 0,
@@ -381,26 +651,24 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void printMemoryConsumption(String string) {
-		long h1 = RoutingContext.runGCUsedMemory();
-		float mb = (1 << 20);
-		log.warn(string + h1 / mb);
-	}
-
-
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegmentCost> graphDirectSegments,
-			PriorityQueue<RouteSegmentCost> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
-			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
-			if (!graphDirectSegments.isEmpty() && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek().segment;
+			// one of queues is null for parallel search (queue of another thread)
+			if (graphReverseSegments != null) {
+				ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
+			}
+			if (graphDirectSegments != null) {
+				ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
+			}
+			if (graphDirectSegments != null && !graphDirectSegments.isEmpty() && ctx.getPlanRoadDirection() >= 0) {
+				RouteSegment peek = graphDirectSegments.peek();
 				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
 						ctx.calculationProgress.distanceFromBegin);
 				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
 			}
-			if (!graphReverseSegments.isEmpty() && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek().segment;
+			if (graphReverseSegments != null && !graphReverseSegments.isEmpty() && ctx.getPlanRoadDirection() <= 0) {
+				RouteSegment peek = graphReverseSegments.peek();
 				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
 				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
@@ -497,7 +765,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegmentCost> graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
+			RouteSegmentQueue graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
 			RouteSegment startSegment, TLongObjectMap<RouteSegment> oppositeSegments,
 			TLongObjectMap<RouteSegment> boundaries, boolean doNotAddIntersections) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
@@ -516,43 +784,62 @@ public class BinaryRoutePlanner {
 			currentSegment = nextCurrentSegment;
 			nextCurrentSegment = null;
 
-			// 1. check if segment was already visited in opposite direction
-			// We check before we calculate segmentTime (to not calculate it twice with opposite and calculate turns onto each segment).
-			boolean bothDirVisited = checkIfOppositeSegmentWasVisited(ctx, reverseWaySearch, graphSegments, currentSegment, oppositeSegments, boundaries);
-			
-			// 2. calculate obstacle for passing this segment (after  visiting cause obstacle is at the end of the segment) 
+			// 1. calculate obstacle for passing this segment (after  visiting cause obstacle is at the end of the segment) 
 			float segmentAndObstaclesTime = (float) calculateRouteSegmentTime(ctx, reverseWaySearch, currentSegment);
-			if (segmentAndObstaclesTime < 0) { 
-				break;
-			}
 			// calculate new start segment time as we're going to assign to put to visited segments
 			float distFromStartPlusSegmentTime = currentSegment.distanceFromStart + segmentAndObstaclesTime;
-			
-			// 3. upload segment itself to visited segments
 			long nextPntId = calculateRoutePointId(currentSegment);
-			RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
-			if (existingSegment != null) {
-				if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
-					// insert back original segment (test case with large area way)
-					visitedSegments.put(nextPntId, existingSegment);
-					if (TRACE_ROUTING) {
-						println("  " + currentSegment.segEnd + ">> Already visited");
+			RouteSegment existingSegment;
+			boolean slowerThanVisited = false;
+			boolean bothDirVisited;
+			// in parallel search opposite direction visits segments concurrently: check of opposite and
+			// upload to visited are done under locks of both maps (direct map first) so the meeting is never missed
+			synchronized (reverseWaySearch ? oppositeSegments : visitedSegments) {
+				synchronized (reverseWaySearch ? visitedSegments : oppositeSegments) {
+					// 2. check if segment was already visited in opposite direction
+					// We check before we assign segmentTime (to not calculate it twice with opposite and calculate turns onto each segment).
+					bothDirVisited = checkIfOppositeSegmentWasVisited(ctx, reverseWaySearch, graphSegments, currentSegment, oppositeSegments, boundaries);
+					if (segmentAndObstaclesTime < 0) {
+						break;
 					}
-					break;
-				} else {
-					if (ctx.config.heuristicCoefficient <= 1) {
-						if (RoutingContext.PRINT_ROUTING_ALERTS) {
-							System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
-								+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
-						} else {
+					if (ctx.maxDistanceFromStart > 0 && distFromStartPlusSegmentTime > ctx.maxDistanceFromStart) {
+						// end of segment is not reachable within limit (isochrones)
+						break;
+					}
+					// 3. upload segment itself to visited segments
+					existingSegment = visitedSegments.put(nextPntId, currentSegment);
+					if (existingSegment != null && distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
+						// insert back original segment (test case with large area way)
+						visitedSegments.put(nextPntId, existingSegment);
+						slowerThanVisited = true;
+					} else {
+						// reassign @distanceFromStart to make it correct for visited segment
+						currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
+					}
+				}
+			}
+			if (slowerThanVisited) {
+				if (TRACE_ROUTING) {
+					println("  " + currentSegment.segEnd + ">> Already visited");
+				}
+				break;
+			} else if (existingSegment != null) {
+				if (ctx.config.heuristicCoefficient <= 1) {
+					if (RoutingContext.PRINT_ROUTING_ALERTS) {
+						System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
+							+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
+					} else {
+						synchronized (ctx) {
 							ctx.alertSlowerSegmentedWasVisitedEarlier++;
 						}
 					}
 				}
 			}
-						
-			// reassign @distanceFromStart to make it correct for visited segment
-			currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
+			
+			if (ctx.visitor != null && ctx.maxDistanceFromStart > 0) {
+				// limited search (isochrones) reports every reached part with cost at its end
+				ctx.visitor.visitSegment(currentSegment, currentSegment.getSegmentEnd(), true);
+			}
 			
 			if (bothDirVisited) {
  				// We stop here for shortcut creation (we can't improve the neighbors if they're already visited cause the opposite is min - prove by contradiction) 
@@ -569,7 +856,7 @@ public class BinaryRoutePlanner {
 			// a) final segment is always in queue & double checked b) using osm segment almost always is shorter routing than other connected
 			if (DEBUG_BREAK_EACH_SEGMENT && nextCurrentSegment != null) {
 				if (!doNotAddIntersections) {
-					graphSegments.add(new RouteSegmentCost(nextCurrentSegment, ctx));
+					addToQueue(ctx, graphSegments, nextCurrentSegment);
 				}
 				break;
 			}
@@ -578,7 +865,7 @@ public class BinaryRoutePlanner {
 			}
 		}
 		
-		if (ctx.visitor != null) {
+		if (ctx.visitor != null && ctx.maxDistanceFromStart == 0) {
 			ctx.visitor.visitSegment(startSegment, currentSegment.getSegmentEnd(), true);
 		}
 	}
@@ -639,7 +926,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegmentCost> graphSegments, RouteSegment currentSegment,
+			RouteSegmentQueue graphSegments, RouteSegment currentSegment,
 			TLongObjectMap<RouteSegment> oppositeSegments, TLongObjectMap<RouteSegment> boundaries) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
@@ -667,7 +954,7 @@ public class BinaryRoutePlanner {
 					// impossible route (when start/point on same segment but different dir) don't add to queue
 					return true;
 				}
-				graphSegments.add(new RouteSegmentCost(frs, ctx));
+				addToQueue(ctx, graphSegments, frs);
 				if (TRACE_ROUTING) {
 					printRoad("  " + currentSegment.segEnd + ">> Final segment : ", frs, reverseWaySearch);
 				}
@@ -694,6 +981,10 @@ public class BinaryRoutePlanner {
 		return (road.getId() << ROUTE_POINTS) + (pntId << 1) + (positive > 0 ? 1 : 0);
 	}
 	
+	private void addToQueue(RoutingContext ctx, RouteSegmentQueue graphSegments, RouteSegment segment) {
+		graphSegments.add(segment, cost(segment.distanceFromStart, segment.distanceToEnd, ctx), calculateRoutePointId(segment));
+	}
+
 	private long calculateRoutePointId(RouteSegment segm) {
 		return calculateRoutePointInternalId(segm.getRoad(), segm.getSegmentStart(), 
 				segm.isPositive() ? segm.getSegmentStart() + 1 : segm.getSegmentStart() - 1);
@@ -812,7 +1103,7 @@ public class BinaryRoutePlanner {
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegmentCost> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentQueue graphSegments,
 			TLongObjectMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
@@ -919,7 +1210,7 @@ public class BinaryRoutePlanner {
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegmentCost> graphSegments,
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentQueue graphSegments,
 			TLongObjectMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
@@ -963,10 +1254,14 @@ public class BinaryRoutePlanner {
 								System.err.println("! ALERT new faster path to a visited segment: "
 										+ (distFromStart + routeSegmentTime) + " < " + visIt.distanceFromStart + ": " + next + " - " + visIt);
 							} else {
-								ctx.alertFasterRoadToVisitedSegments++;
+								synchronized (ctx) {
+									ctx.alertFasterRoadToVisitedSegments++;
+								}
 							}
 						}
-						visitedSegments.remove(calculateRoutePointId(next));
+						synchronized (visitedSegments) {
+							visitedSegments.remove(calculateRoutePointId(next));
+						}
 					} else {
 						return false;
 					}
@@ -984,7 +1279,7 @@ public class BinaryRoutePlanner {
 				// put additional information to recover whole route after
 				next.setParentRoute(segment);
 				if (graphSegments != null) {
-					graphSegments.add(new RouteSegmentCost(next, ctx));
+					addToQueue(ctx, graphSegments, next);
 				}
 				return true;
 			}
@@ -1117,6 +1412,13 @@ public class BinaryRoutePlanner {
 			return parentRoute != null;
 		}
 
+		// segment is not visited by next search of the same context (see RoutingContext.clearSearchState)
+		void clearSearchState() {
+			parentRoute = null;
+			distanceFromStart = 0;
+			distanceToEnd = 0;
+		}
+
 		public RouteSegment getParentRoute() {
 			return parentRoute == NULL ? null : parentRoute;
 		}
@@ -56,6 +56,8 @@ public class GeneralRouter implements VehicleRouter {
 	public static final String CHECK_ALLOW_PRIVATE_NEEDED = "check_allow_private_needed";
 
 	private static boolean USE_CACHE = true;
+	// evaluated road attributes are kept in arrays by types combination id (otherwise in evalCache)
+	static boolean USE_EVAL_TABLES = true;
 	public static long TIMER = 0;
 
 	private final RouteAttributeContext[] objectAttributes;
@@ -93,6 +95,10 @@ public class GeneralRouter implements VehicleRouter {
 	private GeneralRouterProfile profile;
 	
 	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;
+	// region -> [attribute * 2 + direction][types combination id], NaN - not evaluated
+	private Map<RouteRegion, float[][]> evalTables;
+	private RouteRegion lastTablesRegion;
+	private float[][] lastTables;
 
 	public String[] hhNativeFilter = new String[0]; // getFilteredTags() as flat Array (JNI)
 	public String[] hhNativeParameterValues = new String[0]; // parameterValues as flat Array (JNI)
@@ -229,6 +235,9 @@ public class GeneralRouter implements VehicleRouter {
 		for (int i = 0; i < l; i++) {
 			evalCache[i] = new HashMap<>();
 		}
+		evalTables = new HashMap<>();
+		lastTablesRegion = null;
+		lastTables = null;
 	}
 
 	public String getFilename() {
@@ -328,10 +337,10 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public boolean acceptLine(RouteDataObject way) {
-		Float res = getCache(RouteDataObjectAttribute.ACCESS, way);
-		if (res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
-			putCache(RouteDataObjectAttribute.ACCESS, way, res);
+		float res = getCache(RouteDataObjectAttribute.ACCESS, way, false);
+		if (Float.isNaN(res)) {
+			res = getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
+			putCache(RouteDataObjectAttribute.ACCESS, way, res, false);
 		}
 		if (impassableRoads != null && impassableRoads.contains(way.id >> IMPASSABLE_ROAD_SHIFT)) {
 			return false;
@@ -352,17 +361,20 @@ public class GeneralRouter implements VehicleRouter {
 	
 	public int registerTagValueAttribute(String tag, String value) {
 		String key = tag +"$"+value;
-		if(universalRules.containsKey(key)) {
-			return universalRules.get(key);
-		}
-		int id = universalRules.size();
-		universalRulesById.add(key);
-		universalRules.put(key, id);
-		if(!tagRuleMask.containsKey(tag)) {
-			tagRuleMask.put(tag, new BitSet());
+		// rules are shared by all routers built from the same root (see copyForThread)
+		synchronized (universalRules) {
+			if(universalRules.containsKey(key)) {
+				return universalRules.get(key);
+			}
+			int id = universalRules.size();
+			universalRulesById.add(key);
+			universalRules.put(key, id);
+			if(!tagRuleMask.containsKey(tag)) {
+				tagRuleMask.put(tag, new BitSet());
+			}
+			tagRuleMask.get(tag).set(id);
+			return id;
 		}
-		tagRuleMask.get(tag).set(id);
-		return id;
 	}
 	
 	
@@ -413,6 +425,31 @@ public class GeneralRouter implements VehicleRouter {
 		return new GeneralRouter(this, params);
 	}
 
+	/**
+	 * Same router with own evaluation caches to be used in another thread (evaluation isn't thread safe).
+	 */
+	public GeneralRouter copyForThread() {
+		GeneralRouter r = new GeneralRouter(this, parameterValues);
+		// attributes added after build are copied with values calculated from them and params (not parsed again)
+		r.attributes.putAll(attributes);
+		r.restrictionsAware = restrictionsAware;
+		r.sharpTurn = sharpTurn;
+		r.slightTurn = slightTurn;
+		r.roundaboutTurn = roundaboutTurn;
+		r.minSpeed = minSpeed;
+		r.defaultSpeed = defaultSpeed;
+		r.maxSpeed = maxSpeed;
+		r.maxVehicleSpeed = maxVehicleSpeed;
+		r.shortestRoute = shortestRoute;
+		r.heightObstacles = heightObstacles;
+		r.allowPrivate = allowPrivate;
+		r.impassableRoads = impassableRoads;
+		r.filename = filename;
+		r.hhNativeFilter = hhNativeFilter;
+		r.hhNativeParameterValues = hhNativeParameterValues;
+		return r;
+	}
+
 	@Override
 	public boolean restrictionsAware() {
 		return restrictionsAware;
@@ -516,12 +553,12 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public int isOneWay(RouteDataObject road) {
-		Float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
-			putCache(RouteDataObjectAttribute.ONEWAY, road, res);
+		float res = getCache(RouteDataObjectAttribute.ONEWAY, road, false);
+		if (Float.isNaN(res)) {
+			res = getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
+			putCache(RouteDataObjectAttribute.ONEWAY, road, res, false);
 		}
-		return res.intValue();
+		return (int) res;
 	}
 	
 	@Override
@@ -531,18 +568,18 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
-		Float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
-		if (vl == null) {
-			vl = (float) getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
-			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl);
+		float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, false);
+		if (Float.isNaN(vl)) {
+			vl = getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
+			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl, false);
 		}
 		return vl;
 	}
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road, boolean dir) {
-		Float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
-		if (definedSpd == null) {
+		float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
+		if (Float.isNaN(definedSpd)) {
 			// not implemented direction usage
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
  			definedSpd = Math.max(Math.min(spd, maxSpeed), minSpeed);
@@ -559,8 +596,8 @@ public class GeneralRouter implements VehicleRouter {
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			return Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 		}
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
-		if (sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
+		if (Float.isNaN(sp)) {
 			// not implemented direction usage
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			sp = Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
@@ -571,8 +608,8 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineSpeedPriority(RouteDataObject road, boolean dir) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, dir);
-		if(sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, dir);
+		if (Float.isNaN(sp)) {
 			// not implemented direction usage
 			sp = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
 			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp, dir);
@@ -582,20 +619,46 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineDestinationPriority(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, road);
-		if(sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, road, false);
+		if (Float.isNaN(sp)) {
 			sp = getObjContext(RouteDataObjectAttribute.DESTINATION_PRIORITIES).evaluateFloat(road, 1f);
 			putCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, road, sp, false);
 		}
 		return sp;
 	}
 
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val) {
-		putCache(attr, road.region, road.types, val, false);
+	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, float val, boolean extra) {
+		int id = USE_CACHE && USE_EVAL_TABLES ? road.getTypesCombinationId() : -1;
+		if (id < 0) {
+			putCache(attr, road.region, road.types, val, extra);
+			return;
+		}
+		float[][] tables = getEvalTables(road.region);
+		int ind = attr.ordinal() * 2 + (extra ? 1 : 0);
+		float[] t = tables[ind];
+		if (t == null || id >= t.length) {
+			int size = Math.max(id + 1, road.region.getTypesCombinationsSize());
+			float[] nt = new float[Math.max(size, t == null ? 0 : t.length * 2)];
+			Arrays.fill(nt, Float.NaN);
+			if (t != null) {
+				System.arraycopy(t, 0, nt, 0, t.length);
+			}
+			t = tables[ind] = nt;
+		}
+		t[id] = val;
 	}
-	
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val, boolean extra) {
-		putCache(attr, road.region, road.types, val, extra);
+
+	private float[][] getEvalTables(RouteRegion reg) {
+		if (reg != lastTablesRegion) {
+			float[][] tables = evalTables.get(reg);
+			if (tables == null) {
+				tables = new float[RouteDataObjectAttribute.values().length * 2][];
+				evalTables.put(reg, tables);
+			}
+			lastTablesRegion = reg;
+			lastTables = tables;
+		}
+		return lastTables;
 	}
 	
 	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
@@ -642,12 +705,14 @@ public class GeneralRouter implements VehicleRouter {
 		}
 	}
 
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
-		return getCache(attr, road.region, road.types, false);
-	}
-	
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road, boolean extra) {
-		return getCache(attr, road.region, road.types, extra);
+	private float getCache(RouteDataObjectAttribute attr, RouteDataObject road, boolean extra) {
+		int id = USE_CACHE && USE_EVAL_TABLES ? road.getTypesCombinationId() : -1;
+		if (id < 0) {
+			Float vl = getCache(attr, road.region, road.types, extra);
+			return vl == null ? Float.NaN : vl;
+		}
+		float[] t = getEvalTables(road.region)[attr.ordinal() * 2 + (extra ? 1 : 0)];
+		return t != null && id < t.length ? t[id] : Float.NaN;
 	}
 	
 	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
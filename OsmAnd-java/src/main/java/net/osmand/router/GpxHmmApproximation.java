@@ -0,0 +1,357 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.util.MapUtils;
+
+/**
+ * Map matching by hidden Markov model. States are projections of sampled gpx points on near roads
+ * (emission cost grows with distance to road), transition cost is difference between route distance of projections
+ * (bounded search of {@link BinaryRoutePlanner}) and distance between gpx points.
+ * The cheapest sequence of projections is found by Viterbi algorithm, sequence is broken (straight line) where
+ * no transition is found.
+ */
+public class GpxHmmApproximation {
+
+	// roads around tile of this zoom are loaded once for all points of tile
+	private static final int CANDIDATES_TILE_ZOOM = 17;
+	private static final int CANDIDATES_TILES_CACHE = 64;
+	private static final int MAX_CANDIDATES = 6;
+	// states more expensive than the cheapest state of point are not continued
+	private static final double PRUNE_COST = 60;
+	// transition route is searched within distance between points * factor + 2 * candidates radius
+	private static final double MAX_ROUTE_FACTOR = 2;
+	private static final double MIN_ROUTE_DIST = 100;
+	// constant speed (m/s) of router for transitions, so cost is equal to distance
+	private static final String DISTANCE_SPEED = "1";
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private final GpxRouteApproximation gctx;
+	private final List<GpxPoint> gpxPoints;
+	// candidates radius, gps error and scale of transition difference (meters)
+	private final double radius;
+	private final double sigma;
+	private final double beta;
+	private final TLongObjectHashMap<List<RouteDataObject>> tilesCache = new TLongObjectHashMap<>();
+	private GeneralRouter distanceRouter;
+	// context of transitions of current step, tiles loaded with distance router are reused by next transitions
+	private RoutingContext stepCtx;
+	private int transitions;
+	private int routedTransitions;
+
+	private static class HmmState {
+		final GpxPoint point;
+		final RouteSegmentPoint pnt;
+		final double emission;
+		double cost = Double.POSITIVE_INFINITY;
+		HmmState parent;
+		// route from parent
+		List<RouteSegmentResult> route;
+
+		HmmState(GpxPoint point, RouteSegmentPoint pnt, double emission) {
+			this.point = point;
+			this.pnt = pnt;
+			this.emission = emission;
+		}
+	}
+
+	private static class Transition {
+		final double distance;
+		final List<RouteSegmentResult> route;
+
+		Transition(double distance, List<RouteSegmentResult> route) {
+			this.distance = distance;
+			this.route = route;
+		}
+	}
+
+	private static final Comparator<HmmState> COST_COMPARATOR = new Comparator<HmmState>() {
+
+		@Override
+		public int compare(HmmState o1, HmmState o2) {
+			return Double.compare(o1.cost, o2.cost);
+		}
+	};
+
+	public GpxHmmApproximation(RoutePlannerFrontEnd frontEnd, GpxRouteApproximation gctx, List<GpxPoint> gpxPoints) {
+		this.frontEnd = frontEnd;
+		this.gctx = gctx;
+		this.gpxPoints = gpxPoints;
+		radius = gctx.ctx.config.minPointApproximation;
+		sigma = radius / 4;
+		beta = radius / 8;
+	}
+
+	public GpxRouteApproximation gpxApproximation() throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		if (gctx.ctx.calculationProgress == null) {
+			gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		RouteCalculationProgress progress = gctx.ctx.calculationProgress;
+		distanceRouter = createDistanceRouter();
+		// points closer than 2 sigma to previous point don't add information
+		double sampleDist = 2 * sigma;
+		List<HmmState> prev = null;
+		GpxPoint prevPoint = null;
+		for (int i = 0; i < gpxPoints.size() && !progress.isCancelled; i++) {
+			GpxPoint p = gpxPoints.get(i);
+			p.x31 = MapUtils.get31TileNumberX(p.loc.getLongitude());
+			p.y31 = MapUtils.get31TileNumberY(p.loc.getLatitude());
+			double dist = prevPoint == null ? 0 : MapUtils.squareRootDist31(prevPoint.x31, prevPoint.y31, p.x31, p.y31);
+			if (prevPoint != null && dist < sampleDist && i < gpxPoints.size() - 1) {
+				continue;
+			}
+			List<HmmState> states = getCandidates(p);
+			if (states.isEmpty()) {
+				continue;
+			}
+			if (prev != null && (dist > gctx.ctx.config.maxStepApproximation || !transition(prev, prevPoint, states, p))) {
+				wrapupRoute(Collections.min(prev, COST_COMPARATOR));
+				prev = null;
+			}
+			if (prev == null) {
+				for (HmmState s : states) {
+					s.cost = s.emission;
+				}
+			}
+			prev = prune(states);
+			prevPoint = p;
+			progress.approximatedDistance = (float) p.cumDist;
+		}
+		if (prev != null && !progress.isCancelled) {
+			wrapupRoute(Collections.min(prev, COST_COMPARATOR));
+		}
+		progress.timeToCalculate = System.nanoTime() - timeToCalculate;
+		System.out.printf("HMM approximation took %.2f seconds (%d route points searched, %d of %d transitions routed)\n",
+				(System.nanoTime() - timeToCalculate) / 1.0e9, gctx.routePointsSearched, routedTransitions, transitions);
+		return gctx;
+	}
+
+	private GeneralRouter createDistanceRouter() {
+		if (!(gctx.ctx.getRouter() instanceof GeneralRouter)) {
+			throw new IllegalArgumentException("HMM approximation requires general router");
+		}
+		GeneralRouter router = (GeneralRouter) gctx.ctx.getRouter();
+		Map<String, String> params = new LinkedHashMap<>(router.getParameterValues());
+		params.put(GeneralRouter.USE_SHORTEST_WAY, "true");
+		params.put(GeneralRouter.MIN_SPEED, DISTANCE_SPEED);
+		params.put(GeneralRouter.MAX_SPEED, DISTANCE_SPEED);
+		return router.build(params);
+	}
+
+	// projections on roads within radius, roads are cached by tile so near points don't search them again
+	private List<HmmState> getCandidates(GpxPoint p) {
+		int shift = 31 - CANDIDATES_TILE_ZOOM;
+		long tile = (((long) (p.x31 >> shift)) << 32) | (p.y31 >> shift);
+		List<RouteDataObject> objects = tilesCache.get(tile);
+		if (objects == null) {
+			if (tilesCache.size() >= CANDIDATES_TILES_CACHE) {
+				tilesCache.clear();
+			}
+			// roads are loaded around center of tile (+- 1 tile), so they cover radius of every point of tile
+			int half = 1 << (shift - 1);
+			objects = frontEnd.loadRouteSegmentObjects(((p.x31 >> shift) << shift) + half,
+					((p.y31 >> shift) << shift) + half, gctx.ctx, false);
+			tilesCache.put(tile, objects);
+		}
+		gctx.routePointsSearched++;
+		List<HmmState> states = new ArrayList<>();
+		RouteSegmentPoint best = frontEnd.findRouteSegment(p.x31, p.y31, gctx.ctx, objects, null, false);
+		if (best == null) {
+			return states;
+		}
+		List<RouteSegmentPoint> candidates = new ArrayList<>();
+		candidates.add(best);
+		candidates.addAll(best.others);
+		best.others = null;
+		for (RouteSegmentPoint c : candidates) {
+			double d = MapUtils.squareRootDist31(p.x31, p.y31, c.preciseX, c.preciseY);
+			if (d <= radius && states.size() < MAX_CANDIDATES) {
+				states.add(new HmmState(p, c, 0.5 * (d / sigma) * (d / sigma)));
+			}
+		}
+		return states;
+	}
+
+	private List<HmmState> prune(List<HmmState> states) {
+		double min = Collections.min(states, COST_COMPARATOR).cost;
+		List<HmmState> res = new ArrayList<>(states.size());
+		for (HmmState s : states) {
+			if (s.cost <= min + PRUNE_COST) {
+				res.add(s);
+			}
+		}
+		Collections.sort(res, COST_COMPARATOR);
+		return res;
+	}
+
+	// Viterbi step, returns false if no state is reachable from previous states
+	private boolean transition(List<HmmState> prev, GpxPoint prevPoint, List<HmmState> states, GpxPoint p)
+			throws IOException, InterruptedException {
+		double gpxDist = MapUtils.squareRootDist31(prevPoint.x31, prevPoint.y31, p.x31, p.y31);
+		double maxRoute = Math.max(MIN_ROUTE_DIST, gpxDist * MAX_ROUTE_FACTOR + 2 * radius);
+		boolean connected = false;
+		try {
+			for (HmmState s : states) {
+				for (HmmState from : prev) {
+					// route is not shorter than straight line, so transition is skipped if it can't be cheaper
+					double straight = MapUtils.squareRootDist31(from.pnt.preciseX, from.pnt.preciseY, s.pnt.preciseX,
+							s.pnt.preciseY);
+					if (from.cost + Math.max(0, straight - gpxDist) / beta + s.emission >= s.cost) {
+						continue;
+					}
+					transitions++;
+					Transition t = findRoute(from.pnt, s.pnt, maxRoute);
+					if (t == null) {
+						continue;
+					}
+					double cost = from.cost + Math.abs(t.distance - gpxDist) / beta + s.emission;
+					if (cost < s.cost) {
+						s.cost = cost;
+						s.parent = from;
+						s.route = t.route;
+					}
+				}
+				connected |= s.parent != null;
+			}
+		} finally {
+			if (stepCtx != null) {
+				stepCtx.setThreadRouter(null);
+				stepCtx.unloadAllData();
+				stepCtx = null;
+			}
+		}
+		if (connected) {
+			// unreachable states are not continued
+			for (int i = states.size() - 1; i >= 0; i--) {
+				if (states.get(i).parent == null) {
+					states.remove(i);
+				}
+			}
+		}
+		return connected;
+	}
+
+	private Transition findRoute(RouteSegmentPoint from, RouteSegmentPoint to, double maxRoute)
+			throws IOException, InterruptedException {
+		RouteDataObject road = from.getRoad();
+		if (road.getId() == to.getRoad().getId()) {
+			Transition t = findRouteOnRoad(from, to);
+			if (t != null) {
+				return t.distance <= maxRoute ? t : null;
+			}
+		}
+		routedTransitions++;
+		if (stepCtx == null) {
+			stepCtx = new RoutingContext(gctx.ctx);
+			stepCtx.setThreadRouter(distanceRouter);
+		} else {
+			stepCtx.clearSearchState();
+		}
+		stepCtx.maxDistanceFromStart = (float) maxRoute;
+		RouteSegmentPoint start = new RouteSegmentPoint(from);
+		RouteSegmentPoint end = new RouteSegmentPoint(to);
+		stepCtx.initStartAndTargetPoints(start, end);
+		FinalRouteSegment f = new BinaryRoutePlanner().searchRouteInternal(stepCtx, start, end, null);
+		if (f == null || f.distanceFromStart > maxRoute) {
+			return null;
+		}
+		return new Transition(f.distanceFromStart,
+				new RouteResultPreparation().convertFinalSegmentToResults(stepCtx, f));
+	}
+
+	// both projections are on the same road, null if road doesn't allow to move from one to another
+	private Transition findRouteOnRoad(RouteSegmentPoint from, RouteSegmentPoint to) {
+		RouteDataObject road = from.getRoad();
+		double fromStart = MapUtils.squareRootDist31(road.getPoint31XTile(from.getSegmentStart()),
+				road.getPoint31YTile(from.getSegmentStart()), from.preciseX, from.preciseY);
+		double toStart = MapUtils.squareRootDist31(road.getPoint31XTile(to.getSegmentStart()),
+				road.getPoint31YTile(to.getSegmentStart()), to.preciseX, to.preciseY);
+		boolean forward = to.getSegmentStart() > from.getSegmentStart()
+				|| (to.getSegmentStart() == from.getSegmentStart() && toStart >= fromStart);
+		int oneway = gctx.ctx.getRouter().isOneWay(road);
+		if ((forward && oneway < 0) || (!forward && oneway > 0)) {
+			return null;
+		}
+		double dist;
+		if (to.getSegmentStart() == from.getSegmentStart()) {
+			dist = Math.abs(toStart - fromStart);
+		} else {
+			int s = forward ? from.getSegmentStart() : to.getSegmentStart();
+			int e = forward ? to.getSegmentStart() : from.getSegmentStart();
+			dist = (forward ? toStart - fromStart : fromStart - toStart);
+			for (int i = s; i < e; i++) {
+				dist += MapUtils.squareRootDist31(road.getPoint31XTile(i), road.getPoint31YTile(i),
+						road.getPoint31XTile(i + 1), road.getPoint31YTile(i + 1));
+			}
+		}
+		List<RouteSegmentResult> route = new ArrayList<>(1);
+		if (forward) {
+			route.add(new RouteSegmentResult(road, from.getSegmentStart(), to.getSegmentEnd()));
+		} else {
+			route.add(new RouteSegmentResult(road, from.getSegmentEnd(), to.getSegmentStart()));
+		}
+		return new Transition(dist, route);
+	}
+
+	private void wrapupRoute(HmmState last) {
+		List<HmmState> chain = new ArrayList<>();
+		for (HmmState s = last; s != null; s = s.parent) {
+			chain.add(s);
+		}
+		Collections.reverse(chain);
+		if (chain.size() < 2) {
+			return;
+		}
+		List<RouteSegmentResult> res = new ArrayList<>();
+		for (int i = 1; i < chain.size(); i++) {
+			for (RouteSegmentResult r : chain.get(i).route) {
+				addSegment(res, r);
+			}
+		}
+		if (res.isEmpty()) {
+			return;
+		}
+		HmmState first = chain.get(0);
+		for (RouteSegmentResult r : res) {
+			r.setGpxPointIndex(first.point.ind); // required for reconstructFinalPointsFromFullRoute()
+		}
+		first.point.pnt = first.pnt;
+		first.point.routeToTarget = res;
+		first.point.targetInd = last.point.ind;
+	}
+
+	// routes of neighbour transitions overlap on segments of projections, overlapping parts are merged
+	private void addSegment(List<RouteSegmentResult> res, RouteSegmentResult r) {
+		int rs = r.getStartPointIndex();
+		int re = r.getEndPointIndex();
+		if (rs == re) {
+			return;
+		}
+		RouteSegmentResult last = res.isEmpty() ? null : res.get(res.size() - 1);
+		if (last != null && last.getObject().getId() == r.getObject().getId()
+				&& last.isForwardDirection() == r.isForwardDirection()) {
+			int ls = last.getStartPointIndex();
+			int le = last.getEndPointIndex();
+			boolean forward = r.isForwardDirection();
+			if (forward ? (rs >= ls && rs <= le) : (rs <= ls && rs >= le)) {
+				if (forward ? re > le : re < le) {
+					last.setEndPointIndex(re);
+				}
+				return;
+			}
+		}
+		res.add(r);
+	}
+}
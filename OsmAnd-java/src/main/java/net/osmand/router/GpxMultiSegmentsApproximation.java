@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
+import gnu.trove.iterator.TLongIterator;
 import gnu.trove.set.hash.TLongHashSet;
 import net.osmand.data.LatLon;
 import net.osmand.data.QuadPointDouble;
@@ -26,7 +28,7 @@ public class GpxMultiSegmentsApproximation {
 	/////////////////////////
 	
 	private static final int ROUTE_POINTS = 12;
-	private static final int GPX_MAX = 30; // 1M
+	private static final int GPX_MAX = 30; // 1M, streaming: index in window (see calculateRoutePointId)
 	
 	final Comparator<RouteSegmentAppr> METRICS_COMPARATOR = new Comparator<RouteSegmentAppr>() {
 
@@ -45,9 +47,26 @@ public class GpxMultiSegmentsApproximation {
 	java.util.PriorityQueue<RouteSegmentAppr> queue = new java.util.PriorityQueue<>(METRICS_COMPARATOR); 
 	TLongHashSet visited = new TLongHashSet();
 
+	// streaming: gpxPoints keeps window of points starting from gpxOffset index
+	int gpxOffset = 0;
+	private GpxStreamListener listener;
+	private RouteSegmentAppr streamLast;
+	private RouteSegmentAppr streamBest;
+	private int streamSearchStart = 0;
+	private final List<RouteSegmentAppr> streamConnected = new ArrayList<>();
+
+	public interface GpxStreamListener {
+
+		// route of gpx points [gpxStart, gpxEnd] is final and won't be changed by next points
+		void routeApproximated(List<RouteSegmentResult> route, int gpxStart, int gpxEnd);
+	}
+
 	private static class RouteSegmentAppr {
 		private final RouteSegment segment;
-		private final RouteSegmentAppr parent;
+		// streaming: parent is cleared when route till this segment is published
+		private RouteSegmentAppr parent;
+		private final boolean startPoint;
+		private final int depth;
 
 		private final int gpxStart;
 		private int gpxLen = 0;
@@ -61,12 +80,16 @@ public class GpxMultiSegmentsApproximation {
 			this.parent = null;
 			this.segment = pnt;
 			this.gpxStart = start;
+			this.startPoint = true;
+			this.depth = 0;
 		}
 		
 		private RouteSegmentAppr(RouteSegmentAppr parent, RouteSegment segment) {
 			this.parent = parent;
 			this.segment = segment;
 			this.gpxStart = parent.gpxStart + parent.gpxLen;
+			this.startPoint = false;
+			this.depth = parent.depth + 1;
 		}
 		
 		private double metric() {
@@ -87,10 +110,20 @@ public class GpxMultiSegmentsApproximation {
 		initDist = minPointApproximation / 2;
 		
 	}
+
+	/**
+	 * Streaming approximation: points are added by {@link #addPoints(List)}, only window of points which could
+	 * still change the route is kept and route is published to listener as soon as it's not ambiguous.
+	 */
+	public GpxMultiSegmentsApproximation(RoutePlannerFrontEnd frontEnd, GpxRouteApproximation gctx,
+			GpxStreamListener listener) {
+		this(frontEnd, gctx, new ArrayList<GpxPoint>());
+		this.listener = listener;
+	}
 	
 	public void loadConnections(RouteSegmentAppr last, List<RouteSegmentAppr> connected) {
 		connected.clear();
-		if (last.parent == null) {
+		if (last.startPoint) {
 			RouteSegmentPoint pnt = ((RouteSegmentPoint)last.segment);
 			addSegmentInternal(last, pnt, connected);
 			if (pnt.others != null) {
@@ -224,15 +257,14 @@ public class GpxMultiSegmentsApproximation {
 	}
 
 	private double gpxDist(int gpxL1, int gpxL2) {
-		return gpxPoints.get(Math.min(gpxL1, gpxPoints.size() - 1)).cumDist - 
-				gpxPoints.get(Math.min(gpxL2, gpxPoints.size() - 1)).cumDist; 
+		return point(Math.min(gpxL1, gpxSize() - 1)).cumDist - point(Math.min(gpxL2, gpxSize() - 1)).cumDist;
 	}
 
 	private boolean approximateSegment(RouteSegmentAppr parent, RouteSegment sg, List<RouteSegmentAppr> connected) {
 		RouteSegmentAppr c = new RouteSegmentAppr(parent, sg);
 		boolean added = false;
-		for (int pointInd = c.gpxStart + 1; pointInd < gpxPoints.size(); pointInd++) {
-			GpxPoint p = gpxPoints.get(pointInd);
+		for (int pointInd = c.gpxStart + 1; pointInd < gpxSize(); pointInd++) {
+			GpxPoint p = point(pointInd);
 			if (p.x31 == c.segment.getEndPointX() && p.y31 == c.segment.getEndPointY()) {
 				c.gpxLen++;
 				continue;
@@ -271,10 +303,9 @@ public class GpxMultiSegmentsApproximation {
 		int pointInd = c.gpxNext();
 		// calculate dist for last segment (end point is exactly in between prev gpx / next gpx) 
 		// because next gpx point doesn't project onto segment
-		if (pointInd < gpxPoints.size()) {
+		if (pointInd < gpxSize()) {
 			QuadPointDouble pp = MapUtils.getProjectionPoint31(c.segment.getEndPointX(), c.segment.getEndPointY(),
-					gpxPoints.get(pointInd - 1).x31, gpxPoints.get(pointInd - 1).y31, gpxPoints.get(pointInd).x31,
-					gpxPoints.get(pointInd).y31);
+					point(pointInd - 1).x31, point(pointInd - 1).y31, point(pointInd).x31, point(pointInd).y31);
 			double dist = BinaryRoutePlanner.squareRootDist((int) pp.x, (int) pp.y, c.segment.getEndPointX(),
 					c.segment.getEndPointY());
 			c.maxDistToGpx = Math.max(c.maxDistToGpx, dist);
@@ -293,9 +324,13 @@ public class GpxMultiSegmentsApproximation {
 	}
 
 	public GpxPoint findNextRoutablePoint(int searchStart) throws IOException {
-		for (int i = searchStart; i < gpxPoints.size(); i++) {
-			if (initRoutingPoint(gpxPoints.get(i), initDist)) {
-				return gpxPoints.get(i);
+		return findNextRoutablePoint(searchStart, gpxSize());
+	}
+
+	private GpxPoint findNextRoutablePoint(int searchStart, int searchEnd) throws IOException {
+		for (int i = searchStart; i < searchEnd; i++) {
+			if (initRoutingPoint(point(i), initDist)) {
+				return point(i);
 			}
 		}
 		return null;
@@ -304,7 +339,7 @@ public class GpxMultiSegmentsApproximation {
 	private boolean initRoutingPoint(GpxPoint start, double distThreshold) throws IOException {
 		if (start != null && start.pnt == null) {
 			gctx.routePointsSearched++;
-			double gpxDir = start.object.directionRoute(start.ind, true);
+			double gpxDir = gpxDirection(start);
 			RouteSegmentPoint rsp = frontEnd.findRouteSegment(start.loc.getLatitude(), start.loc.getLongitude(),
 					gctx.ctx, null, false);
 			if (rsp == null || MapUtils.getDistance(rsp.getPreciseLatLon(), start.loc) > distThreshold) {
@@ -346,9 +381,23 @@ public class GpxMultiSegmentsApproximation {
 		if (bestRoute.parent == null) {
 			return;
 		}
+		int last = Math.min(bestRoute.gpxNext(), gpxPoints.size() - 1);
+		List<RouteSegmentResult> res = collectRoute(bestRoute);
+		int startInd = res.get(0).getGpxPointIndex();
+		if (DEBUG) {
+			System.out.printf("ROUTE %d -> %d :\n", startInd, last);
+			for (RouteSegmentResult r : res) {
+				System.out.println(" " + r);
+			}
+		}
+		gpxPoints.get(startInd).routeToTarget = res;
+		gpxPoints.get(startInd).targetInd = last; // keep straight line
+	}
+
+	// route from start point (or last published segment) till segment
+	private List<RouteSegmentResult> collectRoute(RouteSegmentAppr bestRoute) {
 		List<RouteSegmentResult> res = new ArrayList<>();
 		int startInd = 0;
-		int last = Math.min(bestRoute.gpxNext(), gpxPoints.size() - 1);
 		// combining segments doesn't seem to have any effect on tests
 		RouteSegmentResult lastRes = null;
 		while (bestRoute != null && bestRoute.parent != null) {
@@ -368,28 +417,214 @@ public class GpxMultiSegmentsApproximation {
 			lastRes = routeRes;
 		}
 		Collections.reverse(res);
-		if (DEBUG) {
-			System.out.printf("ROUTE %d -> %d :\n", startInd, last);
-			for (RouteSegmentResult r : res) {
-				System.out.println(" " + r);
-			}
-		}
 		for (RouteSegmentResult r : res) {
 			r.setGpxPointIndex(startInd); // required for reconstructFinalPointsFromFullRoute()
 		}
-		gpxPoints.get(startInd).routeToTarget = res;
-		gpxPoints.get(startInd).targetInd = last; // keep straight line
+		return res;
+	}
+
+	private GpxPoint point(int ind) {
+		return gpxPoints.get(ind - gpxOffset);
+	}
+
+	private int gpxSize() {
+		return gpxOffset + gpxPoints.size();
+	}
+
+	private double gpxDirection(GpxPoint p) {
+		if (p.object != null) {
+			return p.object.directionRoute(p.ind, true);
+		}
+		// streamed points don't have straight line object, so direction is calculated same way by next points
+		int px = p.x31;
+		int py = p.y31;
+		for (int i = p.ind + 1; i < gpxSize(); i++) {
+			px = point(i).x31;
+			py = point(i).y31;
+			if (point(i).cumDist - p.cumDist >= 5) {
+				break;
+			}
+		}
+		return -Math.atan2(p.x31 - px, p.y31 - py);
+	}
+
+	/**
+	 * Adds next points of track (loc and time should be set) and publishes route which became final.
+	 */
+	public void addPoints(List<GpxPoint> points) throws IOException {
+		if (gpxPoints.size() + points.size() >= (1 << GPX_MAX)) {
+			throw new IllegalStateException("Too many GPX points are not approximated " + gpxPoints.size());
+		}
+		for (GpxPoint p : points) {
+			GpxPoint prev = gpxPoints.isEmpty() ? null : gpxPoints.get(gpxPoints.size() - 1);
+			p.ind = gpxSize();
+			p.cumDist = prev == null ? 0 : prev.cumDist + MapUtils.getDistance(prev.loc, p.loc);
+			p.x31 = MapUtils.get31TileNumberX(p.loc.getLongitude());
+			p.y31 = MapUtils.get31TileNumberY(p.loc.getLatitude());
+			gpxPoints.add(p);
+			gctx.routeDistance = (int) p.cumDist;
+		}
+		processStream(false);
+	}
+
+	/**
+	 * Track is finished, rest of route is published.
+	 */
+	public void finish() throws IOException {
+		processStream(true);
+		if (streamLast != null) {
+			if (streamBest == null || streamBest.gpxNext() < streamLast.gpxNext()) {
+				streamBest = streamLast;
+			}
+			publishRoute(streamBest);
+		}
+		streamLast = streamBest = null;
+		queue.clear();
+		visited.clear();
+		gpxOffset = gpxSize();
+		gpxPoints.clear();
 	}
 
-	private static long calculateRoutePointId(RouteSegmentAppr segm) {
+	// point is far enough from the end of window, so points after it are known for route decisions
+	private boolean isStreamReady(int ind, boolean finish) {
+		if (ind >= gpxSize()) {
+			return false;
+		}
+		return finish || point(gpxSize() - 1).cumDist - point(ind).cumDist > MAX_DEPTH_ROLLBACK;
+	}
+
+	private void processStream(boolean finish) throws IOException {
+		while (gctx.ctx.calculationProgress == null || !gctx.ctx.calculationProgress.isCancelled) {
+			if (streamLast == null) {
+				int end = streamSearchStart;
+				while (isStreamReady(end, finish)) {
+					end++;
+				}
+				GpxPoint pnt = findNextRoutablePoint(streamSearchStart, end);
+				if (pnt == null) {
+					// don't search same points again
+					streamSearchStart = end;
+					break;
+				}
+				streamLast = new RouteSegmentAppr(pnt.ind, pnt.pnt);
+				streamBest = null;
+			}
+			RouteSegmentAppr last = streamLast;
+			if (!isStreamReady(last.gpxNext(), finish)) {
+				break;
+			}
+			RouteSegmentAppr bestNext = null;
+			if (!isVisited(last)) {
+				visit(last);
+				loadConnections(last, streamConnected);
+				queue.addAll(streamConnected);
+			}
+			bestNext = peakMinFromQueue(streamBest, bestNext);
+			if (bestNext != null) {
+				if (streamBest == null || streamBest.gpxNext() < last.gpxNext()) {
+					streamBest = last;
+				}
+				streamLast = bestNext;
+			} else {
+				if (streamBest != null) {
+					publishRoute(streamBest);
+				}
+				streamSearchStart = streamBest != null ? streamBest.gpxNext() : last.gpxNext();
+				visited.clear();
+				streamLast = streamBest = null;
+			}
+		}
+		if (!finish) {
+			publishCommonRoute();
+			trimWindow();
+		}
+	}
+
+	private void publishRoute(RouteSegmentAppr r) {
+		if (r.parent == null) {
+			return;
+		}
+		List<RouteSegmentResult> res = collectRoute(r);
+		int gpxEnd = Math.min(r.gpxStart + r.gpxLen, gpxSize() - 1);
+		listener.routeApproximated(res, res.get(0).getGpxPointIndex(), gpxEnd);
+		// segment is new start of route, previous part could be released
+		r.parent = null;
+	}
+
+	// publishes route till common parent of all candidates which could be selected
+	private void publishCommonRoute() {
+		if (streamLast == null) {
+			return;
+		}
+		RouteSegmentAppr common = commonParent(streamLast, streamBest);
+		Iterator<RouteSegmentAppr> it = queue.iterator();
+		while (it.hasNext()) {
+			RouteSegmentAppr q = it.next();
+			if (streamBest != null && gpxDist(streamBest.gpxNext(), q.gpxNext()) > MAX_DEPTH_ROLLBACK) {
+				// never taken from queue
+				it.remove();
+			} else {
+				common = commonParent(common, q);
+			}
+		}
+		if (common != null) {
+			publishRoute(common);
+		}
+	}
+
+	private static RouteSegmentAppr commonParent(RouteSegmentAppr a, RouteSegmentAppr b) {
+		if (a == null || b == null) {
+			return a == null ? b : a;
+		}
+		while (a != b && a != null && b != null) {
+			if (a.depth >= b.depth) {
+				a = a.parent;
+			} else {
+				b = b.parent;
+			}
+		}
+		return a == b ? a : null;
+	}
+
+	private void trimWindow() {
+		int keep = streamSearchStart;
+		if (streamLast != null) {
+			RouteSegmentAppr root = streamLast;
+			while (root.parent != null) {
+				root = root.parent;
+			}
+			keep = root.gpxStart;
+		}
+		if (keep > gpxOffset) {
+			int shift = keep - gpxOffset;
+			gpxPoints.subList(0, Math.min(keep, gpxSize()) - gpxOffset).clear();
+			gpxOffset = keep;
+			// visited keep index in window, so they're rebased to new window start
+			TLongHashSet rebased = new TLongHashSet();
+			TLongIterator it = visited.iterator();
+			while (it.hasNext()) {
+				long id = it.next();
+				if ((id & ((1L << GPX_MAX) - 1)) >= shift) {
+					rebased.add(id - shift);
+				}
+			}
+			visited = rebased;
+		}
+	}
+
+	private long calculateRoutePointId(RouteSegmentAppr segm) {
 		long segId = 0;
-		if (segm.parent != null) {
+		if (!segm.startPoint) {
 			boolean positive = segm.segment.isPositive();
 			segId = (segm.segment.getRoad().getId() << ROUTE_POINTS) + (segm.segment.getSegmentStart() << 1)
 					+ (positive ? 1 : 0);
 		}
-
-		return (segId << GPX_MAX) + (segm.gpxStart + segm.gpxLen);
+		// index in window (streamed track indexes aren't limited)
+		int ind = segm.gpxStart + segm.gpxLen - gpxOffset;
+		if (ind < 0 || ind >= (1 << GPX_MAX)) {
+			throw new IllegalStateException("GPX point index is out of range " + ind);
+		}
+		return (segId << GPX_MAX) + ind;
 	}
 	
 }
@@ -13,12 +13,24 @@ import org.apache.commons.logging.Log;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class GpxRouteApproximation {
 	
 	public static final int GPX_OSM_POINTS_MATCH_ALGORITHM = 1;
 	public static final int GPX_OSM_MULTISEGMENT_SCAN_ALGORITHM = 2;
 	public static int GPX_SEGMENT_ALGORITHM = GPX_OSM_MULTISEGMENT_SCAN_ALGORITHM;
+
+	// parallel approximation: anchors are searched around chunk borders with step
+	private static final double ANCHOR_SEARCH_DIST = 1000;
+	private static final double ANCHOR_CHECK_STEP = 25;
+	private static final long CHUNK_CANCEL_CHECK_MS = 50;
 	
 	public List<RoutePlannerFrontEnd.GpxPoint> finalPoints = new ArrayList<>();
 	public List<RouteSegmentResult> fullRoute = new ArrayList<>();
@@ -47,8 +59,15 @@ public class GpxRouteApproximation {
 			List<RoutePlannerFrontEnd.GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher,
 			boolean useExternalTimestamps) throws IOException, InterruptedException {
 		this.router = router;
+		if (router.isUseHmmApproximation()) {
+			ctx.nativeLib = null; // there is no native implementation
+		}
 		GpxRouteApproximation result;
-		if (router.isUseGeometryBasedApproximation()) {
+		if (isParallelApproximation(gpxPoints)) {
+			result = searchGpxRouteParallel(this, gpxPoints);
+		} else if (router.isUseHmmApproximation()) {
+			result = searchGpxHmm(this, gpxPoints);
+		} else if (router.isUseGeometryBasedApproximation()) {
 			result = searchGpxSegments(this, gpxPoints);
 		} else {
 			result = searchGpxRouteByRouting(this, gpxPoints);
@@ -63,6 +82,19 @@ public class GpxRouteApproximation {
 		return result;
 	}
 
+	/**
+	 * Geometry based approximation of live track: points are added in batches and parts of route which can't
+	 * be changed by next points are published to listener, so only window of ambiguous points is kept in memory.
+	 */
+	public GpxMultiSegmentsApproximation searchGpxRouteStreaming(RoutePlannerFrontEnd router,
+			GpxMultiSegmentsApproximation.GpxStreamListener listener) {
+		this.router = router;
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		return new GpxMultiSegmentsApproximation(router, this, listener);
+	}
+
 	public List<RouteSegmentResult> collectFinalPointsAsRoute() {
 		List<RouteSegmentResult> route = new ArrayList<RouteSegmentResult>();
 		for (RoutePlannerFrontEnd.GpxPoint gp : finalPoints) {
@@ -176,16 +208,7 @@ public class GpxRouteApproximation {
 		if (nativeLib != null && router.isUseNativeApproximation()) {
 			gctx = nativeLib.runNativeSearchGpxRoute(gctx, gpxPoints, true);
 		} else {
-			if (gctx.ctx.calculationProgress == null) {
-				gctx.ctx.calculationProgress = new RouteCalculationProgress();
-			}
-			if (GPX_SEGMENT_ALGORITHM == GPX_OSM_POINTS_MATCH_ALGORITHM) {
-				GpxPointsMatchApproximation app = new GpxPointsMatchApproximation();
-				app.gpxApproximation(router, gctx, gpxPoints);
-			} else if (GPX_SEGMENT_ALGORITHM == GPX_OSM_MULTISEGMENT_SCAN_ALGORITHM) {
-				GpxMultiSegmentsApproximation app = new GpxMultiSegmentsApproximation(router, gctx, gpxPoints);
-				app.gpxApproximation();
-			}
+			approximateBySegments(gctx, gpxPoints);
 			calculateGpxRouteResult(gctx, gpxPoints);
 			if (!gctx.fullRoute.isEmpty() && !gctx.ctx.calculationProgress.isCancelled) {
 				RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc,
@@ -196,103 +219,419 @@ public class GpxRouteApproximation {
 		return gctx;
 	}
 
+	private GpxRouteApproximation searchGpxHmm(GpxRouteApproximation gctx, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints) throws IOException, InterruptedException {
+		new GpxHmmApproximation(router, gctx, gpxPoints).gpxApproximation();
+		calculateGpxRouteResult(gctx, gpxPoints);
+		if (!gctx.fullRoute.isEmpty() && !gctx.ctx.calculationProgress.isCancelled) {
+			RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc,
+					gpxPoints.get(gpxPoints.size() - 1).loc, gctx.fullRoute);
+			log.info(gctx);
+		}
+		return gctx;
+	}
+
+	private void approximateBySegments(GpxRouteApproximation gctx, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints) throws IOException, InterruptedException {
+		if (gctx.ctx.calculationProgress == null) {
+			gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		if (GPX_SEGMENT_ALGORITHM == GPX_OSM_POINTS_MATCH_ALGORITHM) {
+			GpxPointsMatchApproximation app = new GpxPointsMatchApproximation();
+			app.gpxApproximation(router, gctx, gpxPoints);
+		} else if (GPX_SEGMENT_ALGORITHM == GPX_OSM_MULTISEGMENT_SCAN_ALGORITHM) {
+			GpxMultiSegmentsApproximation app = new GpxMultiSegmentsApproximation(router, gctx, gpxPoints);
+			app.gpxApproximation();
+		}
+	}
+
 	private GpxRouteApproximation searchGpxRouteByRouting(GpxRouteApproximation gctx, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints) throws IOException, InterruptedException {
-		long timeToCalculate = System.nanoTime();
 		NativeLibrary nativeLib = gctx.ctx.nativeLib;
 		if (nativeLib != null && router.isUseNativeApproximation()) {
 			gctx = nativeLib.runNativeSearchGpxRoute(gctx, gpxPoints, false);
 		} else {
-			gctx.ctx.keepNativeRoutingContext = true;
-			if (gctx.ctx.calculationProgress == null) {
-				gctx.ctx.calculationProgress = new RouteCalculationProgress();
-			}
-			RoutePlannerFrontEnd.GpxPoint start = null;
-			RoutePlannerFrontEnd.GpxPoint prev = null;
-			if (gpxPoints.size() > 0) {
-				gctx.ctx.calculationProgress.totalApproximateDistance = (float) gpxPoints.get(gpxPoints.size() - 1).cumDist;
-				start = gpxPoints.get(0);
-			}
-			float minPointApproximation = gctx.ctx.config.minPointApproximation;
-			while (start != null && !gctx.ctx.calculationProgress.isCancelled) {
-				double routeDist = gctx.ctx.config.maxStepApproximation;
-				RoutePlannerFrontEnd.GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-				boolean routeFound = false;
-				if (next != null && initRoutingPoint(start, gctx, minPointApproximation)) {
-					while (routeDist >= gctx.ctx.config.minStepApproximation && !routeFound) {
-						routeFound = initRoutingPoint(next, gctx, minPointApproximation);
+			approximateByRouting(gctx, gpxPoints);
+			calculateGpxRouteResult(gctx, gpxPoints);
+			if (!gctx.fullRoute.isEmpty() && !gctx.ctx.calculationProgress.isCancelled) {
+				RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc,
+						gpxPoints.get(gpxPoints.size() - 1).loc, gctx.fullRoute);
+				log.info(gctx);
+			}
+		}
+		return gctx;
+	}
+
+	private void approximateByRouting(GpxRouteApproximation gctx, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints) throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		gctx.ctx.keepNativeRoutingContext = true;
+		if (gctx.ctx.calculationProgress == null) {
+			gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		RoutePlannerFrontEnd.GpxPoint start = null;
+		RoutePlannerFrontEnd.GpxPoint prev = null;
+		if (gpxPoints.size() > 0) {
+			gctx.ctx.calculationProgress.totalApproximateDistance = (float) gpxPoints.get(gpxPoints.size() - 1).cumDist;
+			start = gpxPoints.get(0);
+		}
+		float minPointApproximation = gctx.ctx.config.minPointApproximation;
+		while (start != null && !gctx.ctx.calculationProgress.isCancelled) {
+			double routeDist = gctx.ctx.config.maxStepApproximation;
+			RoutePlannerFrontEnd.GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+			boolean routeFound = false;
+			if (next != null && initRoutingPoint(start, gctx, minPointApproximation)) {
+				while (routeDist >= gctx.ctx.config.minStepApproximation && !routeFound) {
+					routeFound = initRoutingPoint(next, gctx, minPointApproximation);
+					if (routeFound) {
+						routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
 						if (routeFound) {
-							routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
-							if (routeFound) {
-								routeFound = isRouteCloseToGpxPoints(minPointApproximation, gpxPoints, start, next);
-								if (!routeFound) {
-									start.routeToTarget = null;
-								}
-							}
-							if (routeFound && next.ind < gpxPoints.size() - 1) {
-								// route is found - cut the end of the route and move to next iteration
-								// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
-								// boolean stepBack = true;
-								boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
-								if (!stepBack) {
-									// not supported case (workaround increase routing.xml maxStepApproximation)
-									log.info("Consider to increase routing.xml maxStepApproximation to: " + routeDist * 2);
-									start.routeToTarget = null;
-									routeFound = false;
-								} else {
-									if (gctx.ctx.getVisitor() != null) {
-										gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
-												next);
-									}
-								}
+							routeFound = isRouteCloseToGpxPoints(minPointApproximation, gpxPoints, start, next);
+							if (!routeFound) {
+								start.routeToTarget = null;
 							}
 						}
-						if (!routeFound) {
-							// route is not found move next point closer to start point (distance / 2)
-							routeDist = routeDist / 2;
-							if (routeDist < gctx.ctx.config.minStepApproximation
-									&& routeDist > gctx.ctx.config.minStepApproximation / 2 + 1) {
-								routeDist = gctx.ctx.config.minStepApproximation;
-							}
-							next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-							if (next != null) {
-								routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
+						if (routeFound && next.ind < gpxPoints.size() - 1) {
+							// route is found - cut the end of the route and move to next iteration
+							// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
+							// boolean stepBack = true;
+							boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
+							if (!stepBack) {
+								// not supported case (workaround increase routing.xml maxStepApproximation)
+								log.info("Consider to increase routing.xml maxStepApproximation to: " + routeDist * 2);
+								start.routeToTarget = null;
+								routeFound = false;
+							} else {
+								if (gctx.ctx.getVisitor() != null) {
+									gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
+											next);
+								}
 							}
 						}
 					}
-				}
-				// route is not found skip segment and keep it as straight line on display
-				if (!routeFound && next != null) {
-					// route is not found, move start point by
-					next = findNextGpxPointWithin(gpxPoints, start, gctx.ctx.config.minStepApproximation);
-					if (prev != null) {
-						prev.routeToTarget.addAll(prev.stepBackRoute);
+					if (!routeFound) {
+						// route is not found move next point closer to start point (distance / 2)
+						routeDist = routeDist / 2;
+						if (routeDist < gctx.ctx.config.minStepApproximation
+								&& routeDist > gctx.ctx.config.minStepApproximation / 2 + 1) {
+							routeDist = gctx.ctx.config.minStepApproximation;
+						}
+						next = findNextGpxPointWithin(gpxPoints, start, routeDist);
 						if (next != null) {
-							log.warn("NOT found route from: " + start.pnt.getRoad() + " at " + start.pnt.getSegmentStart());
+							routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
 						}
 					}
-					prev = null;
-				} else {
-					prev = start;
 				}
-				start = next;
-				if (gctx.ctx.calculationProgress != null && start != null) {
-					gctx.ctx.calculationProgress.approximatedDistance = (float) start.cumDist;
+			}
+			// route is not found skip segment and keep it as straight line on display
+			if (!routeFound && next != null) {
+				// route is not found, move start point by
+				next = findNextGpxPointWithin(gpxPoints, start, gctx.ctx.config.minStepApproximation);
+				if (prev != null) {
+					prev.routeToTarget.addAll(prev.stepBackRoute);
+					if (next != null) {
+						log.warn("NOT found route from: " + start.pnt.getRoad() + " at " + start.pnt.getSegmentStart());
+					}
 				}
+				prev = null;
+			} else {
+				prev = start;
 			}
-			if (gctx.ctx.calculationProgress != null) {
-				gctx.ctx.calculationProgress.timeToCalculate = System.nanoTime() - timeToCalculate;
+			start = next;
+			if (gctx.ctx.calculationProgress != null && start != null) {
+				gctx.ctx.calculationProgress.approximatedDistance = (float) start.cumDist;
 			}
-			gctx.ctx.deleteNativeRoutingContext();
-			calculateGpxRouteResult(gctx, gpxPoints);
-			if (!gctx.fullRoute.isEmpty() && !gctx.ctx.calculationProgress.isCancelled) {
-				RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc,
-						gpxPoints.get(gpxPoints.size() - 1).loc, gctx.fullRoute);
-				log.info(gctx);
+		}
+		if (gctx.ctx.calculationProgress != null) {
+			gctx.ctx.calculationProgress.timeToCalculate = System.nanoTime() - timeToCalculate;
+		}
+		gctx.ctx.deleteNativeRoutingContext();
+	}
+
+	private boolean isParallelApproximation(List<RoutePlannerFrontEnd.GpxPoint> gpxPoints) {
+		RoutingConfiguration config = ctx.config;
+		// chunks are approximated with copies of general router (other routers are not copied for threads)
+		if (config.approximationThreads <= 0 || gpxPoints.size() < 2 || ctx.getVisitor() != null
+				|| !(ctx.getRouter() instanceof GeneralRouter)
+				|| (ctx.nativeLib != null && router.isUseNativeApproximation())) {
+			return false;
+		}
+		return gpxPoints.get(gpxPoints.size() - 1).cumDist > 2 * config.approximationChunkDistance;
+	}
+
+	/**
+	 * Long track is split at points which match only one road (anchors) and chunks between anchors are
+	 * approximated in parallel threads, each with own routing context (tiles) and router copy, map readers are shared.
+	 * Route is checked to be connected at every anchor, otherwise part around anchor is approximated again.
+	 */
+	private GpxRouteApproximation searchGpxRouteParallel(GpxRouteApproximation gctx,
+			List<RoutePlannerFrontEnd.GpxPoint> gpxPoints) throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		if (gctx.ctx.calculationProgress == null) {
+			gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		RouteCalculationProgress progress = gctx.ctx.calculationProgress;
+		progress.totalApproximateDistance = (float) gpxPoints.get(gpxPoints.size() - 1).cumDist;
+		TIntArrayList anchors = findChunkAnchors(gctx, gpxPoints);
+		int chunks = anchors.size() - 1;
+		final GpxRouteApproximation[] locals = new GpxRouteApproximation[chunks];
+		List<Future<List<RoutePlannerFrontEnd.GpxPoint>>> futures = new ArrayList<>(chunks);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(chunks, gctx.ctx.config.approximationThreads));
+		try {
+			for (int i = 0; i < chunks; i++) {
+				final GpxRouteApproximation local = createChunkApproximation(gctx);
+				final GeneralRouter chunkRouter = ((GeneralRouter) gctx.ctx.getRouter()).copyForThread();
+				final List<RoutePlannerFrontEnd.GpxPoint> points = copyPoints(gpxPoints, anchors.get(i), anchors.get(i + 1));
+				locals[i] = local;
+				futures.add(executor.submit(new Callable<List<RoutePlannerFrontEnd.GpxPoint>>() {
+					@Override
+					public List<RoutePlannerFrontEnd.GpxPoint> call() throws Exception {
+						local.ctx.setThreadRouter(chunkRouter);
+						try {
+							approximatePoints(local, points);
+							return points;
+						} finally {
+							local.ctx.setThreadRouter(null);
+						}
+					}
+				}));
+			}
+			for (int i = 0; i < chunks; i++) {
+				List<RoutePlannerFrontEnd.GpxPoint> points = waitForChunk(progress, futures.get(i), locals);
+				copyResult(gctx, locals[i], points, gpxPoints, anchors.get(i));
+				locals[i].ctx.unloadAllData();
+				progress.approximatedDistance = (float) gpxPoints.get(anchors.get(i + 1)).cumDist;
 			}
+		} finally {
+			executor.shutdownNow();
+		}
+		for (int i = 1; i < chunks && !progress.isCancelled; i++) {
+			int anchor = anchors.get(i);
+			if (!isRouteConnected(gpxPoints, anchors.get(i - 1), anchor)) {
+				// approximate again sequentially part of track around anchor
+				double dist = gctx.ctx.config.maxStepApproximation;
+				int start = findRoutePointBefore(gpxPoints, anchors.get(i - 1), anchor, gpxPoints.get(anchor).cumDist - dist);
+				int end = findRoutePointAfter(gpxPoints, anchor, anchors.get(i + 1), gpxPoints.get(anchor).cumDist + dist);
+				List<RoutePlannerFrontEnd.GpxPoint> points = copyPoints(gpxPoints, start, end);
+				for (int k = start; k < end; k++) {
+					clearRoute(gpxPoints.get(k));
+				}
+				GpxRouteApproximation local = createChunkApproximation(gctx);
+				approximatePoints(local, points);
+				copyResult(gctx, local, points, gpxPoints, start);
+			}
+		}
+		progress.timeToCalculate = System.nanoTime() - timeToCalculate;
+		calculateGpxRouteResult(gctx, gpxPoints);
+		if (!gctx.fullRoute.isEmpty() && !progress.isCancelled) {
+			RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc,
+					gpxPoints.get(gpxPoints.size() - 1).loc, gctx.fullRoute);
+			log.info(String.format("%s: %d chunks", gctx, chunks));
 		}
 		return gctx;
 	}
 
+	private GpxRouteApproximation createChunkApproximation(GpxRouteApproximation gctx) {
+		GpxRouteApproximation local = new GpxRouteApproximation(new RoutingContext(gctx.ctx));
+		local.router = router;
+		local.ctx.calculationProgress = new RouteCalculationProgress();
+		return local;
+	}
+
+	private void approximatePoints(GpxRouteApproximation local, List<RoutePlannerFrontEnd.GpxPoint> points)
+			throws IOException, InterruptedException {
+		if (router.isUseHmmApproximation()) {
+			new GpxHmmApproximation(router, local, points).gpxApproximation();
+		} else if (router.isUseGeometryBasedApproximation()) {
+			approximateBySegments(local, points);
+		} else {
+			approximateByRouting(local, points);
+		}
+	}
+
+	// points of track [from, to] with local indexes, routing points of ends are kept to connect routes
+	private List<RoutePlannerFrontEnd.GpxPoint> copyPoints(List<RoutePlannerFrontEnd.GpxPoint> gpxPoints, int from, int to) {
+		List<RoutePlannerFrontEnd.GpxPoint> points = new ArrayList<>(to - from + 1);
+		for (int i = from; i <= to; i++) {
+			RoutePlannerFrontEnd.GpxPoint src = gpxPoints.get(i);
+			RoutePlannerFrontEnd.GpxPoint p = new RoutePlannerFrontEnd.GpxPoint(src);
+			p.ind = i - from;
+			p.time = src.time;
+			p.x31 = src.x31;
+			p.y31 = src.y31;
+			// geometry based approximation skips points with routing point (they are already part of the route)
+			if ((i == from || i == to) && src.pnt != null && !router.isUseGeometryBasedApproximation()) {
+				p.pnt = new BinaryRoutePlanner.RouteSegmentPoint(src.pnt);
+			}
+			points.add(p);
+		}
+		return points;
+	}
+
+	private void copyResult(GpxRouteApproximation gctx, GpxRouteApproximation local,
+			List<RoutePlannerFrontEnd.GpxPoint> points, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints, int from) {
+		for (RoutePlannerFrontEnd.GpxPoint p : points) {
+			if (p.ind == points.size() - 1 && p.routeToTarget == null) {
+				// last point is the first point of next chunk
+				continue;
+			}
+			RoutePlannerFrontEnd.GpxPoint dst = gpxPoints.get(from + p.ind);
+			dst.pnt = p.pnt;
+			dst.routeToTarget = p.routeToTarget;
+			dst.stepBackRoute = p.stepBackRoute;
+			dst.straightLine = p.straightLine;
+			dst.targetInd = p.targetInd < 0 ? -1 : p.targetInd + from;
+			if (p.routeToTarget != null) {
+				for (RouteSegmentResult r : p.routeToTarget) {
+					if (r.getGpxPointIndex() >= 0) {
+						r.setGpxPointIndex(r.getGpxPointIndex() + from);
+					}
+				}
+			}
+		}
+		gctx.routeCalculations += local.routeCalculations;
+		gctx.routeDistCalculations += local.routeDistCalculations;
+		gctx.routePointsSearched += local.routePointsSearched;
+		gctx.routeDistance = Math.max(gctx.routeDistance, local.routeDistance);
+		gctx.ctx.routingTime += local.ctx.routingTime;
+		gctx.ctx.calculationProgress.add(local.ctx.calculationProgress);
+	}
+
+	private void clearRoute(RoutePlannerFrontEnd.GpxPoint p) {
+		p.pnt = null;
+		p.routeToTarget = null;
+		p.stepBackRoute = null;
+		p.straightLine = false;
+		p.targetInd = -1;
+	}
+
+	private List<RoutePlannerFrontEnd.GpxPoint> waitForChunk(RouteCalculationProgress progress,
+			Future<List<RoutePlannerFrontEnd.GpxPoint>> chunk, GpxRouteApproximation[] locals)
+			throws IOException, InterruptedException {
+		while (true) {
+			if (progress.isCancelled) {
+				for (GpxRouteApproximation local : locals) {
+					local.ctx.calculationProgress.isCancelled = true;
+				}
+			}
+			try {
+				return chunk.get(CHUNK_CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check cancellation and wait again
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				} else if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Chunks are split near every approximationChunkDistance at points which are close to one road only,
+	 * so routes of both chunks start and end on the same road. Result contains first and last point.
+	 */
+	private TIntArrayList findChunkAnchors(GpxRouteApproximation gctx, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints)
+			throws IOException {
+		RoutingConfiguration config = gctx.ctx.config;
+		double total = gpxPoints.get(gpxPoints.size() - 1).cumDist;
+		TIntArrayList anchors = new TIntArrayList();
+		anchors.add(0);
+		int ind = 0;
+		for (double target = config.approximationChunkDistance; target < total - config.approximationChunkDistance / 2;
+				target += config.approximationChunkDistance) {
+			double checked = -1;
+			int anchor = -1;
+			while (ind < gpxPoints.size() - 1 && gpxPoints.get(ind).cumDist < target - ANCHOR_SEARCH_DIST) {
+				ind++;
+			}
+			for (; ind < gpxPoints.size() - 1 && gpxPoints.get(ind).cumDist < target + ANCHOR_SEARCH_DIST; ind++) {
+				RoutePlannerFrontEnd.GpxPoint p = gpxPoints.get(ind);
+				if (checked >= 0 && p.cumDist - checked < ANCHOR_CHECK_STEP) {
+					continue;
+				}
+				checked = p.cumDist;
+				if (isAnchorPoint(gctx, p)) {
+					anchor = ind;
+					break;
+				}
+			}
+			if (anchor > anchors.get(anchors.size() - 1)) {
+				anchors.add(anchor);
+			}
+		}
+		anchors.add(gpxPoints.size() - 1);
+		return anchors;
+	}
+
+	private boolean isAnchorPoint(GpxRouteApproximation gctx, RoutePlannerFrontEnd.GpxPoint p) throws IOException {
+		gctx.routePointsSearched++;
+		BinaryRoutePlanner.RouteSegmentPoint rsp = router.findRouteSegment(p.loc.getLatitude(), p.loc.getLongitude(),
+				gctx.ctx, null, false);
+		float minPointApproximation = gctx.ctx.config.minPointApproximation;
+		if (rsp == null || MapUtils.getDistance(rsp.getPreciseLatLon(), p.loc) > minPointApproximation / 2) {
+			return false;
+		}
+		if (rsp.others != null) {
+			for (BinaryRoutePlanner.RouteSegmentPoint o : rsp.others) {
+				// other roads include roads of near junctions
+				if (MapUtils.getDistance(o.getPreciseLatLon(), p.loc) <= minPointApproximation) {
+					return false;
+				}
+			}
+		}
+		if (!router.isUseGeometryBasedApproximation()) {
+			// same routing point is used as end of one chunk and start of next chunk
+			p.pnt = rsp;
+		}
+		return true;
+	}
+
+	// route of previous chunk ends at anchor where route of next chunk starts
+	private boolean isRouteConnected(List<RoutePlannerFrontEnd.GpxPoint> gpxPoints, int prevAnchor, int anchor) {
+		RoutePlannerFrontEnd.GpxPoint before = null;
+		for (int i = prevAnchor; i < anchor; ) {
+			RoutePlannerFrontEnd.GpxPoint p = gpxPoints.get(i);
+			if (p.routeToTarget != null && !p.routeToTarget.isEmpty()) {
+				before = p;
+				i = p.targetInd;
+			} else {
+				before = null;
+				i++;
+			}
+		}
+		RoutePlannerFrontEnd.GpxPoint after = gpxPoints.get(anchor);
+		if (before == null || before.targetInd != anchor || after.getFirstRouteRes() == null) {
+			return false;
+		}
+		return MapUtils.getDistance(before.getLastRouteRes().getEndPoint(),
+				after.getFirstRouteRes().getStartPoint()) <= RoutePlannerFrontEnd.GPS_POSSIBLE_ERROR;
+	}
+
+	// last point where route or straight line starts (between from and anchor) before distance
+	private int findRoutePointBefore(List<RoutePlannerFrontEnd.GpxPoint> gpxPoints, int from, int anchor, double cumDist) {
+		int res = from;
+		for (int i = from; i < anchor && gpxPoints.get(i).cumDist <= cumDist; ) {
+			res = i;
+			RoutePlannerFrontEnd.GpxPoint p = gpxPoints.get(i);
+			i = p.routeToTarget != null && !p.routeToTarget.isEmpty() ? p.targetInd : i + 1;
+		}
+		return res;
+	}
+
+	// first point where route or straight line starts (between anchor and to) after distance
+	private int findRoutePointAfter(List<RoutePlannerFrontEnd.GpxPoint> gpxPoints, int anchor, int to, double cumDist) {
+		int i = anchor;
+		while (i < to && gpxPoints.get(i).cumDist < cumDist) {
+			RoutePlannerFrontEnd.GpxPoint p = gpxPoints.get(i);
+			i = p.routeToTarget != null && !p.routeToTarget.isEmpty() ? p.targetInd : i + 1;
+		}
+		return Math.min(i, to);
+	}
+
 	private boolean stepBackAndFindPrevPointInRoute(GpxRouteApproximation gctx, List<RoutePlannerFrontEnd.GpxPoint> gpxPoints,
 	                                                RoutePlannerFrontEnd.GpxPoint start, RoutePlannerFrontEnd.GpxPoint next) throws IOException {
 		// step back to find to be sure
@@ -393,7 +732,7 @@ public class GpxRouteApproximation {
 			addStraightLine(gctx, lastStraightLine, straightPointStart, reg);
 			lastStraightLine = null;
 		}
-		if (router.isUseGeometryBasedApproximation()) {
+		if (router.isUseGeometryBasedApproximation() || router.isUseHmmApproximation()) {
 			new RouteResultPreparation().prepareResult(gctx.ctx, gctx.fullRoute); // routing-based already did it
 		} else {
 			cleanDoubleJoints(gctx);
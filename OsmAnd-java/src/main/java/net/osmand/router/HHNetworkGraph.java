@@ -0,0 +1,612 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeMap;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+
+/**
+ * Immutable copy of loaded HH network in primitive arrays: outgoing and incoming segments of all points are stored
+ * as compressed sparse rows. Graph doesn't keep routing state, costs corrected by detailed routing and references to
+ * network points / segments of routing context, so many threads could run searches over the same graph with own
+ * {@link Search} / {@link RouteSearch} (see {@link HHNetworkGraphCache}).
+ */
+class HHNetworkGraph {
+
+	// NetworkDBPoint.index sorted, position in array is id of point in graph
+	final int[] pointIndexes;
+	// outgoing segments of point i are offsets[i] ... offsets[i + 1] - 1
+	final int[] offsets;
+	final int[] sources;
+	final int[] targets;
+	// costs of segments when graph was built, corrections of detailed routing are kept by route search
+	// (see RouteSearch.updateCosts)
+	final float[] costs;
+	// straight distance between points (meters)
+	final float[] lengths;
+	// segment is shortcut (to find network segment of routing context, see findEdge)
+	final boolean[] shortcutEdges;
+	// incoming segments of point i are revEdges[revOffsets[i]] ... revEdges[revOffsets[i + 1] - 1]
+	final int[] revOffsets;
+	final int[] revEdges;
+	// contraction level of points (chInd, 0 - top / core), null if network has no contraction order
+	int[] chInd;
+	// segments allowed by contraction level (see isUpward): upEdges grouped by start point for search in direction
+	// of segments, downEdges grouped by end point for reverse search, segment between equal levels is in both
+	int[] upOffsets;
+	int[] upEdges;
+	int[] downOffsets;
+	int[] downEdges;
+	// points excluded by routing parameters (not reachable)
+	final boolean[] excluded;
+	// middle of point segment (31 coordinates)
+	final int[] pointX;
+	final int[] pointY;
+
+	// parameters graph was built with (to check graph could be reused)
+	final TreeMap<String, String> filterRoutingParameters;
+	final boolean shortcuts;
+
+	private HHNetworkGraph(int[] pointIndexes, int segments, TreeMap<String, String> filterRoutingParameters,
+			boolean shortcuts) {
+		this.pointIndexes = pointIndexes;
+		this.offsets = new int[pointIndexes.length + 1];
+		this.sources = new int[segments];
+		this.targets = new int[segments];
+		this.costs = new float[segments];
+		this.lengths = new float[segments];
+		this.shortcutEdges = new boolean[segments];
+		this.revOffsets = new int[pointIndexes.length + 1];
+		this.revEdges = new int[segments];
+		this.excluded = new boolean[pointIndexes.length];
+		this.pointX = new int[pointIndexes.length];
+		this.pointY = new int[pointIndexes.length];
+		this.filterRoutingParameters = filterRoutingParameters;
+		this.shortcuts = shortcuts;
+	}
+
+	/**
+	 * Outgoing segments of points should be loaded, excluded points (rtExclude) are not reachable.
+	 */
+	static <T extends NetworkDBPoint> HHNetworkGraph build(Collection<T> points,
+			TreeMap<String, String> filterRoutingParameters, boolean shortcuts) {
+		int[] indexes = new int[points.size()];
+		int i = 0;
+		int segments = 0;
+		for (T p : points) {
+			indexes[i++] = p.index;
+			if (p.connected(false) != null) {
+				segments += p.connected(false).size();
+			}
+		}
+		Arrays.sort(indexes);
+		HHNetworkGraph g = new HHNetworkGraph(indexes, segments, filterRoutingParameters, shortcuts);
+		NetworkDBPoint[] sorted = new NetworkDBPoint[indexes.length];
+		for (T p : points) {
+			sorted[g.getId(p.index)] = p;
+		}
+		int s = 0;
+		for (i = 0; i < sorted.length; i++) {
+			g.offsets[i] = s;
+			NetworkDBPoint p = sorted[i];
+			g.excluded[i] = p.rtExclude;
+			g.pointX[i] = p.midX();
+			g.pointY[i] = p.midY();
+			if (p.connected(false) == null) {
+				continue;
+			}
+			for (NetworkDBSegment c : p.connected(false)) {
+				if ((!shortcuts && c.shortcut) || c.dist < 0 || c.end.rtExclude) {
+					continue;
+				}
+				int target = g.getId(c.end.index);
+				if (target < 0) {
+					continue;
+				}
+				g.sources[s] = i;
+				g.targets[s] = target;
+				g.costs[s] = (float) c.dist;
+				g.lengths[s] = (float) HHRoutePlanner.squareRootDist31(p.midX(), p.midY(), c.end.midX(), c.end.midY());
+				g.shortcutEdges[s] = c.shortcut;
+				s++;
+			}
+		}
+		g.offsets[sorted.length] = s;
+		// incoming segments: counting sort of edges by target
+		for (int e = 0; e < s; e++) {
+			g.revOffsets[g.targets[e] + 1]++;
+		}
+		for (i = 0; i < sorted.length; i++) {
+			g.revOffsets[i + 1] += g.revOffsets[i];
+		}
+		int[] pos = Arrays.copyOf(g.revOffsets, sorted.length);
+		for (int e = 0; e < s; e++) {
+			g.revEdges[pos[g.targets[e]]++] = e;
+		}
+		if (shortcuts) {
+			g.buildHierarchy(sorted, s);
+		}
+		return g;
+	}
+
+	private void buildHierarchy(NetworkDBPoint[] sorted, int segmentsCnt) {
+		int n = sorted.length;
+		boolean contracted = false;
+		int[] levels = new int[n];
+		for (int i = 0; i < n; i++) {
+			levels[i] = sorted[i].chInd();
+			contracted |= levels[i] > 0;
+		}
+		if (!contracted) {
+			return;
+		}
+		chInd = levels;
+		upOffsets = new int[n + 1];
+		downOffsets = new int[n + 1];
+		for (int e = 0; e < segmentsCnt; e++) {
+			if (isUpward(sources[e], targets[e])) {
+				upOffsets[sources[e] + 1]++;
+			}
+			if (isUpward(targets[e], sources[e])) {
+				downOffsets[targets[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			upOffsets[i + 1] += upOffsets[i];
+			downOffsets[i + 1] += downOffsets[i];
+		}
+		upEdges = new int[upOffsets[n]];
+		downEdges = new int[downOffsets[n]];
+		int[] upPos = Arrays.copyOf(upOffsets, n);
+		int[] downPos = Arrays.copyOf(downOffsets, n);
+		for (int e = 0; e < segmentsCnt; e++) {
+			if (isUpward(sources[e], targets[e])) {
+				upEdges[upPos[sources[e]]++] = e;
+			}
+			if (isUpward(targets[e], sources[e])) {
+				downEdges[downPos[targets[e]]++] = e;
+			}
+		}
+	}
+
+	/**
+	 * Same filter as contraction hierarchy search over points (HHRoutePlanner.addConnectedToQueue): search doesn't
+	 * go only to point of lower positive level, top points (0) are reachable from all points.
+	 */
+	private boolean isUpward(int from, int to) {
+		return !(chInd[to] > 0 && chInd[to] < chInd[from]);
+	}
+
+	boolean hasHierarchy() {
+		return chInd != null;
+	}
+
+	int size() {
+		return pointIndexes.length;
+	}
+
+	/**
+	 * @return id of point in graph or -1
+	 */
+	int getId(int pointIndex) {
+		int id = Arrays.binarySearch(pointIndexes, pointIndex);
+		return id < 0 ? -1 : id;
+	}
+
+	/**
+	 * @return segment from source to target point (ids in graph) or -1 if segment isn't in graph
+	 */
+	int findEdge(int source, int target, boolean shortcut) {
+		if (source < 0 || target < 0) {
+			return -1;
+		}
+		for (int e = offsets[source]; e < offsets[source + 1]; e++) {
+			if (targets[e] == target && shortcutEdges[e] == shortcut) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	interface SettledPointListener {
+
+		void pointSettled(HHNetworkGraph graph, int point, double cost, double length);
+	}
+
+	/**
+	 * One-to-many Dijkstra (or A* with heuristic) over graph in direction of segments or reverse,
+	 * arrays are reused by next searches (search is used by one thread).
+	 */
+	static class Search {
+		final HHNetworkGraph graph;
+		final boolean reverse;
+		final double[] cost;
+		final double[] length;
+		// segment (edge) point is reached by, -1 for sources
+		final int[] parent;
+		private final boolean[] settled;
+		private final TIntArrayList touched = new TIntArrayList();
+		// binary heap with duplicates (old entries are skipped)
+		private double[] heapCost = new double[64];
+		private int[] heapPoint = new int[64];
+		private int heapSize;
+		int settledPoints;
+		// notified about every settled point in order of cost
+		SettledPointListener listener;
+		// A* heuristic: straight distance to target point * heuristicCf
+		private int targetX;
+		private int targetY;
+		private double heuristicCf;
+		// contraction hierarchy: only segments to points of higher, equal or top level are relaxed, points which are
+		// reached cheaper from higher point are stalled (their segments are not relaxed)
+		boolean ch;
+		int stalledPoints;
+		// search from other side, best point where searches meet
+		Search opposite;
+		// costs of segments corrected during route calculation (segment -> cost), null if graph costs are used
+		TIntObjectHashMap<Float> costOverrides;
+		double meetCost = Double.POSITIVE_INFINITY;
+		int meetPoint = -1;
+
+		Search(HHNetworkGraph graph) {
+			this(graph, false);
+		}
+
+		Search(HHNetworkGraph graph, boolean reverse) {
+			this.graph = graph;
+			this.reverse = reverse;
+			this.cost = new double[graph.size()];
+			this.length = new double[graph.size()];
+			this.parent = new int[graph.size()];
+			this.settled = new boolean[graph.size()];
+			Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		}
+
+		void clear() {
+			for (int i = 0; i < touched.size(); i++) {
+				int p = touched.get(i);
+				cost[p] = Double.POSITIVE_INFINITY;
+				length[p] = 0;
+				settled[p] = false;
+			}
+			touched.resetQuick();
+			heapSize = 0;
+			settledPoints = 0;
+			stalledPoints = 0;
+			heuristicCf = 0;
+			meetCost = Double.POSITIVE_INFINITY;
+			meetPoint = -1;
+		}
+
+		void setHeuristic(int x31, int y31, double cf) {
+			this.targetX = x31;
+			this.targetY = y31;
+			this.heuristicCf = cf;
+		}
+
+		double heuristic(int point) {
+			if (heuristicCf == 0) {
+				return 0;
+			}
+			return heuristicCf * HHRoutePlanner.squareRootDist31(graph.pointX[point], graph.pointY[point], targetX, targetY);
+		}
+
+		void addSource(int point, double c, double len) {
+			if (c < cost[point]) {
+				update(point, c, len, -1);
+			}
+		}
+
+		/**
+		 * Runs search from added sources until all targets are settled (null - all points) or cost exceeds maxCost.
+		 * Results are kept in cost / length arrays till {@link #clear()}.
+		 */
+		void run(boolean[] isTarget, int targetsCount, double maxCost, RouteCalculationProgress progress) {
+			int settledTargets = 0;
+			int p;
+			while ((p = poll()) >= 0) {
+				double c = cost[p];
+				if (maxCost > 0 && c > maxCost) {
+					break;
+				}
+				settle(p);
+				if (isTarget != null && isTarget[p] && ++settledTargets >= targetsCount) {
+					break;
+				}
+				if (progress != null && progress.isCancelled) {
+					break;
+				}
+				relax(p);
+			}
+		}
+
+		/**
+		 * @return smallest key (cost + heuristic) of queue or infinity if queue is empty
+		 */
+		double peekKey() {
+			while (heapSize > 0) {
+				int p = heapPoint[0];
+				if (!settled[p] && heapCost[0] <= cost[p] + heuristic(p)) {
+					return heapCost[0];
+				}
+				pop();
+			}
+			return Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * @return next point to settle or -1 if queue is empty
+		 */
+		int poll() {
+			if (peekKey() == Double.POSITIVE_INFINITY) {
+				return -1;
+			}
+			return pop();
+		}
+
+		void settle(int p) {
+			settled[p] = true;
+			settledPoints++;
+			if (listener != null) {
+				listener.pointSettled(graph, p, cost[p], length[p]);
+			}
+		}
+
+		void relax(int p) {
+			double c = cost[p];
+			if (ch) {
+				int[] offsets = reverse ? graph.downOffsets : graph.upOffsets;
+				int[] edges = reverse ? graph.downEdges : graph.upEdges;
+				for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+					int e = edges[k];
+					int t = reverse ? graph.sources[e] : graph.targets[e];
+					double nc = c + edgeCost(e);
+					if (nc < cost[t]) {
+						update(t, nc, length[p] + graph.lengths[e], e);
+					}
+				}
+			} else if (!reverse) {
+				for (int e = graph.offsets[p]; e < graph.offsets[p + 1]; e++) {
+					int t = graph.targets[e];
+					double nc = c + edgeCost(e);
+					if (nc < cost[t]) {
+						update(t, nc, length[p] + graph.lengths[e], e);
+					}
+				}
+			} else {
+				for (int k = graph.revOffsets[p]; k < graph.revOffsets[p + 1]; k++) {
+					int e = graph.revEdges[k];
+					int t = graph.sources[e];
+					double nc = c + edgeCost(e);
+					if (nc < cost[t]) {
+						update(t, nc, length[p] + graph.lengths[e], e);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Stall-on-demand: point is reached cheaper through segment from point of higher level (segment of opposite
+		 * search), its cost is not optimal and search shouldn't continue from it.
+		 */
+		boolean stalled(int p) {
+			int[] offsets = reverse ? graph.upOffsets : graph.downOffsets;
+			int[] edges = reverse ? graph.upEdges : graph.downEdges;
+			for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+				int e = edges[k];
+				int w = reverse ? graph.targets[e] : graph.sources[e];
+				if (cost[w] + edgeCost(e) < cost[p]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private double edgeCost(int e) {
+			if (costOverrides != null && !costOverrides.isEmpty()) {
+				Float c = costOverrides.get(e);
+				if (c != null) {
+					return c;
+				}
+			}
+			return graph.costs[e];
+		}
+
+		private void update(int point, double c, double len, int edge) {
+			if (cost[point] == Double.POSITIVE_INFINITY) {
+				touched.add(point);
+			}
+			cost[point] = c;
+			length[point] = len;
+			parent[point] = edge;
+			push(point, c + heuristic(point));
+			if (opposite != null && c + opposite.cost[point] < meetCost) {
+				meetCost = c + opposite.cost[point];
+				meetPoint = point;
+			}
+		}
+
+		private void push(int point, double c) {
+			if (heapSize == heapCost.length) {
+				heapCost = Arrays.copyOf(heapCost, heapSize * 2);
+				heapPoint = Arrays.copyOf(heapPoint, heapSize * 2);
+			}
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) >> 1;
+				if (heapCost[parent] <= c) {
+					break;
+				}
+				heapCost[i] = heapCost[parent];
+				heapPoint[i] = heapPoint[parent];
+				i = parent;
+			}
+			heapCost[i] = c;
+			heapPoint[i] = point;
+		}
+
+		private int pop() {
+			int res = heapPoint[0];
+			heapSize--;
+			double c = heapCost[heapSize];
+			int point = heapPoint[heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && heapCost[child + 1] < heapCost[child]) {
+					child++;
+				}
+				if (heapCost[child] >= c) {
+					break;
+				}
+				heapCost[i] = heapCost[child];
+				heapPoint[i] = heapPoint[child];
+				i = child;
+			}
+			heapCost[i] = c;
+			heapPoint[i] = point;
+			return res;
+		}
+	}
+
+	/**
+	 * Bidirectional Dijkstra / A* between start and end points (costs to reach them are added as sources).
+	 * Search stops when smallest key of one direction isn't less than best found route (A* heuristics
+	 * to start / end are admissible), with one direction only end (start) points are not expanded.
+	 * In contraction hierarchy mode both directions go only upward and stop when both smallest keys
+	 * aren't less than best route.
+	 */
+	static class RouteSearch {
+		final HHNetworkGraph graph;
+		final Search forward;
+		final Search backward;
+		// corrected costs are kept by clear() till next route (see reset)
+		final TIntObjectHashMap<Float> costOverrides = new TIntObjectHashMap<Float>();
+
+		RouteSearch(HHNetworkGraph graph) {
+			this.graph = graph;
+			forward = new Search(graph, false);
+			backward = new Search(graph, true);
+			forward.opposite = backward;
+			backward.opposite = forward;
+			forward.costOverrides = backward.costOverrides = costOverrides;
+		}
+
+		/**
+		 * Copies costs of outgoing segments of point corrected by detailed routing (disabled segments have negative
+		 * cost), they are used by next searches of the same route. Segments added after graph was built are not
+		 * taken into account.
+		 */
+		void updateCosts(NetworkDBPoint point) {
+			int id = graph.getId(point.index);
+			if (id < 0 || point.connected(false) == null) {
+				return;
+			}
+			for (NetworkDBSegment s : point.connected(false)) {
+				int e = graph.findEdge(id, graph.getId(s.end.index), s.shortcut);
+				if (e < 0) {
+					continue;
+				}
+				float c = s.dist < 0 ? Float.POSITIVE_INFINITY : (float) s.dist;
+				if (c != graph.costs[e]) {
+					costOverrides.put(e, c);
+				} else {
+					costOverrides.remove(e);
+				}
+			}
+		}
+
+		/**
+		 * Clears search and corrected costs for new route.
+		 */
+		void reset() {
+			clear();
+			costOverrides.clear();
+		}
+
+		void clear() {
+			forward.clear();
+			backward.clear();
+			forward.ch = backward.ch = false;
+		}
+
+		/**
+		 * Contraction hierarchy query (graph should have hierarchy), heuristic and direction are not used.
+		 */
+		void setHierarchy() {
+			forward.ch = backward.ch = true;
+			forward.setHeuristic(0, 0, 0);
+			backward.setHeuristic(0, 0, 0);
+		}
+
+		/**
+		 * @param cf heuristic coefficient (A* with straight distance / cf, 0 - Dijkstra)
+		 */
+		void setHeuristic(int startX, int startY, int endX, int endY, double cf) {
+			forward.setHeuristic(endX, endY, cf);
+			backward.setHeuristic(startX, startY, cf);
+		}
+
+		/**
+		 * @param direction 0 - both directions, 1 - positive, -1 - reverse
+		 * @param maxCost route cost limit (0 - unlimited)
+		 * @param maxSettlePoints points limit for every direction (<= 0 - unlimited)
+		 * @param routeCost cost of route found without network (route should be cheaper), infinity if not found
+		 * @return point where searches meet or -1 if route cheaper than routeCost is not found
+		 */
+		int run(float direction, double maxCost, int maxSettlePoints, double routeCost, RouteCalculationProgress progress) {
+			boolean ch = forward.ch;
+			if (ch) {
+				direction = 0;
+			}
+			while (true) {
+				double best = Math.min(routeCost, meetCost());
+				double fk = direction >= 0 ? forward.peekKey() : Double.POSITIVE_INFINITY;
+				double bk = direction <= 0 ? backward.peekKey() : Double.POSITIVE_INFINITY;
+				if (ch ? Math.min(fk, bk) >= best : (direction >= 0 && fk >= best) || (direction <= 0 && bk >= best)) {
+					break;
+				}
+				Search s = fk <= bk ? forward : backward;
+				if (maxCost > 0 && Math.min(fk, bk) > maxCost) {
+					break;
+				}
+				if (maxSettlePoints > 0 && s.settledPoints > maxSettlePoints) {
+					break;
+				}
+				if (progress != null && progress.isCancelled) {
+					return -1;
+				}
+				int p = s.poll();
+				s.settle(p);
+				if (ch && s.stalled(p)) {
+					s.stalledPoints++;
+				} else {
+					s.relax(p);
+				}
+			}
+			if (meetCost() >= routeCost) {
+				return -1;
+			}
+			return forward.meetCost <= backward.meetCost ? forward.meetPoint : backward.meetPoint;
+		}
+
+		double meetCost() {
+			return Math.min(forward.meetCost, backward.meetCost);
+		}
+
+		int settledPoints() {
+			return forward.settledPoints + backward.settledPoints;
+		}
+
+		int stalledPoints() {
+			return forward.stalledPoints + backward.stalledPoints;
+		}
+	}
+}
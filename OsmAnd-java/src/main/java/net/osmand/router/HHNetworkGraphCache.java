@@ -0,0 +1,68 @@
+package net.osmand.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+
+/**
+ * Network graphs ({@link HHNetworkGraph}) shared by routing contexts of many planners / threads
+ * (see {@link HHRoutingConfig#shareNetworkGraphs(HHNetworkGraphCache)}). Graph is reused by context with the same
+ * network files, routing profile, filter parameters and shortcuts, every query keeps own search state.
+ * Least recently used graphs are released when number of graphs exceeds limit.
+ */
+public class HHNetworkGraphCache {
+
+	public static final int DEFAULT_MAX_GRAPHS = 4;
+
+	private final int maxGraphs;
+	private final LinkedHashMap<String, HHNetworkGraph> graphs = new LinkedHashMap<String, HHNetworkGraph>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, HHNetworkGraph> eldest) {
+			return size() > maxGraphs;
+		}
+	};
+
+	public HHNetworkGraphCache() {
+		this(DEFAULT_MAX_GRAPHS);
+	}
+
+	public HHNetworkGraphCache(int maxGraphs) {
+		this.maxGraphs = maxGraphs;
+	}
+
+	synchronized HHNetworkGraph get(String key) {
+		return graphs.get(key);
+	}
+
+	synchronized void put(String key, HHNetworkGraph graph) {
+		graphs.put(key, graph);
+	}
+
+	public synchronized int size() {
+		return graphs.size();
+	}
+
+	public synchronized void clear() {
+		graphs.clear();
+	}
+
+	static String getKey(HHRoutingContext<?> hctx, boolean shortcuts) {
+		StringBuilder key = new StringBuilder();
+		for (HHRouteRegionPointsCtx<?> r : hctx.regions) {
+			if (r.file != null) {
+				key.append(r.file.getFile().getAbsolutePath()).append('@').append(r.fileRegion.getFilePointer());
+			} else if (r.networkDB != null) {
+				key.append(r.networkDB.getFile().getAbsolutePath());
+			}
+			key.append(':').append(r.getRoutingProfile()).append(';');
+		}
+		key.append(hctx.filterRoutingParameters).append(shortcuts ? " shortcuts" : "");
+		return key.toString();
+	}
+}
@@ -4,7 +4,6 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -36,6 +35,8 @@ public class HHRouteDataStructure {
 		float HEURISTIC_COEFFICIENT = 0; // A* - 1, Dijkstra - 0
 		float DIJKSTRA_DIRECTION = 0; // 0 - 2 directions, 1 - positive, -1 - reverse
 		public HHRoutingContext<NetworkDBPoint> cacheCtx;
+		// network graphs shared with other planners (null - graph is kept by context)
+		HHNetworkGraphCache sharedNetworkGraphs;
 		
 		// tweaks for route recalculations
 		int FULL_DIJKSTRA_NETWORK_RECALC = 10;
@@ -49,6 +50,8 @@ public class HHRouteDataStructure {
 		boolean ROUTE_ALL_SEGMENTS = false;
 		boolean ROUTE_ALL_ALT_SEGMENTS = false;
 		boolean PRELOAD_SEGMENTS = false;
+		// all segments are loaded at start and routing runs over network arrays (HHNetworkGraph)
+		boolean PRELOAD_NETWORK_GRAPH = false;
 		
 		boolean CACHE_CALCULATION_CONTEXT = false;
 		boolean CALC_ALTERNATIVES = false;
@@ -70,6 +73,8 @@ public class HHRouteDataStructure {
 		int MIDPOINT_ERROR = 3;
 		int MIDPOINT_MAX_DEPTH = 20 + MIDPOINT_ERROR;
 		
+		int MATRIX_THREADS = 0; // 0 - number of processors
+		
 		public static HHRoutingConfig dijkstra(int direction) {
 			HHRoutingConfig df = new HHRoutingConfig();
 			df.HEURISTIC_COEFFICIENT = 0;
@@ -106,6 +111,17 @@ public class HHRouteDataStructure {
 			return this;
 		}
 		
+		public HHRoutingConfig preloadNetworkGraph() {
+			this.PRELOAD_SEGMENTS = true;
+			this.PRELOAD_NETWORK_GRAPH = true;
+			return this;
+		}
+		
+		public HHRoutingConfig shareNetworkGraphs(HHNetworkGraphCache cache) {
+			this.sharedNetworkGraphs = cache;
+			return this;
+		}
+		
 		public HHRoutingConfig cacheContext(HHRoutingContext<NetworkDBPoint> toCache) {
 			this.CACHE_CALCULATION_CONTEXT = true;
 			this.cacheCtx = toCache;
@@ -145,6 +161,11 @@ public class HHRouteDataStructure {
 			return this;
 		}
 		
+		public HHRoutingConfig matrixThreads(int threads) {
+			MATRIX_THREADS = threads;
+			return this;
+		}
+		
 		public HHRoutingConfig maxSettlePoints(int maxPoints) {
 			MAX_SETTLE_POINTS = maxPoints;
 			return this;
@@ -221,6 +242,9 @@ public class HHRouteDataStructure {
 		DataTileManager<T> pointsRect = new DataTileManager<>(11); // 20km tile
 		TLongObjectHashMap<RouteSegment> boundaries;
 		boolean initialized = false;
+		// network in arrays for matrix calculation (built on demand) and route search over it
+		HHNetworkGraph networkGraph;
+		HHNetworkGraph.RouteSearch networkGraphSearch;
 		
 		// Route specific details
 		RoutingStats stats = new RoutingStats();
@@ -357,11 +381,18 @@ public class HHRouteDataStructure {
 			return points;
 		}
 
-		public int loadNetworkSegments(Collection<T> valueCollection) throws SQLException {
+		public int loadNetworkSegments() throws SQLException, IOException {
 			int loaded = 0;
 			for (HHRouteRegionPointsCtx<T> r : regions) {
 				if (r.networkDB != null) {
-					loaded += r.networkDB.loadNetworkSegments(valueCollection, r.routingProfile);
+					loaded += r.networkDB.loadAllNetworkSegments(this, r);
+				} else if (r.file != null) {
+					// file segments are read by blocks of points, so every block is read once
+					for (T p : pointsById.valueCollection()) {
+						if (p.mapId == r.id) {
+							loaded += r.file.loadNetworkSegmentPoint(this, r, p, false);
+						}
+					}
 				} else {
 					throw new UnsupportedOperationException();
 				}
@@ -375,7 +406,7 @@ public class HHRouteDataStructure {
 			}
 			for (HHRouteRegionPointsCtx<T> r : regions) {
 				if (r.networkDB != null && !r.networkDB.compactDB) {
-					if (r.networkDB.loadGeometry(segment, r.routingProfile, reload)) {
+					if (r.networkDB.loadGeometry(segment, r.routingProfile, reload, stats)) {
 						return true;
 					}
 				}
@@ -383,6 +414,32 @@ public class HHRouteDataStructure {
 			return false;
 		}
 
+		/**
+		 * Loads geometries of segments which are not loaded yet with bulk queries.
+		 */
+		public void loadGeometry(List<NetworkDBSegment> segments) throws SQLException {
+			List<NetworkDBSegment> toLoad = new ArrayList<>();
+			for (NetworkDBSegment s : segments) {
+				if (s.getGeometry().isEmpty()) {
+					toLoad.add(s);
+				}
+			}
+			for (HHRouteRegionPointsCtx<T> r : regions) {
+				if (toLoad.isEmpty()) {
+					break;
+				}
+				if (r.networkDB != null && !r.networkDB.compactDB) {
+					r.networkDB.loadGeometry(toLoad, r.routingProfile, stats);
+					Iterator<NetworkDBSegment> it = toLoad.iterator();
+					while (it.hasNext()) {
+						if (!it.next().getGeometry().isEmpty()) {
+							it.remove();
+						}
+					}
+				}
+			}
+		}
+
 		public int loadNetworkSegmentPoint(T point, boolean reverse) throws SQLException, IOException {
 			short mapId = point.mapId;
 			HHRouteRegionPointsCtx<T> r = regions.get(mapId);
@@ -415,12 +472,17 @@ public class HHRouteDataStructure {
 		}
 		
 		public double distanceToEnd(boolean reverse,  NetworkDBPoint nextPoint) {
-			if (config.HEURISTIC_COEFFICIENT > 0) {
+			return distanceToEnd(reverse, nextPoint, config.HEURISTIC_COEFFICIENT);
+		}
+
+		// coefficient is passed by caller as config could be shared with other calculations
+		public double distanceToEnd(boolean reverse,  NetworkDBPoint nextPoint, float heuristicCoefficient) {
+			if (heuristicCoefficient > 0) {
 				double distanceToEnd = nextPoint.rt(reverse).rtDistanceToEnd;
 				if (distanceToEnd == 0) {
 					double dist = HHRoutePlanner.squareRootDist31(reverse ? startX : endX, reverse ? startY : endY, 
 							nextPoint.midX(), nextPoint.midY());
-					distanceToEnd = config.HEURISTIC_COEFFICIENT * dist / rctx.getRouter().getMaxSpeed();
+					distanceToEnd = heuristicCoefficient * dist / rctx.getRouter().getMaxSpeed();
 					nextPoint.setDistanceToEnd(reverse, distanceToEnd);
 				}
 				return distanceToEnd;
@@ -446,6 +508,10 @@ public class HHRouteDataStructure {
 		int visitedVertices = 0;
 		int uniqueVisitedVertices = 0;
 		int addedVertices = 0;
+		int stalledVertices = 0;
+		// queries to network db and their time (ms)
+		int sqlQueries = 0;
+		double sqlTime = 0;
 
 		double loadPointsTime = 0;
 		int loadEdgesCnt;
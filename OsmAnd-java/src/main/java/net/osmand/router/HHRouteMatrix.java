@@ -0,0 +1,72 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
+
+/**
+ * Costs (seconds) and distances (meters) between origins and destinations calculated
+ * by {@link HHRoutePlanner#runMatrix}. Values are stored by rows of origins, unreachable pairs have infinite cost.
+ */
+public class HHRouteMatrix {
+
+	public final int origins;
+	public final int destinations;
+	public final float[] costs;
+	public final float[] distances;
+	// calculated only with detailed routes (null otherwise)
+	public HHNetworkRouteRes[] routes;
+	public String error;
+
+	// statistics
+	public int settledPoints;
+	public double accessPointsTime;
+	public double networkTime;
+	public double detailedTime;
+
+	public HHRouteMatrix(int origins, int destinations) {
+		this.origins = origins;
+		this.destinations = destinations;
+		this.costs = new float[origins * destinations];
+		this.distances = new float[origins * destinations];
+		Arrays.fill(costs, Float.POSITIVE_INFINITY);
+	}
+
+	public HHRouteMatrix(String error) {
+		this(0, 0);
+		this.error = error;
+	}
+
+	public float getCost(int origin, int destination) {
+		return costs[origin * destinations + destination];
+	}
+
+	public float getDistance(int origin, int destination) {
+		return distances[origin * destinations + destination];
+	}
+
+	public boolean isReachable(int origin, int destination) {
+		return getCost(origin, destination) != Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Cost table for TSP solvers (TspAnt, TspHeldKarp), unreachable pairs get cost bigger than any tour.
+	 */
+	public double[][] getCostTable() {
+		double max = 0;
+		for (float c : costs) {
+			if (c != Float.POSITIVE_INFINITY) {
+				max += c;
+			}
+		}
+		double unreachable = Math.rint(max) + 1;
+		double[][] table = new double[origins][destinations];
+		for (int i = 0; i < origins; i++) {
+			for (int j = 0; j < destinations; j++) {
+				float c = getCost(i, j);
+				table[i][j] = c == Float.POSITIVE_INFINITY ? unreachable : c;
+			}
+		}
+		return table;
+	}
+}
@@ -15,6 +15,11 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TLongObjectMap;
@@ -180,6 +185,13 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		progress.hhIteration(HHIteration.START_END_POINT);
 		findFirstLastSegments(hctx, start, end, stPoints, endPoints, progress);
 
+		HHNetworkGraph graph = null;
+		HHNetworkGraph.RouteSearch graphSearch = null;
+		if (hctx.config.PRELOAD_NETWORK_GRAPH) {
+			// contraction hierarchy query runs over network arrays only if they're preloaded (segments are loaded lazily otherwise)
+			graph = getNetworkGraph(hctx);
+			graphSearch = getNetworkGraphSearch(hctx, graph);
+		}
 		RouteResultPreparation rrp = new RouteResultPreparation();
 		HHNetworkRouteRes route = null;
 		boolean recalc = false;
@@ -195,8 +207,13 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 			}
 			printf((!recalc || DEBUG_VERBOSE_LEVEL > 0) && SL > 0, " Routing...");
 			long time = System.nanoTime();
-			NetworkDBPoint finalPnt = runRoutingPointsToPoints(hctx, stPoints, endPoints);
-			if (finalPnt == null) {
+			if (graph != null) {
+				route = runRoutingOverGraph(hctx, graph, graphSearch, stPoints, endPoints);
+			} else {
+				NetworkDBPoint finalPnt = runRoutingPointsToPoints(hctx, stPoints, endPoints);
+				route = finalPnt == null ? null : createRouteSegmentFromFinalPoint(hctx, finalPnt);
+			}
+			if (route == null) {
 				printf(SL > 0, " finalPnt is null (stop)\n");
 				return new HHNetworkRouteRes("No finalPnt found (points might be filtered by params)");
 			}
@@ -204,7 +221,6 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 			if (progress.isCancelled) {
 				return cancelledStatus();
 			}
-			route = createRouteSegmentFromFinalPoint(hctx, finalPnt);
 			time = (System.nanoTime() - time) ;
 			printf((!recalc || DEBUG_VERBOSE_LEVEL > 0) && SL > 0,"%d segments, cost %.2f, %.2f ms\n", route.segments.size(), route.getHHRoutingTime(), time / 1e6);
 			hctx.stats.routingTime += time / 1e6;
@@ -224,6 +240,13 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 					printf(SL > 0, "Too many recalculations (stop)\n");
 					return new HHNetworkRouteRes("Too many recalculations (outdated maps or unsupported parameters).");
 				}
+				if (graphSearch != null) {
+					for (HHNetworkSegmentRes s : route.segments) {
+						if (s.segment != null) {
+							graphSearch.updateCosts(s.segment.start);
+						}
+					}
+				}
 				hctx.clearVisited(stPoints, endPoints);
 				route = null;
 			}
@@ -285,15 +308,420 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		printGCInformation(false);
 		hctx.clearAll(stPoints, endPoints);
 		printf(SL >= 0,
-				"Routing %.1f ms: load/filter points %.1f ms, last mile %.1f ms, routing %.1f ms (queue  - %.1f ms, %.1f ms - %,d edges), prep result %.1f ms - %s (selected %s)\n",
+				"Routing %.1f ms: load/filter points %.1f ms, last mile %.1f ms, routing %.1f ms (queue  - %.1f ms, %.1f ms - %,d edges), sql %,d queries %.1f ms, prep result %.1f ms - %s (selected %s)\n",
 				(System.nanoTime() - startTime) / 1e6, 
 				hctx.stats.loadPointsTime, hctx.stats.searchPointsTime,
 				hctx.stats.routingTime, hctx.stats.addQueueTime + hctx.stats.pollQueueTime,
-				hctx.stats.loadEdgesTime, hctx.stats.loadEdgesCnt, hctx.stats.prepTime,
+				hctx.stats.loadEdgesTime, hctx.stats.loadEdgesCnt, hctx.stats.sqlQueries, hctx.stats.sqlTime, hctx.stats.prepTime,
 				hctx.config.toString(start, end), hctx.getRoutingInfo());
 		return route;
 	}
 
+	private static class MatrixPoints {
+		final int[] ids;
+		final double[] costs;
+		final double[] lengths;
+
+		MatrixPoints(int size) {
+			ids = new int[size];
+			costs = new double[size];
+			lengths = new double[size];
+		}
+	}
+
+	/**
+	 * Calculates costs between all origins and destinations. Network points around every origin / destination are
+	 * found once, then one-to-many Dijkstra runs for every origin over network arrays (built once per context)
+	 * in parallel threads. Routes which don't pass network points (destination is inside cluster of origin) are
+	 * found by detailed routing from origin as short routes of {@link #runRouting}. Distances are approximate
+	 * (straight lines between network points), unless detailed routes are calculated for every pair.
+	 */
+	@SuppressWarnings("unchecked")
+	public HHRouteMatrix runMatrix(List<LatLon> origins, List<LatLon> destinations, HHRoutingConfig config,
+			boolean detailedRoutes) throws SQLException, IOException, InterruptedException {
+		RouteCalculationProgress progress = currentCtx.rctx.calculationProgress;
+		if (config.cacheCtx != null && config.cacheCtx.rctx == currentCtx.rctx) {
+			currentCtx = (HHRoutingContext<T>) config.cacheCtx;
+		}
+		config = prepareDefaultRoutingConfig(config);
+		HHRouteMatrix matrix = new HHRouteMatrix(origins.size(), destinations.size());
+		if (origins.isEmpty() || destinations.isEmpty()) {
+			return matrix;
+		}
+		// select files by bbox of all points
+		QuadRect bbox = null;
+		for (LatLon l : origins) {
+			bbox = extendBbox(bbox, l);
+		}
+		for (LatLon l : destinations) {
+			bbox = extendBbox(bbox, l);
+		}
+		List<MatrixPoints> access = new ArrayList<>();
+		List<MatrixPoints> egress = new ArrayList<>();
+		HHRoutingContext<T> hctx = initHCtx(config, new LatLon(bbox.top, bbox.left),
+				new LatLon(bbox.bottom, bbox.right));
+		if (hctx == null) {
+			return new HHRouteMatrix("Files for hh routing were not initialized. Matrix couldn't be calculated.");
+		}
+		if (config.CACHE_CALCULATION_CONTEXT) {
+			config.cacheCtx = (HHRoutingContext<NetworkDBPoint>) hctx;
+		}
+		filterPointsBasedOnConfiguration(hctx);
+		HHNetworkGraph graph = getNetworkGraph(hctx);
+
+		progress.hhIteration(HHIteration.START_END_POINT);
+		long accessTime = System.nanoTime();
+		List<RouteSegmentPoint> ends = new ArrayList<>();
+		for (LatLon d : destinations) {
+			RouteSegmentPoint s = findMatrixSegment(hctx, d);
+			ends.add(s);
+			egress.add(findMatrixPoints(hctx, graph, d, s, true));
+		}
+		List<double[]> shortRoutes = new ArrayList<>();
+		for (LatLon o : origins) {
+			RouteSegmentPoint s = findMatrixSegment(hctx, o);
+			access.add(findMatrixPoints(hctx, graph, o, s, false));
+			shortRoutes.add(findShortRoutes(hctx, s, ends, destinations));
+		}
+		matrix.accessPointsTime = (System.nanoTime() - accessTime) / 1e6;
+		if (progress.isCancelled) {
+			return new HHRouteMatrix(cancelledStatus().error);
+		}
+
+		progress.hhIteration(HHIteration.ROUTING);
+		long time = System.nanoTime();
+		runMatrixSearch(graph, access, egress, matrix, config, progress);
+		matrix.networkTime = (System.nanoTime() - time) / 1e6;
+		if (progress.isCancelled) {
+			return new HHRouteMatrix(cancelledStatus().error);
+		}
+		for (int i = 0; i < origins.size(); i++) {
+			for (int j = 0; j < destinations.size(); j++) {
+				int k = i * matrix.destinations + j;
+				if (origins.get(i).equals(destinations.get(j))) {
+					matrix.costs[k] = 0;
+					matrix.distances[k] = 0;
+				} else if (shortRoutes.get(i)[j] < matrix.costs[k]) {
+					matrix.costs[k] = (float) shortRoutes.get(i)[j];
+					matrix.distances[k] = (float) MapUtils.getDistance(origins.get(i), destinations.get(j));
+				}
+			}
+		}
+
+		if (detailedRoutes) {
+			progress.hhIteration(HHIteration.DETAILED);
+			time = System.nanoTime();
+			matrix.routes = new HHNetworkRouteRes[origins.size() * destinations.size()];
+			for (int i = 0; i < origins.size(); i++) {
+				for (int j = 0; j < destinations.size(); j++) {
+					if (origins.get(i).equals(destinations.get(j))) {
+						continue;
+					}
+					HHNetworkRouteRes r = runRouting(origins.get(i), destinations.get(j), config);
+					if (progress.isCancelled) {
+						return new HHRouteMatrix(cancelledStatus().error);
+					}
+					int k = i * matrix.destinations + j;
+					matrix.routes[k] = r;
+					if (r != null && r.error == null) {
+						float dist = 0;
+						for (RouteSegmentResult s : r.detailed) {
+							dist += s.getDistance();
+						}
+						matrix.costs[k] = (float) r.getHHRoutingDetailed();
+						matrix.distances[k] = dist;
+					}
+				}
+			}
+			matrix.detailedTime = (System.nanoTime() - time) / 1e6;
+		}
+		printf(HHRoutingConfig.STATS_VERBOSE_LEVEL >= 0,
+				"Matrix %d x %d: access points %.1f ms, network %.1f ms (%,d settled points), detailed %.1f ms\n",
+				origins.size(), destinations.size(), matrix.accessPointsTime, matrix.networkTime, matrix.settledPoints,
+				matrix.detailedTime);
+		return matrix;
+	}
+
+	private static QuadRect extendBbox(QuadRect bbox, LatLon l) {
+		if (bbox == null) {
+			return new QuadRect(l.getLongitude(), l.getLatitude(), l.getLongitude(), l.getLatitude());
+		}
+		bbox.left = Math.min(bbox.left, l.getLongitude());
+		bbox.right = Math.max(bbox.right, l.getLongitude());
+		bbox.top = Math.max(bbox.top, l.getLatitude());
+		bbox.bottom = Math.min(bbox.bottom, l.getLatitude());
+		return bbox;
+	}
+
+	private HHNetworkGraph getNetworkGraph(HHRoutingContext<T> hctx) throws SQLException, IOException {
+		boolean shortcuts = hctx.config.USE_CH_SHORTCUTS;
+		HHNetworkGraph g = hctx.networkGraph;
+		if (g != null && g.shortcuts == shortcuts && g.filterRoutingParameters.equals(hctx.filterRoutingParameters)) {
+			return g;
+		}
+		printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, " Build network arrays...");
+		long time = System.nanoTime();
+		int cnt = 0;
+		// segments of context are needed to prepare route results even if graph is shared
+		for (T p : hctx.pointsById.valueCollection()) {
+			cnt += hctx.loadNetworkSegmentPoint(p, false);
+		}
+		hctx.stats.loadEdgesCnt += cnt;
+		hctx.stats.loadEdgesTime += (System.nanoTime() - time) / 1e6;
+		HHNetworkGraphCache cache = hctx.config.sharedNetworkGraphs;
+		String key = cache == null ? null : HHNetworkGraphCache.getKey(hctx, shortcuts);
+		g = cache == null ? null : cache.get(key);
+		if (g == null) {
+			g = HHNetworkGraph.build(hctx.pointsById.valueCollection(), hctx.filterRoutingParameters, shortcuts);
+			if (cache != null) {
+				cache.put(key, g);
+			}
+		}
+		hctx.networkGraph = g;
+		printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, " %,d points, %,d segments - %.2f ms\n", g.size(),
+				g.targets.length, (System.nanoTime() - time) / 1e6);
+		return g;
+	}
+
+	// search arrays are reused by next routes of context (context is used by one thread)
+	private HHNetworkGraph.RouteSearch getNetworkGraphSearch(HHRoutingContext<T> hctx, HHNetworkGraph graph) {
+		HHNetworkGraph.RouteSearch search = hctx.networkGraphSearch;
+		if (search == null || search.graph != graph) {
+			search = new HHNetworkGraph.RouteSearch(graph);
+			hctx.networkGraphSearch = search;
+		}
+		search.reset();
+		return search;
+	}
+
+	private RouteSegmentPoint findMatrixSegment(HHRoutingContext<T> hctx, LatLon l) throws IOException, InterruptedException {
+		if (!hctx.config.ROUTE_LAST_MILE) {
+			return null;
+		}
+		return new RoutePlannerFrontEnd().findRouteSegment(l.getLatitude(), l.getLongitude(), hctx.rctx, null);
+	}
+
+	private MatrixPoints findMatrixPoints(HHRoutingContext<T> hctx, HHNetworkGraph graph, LatLon l,
+			RouteSegmentPoint s, boolean reverse) throws IOException, InterruptedException {
+		TLongObjectHashMap<T> pnts = new TLongObjectHashMap<>();
+		hctx.setStartEnd(l, l);
+		if (s != null || !hctx.config.ROUTE_LAST_MILE) {
+			// costs to network points without heuristic
+			initStart(hctx, s, reverse, pnts, 0);
+		}
+		MatrixPoints res = new MatrixPoints(pnts.size());
+		int size = 0;
+		for (T p : pnts.valueCollection()) {
+			int id = graph.getId(p.index);
+			if (p.index == PNT_SHORT_ROUTE_START_END || id < 0 || graph.excluded[id]) {
+				continue;
+			}
+			res.ids[size] = id;
+			res.costs[size] = p.rt(reverse).rtDistanceFromStart;
+			res.lengths[size] = MapUtils.getDistance(l, p.getPoint());
+			size++;
+		}
+		hctx.clearAll(pnts, null);
+		if (size < res.ids.length) {
+			MatrixPoints r = new MatrixPoints(size);
+			System.arraycopy(res.ids, 0, r.ids, 0, size);
+			System.arraycopy(res.costs, 0, r.costs, 0, size);
+			System.arraycopy(res.lengths, 0, r.lengths, 0, size);
+			res = r;
+		}
+		return res;
+	}
+
+	/**
+	 * Costs from origin to destinations reached by detailed routing before network points (as short route of
+	 * {@link #initStart}), destinations are boundaries of search as network points. Other destinations have
+	 * infinite cost.
+	 */
+	private double[] findShortRoutes(HHRoutingContext<T> hctx, RouteSegmentPoint s, List<RouteSegmentPoint> ends,
+			List<LatLon> destinations) throws IOException, InterruptedException {
+		double[] costs = new double[ends.size()];
+		Arrays.fill(costs, Double.POSITIVE_INFINITY);
+		if (s == null) {
+			return costs;
+		}
+		TLongObjectHashMap<TIntArrayList> endIds = new TLongObjectHashMap<>();
+		for (int j = 0; j < ends.size(); j++) {
+			RouteSegmentPoint e = ends.get(j);
+			if (e == null) {
+				continue;
+			}
+			long[] ids = { calcRPId(e, e.getSegmentStart(), e.getSegmentEnd()),
+					calcRPId(e, e.getSegmentEnd(), e.getSegmentStart()) };
+			for (long id : ids) {
+				if (!endIds.containsKey(id)) {
+					if (hctx.boundaries.containsKey(id)) {
+						// segment of network point, route is found over network
+						continue;
+					}
+					endIds.put(id, new TIntArrayList());
+				}
+				endIds.get(id).add(j);
+			}
+		}
+		if (endIds.isEmpty()) {
+			return costs;
+		}
+		int savedMaxVisited = hctx.rctx.config.MAX_VISITED;
+		int savedPlanRoadDirectrion = hctx.rctx.config.planRoadDirection;
+		float savedHeuristicCoefficient = hctx.rctx.config.heuristicCoefficient;
+		hctx.rctx.config.MAX_VISITED = MAX_POINTS_CLUSTER_ROUTING;
+		hctx.rctx.config.planRoadDirection = 1;
+		hctx.rctx.config.heuristicCoefficient = 0; // dijkstra
+		for (long id : endIds.keys()) {
+			hctx.boundaries.put(id, null);
+		}
+		BinaryRoutePlanner planner = new BinaryRoutePlanner();
+		MultiFinalRouteSegment frs;
+		try {
+			hctx.rctx.unloadAllData(); // needed for proper multidijsktra work
+			frs = (MultiFinalRouteSegment) planner.searchRouteInternal(hctx.rctx, s, null, hctx.boundaries);
+		} finally {
+			for (long id : endIds.keys()) {
+				hctx.boundaries.remove(id);
+			}
+			hctx.rctx.config.heuristicCoefficient = savedHeuristicCoefficient;
+			hctx.rctx.config.planRoadDirection = savedPlanRoadDirectrion;
+			hctx.rctx.config.MAX_VISITED = savedMaxVisited;
+		}
+		if (frs == null) {
+			return costs;
+		}
+		for (FinalRouteSegment o : frs.all) {
+			TIntArrayList js = endIds.get(calculateRoutePointInternalId(o.getRoad().getId(), o.getSegmentStart(),
+					o.getSegmentEnd()));
+			if (js == null) {
+				continue;
+			}
+			for (int k = 0; k < js.size(); k++) {
+				LatLon d = destinations.get(js.get(k));
+				double cost = o.distanceFromStart + planner.calculatePreciseStartTime(hctx.rctx,
+						MapUtils.get31TileNumberX(d.getLongitude()), MapUtils.get31TileNumberY(d.getLatitude()), o);
+				costs[js.get(k)] = Math.min(costs[js.get(k)], cost);
+			}
+		}
+		return costs;
+	}
+
+	private void runMatrixSearch(final HHNetworkGraph graph, final List<MatrixPoints> access,
+			final List<MatrixPoints> egress, final HHRouteMatrix matrix, HHRoutingConfig config,
+			final RouteCalculationProgress progress) throws InterruptedException {
+		final boolean[] isTarget = new boolean[graph.size()];
+		int targets = 0;
+		for (MatrixPoints e : egress) {
+			for (int id : e.ids) {
+				if (!isTarget[id]) {
+					isTarget[id] = true;
+					targets++;
+				}
+			}
+		}
+		final int targetsCount = targets;
+		final double maxCost = config.MAX_COST;
+		final AtomicInteger nextOrigin = new AtomicInteger();
+		final AtomicInteger settledPoints = new AtomicInteger();
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				HHNetworkGraph.Search search = new HHNetworkGraph.Search(graph);
+				int o;
+				while ((o = nextOrigin.getAndIncrement()) < access.size() && !progress.isCancelled) {
+					search.clear();
+					MatrixPoints a = access.get(o);
+					for (int k = 0; k < a.ids.length; k++) {
+						search.addSource(a.ids[k], a.costs[k], a.lengths[k]);
+					}
+					search.run(isTarget, targetsCount, maxCost, progress);
+					settledPoints.addAndGet(search.settledPoints);
+					for (int d = 0; d < egress.size(); d++) {
+						MatrixPoints e = egress.get(d);
+						double best = Double.POSITIVE_INFINITY;
+						double length = 0;
+						for (int k = 0; k < e.ids.length; k++) {
+							double c = search.cost[e.ids[k]] + e.costs[k];
+							if (c < best) {
+								best = c;
+								length = search.length[e.ids[k]] + e.lengths[k];
+							}
+						}
+						if (maxCost > 0 && best > maxCost) {
+							best = Double.POSITIVE_INFINITY;
+						}
+						int ind = o * matrix.destinations + d;
+						matrix.costs[ind] = (float) best;
+						matrix.distances[ind] = best == Double.POSITIVE_INFINITY ? 0 : (float) length;
+					}
+				}
+			}
+		};
+		int threads = config.MATRIX_THREADS > 0 ? config.MATRIX_THREADS : Runtime.getRuntime().availableProcessors();
+		threads = Math.max(1, Math.min(threads, access.size()));
+		// current thread is one of search threads
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads - 1) : null;
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 1; i < threads; i++) {
+				futures.add(executor.submit(task));
+			}
+			task.run();
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+		matrix.settledPoints = settledPoints.get();
+	}
+
+	/**
+	 * Reachable area over network: network points around start are found with detailed routing, then one-to-all
+	 * Dijkstra runs over network arrays till maxCost (seconds) and reports reached points in order of cost.
+	 * @return number of reached network points or -1 if files for hh routing are not available
+	 */
+	@SuppressWarnings("unchecked")
+	int runReachability(LatLon start, double maxCost, HHRoutingConfig config,
+			HHNetworkGraph.SettledPointListener listener) throws SQLException, IOException, InterruptedException {
+		RouteCalculationProgress progress = currentCtx.rctx.calculationProgress;
+		if (config.cacheCtx != null && config.cacheCtx.rctx == currentCtx.rctx) {
+			currentCtx = (HHRoutingContext<T>) config.cacheCtx;
+		}
+		config = prepareDefaultRoutingConfig(config);
+		// select files by area which could be reached with max speed
+		double radius = Math.min(maxCost * currentCtx.rctx.getRouter().getMaxSpeed(), 2e6);
+		QuadRect bbox = MapUtils.calculateLatLonBbox(start.getLatitude(), start.getLongitude(), (int) radius);
+		HHRoutingContext<T> hctx = initHCtx(config, new LatLon(bbox.top, bbox.left),
+				new LatLon(bbox.bottom, bbox.right));
+		if (hctx == null) {
+			return -1;
+		}
+		if (config.CACHE_CALCULATION_CONTEXT) {
+			config.cacheCtx = (HHRoutingContext<NetworkDBPoint>) hctx;
+		}
+		filterPointsBasedOnConfiguration(hctx);
+		HHNetworkGraph graph = getNetworkGraph(hctx);
+		progress.hhIteration(HHIteration.START_END_POINT);
+		MatrixPoints access = findMatrixPoints(hctx, graph, start, findMatrixSegment(hctx, start), false);
+		if (progress.isCancelled) {
+			return 0;
+		}
+		progress.hhIteration(HHIteration.ROUTING);
+		HHNetworkGraph.Search search = new HHNetworkGraph.Search(graph);
+		search.listener = listener;
+		for (int k = 0; k < access.ids.length; k++) {
+			search.addSource(access.ids[k], access.costs[k], access.lengths[k]);
+		}
+		search.run(null, 0, maxCost, progress);
+		return search.settledPoints;
+	}
+
 	public static TreeMap<String, String> getFilteredTags(GeneralRouter generalRouter) {
 		Map<String, RoutingParameter> parameters = generalRouter.getParameters();
 		TreeMap<String, String> tm = new TreeMap<String, String>();
@@ -421,7 +849,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 			hctx.boundaries.put(calcRPId(endP, endP.getSegmentEnd(), endP.getSegmentStart()), null);
 			hctx.boundaries.put(calcRPId(endP, endP.getSegmentStart(), endP.getSegmentEnd()), null);
 			progress.hhIterationProgress(0.50); // %
-			initStart(hctx, startP, false, stPoints);
+			initStart(hctx, startP, false, stPoints, hctx.config.HEURISTIC_COEFFICIENT);
 			hctx.rctx.config.initialDirection = prev;
 			if (stPoints.isEmpty()) {
 				printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, "   Reiterate with next start point: " + startP + "\n");
@@ -436,7 +864,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 				endPoints.put(PNT_SHORT_ROUTE_START_END, stPoints.get(PNT_SHORT_ROUTE_START_END));
 			}
 			progress.hhIterationProgress(0.75); // %
-			initStart(hctx, endP, true, endPoints);
+			initStart(hctx, endP, true, endPoints, hctx.config.HEURISTIC_COEFFICIENT);
 			if (endPoints.isEmpty()) {
 				printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, "   Reiterate with next end point: " + endP + "\n");
 				endReiterate++;
@@ -629,17 +1057,8 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		hctx.pointsById = hctx.loadNetworkPoints(pointClass);
 		hctx.boundaries = new TLongObjectHashMap<RouteSegment>();
 		hctx.pointsByGeo = new TLongObjectHashMap<T>();
-		if (c.PRELOAD_SEGMENTS) {
-			time = System.nanoTime();
-			printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, "Loading segments...");
-			int cntEdges = hctx.loadNetworkSegments(hctx.pointsById.valueCollection());
-			hctx.stats.loadEdgesTime = (System.nanoTime() - time) / 1e6;
-			printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, " %,d - %.2fms\n", cntEdges, hctx.stats.loadEdgesTime);
-			hctx.stats.loadEdgesCnt = cntEdges;
-		} else {
-			for (NetworkDBPoint p : hctx.pointsById.valueCollection()) {
-				p.markSegmentsNotLoaded();
-			}
+		for (NetworkDBPoint p : hctx.pointsById.valueCollection()) {
+			p.markSegmentsNotLoaded();
 		}
 		hctx.clusterOutPoints = groupByClusters(hctx.pointsById, true);
 		hctx.clusterInPoints  = groupByClusters(hctx.pointsById, false);
@@ -657,9 +1076,18 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		if (DEBUG_VERBOSE_LEVEL > 0) {
 			hctx.pointsRect.printStatsDistribution("  Points distributed");
 		}
-		hctx.initialized = true;
 		hctx.stats.loadPointsTime = (System.nanoTime() - time) / 1e6;
 		printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, " %,d - %.2fms\n", hctx.pointsById.size(), hctx.stats.loadPointsTime);
+		if (c.PRELOAD_SEGMENTS) {
+			// points should be grouped by clusters and file ids to parse segments
+			time = System.nanoTime();
+			printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, "Loading segments...");
+			int cntEdges = hctx.loadNetworkSegments();
+			hctx.stats.loadEdgesTime = (System.nanoTime() - time) / 1e6;
+			printf(HHRoutingConfig.STATS_VERBOSE_LEVEL > 0, " %,d - %.2fms\n", cntEdges, hctx.stats.loadEdgesTime);
+			hctx.stats.loadEdgesCnt = cntEdges;
+		}
+		hctx.initialized = true;
 		return hctx;
 	}
 
@@ -828,7 +1256,8 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 	}
 	
 	@SuppressWarnings("unchecked")
-	private TLongObjectHashMap<T> initStart(HHRoutingContext<T> hctx, RouteSegmentPoint s, boolean reverse, TLongObjectHashMap<T> pnts) throws IOException, InterruptedException {
+	private TLongObjectHashMap<T> initStart(HHRoutingContext<T> hctx, RouteSegmentPoint s, boolean reverse, TLongObjectHashMap<T> pnts,
+			float heuristicCoefficient) throws IOException, InterruptedException {
 		if (!hctx.config.ROUTE_LAST_MILE) {
 			// simple method to calculate without detailed maps
 			double startLat = MapUtils.get31LatitudeY(!reverse? hctx.startY : hctx.endY);
@@ -846,7 +1275,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 					}
 					T pnt  = reverse ? (T) pSelect.dualPoint : pSelect;
 					double cost = MapUtils.getDistance(pnt.getPoint(), startLat, startLon) / spd;
-					pnt.setCostParentRt(reverse, cost + hctx.distanceToEnd(reverse, pnt), null, cost);
+					pnt.setCostParentRt(reverse, cost + hctx.distanceToEnd(reverse, pnt, heuristicCoefficient), null, cost);
 					pnts.put(pnt.index, pnt);
 				}
 			}
@@ -869,12 +1298,12 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 					negCost += hctx.rctx.config.penaltyForReverseDirection;
 				}
 			}
-			finitePnt.setDistanceToEnd(reverse, hctx.distanceToEnd(reverse, finitePnt));
+			finitePnt.setDistanceToEnd(reverse, hctx.distanceToEnd(reverse, finitePnt, heuristicCoefficient));
 			finitePnt.setCostParentRt(reverse, plusCost, null, plusCost);
 			pnts.put(finitePnt.index, finitePnt);
 
 			T dualPoint = (T) finitePnt.dualPoint;
-			dualPoint.setDistanceToEnd(reverse, hctx.distanceToEnd(reverse, dualPoint));
+			dualPoint.setDistanceToEnd(reverse, hctx.distanceToEnd(reverse, dualPoint, heuristicCoefficient));
 			dualPoint.setCostParentRt(reverse, negCost, null, negCost);
 			pnts.put(dualPoint.index, dualPoint);
 
@@ -932,7 +1361,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 					if (pnt.rt(reverse).rtCost != 0) {
 						throw new IllegalStateException();
 					}
-					pnt.setDistanceToEnd(reverse, hctx.distanceToEnd(reverse, pnt));
+					pnt.setDistanceToEnd(reverse, hctx.distanceToEnd(reverse, pnt, heuristicCoefficient));
 					pnt.setDetailedParentRt(reverse, o);
 					pnts.put(pnt.index, pnt);
 				}
@@ -1224,6 +1653,16 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 	
 	private boolean retrieveSegmentsGeometry(HHRoutingContext<T> hctx, RouteResultPreparation rrp, HHNetworkRouteRes route,
 			boolean routeSegments, RouteCalculationProgress progress) throws SQLException, InterruptedException, IOException {
+		if (!routeSegments) {
+			// geometries of all segments with few queries, not found are loaded (or replaced) one by one
+			List<NetworkDBSegment> segments = new ArrayList<>();
+			for (HHNetworkSegmentRes s : route.segments) {
+				if (s.segment != null) {
+					segments.add(s.segment);
+				}
+			}
+			hctx.loadGeometry(segments);
+		}
 		for (int i = 0; i < route.segments.size(); i++) {
 			progress.hhIterationProgress((double) i / route.segments.size());
 
@@ -1434,6 +1873,97 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 
 	}
 
+	/**
+	 * Runs bidirectional search over network arrays, routing state is kept in arrays of route search of context
+	 * (points keep only costs and detailed routes of start / end points). With USE_CH search goes only upward
+	 * by contraction level as search over points, if network has it. Search keeps costs corrected by previous iterations of route.
+	 */
+	private HHNetworkRouteRes runRoutingOverGraph(HHRoutingContext<T> hctx, HHNetworkGraph graph,
+			HHNetworkGraph.RouteSearch search, TLongObjectHashMap<T> stPoints, TLongObjectHashMap<T> endPoints) {
+		search.clear();
+		if (hctx.config.USE_CH && graph.hasHierarchy()) {
+			search.setHierarchy();
+		} else {
+			search.setHeuristic(hctx.startX, hctx.startY, hctx.endX, hctx.endY,
+					hctx.config.HEURISTIC_COEFFICIENT / hctx.rctx.getRouter().getMaxSpeed());
+		}
+		for (T start : stPoints.valueCollection()) {
+			int id = graph.getId(start.index);
+			if (id >= 0 && !start.rtExclude && !graph.excluded[id]) {
+				search.forward.addSource(id, start.rt(false).rtDistanceFromStart, 0);
+			}
+		}
+		for (T end : endPoints.valueCollection()) {
+			int id = graph.getId(end.index);
+			if (id >= 0 && !end.rtExclude && !graph.excluded[id]) {
+				search.backward.addSource(id, end.rt(true).rtDistanceFromStart, 0);
+			}
+		}
+		T shortRoute = stPoints.get(PNT_SHORT_ROUTE_START_END);
+		double shortRouteCost = shortRoute == null ? Double.POSITIVE_INFINITY
+				: shortRoute.rt(false).rtDistanceFromStart + shortRoute.rt(true).rtDistanceFromStart;
+		RouteCalculationProgress progress = hctx.rctx.calculationProgress;
+		int meetPnt = search.run(hctx.config.DIJKSTRA_DIRECTION, hctx.config.MAX_COST, hctx.config.MAX_SETTLE_POINTS,
+				shortRouteCost, progress);
+		hctx.stats.visitedVertices += search.settledPoints();
+		hctx.stats.uniqueVisitedVertices += search.settledPoints();
+		hctx.stats.stalledVertices += search.stalledPoints();
+		if (meetPnt < 0) {
+			if (shortRoute == null || (progress != null && progress.isCancelled)) {
+				return null;
+			}
+			return createRouteSegmentFromFinalPoint(hctx, shortRoute);
+		}
+		HHNetworkRouteRes route = new HHNetworkRouteRes();
+		int p = meetPnt;
+		route.uniquePoints.add(graph.pointIndexes[p]);
+		while (search.backward.parent[p] >= 0) {
+			int e = search.backward.parent[p];
+			addNetworkSegment(route, getGraphSegment(hctx, graph, e));
+			p = graph.targets[e];
+			route.uniquePoints.add(graph.pointIndexes[p]);
+		}
+		addDetailedSegment(hctx, route, endPoints.get(graph.pointIndexes[p]).rt(true).rtDetailedRoute);
+		Collections.reverse(route.segments);
+		p = meetPnt;
+		while (search.forward.parent[p] >= 0) {
+			int e = search.forward.parent[p];
+			addNetworkSegment(route, getGraphSegment(hctx, graph, e));
+			p = graph.sources[e];
+			route.uniquePoints.add(graph.pointIndexes[p]);
+		}
+		addDetailedSegment(hctx, route, stPoints.get(graph.pointIndexes[p]).rt(false).rtDetailedRoute);
+		Collections.reverse(route.segments);
+		return route;
+	}
+
+	// network segment of context for segment of graph (graph could be shared by contexts)
+	private NetworkDBSegment getGraphSegment(HHRoutingContext<T> hctx, HHNetworkGraph graph, int e) {
+		T start = hctx.pointsById.get(graph.pointIndexes[graph.sources[e]]);
+		int end = graph.pointIndexes[graph.targets[e]];
+		for (NetworkDBSegment s : start.connected(false)) {
+			if (s.end.index == end && s.shortcut == graph.shortcutEdges[e]) {
+				return s;
+			}
+		}
+		throw new IllegalStateException("Network segment is not loaded " + start + " -> " + end);
+	}
+
+	private void addNetworkSegment(HHNetworkRouteRes route, NetworkDBSegment segment) {
+		HHNetworkSegmentRes res = new HHNetworkSegmentRes(segment);
+		res.rtTimeDetailed = res.rtTimeHHSegments = segment.dist;
+		route.segments.add(res);
+	}
+
+	private void addDetailedSegment(HHRoutingContext<T> hctx, HHNetworkRouteRes route, FinalRouteSegment detailed) {
+		if (detailed != null) {
+			HHNetworkSegmentRes res = new HHNetworkSegmentRes(null);
+			res.list = new RouteResultPreparation().convertFinalSegmentToResults(hctx.rctx, detailed);
+			res.rtTimeDetailed = res.rtTimeHHSegments = detailed.distanceFromStart;
+			route.segments.add(res);
+		}
+	}
+
 	/// Utilities
 	static final int ROUTE_POINTS = 11;
 	public static RouteSegmentPoint loadPoint(RoutingContext ctx, NetworkDBPoint pnt) {
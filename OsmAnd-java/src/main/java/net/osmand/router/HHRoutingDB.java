@@ -15,6 +15,7 @@ import java.util.List;
 import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
 import net.osmand.data.LatLon;
 import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
@@ -22,6 +23,7 @@ import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
 import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
 import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
 import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+import net.osmand.router.HHRouteDataStructure.RoutingStats;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 
@@ -39,6 +41,10 @@ public class HHRoutingDB {
 	protected PreparedStatement loadSegmentStart;
 
 	protected final int BATCH_SIZE = 10000;
+	// max points to load segments with 1 query
+	protected static final int SEGMENTS_BATCH_SIZE = 256;
+	// max segments to load geometry with 1 query
+	protected static final int GEOMETRY_BATCH_SIZE = 256;
 	protected int batchInsPoint = 0;
 
 	protected String routingProfile = "";
@@ -192,11 +198,128 @@ public class HHRoutingDB {
 	
 	
 	public boolean loadGeometry(NetworkDBSegment segment, int profile, boolean reload) throws SQLException {
+		return loadGeometry(segment, profile, reload, null);
+	}
+
+	public boolean loadGeometry(NetworkDBSegment segment, int profile, boolean reload, RoutingStats stats) throws SQLException {
+		long time = System.nanoTime();
 		List<LatLon> geometry = segment.getGeometry();
 		geometry.clear();
-		geometry.addAll(parseGeometry(segment.start.index, segment.end.index, profile, segment.shortcut));
+		geometry.addAll(parseGeometry(segment.start.index, segment.end.index, profile, segment.shortcut, stats));
+		if (stats != null) {
+			stats.sqlTime += (System.nanoTime() - time) / 1e6;
+		}
 		return !geometry.isEmpty();
 	}
+
+	/**
+	 * Loads geometries of all segments (and base segments of shortcuts) with queries by batches of segments
+	 * (start and end points). Segments which geometry is not found keep empty geometry.
+	 * @return number of segments with loaded geometry
+	 */
+	public int loadGeometry(Collection<NetworkDBSegment> segments, int profile, RoutingStats stats) throws SQLException {
+		long time = System.nanoTime();
+		TLongObjectHashMap<byte[]> baseGeometries = new TLongObjectHashMap<>();
+		TLongObjectHashMap<byte[]> shortcutGeometries = new TLongObjectHashMap<>();
+		TLongHashSet pendingBase = new TLongHashSet();
+		TLongHashSet pendingShortcuts = new TLongHashSet();
+		for (NetworkDBSegment s : segments) {
+			(s.shortcut ? pendingShortcuts : pendingBase).add(geometryKey(s.start.index, s.end.index));
+		}
+		TLongHashSet requested = new TLongHashSet(pendingBase);
+		Statement st = conn.createStatement();
+		while (!pendingBase.isEmpty() || !pendingShortcuts.isEmpty()) {
+			TLongHashSet keys = new TLongHashSet(pendingBase);
+			keys.addAll(pendingShortcuts);
+			long[] arr = keys.toArray();
+			TLongHashSet nextBase = new TLongHashSet();
+			for (int i = 0; i < arr.length; i += GEOMETRY_BATCH_SIZE) {
+				ResultSet rs = st.executeQuery("SELECT idPoint, idConnPoint, geometry, shortcut FROM geometry WHERE profile = "
+						+ profile + " AND (" + toSqlSegments(arr, i, Math.min(arr.length, i + GEOMETRY_BATCH_SIZE)) + ")");
+				if (stats != null) {
+					stats.sqlQueries++;
+				}
+				while (rs.next()) {
+					long key = geometryKey(rs.getInt(1), rs.getInt(2));
+					boolean shortcut = rs.getShort(4) > 0;
+					if (!(shortcut ? pendingShortcuts : pendingBase).contains(key)) {
+						continue;
+					}
+					byte[] geom = rs.getBytes(3);
+					(shortcut ? shortcutGeometries : baseGeometries).put(key, geom);
+					if (isShortcutGeometry(geom)) {
+						for (int k = 8; k < geom.length; k += 8) {
+							long base = geometryKey(Algorithms.parseIntFromBytes(geom, k), Algorithms.parseIntFromBytes(geom, k + 4));
+							if (requested.add(base)) {
+								nextBase.add(base);
+							}
+						}
+					}
+				}
+				rs.close();
+			}
+			pendingBase = nextBase;
+			pendingShortcuts.clear();
+		}
+		st.close();
+		int loaded = 0;
+		for (NetworkDBSegment s : segments) {
+			long key = geometryKey(s.start.index, s.end.index);
+			List<LatLon> geometry = s.getGeometry();
+			geometry.clear();
+			addGeometry((s.shortcut ? shortcutGeometries : baseGeometries).get(key), baseGeometries, geometry);
+			if (!geometry.isEmpty()) {
+				loaded++;
+			}
+		}
+		if (stats != null) {
+			stats.sqlTime += (System.nanoTime() - time) / 1e6;
+		}
+		return loaded;
+	}
+
+	// condition by (idPoint, idConnPoint) pairs to use geometryMainInd
+	private static String toSqlSegments(long[] keys, int from, int to) {
+		StringBuilder b = new StringBuilder();
+		for (int i = from; i < to; i++) {
+			if (b.length() > 0) {
+				b.append(" OR ");
+			}
+			b.append("(idPoint = ").append((int) (keys[i] >> 32)).append(" AND idConnPoint = ").append((int) keys[i]).append(')');
+		}
+		return b.toString();
+	}
+
+	private static long geometryKey(int start, int end) {
+		return ((long) start << 32) | (end & 0xffffffffL);
+	}
+
+	private static boolean isShortcutGeometry(byte[] geom) {
+		return geom.length > 8 && Algorithms.parseIntFromBytes(geom, 0) == XY_SHORTCUT_GEOM
+				&& Algorithms.parseIntFromBytes(geom, 4) == XY_SHORTCUT_GEOM;
+	}
+
+	private static void addGeometry(byte[] geom, TLongObjectHashMap<byte[]> baseGeometries, List<LatLon> l) {
+		if (geom == null) {
+			return;
+		}
+		if (isShortcutGeometry(geom)) {
+			for (int k = 8; k < geom.length; k += 8) {
+				long base = geometryKey(Algorithms.parseIntFromBytes(geom, k), Algorithms.parseIntFromBytes(geom, k + 4));
+				addGeometry(baseGeometries.get(base), baseGeometries, l);
+			}
+		} else {
+			addGeometryPoints(geom, l);
+		}
+	}
+
+	private static void addGeometryPoints(byte[] geom, List<LatLon> l) {
+		for (int k = 0; k < geom.length; k += 8) {
+			int x = Algorithms.parseIntFromBytes(geom, k);
+			int y = Algorithms.parseIntFromBytes(geom, k + 4);
+			l.add(new LatLon(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x)));
+		}
+	}
 	
 	public void loadSegmentPointInternal(int id, int profile, byte[][] res) throws SQLException {
 		loadSegmentStart.setInt(1, id);
@@ -229,6 +352,81 @@ public class HHRoutingDB {
 		if (point.connected(reverse) != null) {
 			return 0;
 		}
+		long time = System.nanoTime();
+		List<T> batch = getSegmentsBatch(ctx, point, reverse);
+		int loaded = batch.size() > 1 ? loadNetworkSegmentPoints(ctx, reg, batch, reverse)
+				: loadNetworkSegmentPointInternal(ctx, reg, point, reverse);
+		if (ctx.stats != null) {
+			ctx.stats.sqlQueries++;
+			ctx.stats.sqlTime += (System.nanoTime() - time) / 1e6;
+		}
+		return loaded;
+	}
+
+	// points of cluster are targets of the same segments, so search usually reaches them together
+	private <T extends NetworkDBPoint> List<T> getSegmentsBatch(HHRoutingContext<T> ctx, T point, boolean reverse) {
+		List<T> batch = new ArrayList<>();
+		batch.add(point);
+		List<T> cluster = ctx.clusterOutPoints == null ? null : ctx.clusterOutPoints.get(point.clusterId);
+		if (cluster != null) {
+			for (T p : cluster) {
+				if (batch.size() >= SEGMENTS_BATCH_SIZE) {
+					break;
+				}
+				if (p != point && p.mapId == point.mapId && p.connected(reverse) == null) {
+					batch.add(p);
+				}
+			}
+		}
+		return batch;
+	}
+
+	private <T extends NetworkDBPoint> int loadNetworkSegmentPoints(HHRoutingContext<T> ctx, HHRouteRegionPointsCtx<T> reg,
+			List<T> points, boolean reverse) throws SQLException {
+		StringBuilder ids = new StringBuilder();
+		for (T p : points) {
+			if (ids.length() > 0) {
+				ids.append(',');
+			}
+			ids.append(p.index);
+			// points without rows don't have segments
+			p.connectedSet(reverse, new ArrayList<NetworkDBSegment>());
+			if (compactDB) {
+				p.connectedSet(!reverse, new ArrayList<NetworkDBSegment>());
+			}
+		}
+		int loadedSegs = 0;
+		Statement st = conn.createStatement();
+		if (compactDB) {
+			ResultSet rs = st.executeQuery("SELECT id, ins, outs from segments where profile = " + reg.routingProfile
+					+ " and id in (" + ids + ")");
+			while (rs.next()) {
+				T point = ctx.pointsById.get(rs.getLong(1));
+				if (point != null) {
+					HHRouteDataStructure.setSegments(ctx, point, rs.getBytes(2), rs.getBytes(3));
+					loadedSegs += point.connected(true).size() + point.connected(false).size();
+				}
+			}
+			rs.close();
+		} else {
+			ResultSet rs = st.executeQuery("SELECT idPoint, idConnPoint, dist, shortcut from segments where profile = "
+					+ reg.routingProfile + " and " + (reverse ? "idConnPoint" : "idPoint") + " in (" + ids + ")");
+			while (rs.next()) {
+				loadedSegs++;
+				NetworkDBPoint start = ctx.pointsById.get(rs.getLong(1));
+				NetworkDBPoint end = ctx.pointsById.get(rs.getLong(2));
+				double dist = rs.getDouble(3);
+				boolean shortcut = rs.getInt(4) > 0;
+				NetworkDBSegment rev = new NetworkDBSegment(start, end, dist, !reverse, shortcut);
+				(reverse ? end : start).connected(reverse).add(rev);
+			}
+			rs.close();
+		}
+		st.close();
+		return loadedSegs;
+	}
+
+	private <T extends NetworkDBPoint> int loadNetworkSegmentPointInternal(HHRoutingContext<T>  ctx, HHRouteRegionPointsCtx<T> reg, T point, boolean reverse) throws SQLException {
 		int loadedSegs = 0;
 		if (compactDB) {
 			loadSegmentStart.setInt(1, point.index);
@@ -297,33 +495,67 @@ public class HHRoutingDB {
 		return x;
 	}
 
-	private List<LatLon> parseGeometry(int start, int end, int profile, boolean shortcut) throws SQLException {
+	/**
+	 * Loads segments of all points of region with 1 query (instead of statement per point).
+	 */
+	public <T extends NetworkDBPoint> int loadAllNetworkSegments(HHRoutingContext<T> ctx, HHRouteRegionPointsCtx<T> reg) throws SQLException {
+		long time = System.nanoTime();
+		List<T> points = new ArrayList<>();
+		for (T p : ctx.pointsById.valueCollection()) {
+			if (p.mapId == reg.id) {
+				points.add(p);
+				p.connectedSet(true, new ArrayList<NetworkDBSegment>());
+				p.connectedSet(false, new ArrayList<NetworkDBSegment>());
+			}
+		}
+		int loaded = 0;
+		if (!compactDB) {
+			loaded = loadNetworkSegments(points, reg.routingProfile);
+		} else {
+			Statement st = conn.createStatement();
+			ResultSet rs = st.executeQuery("SELECT id, ins, outs from segments where profile = " + reg.routingProfile);
+			while (rs.next()) {
+				T point = ctx.pointsById.get(rs.getLong(1));
+				if (point == null || point.mapId != reg.id) {
+					continue;
+				}
+				HHRouteDataStructure.setSegments(ctx, point, rs.getBytes(2), rs.getBytes(3));
+				loaded += point.connected(true).size() + point.connected(false).size();
+			}
+			rs.close();
+			st.close();
+		}
+		if (ctx.stats != null) {
+			ctx.stats.sqlQueries++;
+			ctx.stats.sqlTime += (System.nanoTime() - time) / 1e6;
+		}
+		return loaded;
+	}
+
+	private List<LatLon> parseGeometry(int start, int end, int profile, boolean shortcut, RoutingStats stats) throws SQLException {
 		List<LatLon> l = new ArrayList<LatLon>();
 		loadGeometry.setLong(1, start);
 		loadGeometry.setLong(2, end);
 		loadGeometry.setInt(3, profile);
 		int shortcutN = shortcut ? 1 : 0;
 		ResultSet rs = loadGeometry.executeQuery();
+		if (stats != null) {
+			stats.sqlQueries++;
+		}
 		while (rs.next()) {
 			if (shortcutN != rs.getShort(2)) {
 				continue;
 			}
 			byte[] geom = rs.getBytes(1);
-			if (geom.length > 8 &&
-					Algorithms.parseIntFromBytes(geom, 0) == XY_SHORTCUT_GEOM && 
-					Algorithms.parseIntFromBytes(geom, 4) == XY_SHORTCUT_GEOM) {
+			if (isShortcutGeometry(geom)) {
 				for (int k = 8; k < geom.length; k += 8) {
 					int st = Algorithms.parseIntFromBytes(geom, k);
 					int en = Algorithms.parseIntFromBytes(geom, k + 4);
-					List<LatLon> gg = parseGeometry(st, en, profile, false);
+					List<LatLon> gg = parseGeometry(st, en, profile, false, stats);
 					l.addAll(gg);
 				}
 			} else {
-				for (int k = 0; k < geom.length; k += 8) {
-					int x = Algorithms.parseIntFromBytes(geom, k);
-					int y = Algorithms.parseIntFromBytes(geom, k + 4);
-					l.add(new LatLon(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x)));
-				}
+				addGeometryPoints(geom, l);
 			}
 		}
 		if (l.isEmpty()) {
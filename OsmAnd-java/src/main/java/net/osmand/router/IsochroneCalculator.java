@@ -0,0 +1,293 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentVisitor;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.util.MapUtils;
+
+/**
+ * Calculates area reachable from start point within time (seconds) or distance (meters) budgets.
+ * One search runs with the largest budget and every reached part is assigned to the smallest band containing it,
+ * so map tiles are loaded once for all bands. Short ranges are calculated by detailed routing (dijkstra limited by cost),
+ * longer time ranges continue over hh network points if hh files are available (otherwise the whole budget is
+ * calculated by detailed routing).
+ * Reached parts are streamed to listener and only convex hull of every band is kept in memory.
+ */
+public class IsochroneCalculator {
+
+	// band points are compacted to convex hull when buffer exceeds this size
+	private static final int HULL_BUFFER = 2048;
+	// constant speed (m/s) of router for distance budgets, so cost is equal to distance
+	private static final String DISTANCE_SPEED = "1";
+
+	// time (seconds) calculated by detailed routing, longer ranges are calculated over hh network
+	private float detailedTimeLimit = 20 * 60;
+	private HHRoutingConfig hhConfig;
+
+	public interface IsochroneListener {
+
+		// road part (startPoint -> endPoint) is reached with cost (at endPoint), band is index of smallest budget containing it
+		void roadReached(RouteDataObject road, int startPoint, int endPoint, float cost, int band);
+
+		// network point is reached with cost (time ranges longer than detailed limit)
+		void pointReached(int x31, int y31, float cost, int band);
+	}
+
+	public static class IsochroneBand {
+		public final float budget;
+		// convex hull of everything reached within budget (smaller bands included)
+		public List<LatLon> hull = Collections.emptyList();
+		public int roadParts;
+		public int networkPoints;
+
+		private final TIntArrayList xs = new TIntArrayList();
+		private final TIntArrayList ys = new TIntArrayList();
+		private int hullSize;
+
+		public IsochroneBand(float budget) {
+			this.budget = budget;
+		}
+
+		private void addPoint(int x31, int y31) {
+			xs.add(x31);
+			ys.add(y31);
+			if (xs.size() - hullSize > HULL_BUFFER) {
+				compact();
+			}
+		}
+
+		private void compact() {
+			int[] hx = xs.toArray();
+			int[] hy = ys.toArray();
+			hullSize = convexHull(hx, hy);
+			xs.resetQuick();
+			ys.resetQuick();
+			xs.add(hx, 0, hullSize);
+			ys.add(hy, 0, hullSize);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Band %.0f: %d road parts, %d network points, hull %d points", budget, roadParts,
+					networkPoints, hull.size());
+		}
+	}
+
+	public IsochroneCalculator setDetailedTimeLimit(float detailedTimeLimit) {
+		this.detailedTimeLimit = detailedTimeLimit;
+		return this;
+	}
+
+	public IsochroneCalculator setHHConfig(HHRoutingConfig hhConfig) {
+		this.hhConfig = hhConfig;
+		return this;
+	}
+
+	/**
+	 * @param budgets time (seconds) or distance (meters) of every band
+	 * @param distanceBudget budgets are distances, they're always calculated by detailed routing with constant speed
+	 * @param listener could be null
+	 * @return bands sorted by budget or empty list if start point is not found
+	 */
+	public List<IsochroneBand> calculate(RoutingContext ctx, LatLon start, float[] budgets, boolean distanceBudget,
+			final IsochroneListener listener) throws IOException, InterruptedException {
+		float[] sorted = Arrays.copyOf(budgets, budgets.length);
+		Arrays.sort(sorted);
+		final List<IsochroneBand> bands = new ArrayList<>();
+		for (float b : sorted) {
+			bands.add(new IsochroneBand(b));
+		}
+		if (bands.isEmpty()) {
+			return bands;
+		}
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		float maxBudget = sorted[sorted.length - 1];
+		boolean network = !distanceBudget && maxBudget > detailedTimeLimit && ctx.getRouter() instanceof GeneralRouter;
+		float detailedLimit = network ? detailedTimeLimit : maxBudget;
+		if (!calculateDetailed(ctx, start, bands, -1, detailedLimit, distanceBudget, listener)) {
+			return Collections.emptyList();
+		}
+		if (network && !ctx.calculationProgress.isCancelled && !calculateNetwork(ctx, start, bands, maxBudget, listener)) {
+			// hh files are not available, parts reached within detailed limit are already reported
+			calculateDetailed(ctx, start, bands, detailedLimit, maxBudget, distanceBudget, listener);
+		}
+		for (int i = 0; i < bands.size(); i++) {
+			IsochroneBand b = bands.get(i);
+			if (i > 0) {
+				// hull of band contains hull of smaller band
+				IsochroneBand prev = bands.get(i - 1);
+				b.xs.add(prev.xs.toArray());
+				b.ys.add(prev.ys.toArray());
+			}
+			b.compact();
+			List<LatLon> hull = new ArrayList<>();
+			for (int k = 0; k < b.xs.size(); k++) {
+				hull.add(new LatLon(MapUtils.get31LatitudeY(b.ys.get(k)), MapUtils.get31LongitudeX(b.xs.get(k))));
+			}
+			b.hull = hull;
+		}
+		return bands;
+	}
+
+	/**
+	 * Dijkstra by detailed routing till maxCost, road parts reached with cost greater than minCost are added to bands.
+	 * @return false if start point is not found
+	 */
+	private boolean calculateDetailed(RoutingContext ctx, LatLon start, final List<IsochroneBand> bands,
+			final float minCost, final float maxCost, boolean distanceBudget, final IsochroneListener listener)
+			throws IOException, InterruptedException {
+		// copy of config as search parameters are changed for dijkstra (config could be used by other calculations)
+		RoutingConfiguration config = ctx.config.copy();
+		config.planRoadDirection = 1;
+		config.heuristicCoefficient = 0; // dijkstra
+		RoutingContext local = new RoutingContext(ctx, config);
+		if (distanceBudget) {
+			if (!(ctx.getRouter() instanceof GeneralRouter)) {
+				throw new IllegalArgumentException("Distance budget requires general router");
+			}
+			GeneralRouter router = (GeneralRouter) ctx.getRouter();
+			Map<String, String> params = new LinkedHashMap<>(router.getParameterValues());
+			params.put(GeneralRouter.USE_SHORTEST_WAY, "true");
+			params.put(GeneralRouter.MIN_SPEED, DISTANCE_SPEED);
+			params.put(GeneralRouter.MAX_SPEED, DISTANCE_SPEED);
+			local.setThreadRouter(router.build(params));
+		}
+		try {
+			RouteSegmentPoint s = new RoutePlannerFrontEnd().findRouteSegment(start.getLatitude(), start.getLongitude(),
+					local, null);
+			if (s == null) {
+				return false;
+			}
+			local.visitor = new RouteSegmentVisitor() {
+
+				@Override
+				public void visitSegment(RouteSegment segment, int segmentEnd, boolean poll) {
+					// cost of reached part is at its end (segment is already visited)
+					if (segment.getSegmentStart() == segmentEnd || segment.distanceFromStart > maxCost
+							|| segment.distanceFromStart <= minCost) {
+						return;
+					}
+					int band = getBand(bands, segment.distanceFromStart);
+					RouteDataObject road = segment.getRoad();
+					int d = segmentEnd > segment.getSegmentStart() ? 1 : -1;
+					for (int i = segment.getSegmentStart(); i != segmentEnd + d; i += d) {
+						bands.get(band).addPoint(road.getPoint31XTile(i), road.getPoint31YTile(i));
+					}
+					bands.get(band).roadParts++;
+					if (listener != null) {
+						listener.roadReached(road, segment.getSegmentStart(), segmentEnd, segment.distanceFromStart, band);
+					}
+				}
+
+				@Override
+				public void visitApproximatedSegments(List<RouteSegmentResult> segment, GpxPoint start, GpxPoint target) {
+				}
+			};
+			local.maxDistanceFromStart = maxCost;
+			new BinaryRoutePlanner().searchRouteInternal(local, s, null, null);
+			return true;
+		} finally {
+			if (distanceBudget) {
+				local.setThreadRouter(null);
+			}
+		}
+	}
+
+	/**
+	 * @return false if files for hh routing are not available
+	 */
+	private boolean calculateNetwork(RoutingContext ctx, LatLon start, final List<IsochroneBand> bands, float maxBudget,
+			final IsochroneListener listener) throws IOException, InterruptedException {
+		RoutingContext hhCtx = new RoutingContext(ctx);
+		hhCtx.visitor = null;
+		HHRoutePlanner<?> planner = HHRoutePlanner.create(hhCtx);
+		HHRoutingConfig config = hhConfig != null ? hhConfig : RoutePlannerFrontEnd.defaultHHConfig();
+		try {
+			return planner.runReachability(start, maxBudget, config, new HHNetworkGraph.SettledPointListener() {
+
+				@Override
+				public void pointSettled(HHNetworkGraph graph, int point, double cost, double length) {
+					// points reached by detailed routing are already reported
+					if (cost <= detailedTimeLimit) {
+						return;
+					}
+					int band = getBand(bands, (float) cost);
+					int x = graph.pointX[point];
+					int y = graph.pointY[point];
+					bands.get(band).addPoint(x, y);
+					bands.get(band).networkPoints++;
+					if (listener != null) {
+						listener.pointReached(x, y, (float) cost, band);
+					}
+				}
+			}) >= 0;
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static int getBand(List<IsochroneBand> bands, float cost) {
+		for (int i = 0; i < bands.size() - 1; i++) {
+			if (cost <= bands.get(i).budget) {
+				return i;
+			}
+		}
+		return bands.size() - 1;
+	}
+
+	// Andrew's monotone chain, hull is written to the beginning of arrays (counter clockwise)
+	private static int convexHull(int[] xs, int[] ys) {
+		int n = xs.length;
+		if (n < 3) {
+			return n;
+		}
+		long[] pnts = new long[n];
+		for (int i = 0; i < n; i++) {
+			pnts[i] = ((long) xs[i] << 32) | (ys[i] & 0xffffffffL);
+		}
+		Arrays.sort(pnts);
+		long[] hull = new long[2 * n];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			while (k >= 2 && cross(hull[k - 2], hull[k - 1], pnts[i]) <= 0) {
+				k--;
+			}
+			hull[k++] = pnts[i];
+		}
+		for (int i = n - 2, t = k + 1; i >= 0; i--) {
+			while (k >= t && cross(hull[k - 2], hull[k - 1], pnts[i]) <= 0) {
+				k--;
+			}
+			hull[k++] = pnts[i];
+		}
+		k--; // last point is equal to first
+		for (int i = 0; i < k; i++) {
+			xs[i] = (int) (hull[i] >> 32);
+			ys[i] = (int) hull[i];
+		}
+		return k;
+	}
+
+	private static double cross(long o, long a, long b) {
+		double ox = o >> 32, oy = (int) o;
+		double ax = (a >> 32) - ox, ay = (int) a - oy;
+		double bx = (b >> 32) - ox, by = (int) b - oy;
+		return ax * by - ay * bx;
+	}
+}
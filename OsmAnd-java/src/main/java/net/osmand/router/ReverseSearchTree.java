@@ -0,0 +1,180 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+/**
+ * Reverse search (costs to destination) of previous calculation kept to recalculate route to the same destination
+ * (see {@link RoutingConfiguration#incrementalRerouting}). Next search continues reverse search from its queue
+ * and direct search from new start stops as soon as it meets visited part of tree. Roads which became impassable
+ * are pruned with all segments reaching destination through them, tree is not reused if routing parameters
+ * are changed or some roads became passable again. Tree is kept and reused only with admissible heuristic
+ * (heuristicCoefficient <= 1), otherwise costs of its visited segments are not exact.
+ * Roads kept by tree are not part of tiles of next context, so their estimated size is added to memory overhead
+ * of the search which continues the tree.
+ */
+public class ReverseSearchTree {
+
+	private final long endRoadId;
+	private final int endSegStart;
+	private final int endSegEnd;
+	private final int endX;
+	private final int endY;
+	private final RouteCalculationMode calculationMode;
+	// conditional restrictions are evaluated at this time
+	private final long routeCalculationTime;
+	private final VehicleRouter router;
+	private final Map<String, String> routerParams;
+	private TLongHashSet impassableRoads;
+
+	final TLongObjectHashMap<RouteSegment> visited;
+	// queue of reverse search without final segments (they belong to previous direct search)
+	final List<RouteSegment> queue;
+	// size of roads kept by visited segments and queue (see RoutingMemoryUsage)
+	final int roadsMemory;
+	public int reused;
+
+	ReverseSearchTree(RoutingContext ctx, RouteSegmentPoint end, TLongObjectHashMap<RouteSegment> visited,
+			RouteSegmentQueue graphReverseSegments) {
+		this.endRoadId = end.getRoad().getId();
+		this.endSegStart = end.getSegmentStart();
+		this.endSegEnd = end.getSegmentEnd();
+		this.endX = end.preciseX;
+		this.endY = end.preciseY;
+		this.calculationMode = ctx.calculationMode;
+		this.routeCalculationTime = ctx.config.routeCalculationTime;
+		this.router = ctx.getRouter();
+		this.routerParams = getRouterParams(router);
+		this.impassableRoads = getImpassableRoads(router);
+		this.visited = visited;
+		this.queue = new ArrayList<RouteSegment>(graphReverseSegments.size());
+		while (!graphReverseSegments.isEmpty()) {
+			RouteSegment s = graphReverseSegments.poll();
+			if (!(s instanceof FinalRouteSegment)) {
+				queue.add(s);
+			}
+		}
+		TLongHashSet roads = new TLongHashSet();
+		int memory = 0;
+		for (RouteSegment s : visited.valueCollection()) {
+			if (roads.add(s.getRoad().getId())) {
+				memory += RoutingMemoryUsage.sizeOf(s.getRoad());
+			}
+		}
+		for (RouteSegment s : queue) {
+			if (roads.add(s.getRoad().getId())) {
+				memory += RoutingMemoryUsage.sizeOf(s.getRoad());
+			}
+		}
+		this.roadsMemory = memory;
+	}
+
+	public int size() {
+		return visited.size();
+	}
+
+	/**
+	 * Tree could be used to calculate route to end with router of context.
+	 */
+	public boolean isValid(RoutingContext ctx, RouteSegmentPoint end) {
+		if (end == null || end.getRoad().getId() != endRoadId || end.getSegmentStart() != endSegStart
+				|| end.getSegmentEnd() != endSegEnd || end.preciseX != endX || end.preciseY != endY
+				|| ctx.calculationMode != calculationMode || ctx.config.routeCalculationTime != routeCalculationTime) {
+			return false;
+		}
+		VehicleRouter r = ctx.getRouter();
+		if (r != router) {
+			if (routerParams == null || !routerParams.equals(getRouterParams(r))
+					|| ((GeneralRouter) r).getProfile() != ((GeneralRouter) router).getProfile()) {
+				return false;
+			}
+		}
+		TLongHashSet impassable = getImpassableRoads(r);
+		// passable roads could make costs lower
+		return impassable.containsAll(impassableRoads);
+	}
+
+	/**
+	 * Removes segments which reach destination through roads which became impassable.
+	 * @return false if tree can't be used to calculate route to end
+	 */
+	boolean prepare(RoutingContext ctx, RouteSegmentPoint end) {
+		if (!isValid(ctx, end)) {
+			return false;
+		}
+		TLongHashSet impassable = getImpassableRoads(ctx.getRouter());
+		if (impassable.size() > impassableRoads.size()) {
+			TLongHashSet blocked = new TLongHashSet(impassable);
+			blocked.removeAll(impassableRoads);
+			IdentityHashMap<RouteSegment, Boolean> checked = new IdentityHashMap<RouteSegment, Boolean>();
+			TLongObjectIterator<RouteSegment> it = visited.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				if (passesRoads(it.value(), blocked, checked)) {
+					it.remove();
+				}
+			}
+			Iterator<RouteSegment> qit = queue.iterator();
+			while (qit.hasNext()) {
+				if (passesRoads(qit.next(), blocked, checked)) {
+					qit.remove();
+				}
+			}
+			impassableRoads = impassable;
+		}
+		reused++;
+		return true;
+	}
+
+	private static boolean passesRoads(RouteSegment segment, TLongHashSet roads,
+			IdentityHashMap<RouteSegment, Boolean> checked) {
+		List<RouteSegment> chain = new ArrayList<RouteSegment>();
+		Boolean res = null;
+		RouteSegment s = segment;
+		while (s != null) {
+			res = checked.get(s);
+			if (res != null) {
+				break;
+			}
+			chain.add(s);
+			if (roads.contains(s.getRoad().getId() >> GeneralRouter.IMPASSABLE_ROAD_SHIFT)) {
+				res = true;
+				break;
+			}
+			s = s.getParentRoute();
+		}
+		if (res == null) {
+			res = false;
+		}
+		for (RouteSegment c : chain) {
+			checked.put(c, res);
+		}
+		return res;
+	}
+
+	private static Map<String, String> getRouterParams(VehicleRouter r) {
+		if (r instanceof GeneralRouter) {
+			return new LinkedHashMap<String, String>(((GeneralRouter) r).getParameterValues());
+		}
+		return null;
+	}
+
+	private static TLongHashSet getImpassableRoads(VehicleRouter r) {
+		if (r instanceof GeneralRouter) {
+			return new TLongHashSet(((GeneralRouter) r).getImpassableRoadIds());
+		}
+		return new TLongHashSet();
+	}
+}
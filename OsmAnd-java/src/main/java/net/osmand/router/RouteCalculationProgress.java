@@ -41,6 +41,13 @@ public class RouteCalculationProgress {
 	public int loadedPrevUnloadedTiles = 0;
 	public int unloadedTiles = 0;
 	public int loadedTiles = 0;
+	// tiles loaded from packed memory storage instead of file
+	public int loadedPackedTiles = 0;
+	// tiles loaded from routing tile cache shared between contexts
+	public int loadedSharedTiles = 0;
+	// all loads of previously unloaded tiles (to compare tile eviction policies)
+	public int reloadedTiles = 0;
+	public String tileEvictionPolicy;
 	
 	public boolean isCancelled;
 	public boolean requestPrivateAccessRouting;
@@ -74,11 +81,45 @@ public class RouteCalculationProgress {
 		p.distinctLoadedTiles = cp.distinctLoadedTiles;
 		p.maxLoadedTiles = cp.maxLoadedTiles;
 		p.loadedPrevUnloadedTiles = cp.loadedPrevUnloadedTiles;
+		p.loadedPackedTiles = cp.loadedPackedTiles;
+		p.loadedSharedTiles = cp.loadedSharedTiles;
+		p.reloadedTiles = cp.reloadedTiles;
+		p.tileEvictionPolicy = cp.tileEvictionPolicy;
 		
 		cp.maxLoadedTiles = 0;
 		return p;
 	}
-	
+
+	/**
+	 * Adds statistics of route part calculated with own progress (parallel legs).
+	 */
+	public void add(RouteCalculationProgress cp) {
+		timeNanoToCalcDeviation += cp.timeNanoToCalcDeviation;
+		timeToLoadHeaders += cp.timeToLoadHeaders;
+		timeToFindInitialSegments += cp.timeToFindInitialSegments;
+		timeToLoad += cp.timeToLoad;
+
+		visitedSegments += cp.visitedSegments;
+		directQueueSize = Math.max(directQueueSize, cp.directQueueSize);
+		reverseSegmentQueueSize = Math.max(reverseSegmentQueueSize, cp.reverseSegmentQueueSize);
+		visitedDirectSegments += cp.visitedDirectSegments;
+		visitedOppositeSegments += cp.visitedOppositeSegments;
+		finalSegmentsFound += cp.finalSegmentsFound;
+
+		loadedTiles += cp.loadedTiles;
+		distinctLoadedTiles += cp.distinctLoadedTiles;
+		maxLoadedTiles = Math.max(maxLoadedTiles, cp.maxLoadedTiles);
+		loadedPrevUnloadedTiles += cp.loadedPrevUnloadedTiles;
+		unloadedTiles += cp.unloadedTiles;
+		loadedPackedTiles += cp.loadedPackedTiles;
+		loadedSharedTiles += cp.loadedSharedTiles;
+		reloadedTiles += cp.reloadedTiles;
+		if (cp.tileEvictionPolicy != null) {
+			tileEvictionPolicy = cp.tileEvictionPolicy;
+		}
+		routingCalculatedTime += cp.routingCalculatedTime;
+	}
+
 	public Map<String, Object> getInfo(RouteCalculationProgress firstPhase) {
 		TreeMap<String, Object> map = new TreeMap<String, Object>();
 		TreeMap<String, Object> tiles = new TreeMap<String, Object>();
@@ -91,6 +132,12 @@ public class RouteCalculationProgress {
 		tiles.put("loadedTilesPrevUnloaded", this.loadedPrevUnloadedTiles - firstPhase.loadedPrevUnloadedTiles);
 		tiles.put("loadedTilesMax", Math.max(this.maxLoadedTiles, this.distinctLoadedTiles));
 		tiles.put("unloadedTiles", this.unloadedTiles - firstPhase.unloadedTiles);
+		tiles.put("loadedTilesPacked", this.loadedPackedTiles - firstPhase.loadedPackedTiles);
+		tiles.put("loadedTilesShared", this.loadedSharedTiles - firstPhase.loadedSharedTiles);
+		tiles.put("reloadedTiles", this.reloadedTiles - firstPhase.reloadedTiles);
+		if (this.tileEvictionPolicy != null) {
+			tiles.put("tileEvictionPolicy", this.tileEvictionPolicy);
+		}
 		Map<String, Object> segms = new LinkedHashMap<String, Object>();
 		map.put("segments", segms);
 		segms.put("visited", this.visitedSegments - firstPhase.visitedSegments);
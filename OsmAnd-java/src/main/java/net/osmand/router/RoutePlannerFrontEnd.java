@@ -4,6 +4,15 @@ package net.osmand.router;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 
@@ -36,8 +45,15 @@ public class RoutePlannerFrontEnd {
 	protected static final double GPS_POSSIBLE_ERROR = 7;
 	public static boolean CALCULATE_MISSING_MAPS = true;
 	static boolean TRACE_ROUTING = false;
+	// how often cancellation is checked while waiting for parallel legs
+	private static final long LEG_CANCEL_CHECK_MS = 50;
+	// threads for legs of parallel routes (reverse search of each leg runs on own threads, see BinaryRoutePlanner)
+	public static final int MAX_PARALLEL_LEGS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	private static ExecutorService legsExecutor;
 	private boolean useSmartRouteRecalculation = true;
 	private boolean useGeometryBasedApproximation = false;
+	// hidden Markov model map matching (see GpxHmmApproximation), has priority over geometry based approximation
+	private boolean useHmmApproximation = false;
 	private boolean useNativeApproximation = true;
 	private boolean useOnlyHHRouting = false;
 	private HHRoutingConfig hhRoutingConfig = null;
@@ -138,6 +154,17 @@ public class RoutePlannerFrontEnd {
 		long now = System.nanoTime();
 		int px = MapUtils.get31TileNumberX(lon);
 		int py = MapUtils.get31TileNumberY(lat);
+		List<RouteDataObject> dataObjects = loadRouteSegmentObjects(px, py, ctx, allowDuplications);
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.timeToFindInitialSegments += (System.nanoTime() - now);
+		}
+		return findRouteSegment(px, py, ctx, dataObjects, list, transportStop);
+	}
+
+	/**
+	 * Roads around point which are used to find route segment, they could be reused for near points.
+	 */
+	public List<RouteDataObject> loadRouteSegmentObjects(int px, int py, RoutingContext ctx, boolean allowDuplications) {
 		ArrayList<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
 		ctx.loadTileData(px, py, 17, dataObjects, allowDuplications);
 		if (dataObjects.isEmpty()) {
@@ -146,6 +173,15 @@ public class RoutePlannerFrontEnd {
 		if (dataObjects.isEmpty()) {
 			ctx.loadTileData(px, py, 14, dataObjects, allowDuplications);
 		}
+		return dataObjects;
+	}
+
+	/**
+	 * Finds route segment of point (31 tile numbers) among loaded roads (see loadRouteSegmentObjects).
+	 */
+	public RouteSegmentPoint findRouteSegment(int px, int py, RoutingContext ctx, List<RouteDataObject> dataObjects,
+			List<RouteSegmentPoint> list, boolean transportStop) {
+		long now = System.nanoTime();
 		if (list == null) {
 			list = new ArrayList<BinaryRoutePlanner.RouteSegmentPoint>();
 		}
@@ -262,6 +298,11 @@ public class RoutePlannerFrontEnd {
 		return this;
 	}
 
+	public RoutePlannerFrontEnd setUseHmmApproximation(boolean enabled) {
+		this.useHmmApproximation = enabled;
+		return this;
+	}
+
 	public boolean isUseNativeApproximation() {
 		return useNativeApproximation;
 	}
@@ -270,6 +311,10 @@ public class RoutePlannerFrontEnd {
 		return useGeometryBasedApproximation;
 	}
 
+	public boolean isUseHmmApproximation() {
+		return useHmmApproximation;
+	}
+
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints,
 	                                            ResultMatcher<GpxRouteApproximation> resultMatcher,
 	                                            boolean useExternalTimestamps) throws IOException, InterruptedException {
@@ -654,7 +699,9 @@ public class RoutePlannerFrontEnd {
 
 	public RouteCalcResult searchRouteInternalPrepare(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                                  PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
-		RouteSegmentPoint recalculationEnd = getRecalculationEnd(ctx);
+		// reverse search tree already contains the rest of previous route
+		boolean reverseTree = ctx.reverseSearchTree != null && ctx.nativeLib == null && ctx.reverseSearchTree.isValid(ctx, end);
+		RouteSegmentPoint recalculationEnd = reverseTree ? null : getRecalculationEnd(ctx);
 		if (recalculationEnd != null) {
 			ctx.initStartAndTargetPoints(start, recalculationEnd);
 		} else {
@@ -805,6 +852,7 @@ public class RoutePlannerFrontEnd {
 			// simple case 2 points only
 			if (!useSmartRouteRecalculation) {
 				ctx.previouslyCalculatedRoute = null;
+				ctx.reverseSearchTree = null;
 			}
 			pringGC(ctx, true);
 			RouteCalcResult res = searchRouteInternalPrepare(ctx, points.get(0), points.get(1), routeDirection);
@@ -841,6 +889,10 @@ public class RoutePlannerFrontEnd {
 				}
 			}
 		}
+		if (ctx.config.parallelLegs && ctx.nativeLib == null && restPartRecalculatedRoute == null && routeDirection == null
+				&& ctx.getVisitor() == null && ctx.getRouter() instanceof GeneralRouter) {
+			return searchLegsParallel(ctx, points);
+		}
 		RouteCalcResult results = new RouteCalcResult(new ArrayList<RouteSegmentResult>());
 		for (int i = 0; i < points.size() - 1; i++) {
 			RoutingContext local = new RoutingContext(ctx);
@@ -849,7 +901,15 @@ public class RoutePlannerFrontEnd {
 					local.previouslyCalculatedRoute = firstPartRecalculatedRoute;
 				}
 			}
+			boolean lastLeg = i == points.size() - 2;
+			if (lastLeg && useSmartRouteRecalculation) {
+				// reverse search tree is kept only for final destination
+				local.reverseSearchTree = ctx.reverseSearchTree;
+			}
 			RouteCalcResult res = searchRouteInternalPrepare(local, points.get(i), points.get(i + 1), routeDirection);
+			if (lastLeg) {
+				ctx.reverseSearchTree = local.reverseSearchTree;
+			}
 			makeStartEndPointsPrecise(local, res, points.get(i).getPreciseLatLon(), points.get(i + 1).getPreciseLatLon(), null);
 			results.detailed.addAll(res.detailed);
 			ctx.routingTime += local.routingTime;
@@ -863,6 +923,123 @@ public class RoutePlannerFrontEnd {
 		return results;
 	}
 
+	/**
+	 * Calculates every leg between intermediate points in own thread with own context (tiles), router copy
+	 * and progress. Map readers are shared (see RoutingContext.loadSubregionTile). Legs are joined in order,
+	 * cancellation of ctx progress or failure of one leg cancels all legs. Legs run on own bounded pool
+	 * (not common pool) and never wait for each other, so queued legs can't starve running ones.
+	 * As in sequential calculation reverse search tree is kept only for the last leg (final destination).
+	 */
+	private RouteCalcResult searchLegsParallel(final RoutingContext ctx, final List<RouteSegmentPoint> points)
+			throws IOException, InterruptedException {
+		int legs = points.size() - 1;
+		RoutingContext[] locals = new RoutingContext[legs];
+		List<Future<RouteCalcResult>> futures = new ArrayList<>(legs);
+		for (int i = 0; i < legs; i++) {
+			final RoutingContext local = new RoutingContext(ctx);
+			local.calculationProgress = new RouteCalculationProgress();
+			final GeneralRouter router = ((GeneralRouter) ctx.getRouter()).copyForThread();
+			final RouteSegmentPoint start = points.get(i);
+			final RouteSegmentPoint end = points.get(i + 1);
+			if (i == legs - 1 && useSmartRouteRecalculation) {
+				local.reverseSearchTree = ctx.reverseSearchTree;
+			}
+			locals[i] = local;
+			futures.add(getLegsExecutor().submit(new Callable<RouteCalcResult>() {
+				@Override
+				public RouteCalcResult call() throws Exception {
+					local.setThreadRouter(router);
+					try {
+						RouteCalcResult res = searchRouteInternalPrepare(local, start, end, null);
+						makeStartEndPointsPrecise(local, res, start.getPreciseLatLon(), end.getPreciseLatLon(), null);
+						return res;
+					} finally {
+						local.setThreadRouter(null);
+					}
+				}
+			}));
+		}
+		RouteCalcResult results = new RouteCalcResult(new ArrayList<RouteSegmentResult>());
+		boolean finished = false;
+		try {
+			for (int i = 0; i < legs; i++) {
+				RouteCalcResult res = waitForLeg(ctx, futures.get(i), locals);
+				results.detailed.addAll(res.detailed);
+				ctx.routingTime += locals[i].routingTime;
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.add(locals[i].calculationProgress);
+				}
+			}
+			finished = true;
+		} finally {
+			if (!finished) {
+				cancelLegs(locals);
+			}
+		}
+		ctx.reverseSearchTree = locals[legs - 1].reverseSearchTree;
+		ctx.unloadAllData();
+		return results;
+	}
+
+	/**
+	 * Stops threads of parallel legs (see {@link RoutingConfiguration#parallelLegs}) when routing is not needed
+	 * anymore, running legs are finished. Next parallel calculation starts new threads.
+	 */
+	public static synchronized void shutdownLegsExecutor() {
+		if (legsExecutor != null) {
+			legsExecutor.shutdown();
+			legsExecutor = null;
+		}
+	}
+
+	private static synchronized ExecutorService getLegsExecutor() {
+		if (legsExecutor == null) {
+			final AtomicInteger threads = new AtomicInteger();
+			legsExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_LEGS, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "RouteLeg-" + threads.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return legsExecutor;
+	}
+
+	private RouteCalcResult waitForLeg(RoutingContext ctx, Future<RouteCalcResult> leg, RoutingContext[] locals)
+			throws IOException, InterruptedException {
+		while (true) {
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				cancelLegs(locals);
+			}
+			try {
+				return leg.get(LEG_CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check cancellation and wait again
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				} else if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	private void cancelLegs(RoutingContext[] locals) {
+		for (RoutingContext local : locals) {
+			local.calculationProgress.isCancelled = true;
+		}
+	}
+
 	private void pringGC(final RoutingContext ctx, boolean before) {
 		if (RoutingContext.SHOW_GC_SIZE && before) {
 			long h1 = RoutingContext.runGCUsedMemory();
@@ -0,0 +1,371 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Priority queue of route segments to visit by {@link BinaryRoutePlanner} ordered by cost (f = g + h).
+ */
+public interface RouteSegmentQueue {
+
+	enum Type {
+		// java.util.PriorityQueue with wrapper per added segment, stale segments are skipped on poll
+		PRIORITY_QUEUE,
+		// indexed 4-ary heap on arrays keyed by route point id with decrease-key
+		INDEXED_HEAP;
+
+		public RouteSegmentQueue create() {
+			switch (this) {
+			case INDEXED_HEAP:
+				return new IndexedHeap();
+			default:
+				return new JavaPriorityQueue();
+			}
+		}
+
+		public static Type parse(String name, Type def) {
+			if (name != null) {
+				for (Type t : values()) {
+					if (t.name().equalsIgnoreCase(name)) {
+						return t;
+					}
+				}
+			}
+			return def;
+		}
+	}
+
+	/**
+	 * @param routePointId id of segment start point and direction (same ids are the same graph node)
+	 */
+	void add(RouteSegment segment, float cost, long routePointId);
+
+	RouteSegment peek();
+
+	float peekCost();
+
+	RouteSegment poll();
+
+	boolean isEmpty();
+
+	int size();
+
+	long getEstimatedSize();
+
+
+	class JavaPriorityQueue implements RouteSegmentQueue {
+
+		private static class RouteSegmentCost {
+			final float cost;
+			final RouteSegment segment;
+
+			RouteSegmentCost(RouteSegment segment, float cost) {
+				this.cost = cost;
+				this.segment = segment;
+			}
+
+			@Override
+			public String toString() {
+				return String.format("%.2f %s", cost, segment);
+			}
+		}
+
+		private final PriorityQueue<RouteSegmentCost> queue = new PriorityQueue<RouteSegmentCost>(50,
+				new Comparator<RouteSegmentCost>() {
+					@Override
+					public int compare(RouteSegmentCost o1, RouteSegmentCost o2) {
+						return Double.compare(o1.cost, o2.cost);
+					}
+				});
+
+		@Override
+		public void add(RouteSegment segment, float cost, long routePointId) {
+			queue.add(new RouteSegmentCost(segment, cost));
+		}
+
+		@Override
+		public RouteSegment peek() {
+			RouteSegmentCost c = queue.peek();
+			return c == null ? null : c.segment;
+		}
+
+		@Override
+		public float peekCost() {
+			RouteSegmentCost c = queue.peek();
+			return c == null ? Float.POSITIVE_INFINITY : c.cost;
+		}
+
+		@Override
+		public RouteSegment poll() {
+			RouteSegmentCost c = queue.poll();
+			return c == null ? null : c.segment;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return queue.isEmpty();
+		}
+
+		@Override
+		public int size() {
+			return queue.size();
+		}
+
+		@Override
+		public long getEstimatedSize() {
+			return (long) queue.size() * RoutingMemoryUsage.QUEUE_ENTRY_SIZE;
+		}
+	}
+
+	/**
+	 * Keeps one entry per route point id: adding the same point with lower cost replaces segment
+	 * and moves it up (decrease-key), with higher cost it is ignored. Final segments are not indexed
+	 * as they share ids with regular segments. No objects are allocated per added segment.
+	 */
+	class IndexedHeap implements RouteSegmentQueue {
+
+		private static final int ARITY = 4;
+		private static final long NOT_INDEXED = Long.MIN_VALUE;
+
+		private RouteSegment[] segments = new RouteSegment[64];
+		private float[] costs = new float[64];
+		private long[] ids = new long[64];
+		private int size;
+		// route point id -> position in heap
+		private final LongIntMap positions = new LongIntMap();
+
+		@Override
+		public void add(RouteSegment segment, float cost, long routePointId) {
+			if (segment instanceof FinalRouteSegment) {
+				routePointId = NOT_INDEXED;
+			} else {
+				int pos = positions.get(routePointId);
+				if (pos >= 0) {
+					if (cost < costs[pos]) {
+						segments[pos] = segment;
+						costs[pos] = cost;
+						siftUp(pos);
+					}
+					return;
+				}
+			}
+			if (size == segments.length) {
+				grow();
+			}
+			set(size, segment, cost, routePointId);
+			siftUp(size++);
+		}
+
+		@Override
+		public RouteSegment peek() {
+			return size == 0 ? null : segments[0];
+		}
+
+		@Override
+		public float peekCost() {
+			return size == 0 ? Float.POSITIVE_INFINITY : costs[0];
+		}
+
+		@Override
+		public RouteSegment poll() {
+			if (size == 0) {
+				return null;
+			}
+			RouteSegment res = segments[0];
+			if (ids[0] != NOT_INDEXED) {
+				positions.remove(ids[0]);
+			}
+			size--;
+			if (size > 0) {
+				set(0, segments[size], costs[size], ids[size]);
+				siftDown(0);
+			}
+			segments[size] = null;
+			return res;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public long getEstimatedSize() {
+			return (long) segments.length * (RoutingMemoryUsage.REFERENCE + 4 + 8)
+					+ (long) positions.capacity() * (8 + 4);
+		}
+
+		private void set(int pos, RouteSegment segment, float cost, long id) {
+			segments[pos] = segment;
+			costs[pos] = cost;
+			ids[pos] = id;
+			if (id != NOT_INDEXED) {
+				positions.put(id, pos);
+			}
+		}
+
+		private void siftUp(int pos) {
+			RouteSegment segment = segments[pos];
+			float cost = costs[pos];
+			long id = ids[pos];
+			while (pos > 0) {
+				int parent = (pos - 1) / ARITY;
+				if (costs[parent] <= cost) {
+					break;
+				}
+				set(pos, segments[parent], costs[parent], ids[parent]);
+				pos = parent;
+			}
+			set(pos, segment, cost, id);
+		}
+
+		private void siftDown(int pos) {
+			RouteSegment segment = segments[pos];
+			float cost = costs[pos];
+			long id = ids[pos];
+			while (true) {
+				int first = pos * ARITY + 1;
+				if (first >= size) {
+					break;
+				}
+				int min = first;
+				int last = Math.min(first + ARITY, size);
+				for (int c = first + 1; c < last; c++) {
+					if (costs[c] < costs[min]) {
+						min = c;
+					}
+				}
+				if (costs[min] >= cost) {
+					break;
+				}
+				set(pos, segments[min], costs[min], ids[min]);
+				pos = min;
+			}
+			set(pos, segment, cost, id);
+		}
+
+		private void grow() {
+			int capacity = segments.length + (segments.length >> 1);
+			RouteSegment[] s = new RouteSegment[capacity];
+			float[] c = new float[capacity];
+			long[] i = new long[capacity];
+			System.arraycopy(segments, 0, s, 0, size);
+			System.arraycopy(costs, 0, c, 0, size);
+			System.arraycopy(ids, 0, i, 0, size);
+			segments = s;
+			costs = c;
+			ids = i;
+		}
+	}
+
+	/**
+	 * Open addressing long -> int map on arrays (linear probing, load factor 0.5).
+	 */
+	class LongIntMap {
+		private static final long EMPTY = Long.MIN_VALUE;
+
+		private long[] keys;
+		private int[] values;
+		private int mask;
+		private int size;
+
+		LongIntMap() {
+			allocate(128);
+		}
+
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			values = new int[capacity];
+			Arrays.fill(keys, EMPTY);
+			mask = capacity - 1;
+		}
+
+		int capacity() {
+			return keys.length;
+		}
+
+		private int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		}
+
+		int get(long key) {
+			for (int i = slot(key);; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+				if (keys[i] == EMPTY) {
+					return -1;
+				}
+			}
+		}
+
+		void put(long key, int value) {
+			int i = slot(key);
+			while (keys[i] != EMPTY && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			if (keys[i] == EMPTY) {
+				keys[i] = key;
+				if (++size * 2 > keys.length) {
+					values[i] = value;
+					rehash();
+					return;
+				}
+			}
+			values[i] = value;
+		}
+
+		void remove(long key) {
+			int i = slot(key);
+			while (keys[i] != key) {
+				if (keys[i] == EMPTY) {
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			size--;
+			// shift back following entries of the same probe sequence
+			int j = i;
+			while (true) {
+				keys[i] = EMPTY;
+				int home;
+				do {
+					j = (j + 1) & mask;
+					if (keys[j] == EMPTY) {
+						return;
+					}
+					home = slot(keys[j]);
+				} while (i <= j ? (i < home && home <= j) : (i < home || home <= j));
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+
+		private void rehash() {
+			long[] oldKeys = keys;
+			int[] oldValues = values;
+			allocate(oldKeys.length * 2);
+			for (int k = 0; k < oldKeys.length; k++) {
+				if (oldKeys[k] != EMPTY) {
+					int i = slot(oldKeys[k]);
+					while (keys[i] != EMPTY) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[k];
+					values[i] = oldValues[k];
+				}
+			}
+		}
+	}
+}
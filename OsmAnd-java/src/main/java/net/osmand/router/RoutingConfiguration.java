@@ -27,7 +27,7 @@ import java.util.Stack;
 
 import gnu.trove.list.array.TIntArrayList;
 
-public class RoutingConfiguration {
+public class RoutingConfiguration implements Cloneable {
 
 	public static final int DEFAULT_MEMORY_LIMIT = 30;
 	public static final int DEFAULT_NATIVE_MEMORY_LIMIT = 256;
@@ -41,8 +41,26 @@ public class RoutingConfiguration {
 	
 	// 1.1 tile load parameters (should not affect routing)
 	public int ZOOM_TO_LOAD_TILES = 16;
+	// bytes of loaded tiles and search structures calculated from object layout (see RoutingMemoryUsage),
+	// size of loaded road is close to former estimate (x3.5 of fields), so limits in MB keep tiles capacity
 	public long memoryLimitation;
 	public long nativeMemoryLimitation;
+	// pack tiles on unload and keep them in memory (several times smaller) instead of reading them again from file,
+	// not used with shared tile cache which keeps packed tiles itself
+	public boolean packedTiles = false;
+	// order of unloading tiles when memory limit is reached
+	public TileEvictionPolicy.Type tileEvictionPolicy = TileEvictionPolicy.Type.ACCESS_COUNT;
+	// decoded tiles shared with other routing contexts (server-side routing), null - not shared
+	public RoutingTileCache sharedTileCache;
+
+	// implementation of A* priority queues (should not affect routing)
+	public RouteSegmentQueue.Type segmentQueue = RouteSegmentQueue.Type.PRIORITY_QUEUE;
+	// run direct and reverse A* searches in 2 threads (only for 2 directions search with heuristicCoefficient <= 1)
+	public boolean parallelSearch = false;
+	// calculate legs between intermediate points in parallel threads
+	public boolean parallelLegs = false;
+	// keep reverse search tree after calculation to reuse it for recalculation to the same destination
+	public boolean incrementalRerouting = false;
 
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
@@ -85,10 +103,25 @@ public class RoutingConfiguration {
 	// Parameter to smoother the track itself (could be 0 if it's not recorded track)
 	public float smoothenPointsNoRoute = 5;
 
+	// approximate long tracks by chunks in parallel threads (0 - sequential)
+	public int approximationThreads = 0;
+
+	// length of chunk for parallel approximation (chunks are split at points which match only one road)
+	public float approximationChunkDistance = 25000;
+
 	public QuadTree<DirectionPoint> getDirectionPoints() {
 		return directionPoints;
 	}
 
+	// shallow copy to change search parameters of one calculation (router, direction points, caches are shared)
+	public RoutingConfiguration copy() {
+		try {
+			return (RoutingConfiguration) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	public static class DirectionPoint extends Node {
 		private static final long serialVersionUID = -7496599771204656505L;
 		public double distance = Double.MAX_VALUE;
@@ -142,6 +175,7 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<>();
 		private Set<Long> impassableRoadLocations = new HashSet<>();
 		private QuadTree<Node> directionPointsBuilder;
+		private RoutingTileCache sharedTileCache;
 
 		public Builder() {
 		}
@@ -203,10 +237,18 @@ public class RoutingConfiguration {
 			i.minStepApproximation = parseSilentFloat(getAttribute(i.router, "minStepApproximation"), i.minStepApproximation);
 			i.maxStepApproximation = parseSilentFloat(getAttribute(i.router, "maxStepApproximation"), i.maxStepApproximation);
 			i.smoothenPointsNoRoute = parseSilentFloat(getAttribute(i.router, "smoothenPointsNoRoute"), i.smoothenPointsNoRoute);
+			i.approximationThreads = parseSilentInt(getAttribute(i.router, "approximationThreads"), i.approximationThreads);
+			i.approximationChunkDistance = parseSilentFloat(getAttribute(i.router, "approximationChunkDistance"), i.approximationChunkDistance);
 			i.penaltyForReverseDirection = parseSilentFloat(getAttribute(i.router, "penaltyForReverseDirection"), (float) i.penaltyForReverseDirection);
 
 			i.router.setImpassableRoads(new HashSet<>(impassableRoadLocations));
 			i.ZOOM_TO_LOAD_TILES = parseSilentInt(getAttribute(i.router, "zoomToLoadTiles"), i.ZOOM_TO_LOAD_TILES);
+			i.packedTiles = Boolean.parseBoolean(getAttribute(i.router, "packedTiles"));
+			i.tileEvictionPolicy = TileEvictionPolicy.Type.parse(getAttribute(i.router, "tileEvictionPolicy"), i.tileEvictionPolicy);
+			i.segmentQueue = RouteSegmentQueue.Type.parse(getAttribute(i.router, "segmentQueue"), i.segmentQueue);
+			i.parallelSearch = Boolean.parseBoolean(getAttribute(i.router, "parallelSearch"));
+			i.parallelLegs = Boolean.parseBoolean(getAttribute(i.router, "parallelLegs"));
+			i.incrementalRerouting = Boolean.parseBoolean(getAttribute(i.router, "incrementalRerouting"));
 			int memoryLimitMB = memoryLimits.memoryLimitMb;
 			int desirable = parseSilentInt(getAttribute(i.router, "memoryLimitInMB"), 0);
 			if (desirable != 0) {
@@ -235,10 +277,16 @@ public class RoutingConfiguration {
 					i.directionPoints.insert(dp, new QuadRect(x, y, x, y));
 				}
 			}
+			i.sharedTileCache = sharedTileCache;
 //			i.planRoadDirection = 1;
 			return i;
 		}
 		
+		public Builder setSharedTileCache(RoutingTileCache sharedTileCache) {
+			this.sharedTileCache = sharedTileCache;
+			return this;
+		}
+		
 		public Builder setDirectionPoints(QuadTree<Node> directionPoints) {
 			this.directionPointsBuilder = directionPoints;
 			return this;
@@ -14,7 +14,6 @@ import java.util.Map.Entry;
 
 import org.apache.commons.logging.Log;
 
-import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.iterator.TLongIterator;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
@@ -27,6 +26,7 @@ import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.BinaryMapRouteReaderAdapter;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.PackedRouteDataObjects;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.QuadPoint;
 import net.osmand.data.QuadPointDouble;
@@ -73,6 +73,8 @@ public class RoutingContext {
 	public int targetSegmentInd;
 	public boolean targetTransportStop;
 	public int dijkstraMode;
+	// search stops at this cost from start (0 - unlimited), used to calculate reachable area
+	public float maxDistanceFromStart;
 	public boolean publicTransport;
 	public HashSet<BinaryMapIndexReader> mapIndexReaderFilter = new HashSet<>();
 	
@@ -81,6 +83,8 @@ public class RoutingContext {
 	public RouteCalculationProgress calculationProgressFirstPhase;
 	public boolean leftSideNavigation;
 	public List<RouteSegmentResult> previouslyCalculatedRoute;
+	// reverse search of previous calculation to the same destination (set with previouslyCalculatedRoute)
+	public ReverseSearchTree reverseSearchTree;
 	public PrecalculatedRouteDirection precalculatedRouteDirection;
 	
 	
@@ -89,6 +93,13 @@ public class RoutingContext {
 	
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
+	// order of unloading tiles (see RoutingConfiguration.tileEvictionPolicy)
+	private TileEvictionPolicy evictionPolicy;
+	// last segments polled from direct/reverse queues (used by frontier distance eviction policy)
+	int frontierDirectX, frontierDirectY;
+	int frontierReverseX, frontierReverseY;
+	// routers of parallel search threads (see RoutingConfiguration.parallelSearch)
+	private volatile ThreadLocal<VehicleRouter> threadRouter;
 	
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
@@ -97,8 +108,10 @@ public class RoutingContext {
 	
 	// 5. debug information (package accessor)
 	public TileStatistics global = new TileStatistics();
-	// updated by route planner in bytes
+	// updated by route planner in bytes (visited segments + queues, see RoutingMemoryUsage)
 	public int memoryOverhead = 0;
+	int visitedSegmentsMemory = 0;
+	int queueSegmentsMemory = 0;
 	public float routingTime = 0;
 
 	// callback of processing segments
@@ -112,7 +125,11 @@ public class RoutingContext {
 	
 	
 	RoutingContext(RoutingContext cp) {
-		this.config = cp.config;
+		this(cp, cp.config);
+	}
+
+	RoutingContext(RoutingContext cp, RoutingConfiguration config) {
+		this.config = config;
 		this.map.putAll(cp.map);
 		this.calculationMode = cp.calculationMode;
 		this.leftSideNavigation = cp.leftSideNavigation;
@@ -120,6 +137,12 @@ public class RoutingContext {
 		this.nativeLib = cp.nativeLib;
 		this.visitor = cp.visitor;
 		this.calculationProgress = cp.calculationProgress;
+		// router of current thread is kept for contexts created inside parallel tasks (see RoutingConfiguration.approximationThreads),
+		// thread routers set for the copy don't change routers of cp
+		VehicleRouter tr = cp.threadRouter == null ? null : cp.threadRouter.get();
+		if (tr != null) {
+			setThreadRouter(tr);
+		}
 	}
 	
 	RoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] list, RouteCalculationMode calcMode) {
@@ -161,6 +184,26 @@ public class RoutingContext {
 	public int getCurrentEstimatedSize(){
 		return global.size;
 	}
+
+	/**
+	 * Breakdown of memory used by loaded tiles and current search.
+	 */
+	public RoutingMemoryUsage getMemoryUsage() {
+		RoutingMemoryUsage usage = new RoutingMemoryUsage();
+		for (RoutingSubregionTile t : subregionTiles) {
+			if (t.isLoaded()) {
+				usage.loadedTiles++;
+				usage.tileObjects += t.tileStatistics.objectsSize;
+				usage.tileSegments += t.tileStatistics.segmentsSize;
+			} else if (t.isPacked()) {
+				usage.packedOnlyTiles++;
+			}
+			usage.packedTiles += t.getPackedSize();
+		}
+		usage.visitedSegments = visitedSegmentsMemory;
+		usage.queueSegments = queueSegmentsMemory;
+		return usage;
+	}
 	
 	
 	public void setVisitor(RouteSegmentVisitor visitor) {
@@ -176,8 +219,29 @@ public class RoutingContext {
 	}
 
 	public VehicleRouter getRouter() {
+		ThreadLocal<VehicleRouter> tr = threadRouter;
+		if (tr != null) {
+			VehicleRouter r = tr.get();
+			if (r != null) {
+				return r;
+			}
+		}
 		return config.router;
 	}
+	
+	/**
+	 * Router used by current thread during parallel search or parallel legs (null - shared config router)
+	 */
+	void setThreadRouter(VehicleRouter router) {
+		if (threadRouter == null) {
+			threadRouter = new ThreadLocal<VehicleRouter>();
+		}
+		if (router == null) {
+			threadRouter.remove();
+		} else {
+			threadRouter.set(router);
+		}
+	}
 
 	public boolean planRouteIn2Directions() {
 		return config.planRoadDirection == 0;
@@ -205,21 +269,37 @@ public class RoutingContext {
 	public void unloadAllData() {
 		unloadAllData(null);
 	}
+
+	/**
+	 * Segments of loaded tiles keep state of the last search, it's cleared so next search could run with loaded
+	 * tiles instead of new context.
+	 */
+	void clearSearchState() {
+		for (RoutingSubregionTile tl : subregionTiles) {
+			if (tl.isLoaded()) {
+				tl.clearSearchState();
+			}
+		}
+	}
 	
 	public void unloadAllData(RoutingContext except) {
 		for (RoutingSubregionTile tl : subregionTiles) {
-			if (tl.isLoaded()) {
-				if(except == null || except.searchSubregionTile(tl.subregion) < 0){
+			if (except == null || except.searchSubregionTile(tl.subregion) < 0) {
+				if (tl.isLoaded()) {
 					tl.unload();
 					if (calculationProgress != null) {
-						calculationProgress.unloadedTiles ++;
+						calculationProgress.unloadedTiles++;
 					}
 					global.size -= tl.tileStatistics.size;
 				}
+				global.size -= tl.clearPacked();
 			}
 		}
 		subregionTiles.clear();
 		indexedSubregions.clear();
+		if (evictionPolicy != null) {
+			evictionPolicy.clear();
+		}
 		mapIndexReaderFilter = new HashSet<>();
 	}
 	
@@ -252,7 +332,8 @@ public class RoutingContext {
 		return loadRouteSegment(x31, y31, memoryLimit, false);
 	}
 	
-	public RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
+	// synchronized as direct and reverse searches could load tiles in parallel (each direction uses own segment objects)
+	public synchronized RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
 		long tileId = getRoutingTile(x31, y31, memoryLimit);
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
@@ -293,17 +374,61 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res;
+				// packed objects of unloaded tile are already prepared for routing (conditions, direction points)
+				boolean prepared = ts.packed != null && toLoad == null;
+				long[] packedExcludedIds = null;
+				if (prepared) {
+					packedExcludedIds = ts.packedExcludedIds;
+					res = ts.packed.unpack(ts.subregion.routeReg);
+					global.size -= ts.clearPacked();
+					if (calculationProgress != null) {
+						calculationProgress.loadedPackedTiles++;
+					}
+				} else {
+					RoutingTileCache cache = config.sharedTileCache;
+					PackedRouteDataObjects shared = cache == null ? null : cache.get(reader, ts.subregion);
+					if (shared != null) {
+						// shared tile could be packed with region of another reader of the same file
+						res = shared.unpack(ts.subregion.routeReg);
+						if (calculationProgress != null) {
+							calculationProgress.loadedSharedTiles++;
+						}
+					} else {
+						// reader could be shared with contexts of other threads (see RoutingConfiguration.parallelLegs)
+						synchronized (reader) {
+							res = reader.loadRouteIndexData(ts.subregion);
+						}
+						if (cache != null) {
+							// pack original objects (they are modified by conditional tags and direction points below)
+							cache.put(reader, ts.subregion, PackedRouteDataObjects.pack(ts.subregion.routeReg, res));
+						}
+					}
+				}
+				if (config.packedTiles && config.sharedTileCache == null && toLoad == null) {
+					// objects are kept in order to pack them when tile is unloaded
+					ts.objects = new ArrayList<RouteDataObject>(res.size());
+				}
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
+				} else if (prepared) {
+					for (RouteDataObject ro : res) {
+						if (excludeNotAllowed != null && !excludeNotAllowed.contains(ro.getId())) {
+							ts.add(ro);
+						}
+					}
+					if (excludeNotAllowed != null && packedExcludedIds != null) {
+						excludeNotAllowed.addAll(packedExcludedIds);
+						ts.excludedIds = new TLongHashSet(packedExcludedIds);
+					}
 				} else {
 					for (RouteDataObject ro : res) {
 						if (ro != null) {
 							if (config.routeCalculationTime != 0) {
 								ro.processConditionalTags(config.routeCalculationTime);
 							}
-							if (config.router.acceptLine(ro)) {
+							if (getRouter().acceptLine(ro)) {
 								if (excludeNotAllowed != null && !excludeNotAllowed.contains(ro.getId())) {
 									// don't attach point for route precalculation
 									if (!config.router.attributes.containsKey(GeneralRouter.CHECK_ALLOW_PRIVATE_NEEDED)) {
@@ -334,8 +459,12 @@ public class RoutingContext {
 		if (calculationProgress != null) {
 			calculationProgress.loadedTiles++;
 		}
+		getTileEvictionPolicy().tileLoaded(ts);
 		
 		if (wasUnloaded) {
+			if (calculationProgress != null) {
+				calculationProgress.reloadedTiles++;
+			}
 			if(ucount == 1) {
 				if(calculationProgress != null) {
 					calculationProgress.loadedPrevUnloadedTiles++;
@@ -360,7 +489,10 @@ public class RoutingContext {
 		List<RoutingSubregionTile> list = new ArrayList<RoutingContext.RoutingSubregionTile>();
 		SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
 				Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
-		List<RouteSubregion> subregs = reader.searchRouteIndexTree(request, Collections.singletonList(reg));
+		List<RouteSubregion> subregs;
+		synchronized (reader) {
+			subregs = reader.searchRouteIndexTree(request, Collections.singletonList(reg));
+		}
 		for(RouteSubregion s : subregs) {
 			list.add(new RoutingSubregionTile(s));
 		}
@@ -395,7 +527,10 @@ public class RoutingContext {
 //					long now = System.nanoTime();
 					// int rg = r.getValue().get(0).routeReg.regionsRead;
 					
-					List<RouteSubregion> subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					List<RouteSubregion> subregs;
+					synchronized (reader) {
+						subregs = reader.searchRouteIndexTree(request, r.getValue());
+					}
 //					if (calculationProgress != null) {
 //						calculationProgress.timeToLoadHeaders += (System.nanoTime() - now);
 //					}
@@ -469,27 +604,13 @@ public class RoutingContext {
 		}
 		if (getCurrentEstimatedSize() > 0.9 * memoryLimit) {
 			int sz1 = getCurrentEstimatedSize();
-			long h1 = 0;
-			if (SHOW_GC_SIZE && sz1 > 0.7 * memoryLimit) {
-				runGCUsedMemory();
-				h1 = runGCUsedMemory();
-			}
-			int clt = getCurrentlyLoadedTiles();
-			long us1 = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
 			unloadUnusedTiles(memoryLimit);
-			if (h1 != 0 && getCurrentlyLoadedTiles() != clt) {
-				int sz2 = getCurrentEstimatedSize();
-				long h2 = runGCUsedMemory();
-				float mb = (1 << 20);
-				log.warn("Unload tiles :  estimated " + (sz1 - sz2) / mb + " ?= " + (h1 - h2) / mb + " actual");
-				log.warn("Used after " + h2 / mb + " of " + Runtime.getRuntime().totalMemory() / mb );
-			} else {
-				float mb = (1 << 20);
-				int sz2 = getCurrentEstimatedSize();
-				log.warn("Unload tiles :  occupied before " + sz1 / mb + " Mb - now  " + sz2 / mb + "MB "
-						+ memoryLimit / mb + " limit MB " + config.memoryLimitation / mb);
-				long us2 = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
-				log.warn("Used memory before " + us1 / mb + " after " + us1 / mb );
+			float mb = (1 << 20);
+			int sz2 = getCurrentEstimatedSize();
+			log.warn("Unload tiles :  occupied before " + sz1 / mb + " Mb - now  " + sz2 / mb + "MB "
+					+ memoryLimit / mb + " limit MB " + config.memoryLimitation / mb);
+			if (SHOW_GC_SIZE) {
+				log.warn(getMemoryUsage().toString());
 			}
 		}
 		if (!indexedSubregions.containsKey(tileId)) {
@@ -666,27 +787,19 @@ public class RoutingContext {
 		if(calculationProgress != null) {
 			calculationProgress.maxLoadedTiles = Math.max(calculationProgress.maxLoadedTiles, getCurrentlyLoadedTiles());
 		}
-		Collections.sort(list, new Comparator<RoutingSubregionTile>() {
-			private int pow(int base, int pw) {
-				int r = 1;
-				for (int i = 0; i < pw; i++) {
-					r *= base;
-				}
-				return r;
-			}
-			@Override
-			public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
-				int v1 = (o1.access + 1) * pow(10, o1.getUnloadCont() -1);
-				int v2 = (o2.access + 1) * pow(10, o2.getUnloadCont() -1);
-				return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
-			}
-		});
+		TileEvictionPolicy policy = getTileEvictionPolicy();
+		if (calculationProgress != null) {
+			calculationProgress.tileEvictionPolicy = policy.getType().name();
+		}
+		Iterator<RoutingSubregionTile> it = policy.evictionOrder(this, list);
+		List<RoutingSubregionTile> unloaded = new ArrayList<RoutingSubregionTile>();
 		int i = 0;
-		while(getCurrentEstimatedSize() >= desirableSize && (list.size() - i) > loaded / 5 && i < list.size()) {
-			RoutingSubregionTile unload = list.get(i);
+		while(getCurrentEstimatedSize() >= desirableSize && (list.size() - i) > loaded / 5 && it.hasNext()) {
+			RoutingSubregionTile unload = it.next();
 			i++;
 //			System.out.println("Unload " + unload);
-			unload.unload();
+			unload.unloadKeepObjects();
+			unloaded.add(unload);
 			if(calculationProgress != null) {
 				calculationProgress.unloadedTiles ++;
 			}
@@ -694,9 +807,56 @@ public class RoutingContext {
 			// tile could be cleaned from routing tiles and deleted from whole list
 			
 		}
-		for(RoutingSubregionTile t : subregionTiles) {
-			t.access /= 3;
+		if (getCurrentEstimatedSize() >= desirableSize) {
+			// packed data of unloaded tiles is also too big (less used tiles first)
+			List<RoutingSubregionTile> packed = new ArrayList<RoutingSubregionTile>();
+			for (RoutingSubregionTile t : subregionTiles) {
+				if (!t.isLoaded() && t.packed != null) {
+					packed.add(t);
+				}
+			}
+			Collections.sort(packed, new Comparator<RoutingSubregionTile>() {
+				@Override
+				public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
+					return Integer.compare(o1.access, o2.access);
+				}
+			});
+			for (int k = 0; k < packed.size() && getCurrentEstimatedSize() >= desirableSize; k++) {
+				global.size -= packed.get(k).clearPacked();
+			}
 		}
+		packUnloadedTiles(unloaded, desirableSize);
+		policy.evictionFinished(this);
+	}
+
+	// packs objects of just unloaded tiles (more used first) while packed data fits into desirable size,
+	// so tiles are not packed only to be cleared by next eviction, objects of the rest tiles are released
+	private void packUnloadedTiles(List<RoutingSubregionTile> unloaded, float desirableSize) {
+		Collections.sort(unloaded, new Comparator<RoutingSubregionTile>() {
+			@Override
+			public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
+				return Integer.compare(o2.access, o1.access);
+			}
+		});
+		boolean fits = true;
+		for (RoutingSubregionTile t : unloaded) {
+			if (fits) {
+				global.size += t.pack();
+				if (getCurrentEstimatedSize() >= desirableSize) {
+					global.size -= t.clearPacked();
+					fits = false;
+				}
+			} else {
+				t.releaseObjects();
+			}
+		}
+	}
+	
+	public TileEvictionPolicy getTileEvictionPolicy() {
+		if (evictionPolicy == null) {
+			evictionPolicy = config.tileEvictionPolicy.create();
+		}
+		return evictionPolicy;
 	}
 	
 	private void getAllObjects(long tileId, final List<RouteDataObject> toFillIn, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
@@ -732,9 +892,16 @@ public class RoutingContext {
 		public final RouteSubregion subregion;
 		// make it without get/set for fast access
 		public int access;
+		// state of eviction policy (see TileEvictionPolicy)
+		long evictionStamp;
+		boolean inEvictionRing;
 		public TileStatistics tileStatistics = new TileStatistics();
 		
 		private NativeRouteSearchResult searchResult = null;
+		private PackedRouteDataObjects packed = null;
+		private long[] packedExcludedIds = null;
+		// loaded objects in load order, only kept to be packed on unload (see RoutingConfiguration.packedTiles)
+		private List<RouteDataObject> objects = null;
 		private int isLoaded = 0;
 		private TLongObjectMap<RouteSegment> routes = null;
 		private TLongHashSet excludedIds = null;
@@ -778,6 +945,7 @@ public class RoutingContext {
 				TLongObjectHashMap<RouteDataObject> excludeDuplications, RouteSegment original, List<RoutingSubregionTile> subregions, int subregionIndex, 
 				boolean reverseWaySearch) {
 			access++;
+			ctx.getTileEvictionPolicy().tileAccessed(this);
 			if (routes != null) {
 				long l = (((long) x31) << 31) + (long) y31;
 				RouteSegment segment = routes.get(l);
@@ -830,6 +998,73 @@ public class RoutingContext {
 		public boolean isUnloaded() {
 			return isLoaded < 0;
 		}
+
+		public boolean isPacked() {
+			return packed != null;
+		}
+
+		private void clearSearchState() {
+			if (routes == null) {
+				return;
+			}
+			for (RouteSegment s : routes.valueCollection()) {
+				for (; s != null; s = s.nextLoaded) {
+					clearSearchState(s);
+					if (s.reverseSearch != null) {
+						clearSearchState(s.reverseSearch);
+					}
+				}
+			}
+		}
+
+		private static void clearSearchState(RouteSegment s) {
+			s.clearSearchState();
+			if (s.oppositeDirection != null) {
+				s.oppositeDirection.clearSearchState();
+			}
+		}
+
+		// packs kept objects of unloaded tile, so tile could be reloaded without reading file,
+		// returns estimated size of packed data
+		private int pack() {
+			if (objects != null) {
+				packed = PackedRouteDataObjects.pack(subregion.routeReg, objects);
+				packedExcludedIds = excludedIds == null ? null : excludedIds.toArray();
+			}
+			releaseObjects();
+			return getPackedSize();
+		}
+
+		private int getPackedSize() {
+			if (packed == null) {
+				return 0;
+			}
+			return packed.getEstimatedSize() + RoutingMemoryUsage.sizeOf(packedExcludedIds);
+		}
+
+		// unloads tile but keeps loaded objects till they're packed or released (see unloadUnusedTiles)
+		private void unloadKeepObjects() {
+			List<RouteDataObject> o = objects;
+			TLongHashSet e = excludedIds;
+			unload();
+			objects = o;
+			excludedIds = e;
+		}
+
+		private void releaseObjects() {
+			objects = null;
+			if (!isLoaded()) {
+				excludedIds = null;
+			}
+		}
+
+		// returns estimated size of released packed data
+		private int clearPacked() {
+			int sz = getPackedSize();
+			packed = null;
+			packedExcludedIds = null;
+			return sz;
+		}
 		
 		public void unload() {
 			if(isLoaded == 0) {
@@ -843,6 +1078,7 @@ public class RoutingContext {
 			searchResult = null;
 			routes = null;
 			excludedIds = null;
+			objects = null;
 		}
 		
 		public void setLoadedNonNative(){
@@ -853,6 +1089,9 @@ public class RoutingContext {
 		
 		public void add(RouteDataObject ro) {
 			tileStatistics.addObject(ro);
+			if (objects != null) {
+				objects.add(ro);
+			}
 			for (int i = 0; i < ro.pointsX.length; i++) {
 				int x31 = ro.getPoint31XTile(i);
 				int y31 = ro.getPoint31YTile(i);
@@ -888,41 +1127,12 @@ public class RoutingContext {
 		}
 	}
 	
-	static int getEstimatedSize(RouteDataObject o) {
-		// calculate size
-		int sz = 0;
-		sz += 8 + 4; // overhead
-		if (o.names != null) {
-			sz += 12;
-			TIntObjectIterator<String> it = o.names.iterator();
-			while(it.hasNext()) {
-				it.advance();
-				String vl = it.value();
-				sz += 12 + vl.length();
-			}
-			sz += 12 + o.names.size() * 25;
-		}
-		sz += 8; // id
-		// coordinates
-		sz += (8 + 4 + 4 * o.getPointsLength()) * 4;
-		sz += o.types == null ? 4 : (8 + 4 + 4 * o.types.length);
-		sz += o.restrictions == null ? 4 : (8 + 4 + 8 * o.restrictions.length);
-		sz += 4;
-		if (o.pointTypes != null) {
-			sz += 8 + 4 * o.pointTypes.length;
-			for (int i = 0; i < o.pointTypes.length; i++) {
-				sz += 4;
-				if (o.pointTypes[i] != null) {
-					sz += 8 + 8 * o.pointTypes[i].length;
-				}
-			}
-		}
-		// Standard overhead?
-		return  (int) (sz * 3.5);
-	}
-	
 	protected static class TileStatistics {
+		// size in bytes compared with memory limit: objects and segments of loaded tile (see RoutingMemoryUsage)
+		// or packed data of packed tile
 		public int size = 0;
+		public int objectsSize = 0;
+		public int segmentsSize = 0;
 		public int allRoutes = 0;
 		public int coordinates = 0;
 		
@@ -936,7 +1146,11 @@ public class RoutingContext {
 		public void addObject(RouteDataObject o) {
 			allRoutes++;
 			coordinates += o.getPointsLength() * 2;
-			size += getEstimatedSize(o);
+			int objSize = RoutingMemoryUsage.sizeOf(o);
+			int segSize = o.getPointsLength() * (RoutingMemoryUsage.ROUTE_SEGMENT_SIZE + RoutingMemoryUsage.LONG_MAP_ENTRY_SIZE);
+			objectsSize += objSize;
+			segmentsSize += segSize;
+			size += objSize + segSize;
 		}
 
 		
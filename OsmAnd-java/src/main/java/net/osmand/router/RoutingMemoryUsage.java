@@ -0,0 +1,142 @@
+package net.osmand.router;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Memory used by routing context split by structures. Sizes are calculated in bytes from object layout
+ * of 64-bit VM with compressed references (12 bytes object header, 16 bytes array header, 8 bytes alignment)
+ * when objects are added, so no GC or heap measurement is needed.
+ * The same sizes are compared with memory limit (see RoutingConfiguration.memoryLimitation).
+ */
+public class RoutingMemoryUsage {
+
+	static final int OBJECT_HEADER = 12;
+	static final int ARRAY_HEADER = 16;
+	static final int REFERENCE = 4;
+
+	// RouteSegment: 2 shorts, 6 references, 2 floats
+	public static final int ROUTE_SEGMENT_SIZE = align(OBJECT_HEADER + 2 * 2 + 6 * REFERENCE + 2 * 4);
+	// slot of trove long -> object map (key, value, state) with default load factor 0.5
+	public static final int LONG_MAP_ENTRY_SIZE = 2 * (8 + REFERENCE + 1);
+	// RouteSegmentCost object and reference in priority queue array (grows x1.5)
+	public static final int QUEUE_ENTRY_SIZE = align(OBJECT_HEADER + 4 + REFERENCE) + REFERENCE * 3 / 2;
+	// visited map entry and opposite direction segment created for visited segment
+	public static final int VISITED_ENTRY_SIZE = LONG_MAP_ENTRY_SIZE + ROUTE_SEGMENT_SIZE;
+	// RouteDataObject: region, 8 arrays, names, name ids, heights references, long id, float height
+	static final int ROUTE_DATA_OBJECT_SIZE = align(OBJECT_HEADER + 12 * REFERENCE + 8 + 4);
+	static final int INT_OBJECT_MAP_SIZE = 64;
+
+	// loaded route objects (with arrays and names)
+	public long tileObjects;
+	// route segments and points index of loaded tiles
+	public long tileSegments;
+	// packed data of tiles (see RoutingConfiguration.packedTiles)
+	public long packedTiles;
+	// visited segments of current search
+	public long visitedSegments;
+	// priority queues of current search
+	public long queueSegments;
+
+	public int loadedTiles;
+	public int packedOnlyTiles;
+
+	public long getTilesSize() {
+		return tileObjects + tileSegments + packedTiles;
+	}
+
+	public long getSearchSize() {
+		return visitedSegments + queueSegments;
+	}
+
+	public long getTotal() {
+		return getTilesSize() + getSearchSize();
+	}
+
+	@Override
+	public String toString() {
+		float mb = 1 << 20;
+		return String.format("Memory %.2f MB: tiles %d (objects %.2f MB, segments %.2f MB), packed %d tiles %.2f MB, "
+				+ "visited %.2f MB, queue %.2f MB", getTotal() / mb, loadedTiles, tileObjects / mb, tileSegments / mb,
+				packedOnlyTiles, packedTiles / mb, visitedSegments / mb, queueSegments / mb);
+	}
+
+	public static int align(int size) {
+		return (size + 7) & ~7;
+	}
+
+	public static int sizeOf(int[] a) {
+		return a == null ? 0 : align(ARRAY_HEADER + 4 * a.length);
+	}
+
+	public static int sizeOf(long[] a) {
+		return a == null ? 0 : align(ARRAY_HEADER + 8 * a.length);
+	}
+
+	public static int sizeOf(float[] a) {
+		return a == null ? 0 : align(ARRAY_HEADER + 4 * a.length);
+	}
+
+	public static int sizeOf(String s) {
+		// java.lang.String with UTF-16 char storage (Android)
+		return s == null ? 0 : align(OBJECT_HEADER + REFERENCE + 4 + 4) + align(ARRAY_HEADER + 2 * s.length());
+	}
+
+	public static int sizeOf(int[][] a) {
+		if (a == null) {
+			return 0;
+		}
+		int sz = align(ARRAY_HEADER + REFERENCE * a.length);
+		for (int[] i : a) {
+			sz += sizeOf(i);
+		}
+		return sz;
+	}
+
+	public static int sizeOf(String[] a) {
+		if (a == null) {
+			return 0;
+		}
+		int sz = align(ARRAY_HEADER + REFERENCE * a.length);
+		for (String s : a) {
+			sz += sizeOf(s);
+		}
+		return sz;
+	}
+
+	public static int sizeOf(String[][] a) {
+		if (a == null) {
+			return 0;
+		}
+		int sz = align(ARRAY_HEADER + REFERENCE * a.length);
+		for (String[] i : a) {
+			sz += sizeOf(i);
+		}
+		return sz;
+	}
+
+	// object with given number of references and bytes of primitive fields
+	public static int objectSize(int references, int bytes) {
+		return align(OBJECT_HEADER + REFERENCE * references + bytes);
+	}
+
+	public static int sizeOf(RouteDataObject o) {
+		int sz = ROUTE_DATA_OBJECT_SIZE;
+		sz += sizeOf(o.types) + sizeOf(o.pointsX) + sizeOf(o.pointsY);
+		sz += sizeOf(o.restrictions) + sizeOf(o.restrictionsVia);
+		sz += sizeOf(o.pointTypes) + sizeOf(o.pointNameTypes) + sizeOf(o.pointNames);
+		sz += sizeOf(o.nameIds) + sizeOf(o.heightDistanceArray);
+		if (o.names != null) {
+			// keys, values and states arrays with load factor 0.5
+			int capacity = 2 * Math.max(o.names.size(), 2);
+			sz += INT_OBJECT_MAP_SIZE + align(ARRAY_HEADER + 4 * capacity) + align(ARRAY_HEADER + REFERENCE * capacity)
+					+ align(ARRAY_HEADER + capacity);
+			TIntObjectIterator<String> it = o.names.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				sz += sizeOf(it.value());
+			}
+		}
+		return sz;
+	}
+}
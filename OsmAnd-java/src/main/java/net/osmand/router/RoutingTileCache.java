@@ -0,0 +1,153 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.PackedRouteDataObjects;
+
+/**
+ * Process-wide LRU cache of decoded routing tiles shared by many routing contexts
+ * (see {@link RoutingConfiguration#sharedTileCache}). Tiles are stored packed and not filtered by router,
+ * so contexts of any profile reuse them, each context unpacks own objects and keeps own visited state.
+ * Size is limited by estimated size of packed tiles in bytes.
+ */
+public class RoutingTileCache {
+
+	public static final long DEFAULT_MAX_SIZE = 256 * 1024 * 1024;
+
+	private final long maxSize;
+	private final LinkedHashMap<Key, PackedRouteDataObjects> cache = new LinkedHashMap<Key, PackedRouteDataObjects>(256,
+			0.75f, true);
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private static final class Key {
+		final File file;
+		final long regionPointer;
+		final long subregionPointer;
+
+		Key(File file, long regionPointer, long subregionPointer) {
+			this.file = file;
+			this.regionPointer = regionPointer;
+			this.subregionPointer = subregionPointer;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = file.hashCode();
+			result = 31 * result + (int) (regionPointer ^ (regionPointer >>> 32));
+			result = 31 * result + (int) (subregionPointer ^ (subregionPointer >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return regionPointer == other.regionPointer && subregionPointer == other.subregionPointer
+					&& file.equals(other.file);
+		}
+	}
+
+	public RoutingTileCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public RoutingTileCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	private static Key key(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		if (reader == null || reader.getFile() == null) {
+			return null;
+		}
+		return new Key(reader.getFile(), subregion.routeReg.getFilePointer(), subregion.filePointer);
+	}
+
+	public synchronized PackedRouteDataObjects get(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		Key key = key(reader, subregion);
+		PackedRouteDataObjects p = key == null ? null : cache.get(key);
+		if (p == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return p;
+	}
+
+	/**
+	 * @return tile stored in cache (could be tile put by another context in the meantime)
+	 */
+	public synchronized PackedRouteDataObjects put(BinaryMapIndexReader reader, RouteSubregion subregion,
+			PackedRouteDataObjects tile) {
+		Key key = key(reader, subregion);
+		if (key == null) {
+			return tile;
+		}
+		PackedRouteDataObjects existing = cache.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		cache.put(key, tile);
+		size += tile.getEstimatedSize();
+		Iterator<PackedRouteDataObjects> it = cache.values().iterator();
+		// keep at least the last tile even if it is bigger than cache
+		while (size > maxSize && cache.size() > 1 && it.hasNext()) {
+			size -= it.next().getEstimatedSize();
+			it.remove();
+			evictions++;
+		}
+		return tile;
+	}
+
+	public synchronized void removeFile(File file) {
+		Iterator<Map.Entry<Key, PackedRouteDataObjects>> it = cache.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, PackedRouteDataObjects> e = it.next();
+			if (e.getKey().file.equals(file)) {
+				size -= e.getValue().getEstimatedSize();
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		size = 0;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getTilesCount() {
+		return cache.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+}
@@ -42,6 +42,8 @@ public class TestRouting {
 		public double endLon = 0;
 		public RoutingConfiguration.Builder configBuilder;
 		public String vehicle = "car";
+		public boolean memoryBenchmark = false;
+		public int memoryLimitMb = 0;
 		
 		public static Parameters init(String[] args) throws IOException, XmlPullParserException {
 			Parameters p = new Parameters();
@@ -57,6 +59,10 @@ public class TestRouting {
 					obfDirectory = a.substring("-obfDir=".length());
 				} else if (a.startsWith("-vehicle=")) {
 					p.vehicle = a.substring("-vehicle=".length());
+				} else if (a.startsWith("-memoryBenchmark")) {
+					p.memoryBenchmark = true;
+				} else if (a.startsWith("-memoryLimit=")) {
+					p.memoryLimitMb = Integer.parseInt(a.substring("-memoryLimit=".length()));
 				} else if (a.startsWith("-start=")) {
 					String start = a.substring("-start=".length());
 					String[] pt = start.split(";");
@@ -116,6 +122,11 @@ public class TestRouting {
 //					params.endLat, params.endLon);
 			BinaryMapIndexReader[] rs = collectFiles(params.obfDir.getAbsolutePath());
 			vehicle = params.vehicle;
+			if (params.memoryBenchmark) {
+				runMemoryBenchmark(params.startLat, params.startLon, params.endLat, params.endLon, rs,
+						params.memoryLimitMb == 0 ? RoutingConfiguration.DEFAULT_MEMORY_LIMIT : params.memoryLimitMb);
+				return;
+			}
 			calculateRoute(params.startLat, params.startLon,
 					params.endLat, params.endLon, rs);
 			calculateRoute(params.startLat, params.startLon,
@@ -141,6 +152,7 @@ public class TestRouting {
 	public static void info() {
 		println("Run router tests is console utility to test route calculation for osmand. It is also possible to calculate one route from -start to -end.");
 		println("\nUsage for run tests : runTestsSuite [-routingXmlPath=PATH] [-verbose] [-obfDir=PATH] [-vehicle=VEHICLE_STRING] [-start=lat;lon] [-end=lat;lon]  [-testDir=PATH] {individualTestPath}");
+		println("\nMemory benchmark (route from -start to -end with plain and packed tiles and all tile eviction policies) : -memoryBenchmark [-memoryLimit=MB] -obfDir=PATH -start=lat;lon -end=lat;lon");
     }
 	
 
@@ -305,6 +317,37 @@ public class TestRouting {
 	}
 
 
+	private static void runMemoryBenchmark(double startLat, double startLon, double endLat, double endLon,
+			BinaryMapIndexReader[] rs, int memoryLimitMb) throws IOException, InterruptedException {
+		LatLon start = new LatLon(startLat, startLon);
+		LatLon end = new LatLon(endLat, endLon);
+		for (boolean packed : new boolean[] { false, true }) {
+			for (TileEvictionPolicy.Type policy : TileEvictionPolicy.Type.values()) {
+				RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(memoryLimitMb, NATIVE_MEMORY_TEST_LIMIT);
+				RoutingConfiguration rconfig = RoutingConfiguration.getDefault().build(vehicle, memoryLimits);
+				rconfig.packedTiles = packed;
+				rconfig.tileEvictionPolicy = policy;
+				RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
+				RoutingContext ctx = router.buildRoutingContext(rconfig, lib, rs);
+				long ts = System.currentTimeMillis();
+				List<RouteSegmentResult> route = router.searchRoute(ctx, start, end, null).detailed;
+				long time = System.currentTimeMillis() - ts;
+				RouteCalculationProgress p = ctx.calculationProgress;
+				int packedTiles = 0;
+				for (RoutingContext.RoutingSubregionTile t : ctx.subregionTiles) {
+					if (t.isPacked()) {
+						packedTiles++;
+					}
+				}
+				System.out.println(String.format("Packed tiles %s, eviction %s, limit %d MB: %d ms, route %d segments, "
+						+ "loaded tiles %d (distinct %d, from packed %d, reloaded %d), unloaded %d, resident packed %d, estimated size %.1f MB",
+						packed, policy, memoryLimitMb, time, route == null ? 0 : route.size(), p.loadedTiles,
+						p.distinctLoadedTiles, p.loadedPackedTiles, p.reloadedTiles, p.unloadedTiles, packedTiles,
+						ctx.getCurrentEstimatedSize() / (float) (1 << 20)));
+			}
+		}
+	}
+
 	private static void calculateRoute(double startLat, double startLon, double endLat, double endLon, BinaryMapIndexReader[] rs)
 			throws IOException, InterruptedException {
 		long ts = System.currentTimeMillis();
@@ -0,0 +1,307 @@
+package net.osmand.router;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+/**
+ * Chooses which loaded routing tiles are unloaded first when routing context reaches memory limit
+ * (see {@link RoutingContext#unloadUnusedTiles(long)}).
+ */
+public interface TileEvictionPolicy {
+
+	enum Type {
+		// sort by access counter (penalty for tiles which were already unloaded)
+		ACCESS_COUNT,
+		// least recently used tiles first
+		LRU,
+		// tiles far from current search frontier first
+		FRONTIER_DISTANCE,
+		// second chance (clock) algorithm without sorting
+		CLOCK;
+
+		public TileEvictionPolicy create() {
+			switch (this) {
+			case LRU:
+				return new LruPolicy();
+			case FRONTIER_DISTANCE:
+				return new FrontierDistancePolicy();
+			case CLOCK:
+				return new ClockPolicy();
+			default:
+				return new AccessCountPolicy();
+			}
+		}
+
+		public static Type parse(String name, Type def) {
+			if (name != null) {
+				for (Type t : values()) {
+					if (t.name().equalsIgnoreCase(name)) {
+						return t;
+					}
+				}
+			}
+			return def;
+		}
+	}
+
+	Type getType();
+
+	void tileLoaded(RoutingSubregionTile tile);
+
+	void tileAccessed(RoutingSubregionTile tile);
+
+	/**
+	 * Loaded tiles in order to unload, returned tile is unloaded by caller.
+	 */
+	Iterator<RoutingSubregionTile> evictionOrder(RoutingContext ctx, List<RoutingSubregionTile> loadedTiles);
+
+	void evictionFinished(RoutingContext ctx);
+
+	void clear();
+
+
+	class AccessCountPolicy implements TileEvictionPolicy {
+
+		@Override
+		public Type getType() {
+			return Type.ACCESS_COUNT;
+		}
+
+		@Override
+		public void tileLoaded(RoutingSubregionTile tile) {
+		}
+
+		@Override
+		public void tileAccessed(RoutingSubregionTile tile) {
+		}
+
+		@Override
+		public Iterator<RoutingSubregionTile> evictionOrder(RoutingContext ctx, List<RoutingSubregionTile> loadedTiles) {
+			List<RoutingSubregionTile> list = new ArrayList<RoutingSubregionTile>(loadedTiles);
+			Collections.sort(list, new Comparator<RoutingSubregionTile>() {
+				private int pow(int base, int pw) {
+					int r = 1;
+					for (int i = 0; i < pw; i++) {
+						r *= base;
+					}
+					return r;
+				}
+
+				@Override
+				public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
+					int v1 = (o1.access + 1) * pow(10, o1.getUnloadCont() - 1);
+					int v2 = (o2.access + 1) * pow(10, o2.getUnloadCont() - 1);
+					return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+				}
+			});
+			return list.iterator();
+		}
+
+		@Override
+		public void evictionFinished(RoutingContext ctx) {
+			for (RoutingSubregionTile t : ctx.subregionTiles) {
+				t.access /= 3;
+			}
+		}
+
+		@Override
+		public void clear() {
+		}
+	}
+
+	class LruPolicy implements TileEvictionPolicy {
+
+		// access stamp is kept in tile (RoutingSubregionTile.evictionStamp), so access doesn't need any lookup
+		private long clock;
+
+		@Override
+		public Type getType() {
+			return Type.LRU;
+		}
+
+		@Override
+		public void tileLoaded(RoutingSubregionTile tile) {
+			tile.evictionStamp = ++clock;
+		}
+
+		@Override
+		public void tileAccessed(RoutingSubregionTile tile) {
+			tile.evictionStamp = ++clock;
+		}
+
+		@Override
+		public Iterator<RoutingSubregionTile> evictionOrder(RoutingContext ctx, List<RoutingSubregionTile> loadedTiles) {
+			List<RoutingSubregionTile> list = new ArrayList<RoutingSubregionTile>(loadedTiles);
+			Collections.sort(list, new Comparator<RoutingSubregionTile>() {
+				@Override
+				public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
+					return Long.compare(o1.evictionStamp, o2.evictionStamp);
+				}
+			});
+			return list.iterator();
+		}
+
+		@Override
+		public void evictionFinished(RoutingContext ctx) {
+		}
+
+		@Override
+		public void clear() {
+			clock = 0;
+		}
+	}
+
+	class ClockPolicy implements TileEvictionPolicy {
+
+		// tile is in ring only once (RoutingSubregionTile.inEvictionRing), access seen by last sweep is kept in
+		// RoutingSubregionTile.evictionStamp
+		private final ArrayDeque<RoutingSubregionTile> ring = new ArrayDeque<RoutingSubregionTile>();
+
+		@Override
+		public Type getType() {
+			return Type.CLOCK;
+		}
+
+		@Override
+		public void tileLoaded(RoutingSubregionTile tile) {
+			tile.evictionStamp = tile.access;
+			if (!tile.inEvictionRing) {
+				tile.inEvictionRing = true;
+				ring.addLast(tile);
+			}
+		}
+
+		@Override
+		public void tileAccessed(RoutingSubregionTile tile) {
+		}
+
+		@Override
+		public Iterator<RoutingSubregionTile> evictionOrder(RoutingContext ctx, List<RoutingSubregionTile> loadedTiles) {
+			return new Iterator<RoutingSubregionTile>() {
+				RoutingSubregionTile next;
+				// every tile gets only one second chance per sweep
+				int secondChances = ring.size();
+
+				@Override
+				public boolean hasNext() {
+					while (next == null && !ring.isEmpty()) {
+						RoutingSubregionTile t = ring.pollFirst();
+						if (!t.isLoaded()) {
+							t.inEvictionRing = false;
+							continue;
+						}
+						if (t.access != t.evictionStamp && secondChances-- > 0) {
+							// referenced since last sweep
+							t.evictionStamp = t.access;
+							ring.addLast(t);
+						} else {
+							// tile is unloaded by caller
+							t.inEvictionRing = false;
+							next = t;
+						}
+					}
+					return next != null;
+				}
+
+				@Override
+				public RoutingSubregionTile next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					RoutingSubregionTile t = next;
+					next = null;
+					return t;
+				}
+			};
+		}
+
+		@Override
+		public void evictionFinished(RoutingContext ctx) {
+		}
+
+		@Override
+		public void clear() {
+			for (RoutingSubregionTile t : ring) {
+				t.inEvictionRing = false;
+			}
+			ring.clear();
+		}
+	}
+
+	class FrontierDistancePolicy implements TileEvictionPolicy {
+
+		@Override
+		public Type getType() {
+			return Type.FRONTIER_DISTANCE;
+		}
+
+		@Override
+		public void tileLoaded(RoutingSubregionTile tile) {
+		}
+
+		@Override
+		public void tileAccessed(RoutingSubregionTile tile) {
+		}
+
+		@Override
+		public Iterator<RoutingSubregionTile> evictionOrder(final RoutingContext ctx, List<RoutingSubregionTile> loadedTiles) {
+			final int n = loadedTiles.size();
+			final double[] dist = new double[n];
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				dist[i] = frontierDistance(ctx, loadedTiles.get(i));
+				order[i] = i;
+			}
+			final List<RoutingSubregionTile> tiles = loadedTiles;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int c = Double.compare(dist[o2], dist[o1]);
+					if (c == 0) {
+						c = Integer.compare(tiles.get(o1).access, tiles.get(o2).access);
+					}
+					return c;
+				}
+			});
+			List<RoutingSubregionTile> list = new ArrayList<RoutingSubregionTile>(n);
+			for (Integer i : order) {
+				list.add(loadedTiles.get(i));
+			}
+			return list.iterator();
+		}
+
+		private double frontierDistance(RoutingContext ctx, RoutingSubregionTile t) {
+			double cx = t.subregion.left / 2.0 + t.subregion.right / 2.0;
+			double cy = t.subregion.top / 2.0 + t.subregion.bottom / 2.0;
+			double d = Double.MAX_VALUE;
+			if (ctx.frontierDirectX != 0 || ctx.frontierDirectY != 0) {
+				d = Math.min(d, squareDist(cx, cy, ctx.frontierDirectX, ctx.frontierDirectY));
+			}
+			if (ctx.frontierReverseX != 0 || ctx.frontierReverseY != 0) {
+				d = Math.min(d, squareDist(cx, cy, ctx.frontierReverseX, ctx.frontierReverseY));
+			}
+			// without frontier (search isn't started) all tiles are equal and sorted by access
+			return d == Double.MAX_VALUE ? 0 : d;
+		}
+
+		private static double squareDist(double x1, double y1, double x2, double y2) {
+			return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+		}
+
+		@Override
+		public void evictionFinished(RoutingContext ctx) {
+		}
+
+		@Override
+		public void clear() {
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+/**
+ * Transport stops and combined routes (with schedules) of set of files loaded once.
+ * Snapshot is not changed after it is built, so it could be shared by many {@link TransportRoutingContext}
+ * running in parallel: contexts take stops from snapshot's spatial index instead of reading files
+ * and {@link TransportRaptorPlanner} reuses one network of whole snapshot for equal configurations.
+ */
+public class TransportNetworkSnapshot {
+
+	// zoom of stops spatial index
+	public static final int INDEX_ZOOM = 15;
+
+	private final TransportStop[] stops;
+	// tile (x << 32 | y) of stops, sorted
+	private final long[] stopTiles;
+	private final TLongObjectHashMap<TransportStop> stopsById;
+	private final TLongObjectHashMap<TransportRoute> routes;
+	private final Map<String, TransportRaptorNetwork> raptorNetworks = new HashMap<String, TransportRaptorNetwork>();
+
+	public final long buildTime;
+
+	private TransportNetworkSnapshot(Collection<TransportStop> loaded, long buildStart) {
+		List<TransportStop> lst = new ArrayList<TransportStop>();
+		stopsById = new TLongObjectHashMap<TransportStop>();
+		routes = new TLongObjectHashMap<TransportRoute>();
+		for (TransportStop s : loaded) {
+			if (s.isDeleted() || s.isMissingStop() || s.getRoutes() == null || s.getRoutes().isEmpty()) {
+				continue;
+			}
+			if (s.x31 == 0 && s.y31 == 0) {
+				s.x31 = MapUtils.get31TileNumberX(s.getLocation().getLongitude());
+				s.y31 = MapUtils.get31TileNumberY(s.getLocation().getLatitude());
+			}
+			lst.add(s);
+			stopsById.put(s.getId(), s);
+			for (TransportRoute r : s.getRoutes()) {
+				if (!routes.containsKey(r.getId())) {
+					// ways are merged lazily for geometry of result, so merge them before snapshot is shared
+					r.mergeForwardWays();
+					routes.put(r.getId(), r);
+				}
+			}
+		}
+		Collections.sort(lst, new Comparator<TransportStop>() {
+
+			@Override
+			public int compare(TransportStop o1, TransportStop o2) {
+				return Long.compare(getTile(o1.x31, o1.y31), getTile(o2.x31, o2.y31));
+			}
+		});
+		stops = lst.toArray(new TransportStop[lst.size()]);
+		stopTiles = new long[stops.length];
+		for (int i = 0; i < stops.length; i++) {
+			stopTiles[i] = getTile(stops[i].x31, stops[i].y31);
+		}
+		buildTime = System.nanoTime() - buildStart;
+	}
+
+	/**
+	 * Reads all transport stops and routes of files, incomplete routes are combined from all files.
+	 */
+	public static TransportNetworkSnapshot build(Collection<BinaryMapIndexReader> readers) throws IOException {
+		long ts = System.nanoTime();
+		TransportStopsRouteReader reader = new TransportStopsRouteReader(readers);
+		SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, -1, null);
+		return new TransportNetworkSnapshot(reader.readMergedTransportStops(sr), ts);
+	}
+
+	private static long getTile(int x31, int y31) {
+		return (((long) (x31 >> (31 - INDEX_ZOOM))) << 32) | (y31 >> (31 - INDEX_ZOOM));
+	}
+
+	/**
+	 * Stops with routes inside area (31 tile numbers) are added to result.
+	 */
+	public List<TransportStop> getStops(int left31, int top31, int right31, int bottom31, List<TransportStop> res) {
+		int lx = left31 >> (31 - INDEX_ZOOM);
+		int rx = right31 >> (31 - INDEX_ZOOM);
+		int ty = top31 >> (31 - INDEX_ZOOM);
+		int by = bottom31 >> (31 - INDEX_ZOOM);
+		for (int x = lx; x <= rx; x++) {
+			long to = (((long) x) << 32) | by;
+			int ind = lowerBound(stopTiles, (((long) x) << 32) | ty);
+			for (; ind < stopTiles.length && stopTiles[ind] <= to; ind++) {
+				TransportStop s = stops[ind];
+				if (s.x31 >= left31 && s.x31 <= right31 && s.y31 >= top31 && s.y31 <= bottom31) {
+					res.add(s);
+				}
+			}
+		}
+		return res;
+	}
+
+	private static int lowerBound(long[] keys, long key) {
+		int lo = 0;
+		int hi = keys.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	public TransportStop getStop(long id) {
+		return stopsById.get(id);
+	}
+
+	public TransportRoute getRoute(long id) {
+		return routes.get(id);
+	}
+
+	public Collection<TransportRoute> getRoutes() {
+		return routes.valueCollection();
+	}
+
+	public int getStopsCount() {
+		return stops.length;
+	}
+
+	public int getRoutesCount() {
+		return routes.size();
+	}
+
+	/**
+	 * Network of all routes for round based search, it's built once for equal routing parameters.
+	 */
+	public TransportRaptorNetwork getRaptorNetwork(TransportRoutingConfiguration cfg) {
+		String key = TransportRaptorNetwork.getKey(cfg);
+		synchronized (raptorNetworks) {
+			TransportRaptorNetwork network = raptorNetworks.get(key);
+			if (network == null) {
+				network = TransportRaptorNetwork.build(cfg, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE,
+						routes.valueCollection());
+				raptorNetworks.put(key, network);
+			}
+			return network;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Transport snapshot: %d stops, %d routes, built %.1f ms", stops.length, routes.size(),
+				buildTime / 1e6);
+	}
+}
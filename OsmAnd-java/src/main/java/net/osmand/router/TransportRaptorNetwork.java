@@ -0,0 +1,294 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+/**
+ * Array based model of transport routes for round based search ({@link TransportRaptorPlanner}).
+ * Stops are merged by id, every route keeps all its forward stops (positions match {@link TransportRoute#getForwardStops()}),
+ * travel times are precalculated from schedule or route type speed and walking transfers are precalculated within
+ * {@link TransportRoutingConfiguration#walkChangeRadius}. Network is immutable after it is built.
+ */
+public class TransportRaptorNetwork {
+
+	// routing parameters network is built with (see getKey)
+	public final String key;
+	public final boolean useSchedule;
+	// covered area (31 tile numbers)
+	public final int left31;
+	public final int top31;
+	public final int right31;
+	public final int bottom31;
+
+	public final TransportStop[] stops;
+	public final int[] stopX;
+	public final int[] stopY;
+	// (x << 32 | stop) sorted to find stops by x range
+	public final long[] stopsByX;
+
+	public final TransportRoute[] routes;
+	// positions of route r are [routeOffsets[r], routeOffsets[r + 1])
+	public final int[] routeOffsets;
+	public final int[] routeStops;
+	// travel time (seconds) and distance (meters) from first stop of route
+	public final int[] routeTimes;
+	public final int[] routeDists;
+	// sorted departures (seconds of day) from first stop of route r are [tripOffsets[r], tripOffsets[r + 1])
+	public final int[] tripOffsets;
+	public final int[] tripStarts;
+
+	// routes passing stop s are [stopRouteOffsets[s], stopRouteOffsets[s + 1]) with position of stop in route
+	public final int[] stopRouteOffsets;
+	public final int[] stopRoutes;
+	public final int[] stopRoutePositions;
+
+	// walking transfers of stop s are [transferOffsets[s], transferOffsets[s + 1])
+	public final int[] transferOffsets;
+	public final int[] transferStops;
+	public final int[] transferDists;
+
+	private TransportRaptorNetwork(TransportRoutingConfiguration cfg, int left31, int top31, int right31,
+			int bottom31, List<TransportRoute> rts) {
+		this.key = getKey(cfg);
+		this.useSchedule = cfg.useSchedule;
+		this.left31 = left31;
+		this.top31 = top31;
+		this.right31 = right31;
+		this.bottom31 = bottom31;
+		TLongObjectHashMap<Integer> stopIndexes = new TLongObjectHashMap<Integer>();
+		List<TransportStop> stopsList = new ArrayList<TransportStop>();
+		List<TransportRoute> routesList = new ArrayList<TransportRoute>();
+		TIntArrayList offsets = new TIntArrayList();
+		TIntArrayList rstops = new TIntArrayList();
+		TIntArrayList times = new TIntArrayList();
+		TIntArrayList dists = new TIntArrayList();
+		TIntArrayList toffsets = new TIntArrayList();
+		TIntArrayList tstarts = new TIntArrayList();
+		for (TransportRoute route : rts) {
+			List<TransportStop> fs = route.getForwardStops();
+			TransportSchedule schedule = route.getSchedule();
+			if (fs.size() < 2 || (useSchedule && (schedule == null || schedule.tripIntervals.isEmpty()))) {
+				continue;
+			}
+			float speed = cfg.getSpeedByRouteType(route.getType());
+			if (speed == 0) {
+				continue;
+			}
+			offsets.add(rstops.size());
+			toffsets.add(tstarts.size());
+			routesList.add(route);
+			int time = 0;
+			double dist = 0;
+			TransportStop prev = null;
+			for (int i = 0; i < fs.size(); i++) {
+				TransportStop st = fs.get(i);
+				Integer ind = stopIndexes.get(st.getId());
+				if (ind == null) {
+					ind = stopsList.size();
+					stopIndexes.put(st.getId(), ind);
+					stopsList.add(st);
+				}
+				if (prev != null) {
+					double d = MapUtils.getDistance(prev.getLocation(), st.getLocation());
+					dist += d;
+					if (useSchedule && schedule.avgStopIntervals.size() > i - 1) {
+						time += schedule.avgStopIntervals.get(i - 1) * 10;
+					} else {
+						time += (int) (cfg.stopTime + d / speed);
+					}
+				}
+				rstops.add(ind);
+				times.add(time);
+				dists.add((int) dist);
+				prev = st;
+			}
+			if (useSchedule) {
+				int t = 0;
+				for (int i = 0; i < schedule.tripIntervals.size(); i++) {
+					t += schedule.tripIntervals.getQuick(i);
+					tstarts.add(t * 10);
+				}
+				tstarts.sort(toffsets.get(toffsets.size() - 1), tstarts.size());
+			}
+		}
+		offsets.add(rstops.size());
+		toffsets.add(tstarts.size());
+		this.stops = stopsList.toArray(new TransportStop[stopsList.size()]);
+		this.routes = routesList.toArray(new TransportRoute[routesList.size()]);
+		this.routeOffsets = offsets.toArray();
+		this.routeStops = rstops.toArray();
+		this.routeTimes = times.toArray();
+		this.routeDists = dists.toArray();
+		this.tripOffsets = toffsets.toArray();
+		this.tripStarts = tstarts.toArray();
+		stopX = new int[stops.length];
+		stopY = new int[stops.length];
+		for (int i = 0; i < stops.length; i++) {
+			stopX[i] = stops[i].x31;
+			stopY[i] = stops[i].y31;
+			if (stopX[i] == 0 && stopY[i] == 0) {
+				stopX[i] = MapUtils.get31TileNumberX(stops[i].getLocation().getLongitude());
+				stopY[i] = MapUtils.get31TileNumberY(stops[i].getLocation().getLatitude());
+			}
+		}
+
+		// stop -> routes
+		stopRouteOffsets = new int[stops.length + 1];
+		for (int p = 0; p < routeStops.length; p++) {
+			stopRouteOffsets[routeStops[p] + 1]++;
+		}
+		for (int s = 0; s < stops.length; s++) {
+			stopRouteOffsets[s + 1] += stopRouteOffsets[s];
+		}
+		stopRoutes = new int[routeStops.length];
+		stopRoutePositions = new int[routeStops.length];
+		int[] fill = Arrays.copyOf(stopRouteOffsets, stops.length);
+		for (int r = 0; r < routes.length; r++) {
+			for (int p = routeOffsets[r]; p < routeOffsets[r + 1]; p++) {
+				int ind = fill[routeStops[p]]++;
+				stopRoutes[ind] = r;
+				stopRoutePositions[ind] = p;
+			}
+		}
+
+		// walking transfers, sweep over stops sorted by x
+		int radius31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
+		stopsByX = new long[stops.length];
+		for (int s = 0; s < stops.length; s++) {
+			stopsByX[s] = ((long) stopX[s] << 32) | s;
+		}
+		Arrays.sort(stopsByX);
+		long[] sortedX = stopsByX;
+		List<TIntArrayList> nbStops = new ArrayList<TIntArrayList>(stops.length);
+		List<TIntArrayList> nbDists = new ArrayList<TIntArrayList>(stops.length);
+		for (int s = 0; s < stops.length; s++) {
+			nbStops.add(null);
+			nbDists.add(null);
+		}
+		int transfers = 0;
+		for (int i = 0; i < sortedX.length; i++) {
+			int s = (int) sortedX[i];
+			for (int j = i + 1; j < sortedX.length; j++) {
+				int t = (int) sortedX[j];
+				if (stopX[t] - stopX[s] > radius31) {
+					break;
+				}
+				if (Math.abs(stopY[t] - stopY[s]) > radius31) {
+					continue;
+				}
+				double d = MapUtils.getDistance(stops[s].getLocation(), stops[t].getLocation());
+				if (d <= cfg.walkChangeRadius) {
+					addTransfer(nbStops, nbDists, s, t, (int) d);
+					addTransfer(nbStops, nbDists, t, s, (int) d);
+					transfers += 2;
+				}
+			}
+		}
+		transferOffsets = new int[stops.length + 1];
+		transferStops = new int[transfers];
+		transferDists = new int[transfers];
+		for (int s = 0; s < stops.length; s++) {
+			int ind = transferOffsets[s];
+			if (nbStops.get(s) != null) {
+				nbStops.get(s).toArray(transferStops, 0, ind, nbStops.get(s).size());
+				nbDists.get(s).toArray(transferDists, 0, ind, nbDists.get(s).size());
+				ind += nbStops.get(s).size();
+			}
+			transferOffsets[s + 1] = ind;
+		}
+	}
+
+	private static void addTransfer(List<TIntArrayList> nbStops, List<TIntArrayList> nbDists, int s, int t, int d) {
+		if (nbStops.get(s) == null) {
+			nbStops.set(s, new TIntArrayList(4));
+			nbDists.set(s, new TIntArrayList(4));
+		}
+		nbStops.get(s).add(t);
+		nbDists.get(s).add(d);
+	}
+
+	/**
+	 * @return key of routing parameters used to build network (network could be reused only with equal key)
+	 */
+	public static String getKey(TransportRoutingConfiguration cfg) {
+		// speeds of route types are defined by router
+		StringBuilder key = new StringBuilder();
+		key.append(cfg.useSchedule).append('_').append(cfg.walkChangeRadius).append('_').append(cfg.stopTime)
+				.append('_').append(cfg.defaultTravelSpeed);
+		if (cfg.router != null) {
+			key.append('_').append(cfg.router.getProfile()).append('_').append(cfg.router.getParameterValues());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Builds network from routes, routes are merged by id.
+	 */
+	public static TransportRaptorNetwork build(TransportRoutingConfiguration cfg, int left31, int top31, int right31,
+			int bottom31, Collection<TransportRoute> routes) {
+		TLongObjectHashMap<TransportRoute> unique = new TLongObjectHashMap<TransportRoute>();
+		List<TransportRoute> rts = new ArrayList<TransportRoute>();
+		for (TransportRoute r : routes) {
+			if (!unique.containsKey(r.getId())) {
+				unique.put(r.getId(), r);
+				rts.add(r);
+			}
+		}
+		return new TransportRaptorNetwork(cfg, left31, top31, right31, bottom31, rts);
+	}
+
+	/**
+	 * Stops inside square (31 tile numbers) around point are added to result.
+	 */
+	public TIntArrayList getStops(int x31, int y31, int radius31, TIntArrayList res) {
+		long from = (long) (x31 - radius31) << 32;
+		int lo = 0;
+		int hi = stopsByX.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (stopsByX[mid] < from) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		for (int i = lo; i < stopsByX.length && (stopsByX[i] >> 32) <= (long) x31 + radius31; i++) {
+			int s = (int) stopsByX[i];
+			if (Math.abs(stopY[s] - y31) <= radius31) {
+				res.add(s);
+			}
+		}
+		return res;
+	}
+
+	public boolean contains(int left31, int top31, int right31, int bottom31) {
+		return this.left31 <= left31 && this.right31 >= right31 && this.top31 <= top31 && this.bottom31 >= bottom31;
+	}
+
+	public int getStopsCount() {
+		return stops.length;
+	}
+
+	public int getRoutesCount() {
+		return routes.length;
+	}
+
+	public double getDistance(int s, int t) {
+		return MapUtils.getDistance(stops[s].getLocation(), stops[t].getLocation());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Transport network: %d stops, %d routes, %d route stops, %d trips, %d transfers",
+				stops.length, routes.length, routeStops.length, tripStarts.length, transferStops.length);
+	}
+}
@@ -0,0 +1,331 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+/**
+ * Round based (RAPTOR) public transport search over {@link TransportRaptorNetwork}.
+ * Round k finds earliest arrivals with k trips, every stop is improved only if it's reached earlier than
+ * with less trips, so search is limited by {@link TransportRoutingConfiguration#maxNumberOfChanges} + 1 rounds
+ * without keeping visited segments. Result contains pareto optimal routes (arrival time x number of changes).
+ * Times are in seconds from start of search ({@link TransportRoutingConfiguration#scheduleTimeOfDay} with schedule).
+ */
+public class TransportRaptorPlanner {
+
+	private static final int INF = Integer.MAX_VALUE;
+	// network is loaded for bbox of start and end extended by this part of distance (but not more than max margin)
+	private static final double NETWORK_BBOX_MARGIN = 0.25;
+	private static final double NETWORK_BBOX_MAX_MARGIN = 10000;
+
+	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end)
+			throws IOException, InterruptedException {
+		ctx.startCalcTime = System.currentTimeMillis();
+		TransportRoutingConfiguration cfg = ctx.cfg;
+		double totalDistance = MapUtils.getDistance(start, end);
+		TransportRaptorNetwork network = getNetwork(ctx, start, end, totalDistance);
+		long searchTime = System.nanoTime();
+		int n = network.stops.length;
+		int sx = MapUtils.get31TileNumberX(start.getLongitude());
+		int sy = MapUtils.get31TileNumberY(start.getLatitude());
+		int ex = MapUtils.get31TileNumberX(end.getLongitude());
+		int ey = MapUtils.get31TileNumberY(end.getLatitude());
+
+		double finishTime = cfg.maxRouteTime;
+		if (totalDistance > cfg.maxRouteDistance && cfg.maxRouteIncreaseSpeed > 0) {
+			finishTime += (totalDistance - cfg.maxRouteDistance) * 3.6 / cfg.maxRouteIncreaseSpeed;
+		}
+		int maxTime = (int) Math.min(finishTime, INF - 1);
+		int maxDeparture = cfg.scheduleMaxTime * 10;
+		double maxTravelTimeCmpToWalk = totalDistance / cfg.walkSpeed - cfg.changeTime / 2;
+		int rounds = Math.max(cfg.maxNumberOfChanges, 0) + 1;
+
+		// arrival after walking (used for boarding) and arrival by trip of every round
+		int[][] arrival = new int[rounds + 1][];
+		int[][] tripArrival = new int[rounds + 1][];
+		// walking source of arrival (-1 start point), boarding position, exit position and departure of trip
+		int[][] walkFrom = new int[rounds + 1][];
+		int[][] boardPos = new int[rounds + 1][];
+		int[][] exitPos = new int[rounds + 1][];
+		int[][] departure = new int[rounds + 1][];
+		int[] bestArrival = new int[n];
+		int[] bestTripArrival = new int[n];
+		Arrays.fill(bestArrival, INF);
+		Arrays.fill(bestTripArrival, INF);
+		int[] endWalk = new int[n];
+		Arrays.fill(endWalk, INF);
+		TIntArrayList endStops = new TIntArrayList();
+		TIntArrayList marked = new TIntArrayList();
+		boolean[] markedStops = new boolean[n];
+
+		arrival[0] = newArray(n);
+		walkFrom[0] = newArray(n);
+		int walk31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
+		TIntArrayList near = network.getStops(sx, sy, walk31, new TIntArrayList());
+		for (int i = 0; i < near.size(); i++) {
+			int s = near.getQuick(i);
+			double d = MapUtils.getDistance(network.stops[s].getLocation(), start);
+			if (d <= cfg.walkRadius) {
+				arrival[0][s] = bestArrival[s] = (int) (d / cfg.walkSpeed);
+				walkFrom[0][s] = -1;
+				marked.add(s);
+			}
+		}
+		near = network.getStops(ex, ey, walk31, new TIntArrayList());
+		for (int i = 0; i < near.size(); i++) {
+			int s = near.getQuick(i);
+			double d = MapUtils.getDistance(network.stops[s].getLocation(), end);
+			if (d <= cfg.walkRadius) {
+				endWalk[s] = (int) (d / cfg.walkSpeed);
+				endStops.add(s);
+			}
+		}
+		if (marked.isEmpty() || endStops.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		int bestTarget = INF;
+		int[] roundTarget = new int[rounds + 1];
+		int[] roundEndStop = new int[rounds + 1];
+		Arrays.fill(roundTarget, INF);
+		int[] routeFirstPos = new int[network.routes.length];
+		Arrays.fill(routeFirstPos, -1);
+		TIntArrayList queuedRoutes = new TIntArrayList();
+		TIntArrayList improved = new TIntArrayList();
+		for (int k = 1; k <= rounds && !marked.isEmpty(); k++) {
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				return null;
+			}
+			int penalty = k > 1 ? cfg.getChangeTime() + cfg.getBoardingTime() : 0;
+			int[] prevArrival = arrival[k - 1];
+			int[] ta = tripArrival[k] = newArray(n);
+			int[] bp = boardPos[k] = newArray(n);
+			int[] xp = exitPos[k] = newArray(n);
+			int[] dp = departure[k] = newArray(n);
+
+			// routes passing marked stops from earliest marked position
+			queuedRoutes.resetQuick();
+			for (int i = 0; i < marked.size(); i++) {
+				int s = marked.getQuick(i);
+				markedStops[s] = false;
+				for (int j = network.stopRouteOffsets[s]; j < network.stopRouteOffsets[s + 1]; j++) {
+					int r = network.stopRoutes[j];
+					int p = network.stopRoutePositions[j];
+					if (routeFirstPos[r] == -1) {
+						queuedRoutes.add(r);
+						routeFirstPos[r] = p;
+					} else if (p < routeFirstPos[r]) {
+						routeFirstPos[r] = p;
+					}
+				}
+			}
+			marked.resetQuick();
+
+			improved.resetQuick();
+			for (int i = 0; i < queuedRoutes.size(); i++) {
+				int r = queuedRoutes.getQuick(i);
+				int first = routeFirstPos[r];
+				routeFirstPos[r] = -1;
+				ctx.visitedRoutesCount++;
+				int routeEnd = network.routeOffsets[r + 1];
+				// departure of current trip from first stop of route
+				int tripBase = INF;
+				int tripBoardPos = -1;
+				for (int p = first; p < routeEnd; p++) {
+					int s = network.routeStops[p];
+					ctx.visitedStops++;
+					if (tripBoardPos != -1) {
+						int t = tripBase + network.routeTimes[p];
+						if (t < bestTripArrival[s] && t < bestTarget && t <= maxTime) {
+							if (ta[s] == INF) {
+								improved.add(s);
+							}
+							ta[s] = bestTripArrival[s] = t;
+							bp[s] = tripBoardPos;
+							xp[s] = p;
+							dp[s] = tripBase + network.routeTimes[tripBoardPos];
+						}
+					}
+					if (prevArrival[s] == INF) {
+						continue;
+					}
+					int ready = prevArrival[s] + penalty;
+					int base;
+					if (network.useSchedule) {
+						base = findTrip(network, r, ready - network.routeTimes[p], cfg.scheduleTimeOfDay * 10);
+						if (base == INF || base + network.routeTimes[p] > maxDeparture) {
+							continue;
+						}
+					} else {
+						base = ready - network.routeTimes[p];
+					}
+					if (base < tripBase) {
+						tripBase = base;
+						tripBoardPos = p;
+					}
+				}
+			}
+
+			// arrivals to destination
+			for (int i = 0; i < endStops.size(); i++) {
+				int s = endStops.getQuick(i);
+				if (ta[s] != INF && ta[s] + endWalk[s] < bestTarget) {
+					bestTarget = ta[s] + endWalk[s];
+					roundTarget[k] = bestTarget;
+					roundEndStop[k] = s;
+				}
+			}
+
+			// walking transfers
+			int[] arr = arrival[k] = newArray(n);
+			int[] wf = walkFrom[k] = newArray(n);
+			for (int i = 0; i < improved.size(); i++) {
+				int s = improved.getQuick(i);
+				int t = ta[s];
+				if (t < bestArrival[s] && t < bestTarget) {
+					arr[s] = bestArrival[s] = t;
+					wf[s] = s;
+					addMarked(marked, markedStops, s);
+				}
+				for (int j = network.transferOffsets[s]; j < network.transferOffsets[s + 1]; j++) {
+					int nb = network.transferStops[j];
+					int nt = t + (int) (network.transferDists[j] / cfg.walkSpeed);
+					if (nt < bestArrival[nb] && nt < bestTarget) {
+						arr[nb] = bestArrival[nb] = nt;
+						wf[nb] = s;
+						addMarked(marked, markedStops, nb);
+					}
+				}
+			}
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.directSegmentQueueSize = marked.size();
+				if (bestTarget != INF) {
+					ctx.calculationProgress.distanceFromBegin = bestTarget;
+				}
+			}
+		}
+		for (int i = 0; i < marked.size(); i++) {
+			markedStops[marked.getQuick(i)] = false;
+		}
+
+		List<TransportRouteResult> results = new ArrayList<TransportRouteResult>();
+		for (int k = 1; k <= rounds; k++) {
+			if (roundTarget[k] == INF || (roundTarget[k] > maxTravelTimeCmpToWalk && !results.isEmpty())) {
+				continue;
+			}
+			TransportRouteResult route = new TransportRouteResult(ctx);
+			int s = roundEndStop[k];
+			route.routeTime = roundTarget[k];
+			route.finishWalkDist = MapUtils.getDistance(network.stops[s].getLocation(), end);
+			for (int j = k; j > 0; j--) {
+				int b = boardPos[j][s];
+				int x = exitPos[j][s];
+				int r = findRoute(network, b);
+				int boardStop = network.routeStops[b];
+				int w = walkFrom[j - 1][boardStop];
+				TransportRouteResultSegment sg = new TransportRouteResultSegment();
+				sg.route = network.routes[r];
+				sg.start = b - network.routeOffsets[r];
+				sg.end = x - network.routeOffsets[r];
+				if (w == -1) {
+					sg.walkDist = MapUtils.getDistance(network.stops[boardStop].getLocation(), start);
+				} else if (w != boardStop) {
+					sg.walkDist = network.getDistance(w, boardStop);
+				}
+				sg.walkTime = sg.walkDist / cfg.walkSpeed;
+				sg.depTime = network.useSchedule ? departure[j][s] / 10 + cfg.scheduleTimeOfDay : -1;
+				sg.travelTime = network.routeTimes[x] - network.routeTimes[b];
+				sg.travelDistApproximate = network.routeDists[x] - network.routeDists[b];
+				route.segments.add(0, sg);
+				s = w;
+			}
+			results.add(route);
+		}
+		System.out.println(String.format(Locale.US,
+				"Raptor calculated %.1f ms (search %.1f ms), found %d results, %d rounds, visited %d routes / %d stops. %s",
+				(double) (System.currentTimeMillis() - ctx.startCalcTime), (System.nanoTime() - searchTime) / 1e6,
+				results.size(), rounds, ctx.visitedRoutesCount, ctx.visitedStops, network));
+		for (TransportRouteResult r : results) {
+			System.out.println(r);
+		}
+		return results;
+	}
+
+	private TransportRaptorNetwork getNetwork(TransportRoutingContext ctx, LatLon start, LatLon end,
+			double totalDistance) throws IOException {
+		if (ctx.snapshot != null) {
+			return ctx.snapshot.getRaptorNetwork(ctx.cfg);
+		}
+		double margin = ctx.cfg.walkRadius + Math.min(totalDistance * NETWORK_BBOX_MARGIN, NETWORK_BBOX_MAX_MARGIN);
+		int margin31 = (int) (margin / MapUtils.getTileDistanceWidth(31));
+		int sx = MapUtils.get31TileNumberX(start.getLongitude());
+		int sy = MapUtils.get31TileNumberY(start.getLatitude());
+		int ex = MapUtils.get31TileNumberX(end.getLongitude());
+		int ey = MapUtils.get31TileNumberY(end.getLatitude());
+		// previous network is reused if it's built with the same parameters and covers stops reachable by walking
+		// from start and end
+		int walk31 = (int) (ctx.cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
+		TransportRaptorNetwork network = ctx.raptorNetwork;
+		if (network != null && network.key.equals(TransportRaptorNetwork.getKey(ctx.cfg))
+				&& network.contains(Math.min(sx, ex) - walk31, Math.min(sy, ey) - walk31, Math.max(sx, ex) + walk31,
+						Math.max(sy, ey) + walk31)) {
+			return network;
+		}
+		int left = Math.max(0, Math.min(sx, ex) - margin31);
+		int right = Math.min(Integer.MAX_VALUE - 1, Math.max(sx, ex) + margin31);
+		int top = Math.max(0, Math.min(sy, ey) - margin31);
+		int bottom = Math.min(Integer.MAX_VALUE - 1, Math.max(sy, ey) + margin31);
+		List<TransportRouteSegment> segments = ctx.getTransportSegments(left, top, right, bottom);
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		for (TransportRouteSegment s : segments) {
+			routes.add(s.road);
+		}
+		network = TransportRaptorNetwork.build(ctx.cfg, left, top, right, bottom, routes);
+		ctx.raptorNetwork = network;
+		return network;
+	}
+
+	// departure (seconds from start of search) from first stop of earliest trip not earlier than time
+	private static int findTrip(TransportRaptorNetwork network, int r, int time, int startTime) {
+		int lo = network.tripOffsets[r];
+		int hi = network.tripOffsets[r + 1];
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (network.tripStarts[mid] - startTime < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo < network.tripOffsets[r + 1] ? network.tripStarts[lo] - startTime : INF;
+	}
+
+	private static int findRoute(TransportRaptorNetwork network, int pos) {
+		// routes have at least 2 stops, so offsets are unique
+		int r = Arrays.binarySearch(network.routeOffsets, pos);
+		return r < 0 ? -r - 2 : r;
+	}
+
+	private static void addMarked(TIntArrayList marked, boolean[] markedStops, int s) {
+		if (!markedStops[s]) {
+			markedStops[s] = true;
+			marked.add(s);
+		}
+	}
+
+	private static int[] newArray(int n) {
+		int[] a = new int[n];
+		Arrays.fill(a, INF);
+		return a;
+	}
+}
@@ -35,6 +35,8 @@ public class TransportRoutingConfiguration {
 	public int boardingTime = 180;
 	
 	public boolean useSchedule;
+	// round based search over array network (TransportRaptorPlanner)
+	public boolean useRaptor;
 	// 10 seconds based
 	public int scheduleTimeOfDay = 12 * 60 * 6; // 12:00 - 60*6*12
 	public int scheduleMaxTime = 50 * 6; // not appropriate variable, should be dynamic
@@ -90,6 +92,10 @@ public class TransportRoutingConfiguration {
 			maxRouteIncreaseSpeed =  router.getIntAttribute("maxRouteIncreaseSpeed", maxRouteIncreaseSpeed);
 			maxRouteDistance =  router.getIntAttribute("maxRouteDistance", maxRouteDistance);
 			finishTimeSeconds =  router.getIntAttribute("delayForAlternativesRoutes", finishTimeSeconds);
+			String raptor = router.getAttribute("useRaptor");
+			if (raptor != null) {
+				useRaptor = Boolean.parseBoolean(raptor);
+			}
 			String mn = params.get("max_num_changes");
 			maxNumberOfChanges = (int) RoutingConfiguration.parseSilentFloat(mn, maxNumberOfChanges);
 			
@@ -34,7 +34,11 @@ public class TransportRoutingContext {
 	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
 	// so here an improvement could be introduced
 	final TransportStopsRouteReader transportStopsReader;
+	// shared stops and routes, files are not read if it's set
+	public final TransportNetworkSnapshot snapshot;
 	public int finishTimeSeconds;
+	// network of loaded routes for round based search (see TransportRaptorPlanner)
+	public TransportRaptorNetwork raptorNetwork;
 
 	// stats
 	public long startCalcTime;
@@ -55,6 +59,17 @@ public class TransportRoutingContext {
 		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
 		this.library = library;
 		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		snapshot = null;
+	}
+
+	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportNetworkSnapshot snapshot) {
+		this.cfg = cfg;
+		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
+		walkChangeRadiusIn31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
+		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
+		this.library = library;
+		this.transportStopsReader = null;
+		this.snapshot = snapshot;
 	}
 
 	public List<TransportRouteSegment> getTransportStops(LatLon loc) throws IOException {
@@ -67,6 +82,31 @@ public class TransportRoutingContext {
 		return loadNativeTransportStops(x, y, change, res);
 	}
 
+	/**
+	 * Loads all tiles of area and returns route segments of all stops in it.
+	 */
+	public List<TransportRouteSegment> getTransportSegments(int left31, int top31, int right31, int bottom31) throws IOException {
+		long nanoTime = System.nanoTime();
+		List<TransportRouteSegment> res = new ArrayList<TransportRouteSegment>();
+		int lx = left31 >> (31 - cfg.ZOOM_TO_LOAD_TILES);
+		int rx = right31 >> (31 - cfg.ZOOM_TO_LOAD_TILES);
+		int ty = top31 >> (31 - cfg.ZOOM_TO_LOAD_TILES);
+		int by = bottom31 >> (31 - cfg.ZOOM_TO_LOAD_TILES);
+		for (int x = lx; x <= rx; x++) {
+			for (int y = ty; y <= by; y++) {
+				long tileId = (((long) x) << (cfg.ZOOM_TO_LOAD_TILES + 1)) + y;
+				List<TransportRouteSegment> list = quadTree.get(tileId);
+				if (list == null) {
+					list = loadTile(x, y);
+					quadTree.put(tileId, list);
+				}
+				res.addAll(list);
+			}
+		}
+		loadTime += System.nanoTime() - nanoTime;
+		return res;
+	}
+
 	private List<TransportRouteSegment> loadNativeTransportStops(int sx, int sy, boolean change, List<TransportRouteSegment> res) throws IOException {
 		long nanoTime = System.nanoTime();
 		int d = change ? walkChangeRadiusIn31 : walkRadiusIn31;
@@ -102,9 +142,15 @@ public class TransportRoutingContext {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
 		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
-		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
-				y << pz, (y + 1) << pz, -1, null);
-		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
+		Collection<TransportStop> stops;
+		if (snapshot != null) {
+			stops = snapshot.getStops(x << pz, y << pz, ((x + 1) << pz) - 1, ((y + 1) << pz) - 1,
+					new ArrayList<TransportStop>());
+		} else {
+			BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
+					y << pz, (y + 1) << pz, -1, null);
+			stops = transportStopsReader.readMergedTransportStops(sr);
+		}
 		loadTransportSegments(stops, lst);
 		readTime += System.nanoTime() - nanoTime;
 		return lst;
@@ -0,0 +1,202 @@
+package com.google.protobuf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Fields of file read by RandomAccessFile and memory mapped streams with small (fixed and adaptive) buffers cross
+ * buffer end in every possible way, they should be decoded the same as from byte array: sequentially, after seek
+ * to record and inside of nested limits. Strings longer than {@link CodedInputStream#MAX_CONTIGUOUS_READ} are read
+ * by slow path.
+ */
+public class CodedInputStreamTest {
+	private static final int RECORDS = 300;
+	private static final int TAG_STRING = 1;
+	private static final int TAG_VARINT = 2;
+	private static final int TAG_FIXED = 3;
+	private static final int TAG_BYTES = 4;
+	private static final int TAG_NESTED = 5;
+
+	private static File file;
+	private static byte[] data;
+	private static List<Long> recordPositions;
+	private static List<String> expected;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		Random rnd = new Random(11);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bos);
+		for (int i = 0; i < RECORDS; i++) {
+			out.writeString(TAG_STRING, string(rnd, i == RECORDS / 2 ? CodedInputStream.MAX_CONTIGUOUS_READ + 10
+					: rnd.nextInt(400)));
+			out.writeInt64(TAG_VARINT, rnd.nextLong() >>> rnd.nextInt(64));
+			out.writeFixed64(TAG_FIXED, rnd.nextLong());
+			byte[] bytes = new byte[rnd.nextInt(i % 10 == 0 ? 3000 : 50)];
+			rnd.nextBytes(bytes);
+			out.writeBytes(TAG_BYTES, ByteString.copyFrom(bytes));
+			ByteArrayOutputStream nested = new ByteArrayOutputStream();
+			CodedOutputStream nestedOut = CodedOutputStream.newInstance(nested);
+			nestedOut.writeString(TAG_STRING, string(rnd, rnd.nextInt(100)));
+			nestedOut.writeInt64(TAG_VARINT, rnd.nextInt());
+			nestedOut.flush();
+			out.writeTag(TAG_NESTED, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(nested.size());
+			out.writeRawBytes(nested.toByteArray());
+		}
+		out.flush();
+		data = bos.toByteArray();
+		file = File.createTempFile("coded", ".bin");
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(data);
+		fos.close();
+
+		CodedInputStream in = CodedInputStream.newInstance(data);
+		in.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
+		recordPositions = new ArrayList<>();
+		expected = new ArrayList<>();
+		for (int i = 0; i < RECORDS; i++) {
+			recordPositions.add(in.getTotalBytesRead());
+			expected.add(readRecord(in));
+		}
+		Assert.assertTrue(in.isAtEnd());
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testRandomAccessFile() throws IOException {
+		testBuffers(false);
+	}
+
+	@Test
+	public void testMemoryMapped() throws IOException {
+		testBuffers(true);
+	}
+
+	private void testBuffers(boolean mapped) throws IOException {
+		for (int size : new int[] { 1, 7, 64, 1000 }) {
+			CodedInputStream in = open(mapped);
+			in.setBufferSize(size);
+			assertSequential(in);
+			in = open(mapped);
+			in.setBufferSize(size);
+			assertSeek(in);
+		}
+		int[][] adaptive = { { 1, 16 }, { 8, 256 }, { 16, 4096 } };
+		for (int[] sizes : adaptive) {
+			CodedInputStream in = open(mapped);
+			in.setAdaptiveBufferSize(sizes[0], sizes[1]);
+			assertSequential(in);
+			in = open(mapped);
+			in.setAdaptiveBufferSize(sizes[0], sizes[1]);
+			assertSeek(in);
+		}
+	}
+
+	private static CodedInputStream open(boolean mapped) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		CodedInputStream in;
+		if (mapped) {
+			in = CodedInputStream.newInstance(CodedInputStream.mapFile(raf));
+			raf.close();
+			Assert.assertTrue(in.isMemoryMapped());
+		} else {
+			in = CodedInputStream.newInstance(raf);
+		}
+		in.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
+		return in;
+	}
+
+	private static void assertSequential(CodedInputStream in) throws IOException {
+		for (int i = 0; i < RECORDS; i++) {
+			Assert.assertEquals("Record " + i, expected.get(i), readRecord(in));
+		}
+		Assert.assertEquals(data.length, in.getTotalBytesRead());
+	}
+
+	private static void assertSeek(CodedInputStream in) throws IOException {
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < RECORDS; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, new Random(5));
+		for (int i : order) {
+			in.seek(recordPositions.get(i));
+			Assert.assertEquals("Record " + i, expected.get(i), readRecord(in));
+		}
+	}
+
+	// record is read by the same calls as obf index parts (fields till next string field, nested message in limit)
+	private static String readRecord(CodedInputStream in) throws IOException {
+		StringBuilder res = new StringBuilder();
+		readTag(in, TAG_STRING);
+		res.append(in.readString()).append('|');
+		readTag(in, TAG_VARINT);
+		res.append(in.readInt64()).append('|');
+		readTag(in, TAG_FIXED);
+		res.append(in.readFixed64()).append('|');
+		readTag(in, TAG_BYTES);
+		res.append(Arrays.toString(in.readBytes().toByteArray())).append('|');
+		readTag(in, TAG_NESTED);
+		int length = in.readRawVarint32();
+		long old = in.pushLimitLong(length);
+		int t;
+		while ((t = in.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(t)) {
+			case TAG_STRING:
+				res.append(in.readString()).append('|');
+				break;
+			case TAG_VARINT:
+				res.append(in.readInt64()).append('|');
+				break;
+			default:
+				Assert.fail("Unexpected nested tag " + t);
+			}
+		}
+		in.popLimit(old);
+		return res.toString();
+	}
+
+	private static void readTag(CodedInputStream in, int field) throws IOException {
+		Assert.assertEquals(field, WireFormat.getTagFieldNumber(in.readTag()));
+	}
+
+	// ascii, 2 and 3 byte chars and surrogate pairs (4 bytes), so multi byte chars cross buffer end
+	private static String string(Random rnd, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		while (sb.length() < length) {
+			switch (rnd.nextInt(4)) {
+			case 0:
+				sb.append((char) ('a' + rnd.nextInt(26)));
+				break;
+			case 1:
+				sb.append((char) (0x400 + rnd.nextInt(0x100)));
+				break;
+			case 2:
+				sb.append((char) (0x4e00 + rnd.nextInt(0x1000)));
+				break;
+			default:
+				sb.appendCodePoint(0x1f600 + rnd.nextInt(0x40));
+				break;
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+
+/**
+ * Map search of reader with {@link BinaryMapDataCache} should find the same objects as search without cache: the
+ * first search misses cache, repeated one (also by other reader sharing cache) only hits it. Published objects are
+ * copies, so changing them doesn't change next results. Too small cache evicts entries but finds the same objects.
+ */
+public class BinaryMapDataCacheTest {
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+
+	private final List<BinaryMapIndexReader> readers = new ArrayList<>();
+	private int zoom;
+	private List<String> expected;
+
+	@Before
+	public void setUp() throws IOException {
+		BinaryMapIndexReader reader = open(null);
+		Assume.assumeFalse("No map data", reader.getMapIndexes().isEmpty());
+		MapRoot root = reader.getMapIndexes().get(0).getRoots().get(0);
+		zoom = root.getMaxZoom();
+		expected = toString(reader.searchMapIndex(request(), null));
+		Assume.assumeFalse("No map objects", expected.isEmpty());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testRepeatedSearch() throws IOException {
+		BinaryMapDataCache cache = new BinaryMapDataCache();
+		BinaryMapIndexReader reader = open(cache);
+
+		SearchRequest<BinaryMapDataObject> req = request();
+		List<BinaryMapDataObject> first = reader.searchMapIndex(req, null);
+		Assert.assertEquals(expected, toString(first));
+		Assert.assertTrue(req.stat.cacheMisses > 0);
+		Assert.assertEquals(0, req.stat.cacheHits);
+		Assert.assertTrue(cache.getEntriesCount() > 0);
+		Assert.assertTrue(cache.getSize() > 0);
+		for (BinaryMapDataObject o : first) {
+			o.setArea(!o.isArea());
+			if (o.getObjectNames() != null) {
+				o.getObjectNames().clear();
+			}
+		}
+
+		req = request();
+		Assert.assertEquals("Cached objects are changed by request", expected,
+				toString(reader.searchMapIndex(req, null)));
+		Assert.assertTrue(req.stat.cacheHits > 0);
+		Assert.assertEquals(0, req.stat.cacheMisses);
+
+		// cache is shared by reader of the same file
+		req = request();
+		Assert.assertEquals(expected, toString(open(cache).searchMapIndex(req, null)));
+		Assert.assertEquals(0, req.stat.cacheMisses);
+		Assert.assertEquals(cache.getHits(), cache.getMisses() * 2);
+	}
+
+	@Test(timeout = 60000)
+	public void testEviction() throws IOException {
+		BinaryMapDataCache cache = new BinaryMapDataCache(1);
+		BinaryMapIndexReader reader = open(cache);
+		for (int i = 0; i < 2; i++) {
+			SearchRequest<BinaryMapDataObject> req = request();
+			Assert.assertEquals(expected, toString(reader.searchMapIndex(req, null)));
+			Assume.assumeTrue("Map data is in one block", req.stat.cacheMisses > 1);
+			Assert.assertTrue(req.stat.cacheEvictions > 0);
+		}
+		Assert.assertEquals(1, cache.getEntriesCount());
+		Assert.assertTrue(cache.getEvictions() > 0);
+	}
+
+	private BinaryMapIndexReader open(BinaryMapDataCache cache) throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF));
+		reader.setMapDataCache(cache);
+		readers.add(reader);
+		return reader;
+	}
+
+	private SearchRequest<BinaryMapDataObject> request() {
+		return BinaryMapIndexReader.buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, zoom, null);
+	}
+
+	private static List<String> toString(List<BinaryMapDataObject> objects) {
+		List<String> res = new ArrayList<>();
+		for (BinaryMapDataObject o : objects) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(o.getId()).append(' ').append(Arrays.toString(o.getTypes())).append(' ')
+					.append(o.isArea()).append(' ').append(o.getOrderedObjectNames());
+			for (int i = 0; i < o.getPointsLength(); i++) {
+				sb.append(' ').append(o.getPoint31XTile(i)).append(',').append(o.getPoint31YTile(i));
+			}
+			res.add(sb.toString());
+		}
+		Collections.sort(res);
+		return res;
+	}
+}
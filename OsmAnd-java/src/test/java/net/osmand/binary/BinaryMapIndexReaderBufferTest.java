@@ -0,0 +1,107 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.data.Amenity;
+import net.osmand.data.TransportStop;
+
+/**
+ * Poi, transport and road searches should find the same objects with default, small, large and adaptive read
+ * buffer. File reads of requests are counted in {@link BinaryMapIndexReader.MapObjectStat}, adaptive buffer grows
+ * while poi index is scanned, so it's refilled less often than fixed buffer of its minimal size.
+ */
+public class BinaryMapIndexReaderBufferTest {
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+	private static final int MIN_BUFFER = 256;
+	private static final int MAX_BUFFER = 64 * 1024;
+
+	@Test(timeout = 60000)
+	public void testBuffersReadSameObjects() throws IOException {
+		Result expected = query(open());
+		Assert.assertFalse(expected.objects.isEmpty());
+
+		BinaryMapIndexReader small = open();
+		small.setReadBufferSize(MIN_BUFFER);
+		Result smallResult = query(small);
+		Assert.assertEquals(expected.objects, smallResult.objects);
+
+		BinaryMapIndexReader large = open();
+		large.setReadBufferSize(MAX_BUFFER);
+		Assert.assertEquals(expected.objects, query(large).objects);
+
+		BinaryMapIndexReader adaptive = open();
+		adaptive.setAdaptiveReadBuffer(MIN_BUFFER, MAX_BUFFER);
+		Result adaptiveResult = query(adaptive);
+		Assert.assertEquals(expected.objects, adaptiveResult.objects);
+
+		Assert.assertTrue("Adaptive buffer doesn't grow on sequential scan",
+				adaptiveResult.poiRefills < smallResult.poiRefills);
+	}
+
+	private static BinaryMapIndexReader open() throws IOException {
+		return new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF));
+	}
+
+	private static Result query(BinaryMapIndexReader reader) throws IOException {
+		Result res = new Result();
+		try {
+			SearchRequest<Amenity> poiReq = BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+					Integer.MAX_VALUE, -1, BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+			List<String> amenities = new ArrayList<>();
+			for (Amenity a : reader.searchPoi(poiReq)) {
+				amenities.add("poi " + a.getId() + " " + a.getSubType() + " " + a.getName() + " " + a.getLocation());
+			}
+			Collections.sort(amenities);
+			res.objects.addAll(amenities);
+			assertReadStats(poiReq);
+			res.poiRefills = poiReq.stat.bufferRefills;
+
+			SearchRequest<TransportStop> transportReq = BinaryMapIndexReader.buildSearchTransportRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, -1, null);
+			List<String> stops = new ArrayList<>();
+			for (TransportStop s : reader.searchTransportIndex(transportReq)) {
+				stops.add("stop " + s.getId() + " " + s.getName() + " " + s.getLocation());
+			}
+			Collections.sort(stops);
+			res.objects.addAll(stops);
+
+			for (RouteRegion region : reader.getRoutingIndexes()) {
+				SearchRequest<RouteDataObject> routeReq = BinaryMapIndexReader.buildSearchRouteRequest(0,
+						Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+				List<RouteSubregion> subregions = reader.searchRouteIndexTree(routeReq, region.getSubregions());
+				assertReadStats(routeReq);
+				for (RouteSubregion sub : subregions) {
+					for (RouteDataObject o : reader.loadRouteIndexData(sub)) {
+						res.objects.add("road " + o.getId() + " " + Arrays.toString(o.pointsX) + " "
+								+ Arrays.toString(o.pointsY));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return res;
+	}
+
+	private static void assertReadStats(SearchRequest<?> req) {
+		Assert.assertTrue("Buffer refills are not counted", req.stat.bufferRefills > 0);
+		Assert.assertTrue("Loaded bytes are not counted", req.stat.bytesLoaded > 0);
+	}
+
+	private static class Result {
+		final List<String> objects = new ArrayList<>();
+		long poiRefills;
+	}
+}
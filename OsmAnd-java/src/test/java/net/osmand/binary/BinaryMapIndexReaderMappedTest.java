@@ -0,0 +1,92 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.data.Amenity;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+
+/**
+ * Memory mapped reader (and reader created by copy constructor from it) should read the same road, poi and
+ * transport data as reader of RandomAccessFile.
+ */
+public class BinaryMapIndexReaderMappedTest {
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+
+	@Test(timeout = 60000)
+	public void testMappedReadsSameAsFile() throws IOException {
+		BinaryMapIndexReader fileReader = new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF),
+				true, false);
+		BinaryMapIndexReader mappedReader = new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF),
+				true, true);
+		BinaryMapIndexReader copyReader = new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), mappedReader);
+		try {
+			Assert.assertFalse(fileReader.isMemoryMapped());
+			Assert.assertTrue(mappedReader.isMemoryMapped());
+			Assert.assertTrue(copyReader.isMemoryMapped());
+
+			List<String> expected = query(fileReader);
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals(expected, query(mappedReader));
+			Assert.assertEquals(expected, query(copyReader));
+		} finally {
+			fileReader.close();
+			copyReader.close();
+			mappedReader.close();
+		}
+	}
+
+	// roads of all route subregions, poi and transport routes of stops
+	private static List<String> query(BinaryMapIndexReader reader) throws IOException {
+		List<String> res = new ArrayList<>();
+		for (RouteRegion region : reader.getRoutingIndexes()) {
+			SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE, 0,
+					Integer.MAX_VALUE, null);
+			for (RouteSubregion sub : reader.searchRouteIndexTree(req, region.getSubregions())) {
+				for (RouteDataObject o : reader.loadRouteIndexData(sub)) {
+					res.add("road " + o.getId() + " " + Arrays.toString(o.getTypes()) + " "
+							+ Arrays.toString(o.pointsX) + " " + Arrays.toString(o.pointsY));
+				}
+			}
+		}
+		for (PoiRegion region : reader.getPoiIndexes()) {
+			reader.initCategories(region);
+			res.addAll(region.getCategories());
+		}
+		List<String> amenities = new ArrayList<>();
+		for (Amenity a : reader.searchPoi(BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, -1, BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null))) {
+			amenities.add("poi " + a.getId() + " " + a.getType().getKeyName() + " " + a.getSubType() + " "
+					+ a.getName() + " " + a.getLocation());
+		}
+		Collections.sort(amenities);
+		res.addAll(amenities);
+		List<String> routes = new ArrayList<>();
+		List<TransportStop> stops = reader.searchTransportIndex(BinaryMapIndexReader.buildSearchTransportRequest(0,
+				Integer.MAX_VALUE, 0, Integer.MAX_VALUE, -1, null));
+		for (TransportStop s : stops) {
+			routes.add("stop " + s.getId() + " " + s.getName() + " " + s.getLocation());
+			TLongObjectHashMap<TransportRoute> loaded = reader.getTransportRoutes(s.getReferencesToRoutes());
+			for (TransportRoute r : loaded.valueCollection()) {
+				routes.add("route " + r.getId() + " " + r.getName() + " " + r.getRef() + " " + r.getForwardStops().size());
+			}
+		}
+		Collections.sort(routes);
+		res.addAll(routes);
+		return res;
+	}
+}
@@ -0,0 +1,148 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapQueryExecutor.ReaderSearch;
+
+/**
+ * Searches of many threads over the same readers by {@link BinaryMapQueryExecutor}: reader is never read by 2 threads
+ * at once (also by reader of other thread which synchronizes on reader), results of all files are collected and
+ * limit of request stops search. Default executor is started again after shutdown.
+ */
+public class BinaryMapQueryExecutorTest {
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+	private static final int READERS = 3;
+	private static final int OBJECTS = 100;
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 20;
+
+	private final List<BinaryMapIndexReader> readers = new ArrayList<>();
+	private final Map<BinaryMapIndexReader, AtomicInteger> reading = new IdentityHashMap<>();
+	private final AtomicBoolean concurrentRead = new AtomicBoolean();
+
+	@Before
+	public void setUp() throws IOException {
+		for (int i = 0; i < READERS; i++) {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF));
+			readers.add(reader);
+			reading.put(reader, new AtomicInteger());
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		BinaryMapQueryExecutor.shutdownDefaultExecutor();
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentSearches() throws Exception {
+		final BinaryMapQueryExecutor queryExecutor = new BinaryMapQueryExecutor();
+		final ReaderSearch<Integer> search = new ObjectsSearch();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final boolean direct = t % 2 == 1;
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						start.await();
+						for (int round = 0; round < ROUNDS; round++) {
+							if (direct) {
+								// reader read outside of executor is locked as executor does
+								BinaryMapIndexReader reader = readers.get(round % READERS);
+								SearchRequest<Integer> req = new SearchRequest<Integer>();
+								synchronized (reader) {
+									search.search(reader, req);
+								}
+								Assert.assertEquals(OBJECTS, req.getSearchResults().size());
+							} else {
+								SearchRequest<Integer> req = new SearchRequest<Integer>();
+								List<Integer> res = queryExecutor.execute(req, readers, search);
+								Assert.assertEquals(READERS * OBJECTS, res.size());
+								List<Integer> sorted = new ArrayList<>(res);
+								Collections.sort(sorted);
+								for (int i = 0; i < sorted.size(); i++) {
+									Assert.assertEquals(i, (int) sorted.get(i));
+								}
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Void> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertFalse("Reader is read by 2 threads at once", concurrentRead.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testLimit() throws Exception {
+		SearchRequest<Integer> req = new SearchRequest<Integer>();
+		req.setLimit(OBJECTS / 2);
+		List<Integer> res = new BinaryMapQueryExecutor().execute(req, readers, new ObjectsSearch());
+		Assert.assertTrue(res.size() > OBJECTS / 2);
+		Assert.assertTrue("Search isn't stopped by limit", res.size() < READERS * OBJECTS);
+	}
+
+	@Test(timeout = 60000)
+	public void testShutdownDefaultExecutor() throws Exception {
+		BinaryMapQueryExecutor queryExecutor = new BinaryMapQueryExecutor();
+		Assert.assertEquals(READERS * OBJECTS,
+				queryExecutor.execute(new SearchRequest<Integer>(), readers, new ObjectsSearch()).size());
+		BinaryMapQueryExecutor.shutdownDefaultExecutor();
+		Assert.assertEquals(READERS * OBJECTS,
+				queryExecutor.execute(new SearchRequest<Integer>(), readers, new ObjectsSearch()).size());
+	}
+
+	// publishes OBJECTS numbers unique for reader, stops when request is cancelled
+	private class ObjectsSearch implements ReaderSearch<Integer> {
+
+		@Override
+		public void search(BinaryMapIndexReader reader, SearchRequest<Integer> req) throws IOException {
+			AtomicInteger r = reading.get(reader);
+			if (r.incrementAndGet() > 1) {
+				concurrentRead.set(true);
+			}
+			try {
+				int base = readers.indexOf(reader) * OBJECTS;
+				for (int i = 0; i < OBJECTS && !req.isCancelled(); i++) {
+					req.publish(base + i);
+					Thread.yield();
+				}
+			} finally {
+				r.decrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+/**
+ * Measures throughput of loading random routing tiles from one obf file through {@link BinaryMapReaderPool}
+ * with different number of threads.
+ * Usage: BinaryMapReaderPoolBenchmark file.obf [-threads=1,2,4,8] [-queries=2000] [-mmap]
+ */
+public class BinaryMapReaderPoolBenchmark {
+
+	private static final int TILE_ZOOM = 14;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: BinaryMapReaderPoolBenchmark file.obf [-threads=1,2,4,8] [-queries=2000] [-mmap]");
+			return;
+		}
+		File file = null;
+		boolean mmap = false;
+		int queries = 2000;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		List<Integer> threads = new ArrayList<>();
+		for (String a : args) {
+			if (a.startsWith("-threads=")) {
+				for (String t : a.substring("-threads=".length()).split(",")) {
+					threads.add(Integer.parseInt(t));
+				}
+			} else if (a.startsWith("-queries=")) {
+				queries = Integer.parseInt(a.substring("-queries=".length()));
+			} else if (a.equals("-mmap")) {
+				mmap = true;
+			} else if (!a.startsWith("-")) {
+				file = new File(a);
+			}
+		}
+		if (threads.isEmpty()) {
+			for (int t = 1; t <= maxThreads; t *= 2) {
+				threads.add(t);
+			}
+		}
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, true, mmap);
+		List<RouteSubregion> regions = new ArrayList<>();
+		for (RouteRegion r : reader.getRoutingIndexes()) {
+			regions.addAll(r.getSubregions());
+		}
+		if (regions.isEmpty()) {
+			System.out.println("File doesn't contain routing data " + file.getName());
+			return;
+		}
+		BinaryMapReaderPool pool = new BinaryMapReaderPool(reader, maxThreads);
+		// warm up lazy initialized index structures and OS page cache
+		runQueries(pool, regions, 1, queries);
+		double base = 0;
+		for (int t : threads) {
+			long time = System.nanoTime();
+			long objects = runQueries(pool, regions, t, queries);
+			double seconds = (System.nanoTime() - time) / 1e9;
+			double qps = queries / seconds;
+			if (base == 0) {
+				base = qps;
+			}
+			System.out.println(String.format("Threads %2d: %8.1f tiles/s (x%.2f), %d objects, %d readers created (mmap %s)",
+					t, qps, qps / base, objects, pool.getCreatedReaders(), mmap));
+		}
+		pool.close();
+		reader.close();
+	}
+
+	private static long runQueries(final BinaryMapReaderPool pool, final List<RouteSubregion> regions,
+			int threads, int queries) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final AtomicLong objects = new AtomicLong();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			final int count = queries / threads + (i < queries % threads ? 1 : 0);
+			final Random rnd = new Random(i);
+			futures.add(executor.submit(() -> {
+				for (int k = 0; k < count; k++) {
+					RouteSubregion r = regions.get(rnd.nextInt(regions.size()));
+					int x = r.left + (int) (rnd.nextDouble() * (r.right - r.left));
+					int y = r.top + (int) (rnd.nextDouble() * (r.bottom - r.top));
+					objects.addAndGet(loadTile(pool, x, y));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> f : futures) {
+			f.get();
+		}
+		executor.shutdown();
+		return objects.get();
+	}
+
+	private static int loadTile(BinaryMapReaderPool pool, int x31, int y31) throws IOException {
+		return pool.execute(reader -> {
+			int x = x31 >> (31 - TILE_ZOOM);
+			int y = y31 >> (31 - TILE_ZOOM);
+			int shift = 31 - TILE_ZOOM;
+			SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(x << shift,
+					(x + 1) << shift, y << shift, (y + 1) << shift, null);
+			final int[] cnt = new int[1];
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				List<RouteSubregion> toLoad = reader.searchRouteIndexTree(req, reg.getSubregions());
+				reader.loadRouteIndexData(toLoad, new ResultMatcher<RouteDataObject>() {
+					@Override
+					public boolean publish(RouteDataObject object) {
+						cnt[0]++;
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+			}
+			return cnt[0];
+		});
+	}
+}
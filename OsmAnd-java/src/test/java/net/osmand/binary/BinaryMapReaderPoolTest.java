@@ -0,0 +1,97 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+
+/**
+ * Pooled readers share index structures of initial reader, lazy initialized parts (poi categories, transport string
+ * table) are read by the first query. Queries started at once by pooled readers of new pool should get the same
+ * results as query of separate reader.
+ */
+public class BinaryMapReaderPoolTest {
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 5;
+
+	@Test(timeout = 60000)
+	public void testConcurrentQueries() throws Exception {
+		List<String> expected = query(new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF)), true);
+		Assert.assertFalse(expected.isEmpty());
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				BinaryMapIndexReader initial = new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF));
+				final BinaryMapReaderPool pool = new BinaryMapReaderPool(initial);
+				final CountDownLatch start = new CountDownLatch(1);
+				List<Future<List<String>>> futures = new ArrayList<>();
+				for (int t = 0; t < THREADS; t++) {
+					futures.add(executor.submit(new Callable<List<String>>() {
+
+						@Override
+						public List<String> call() throws Exception {
+							final BinaryMapIndexReader reader = pool.acquire();
+							try {
+								start.await();
+								return query(reader, false);
+							} finally {
+								pool.release(reader);
+							}
+						}
+					}));
+				}
+				start.countDown();
+				for (Future<List<String>> f : futures) {
+					Assert.assertEquals(expected, f.get());
+				}
+				pool.close();
+				initial.close();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// poi categories and names of transport routes
+	private static List<String> query(BinaryMapIndexReader reader, boolean close) throws IOException {
+		List<String> res = new ArrayList<>();
+		try {
+			for (PoiRegion region : reader.getPoiIndexes()) {
+				reader.initCategories(region);
+				res.addAll(region.getCategories());
+			}
+			List<String> routes = new ArrayList<>();
+			List<TransportStop> stops = reader.searchTransportIndex(BinaryMapIndexReader.buildSearchTransportRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, -1, null));
+			for (TransportStop s : stops) {
+				TLongObjectHashMap<TransportRoute> loaded = reader.getTransportRoutes(s.getReferencesToRoutes());
+				for (TransportRoute r : loaded.valueCollection()) {
+					routes.add(r.getId() + " " + r.getName() + " " + r.getRef() + " " + r.getType());
+				}
+			}
+			Collections.sort(routes);
+			res.addAll(routes);
+		} finally {
+			if (close) {
+				reader.close();
+			}
+		}
+		return res;
+	}
+}
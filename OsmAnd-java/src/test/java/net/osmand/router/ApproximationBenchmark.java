@@ -0,0 +1,163 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.google.gson.Gson;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.gpx.GPXFile;
+import net.osmand.gpx.GPXUtilities;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+/**
+ * Compares accuracy and speed of approximation types on tracks of {@link ApproximationTest}.
+ * Accuracy is share of expected ways (included / excluded) matched as expected, share of tracks with distance
+ * within expected bounds and share of route distance which is not matched to roads (straight lines).
+ * Usage: ApproximationBenchmark [types separated by , (routing, geometry, hmm)] [profile] [min point approximation]
+ */
+public class ApproximationBenchmark {
+
+	private static final String RESOURCES_PATH = "/approximation/";
+	private static final String FILES_PATH = "src/test/resources/approximation/";
+
+	private static class Entry {
+		String name;
+		String gpxFile;
+		String obfFile;
+		boolean ignore;
+		double expectedDistMin;
+		double expectedDistMax;
+		Map<Long, Boolean> expectedWays;
+	}
+
+	private static class Stats {
+		int tracks;
+		int distanceOk;
+		int waysOk;
+		int ways;
+		int points;
+		double distance;
+		double unmatched;
+		long time;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String[] types = (args.length > 0 ? args[0] : "routing,geometry,hmm").split(",");
+		String profile = args.length > 1 ? args[1] : "car";
+		int minPointApproximation = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+		Reader reader = new InputStreamReader(Objects.requireNonNull(
+				ApproximationBenchmark.class.getResourceAsStream(RESOURCES_PATH + "test.json")));
+		Entry[] entries = new Gson().fromJson(reader, Entry[].class);
+		reader.close();
+		PrintStream out = System.out;
+		try {
+			for (String type : types) {
+				Stats stats = new Stats();
+				for (Entry entry : entries) {
+					if (entry.ignore) {
+						continue;
+					}
+					// approximation prints every result
+					System.setOut(new PrintStream(new OutputStream() {
+
+						@Override
+						public void write(int b) {
+						}
+					}));
+					run(entry, type, profile, minPointApproximation, stats);
+					System.setOut(out);
+				}
+				out.println(String.format(
+						"%s: %d tracks, ways %d / %d, distance %d / %d, unmatched %.1f%%, %d points %.1f s, %.0f points/s",
+						type, stats.tracks, stats.waysOk, stats.ways, stats.distanceOk, stats.tracks,
+						stats.distance > 0 ? stats.unmatched * 100 / stats.distance : 0, stats.points,
+						stats.time / 1e9, stats.points / (stats.time / 1e9)));
+			}
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	private static void run(Entry entry, String type, String profile, int minPointApproximation, Stats stats)
+			throws Exception {
+		String obfFilePath = FILES_PATH + entry.obfFile;
+		RandomAccessFile raf = new RandomAccessFile(obfFilePath, "r");
+		try {
+			BinaryMapIndexReader[] readers = { new BinaryMapIndexReader(raf, new File(obfFilePath)) };
+			RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
+			router.setUseGeometryBasedApproximation("geometry".equals(type));
+			router.setUseHmmApproximation("hmm".equals(type));
+			router.setUseNativeApproximation(false);
+			int memoryLimit = RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT * 8 * 2;
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile,
+					new RoutingMemoryLimits(memoryLimit, memoryLimit), new HashMap<String, String>());
+			config.minPointApproximation = minPointApproximation;
+			RoutingContext ctx = router.buildRoutingContext(config, null, readers,
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+			GPXFile gpxFile = GPXUtilities.loadGPXFile(new File(FILES_PATH + entry.gpxFile));
+			List<GPXUtilities.WptPt> waypoints = gpxFile.tracks.get(0).segments.get(0).points;
+			List<RoutePlannerFrontEnd.GpxPoint> gpxPoints = router.generateGpxPoints(gctx,
+					new LocationsHolder(waypoints));
+
+			long ts = System.nanoTime();
+			GpxRouteApproximation r = router.searchGpxRoute(gctx, gpxPoints, null, false);
+			stats.time += System.nanoTime() - ts;
+			stats.points += gpxPoints.size();
+			stats.tracks++;
+
+			double distance = 0;
+			Set<Long> ways = new HashSet<>();
+			for (RouteSegmentResult segment : r.collectFinalPointsAsRoute()) {
+				double d = getDistance(segment);
+				distance += d;
+				if (segment.getObject().getId() == -1) {
+					stats.unmatched += d;
+				} else {
+					ways.add(segment.getObject().getId() / 64);
+				}
+			}
+			stats.distance += distance;
+			if ((entry.expectedDistMin == 0 || distance > entry.expectedDistMin)
+					&& (entry.expectedDistMax == 0 || distance < entry.expectedDistMax)) {
+				stats.distanceOk++;
+			}
+			if (entry.expectedWays != null) {
+				for (Map.Entry<Long, Boolean> e : entry.expectedWays.entrySet()) {
+					stats.ways++;
+					if (ways.contains(e.getKey()) == e.getValue()) {
+						stats.waysOk++;
+					}
+				}
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static double getDistance(RouteSegmentResult rr) {
+		double distance = 0;
+		RouteDataObject road = rr.getObject();
+		boolean plus = rr.getStartPointIndex() < rr.getEndPointIndex();
+		for (int next, j = rr.getStartPointIndex(); j != rr.getEndPointIndex(); j = next) {
+			next = plus ? j + 1 : j - 1;
+			distance += MapUtils.squareRootDist31(road.getPoint31XTile(j), road.getPoint31YTile(j),
+					road.getPoint31XTile(next), road.getPoint31YTile(next));
+		}
+		return distance;
+	}
+}
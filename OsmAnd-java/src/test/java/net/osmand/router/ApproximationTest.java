@@ -105,6 +105,8 @@ public class ApproximationTest {
 			GpxRouteApproximation.GPX_SEGMENT_ALGORITHM = GpxRouteApproximation.GPX_OSM_MULTISEGMENT_SCAN_ALGORITHM;
 //			GpxRouteApproximation.GPX_SEGMENT_ALGORITHM = GpxRouteApproximation.GPX_OSM_POINTS_MATCH_ALGORITHM;
 			router.setUseGeometryBasedApproximation(true);
+		} else if ("hmm".equals(type)) {
+			router.setUseHmmApproximation(true);
 		}
 		router.setUseNativeApproximation(isNative());
 
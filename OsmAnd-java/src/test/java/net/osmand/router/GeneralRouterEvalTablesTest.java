@@ -0,0 +1,91 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Road attributes evaluated by {@link GeneralRouter} with precompiled tables (by types combination id) should be
+ * the same as evaluated with hash map cache for all roads of test map and profiles, also when values are read from
+ * tables and when types of road are changed after evaluation.
+ */
+public class GeneralRouterEvalTablesTest {
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+	private static final String[] PROFILES = { "car", "bicycle", "pedestrian" };
+
+	private static List<RouteDataObject> roads;
+	private static boolean useTables;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		roads = GeneralRouterEvaluationBenchmark.loadRoads(OBF);
+		useTables = GeneralRouter.USE_EVAL_TABLES;
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		GeneralRouter.USE_EVAL_TABLES = useTables;
+	}
+
+	@Test(timeout = 60000)
+	public void testTablesEvaluateSameAsHashMap() {
+		Assert.assertFalse(roads.isEmpty());
+		for (String profile : PROFILES) {
+			GeneralRouter router = buildRouter(profile);
+			GeneralRouter.USE_EVAL_TABLES = false;
+			List<String> expected = evaluate(router.copyForThread(), roads);
+
+			GeneralRouter.USE_EVAL_TABLES = true;
+			GeneralRouter tables = router.copyForThread();
+			Assert.assertEquals(profile, expected, evaluate(tables, roads));
+			Assert.assertEquals(profile + " values of tables", expected, evaluate(tables, roads));
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testChangedTypes() {
+		GeneralRouter.USE_EVAL_TABLES = true;
+		GeneralRouter router = buildRouter("car").copyForThread();
+		List<RouteDataObject> changed = new ArrayList<>();
+		List<RouteDataObject> sources = new ArrayList<>();
+		for (int i = 0; i < roads.size(); i++) {
+			RouteDataObject road = new RouteDataObject(roads.get(i));
+			// id of types combination is kept by road
+			evaluate(router, road);
+			RouteDataObject source = roads.get((i + 1) % roads.size());
+			road.types = source.types;
+			changed.add(road);
+			sources.add(source);
+		}
+		Assert.assertEquals(evaluate(router, sources), evaluate(router, changed));
+	}
+
+	private static GeneralRouter buildRouter(String profile) {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		return RoutingConfiguration.getDefault().build(profile, memoryLimits).router;
+	}
+
+	private static List<String> evaluate(GeneralRouter r, List<RouteDataObject> roads) {
+		List<String> res = new ArrayList<>(roads.size());
+		for (RouteDataObject road : roads) {
+			res.add(evaluate(r, road));
+		}
+		return res;
+	}
+
+	private static String evaluate(GeneralRouter r, RouteDataObject road) {
+		return road.getId() + " " + r.acceptLine(road) + " " + r.isOneWay(road) + " " + r.getPenaltyTransition(road)
+				+ " " + r.defineRoutingSpeed(road, true) + " " + r.defineRoutingSpeed(road, false) + " "
+				+ r.defineSpeedPriority(road, true) + " " + r.defineSpeedPriority(road, false) + " "
+				+ r.defineDestinationPriority(road) + " " + r.defineVehicleSpeed(road, true);
+	}
+}
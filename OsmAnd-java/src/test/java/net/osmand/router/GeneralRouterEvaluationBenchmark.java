@@ -0,0 +1,99 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Compares evaluation of road attributes by {@link GeneralRouter} with precompiled tables
+ * (types combination id -> value) and with hash map cache on all roads of obf file.
+ * Usage: GeneralRouterEvaluationBenchmark [obf file] [profile] [iterations]
+ */
+public class GeneralRouterEvaluationBenchmark {
+
+	private static final String DEFAULT_OBF = "src/test/resources/routing/Routing_test_archive.obf";
+
+	public static void main(String[] args) throws Exception {
+		String fileName = args.length > 0 ? args[0] : DEFAULT_OBF;
+		String profile = args.length > 1 ? args[1] : "car";
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		List<RouteDataObject> roads = loadRoads(fileName);
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		GeneralRouter router = RoutingConfiguration.getDefault().build(profile, memoryLimits).router;
+		System.out.println(String.format("Loaded %d roads from %s", roads.size(), fileName));
+		boolean tables = GeneralRouter.USE_EVAL_TABLES;
+		try {
+			for (boolean useTables : new boolean[] { false, true, false, true }) {
+				GeneralRouter.USE_EVAL_TABLES = useTables;
+				// new router to start with empty caches
+				GeneralRouter r = router.copyForThread();
+				long ts = System.nanoTime();
+				double sum = evaluate(r, roads);
+				long firstPass = System.nanoTime() - ts;
+				ts = System.nanoTime();
+				for (int i = 0; i < iterations; i++) {
+					sum += evaluate(r, roads);
+				}
+				long time = (System.nanoTime() - ts) / iterations;
+				System.out.println(String.format("%s: first pass %.1f ms, cached pass %.2f ms (%.1f ns per road) [%.0f]",
+						useTables ? "Tables" : "HashMap", firstPass / 1e6, time / 1e6,
+						roads.isEmpty() ? 0 : (double) time / roads.size(), sum));
+			}
+		} finally {
+			GeneralRouter.USE_EVAL_TABLES = tables;
+		}
+	}
+
+	private static double evaluate(GeneralRouter r, List<RouteDataObject> roads) {
+		double sum = 0;
+		for (RouteDataObject road : roads) {
+			if (!r.acceptLine(road)) {
+				continue;
+			}
+			sum += r.isOneWay(road);
+			sum += r.defineRoutingSpeed(road, true) + r.defineRoutingSpeed(road, false);
+			sum += r.defineSpeedPriority(road, true) + r.defineSpeedPriority(road, false);
+			sum += r.getPenaltyTransition(road);
+		}
+		return sum;
+	}
+
+	static List<RouteDataObject> loadRoads(String fileName) throws IOException {
+		final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(fileName, "r"), new File(fileName));
+		try {
+			for (RouteRegion region : reader.getRoutingIndexes()) {
+				SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE,
+						0, Integer.MAX_VALUE, null);
+				List<RouteSubregion> subregions = reader.searchRouteIndexTree(req, region.getSubregions());
+				reader.loadRouteIndexData(subregions, new ResultMatcher<RouteDataObject>() {
+
+					@Override
+					public boolean publish(RouteDataObject object) {
+						roads.add(object);
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+			}
+		} finally {
+			reader.close();
+		}
+		return roads;
+	}
+}
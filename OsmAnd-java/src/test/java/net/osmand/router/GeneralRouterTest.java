@@ -0,0 +1,76 @@
+package net.osmand.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+
+/**
+ * Copy of router for another thread ({@link GeneralRouter#copyForThread()}) should keep speeds calculated from
+ * routing parameters and attributes added after build.
+ */
+public class GeneralRouterTest {
+
+	private static GeneralRouter createRouter() {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put("minDefaultSpeed", "45");
+		attributes.put("minSpeed", "5");
+		attributes.put("maxDefaultSpeed", "130");
+		return new GeneralRouter(GeneralRouterProfile.CAR, attributes);
+	}
+
+	private static void assertSameSpeeds(GeneralRouter expected, GeneralRouter actual) {
+		Assert.assertEquals(expected.getDefaultSpeed(), actual.getDefaultSpeed(), 0);
+		Assert.assertEquals(expected.getMinSpeed(), actual.getMinSpeed(), 0);
+		Assert.assertEquals(expected.getMaxSpeed(), actual.getMaxSpeed(), 0);
+		Assert.assertEquals(expected.getLeftTurn(), actual.getLeftTurn(), 0);
+		Assert.assertEquals(expected.getRightTurn(), actual.getRightTurn(), 0);
+		Assert.assertEquals(expected.getRoundaboutTurn(), actual.getRoundaboutTurn(), 0);
+	}
+
+	@Test
+	public void testCopyKeepsSpeedParameters() {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put(GeneralRouter.DEFAULT_SPEED, "10");
+		params.put(GeneralRouter.MIN_SPEED, "2");
+		params.put(GeneralRouter.MAX_SPEED, "25");
+		GeneralRouter router = createRouter().build(params);
+		Assert.assertEquals(25, router.getMaxSpeed(), 0);
+		GeneralRouter copy = router.copyForThread();
+		assertSameSpeeds(router, copy);
+		Assert.assertEquals(10, copy.getDefaultSpeed(), 0);
+		Assert.assertEquals(2, copy.getMinSpeed(), 0);
+		Assert.assertEquals(25, copy.getMaxSpeed(), 0);
+	}
+
+	@Test
+	public void testCopyKeepsShortestWay() {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put(GeneralRouter.USE_SHORTEST_WAY, "true");
+		params.put(GeneralRouter.MAX_SPEED, "30");
+		GeneralRouter router = createRouter().build(params);
+		// max speed is limited for shortest way
+		Assert.assertTrue(router.getMaxSpeed() < 30);
+		GeneralRouter copy = router.copyForThread();
+		assertSameSpeeds(router, copy);
+		RouteDataObject road = new RouteDataObject(new RouteRegion());
+		road.types = new int[0];
+		Assert.assertEquals(router.defineVehicleSpeed(road, true), copy.defineVehicleSpeed(road, true), 0);
+		Assert.assertEquals(router.defineRoutingSpeed(road, true), copy.defineRoutingSpeed(road, true), 0);
+	}
+
+	@Test
+	public void testCopyKeepsAddedAttributes() {
+		GeneralRouter router = createRouter().build(new LinkedHashMap<String, String>());
+		router.addAttribute("leftTurn", "7");
+		router.addAttribute("roundaboutTurn", "3");
+		GeneralRouter copy = router.copyForThread();
+		assertSameSpeeds(router, copy);
+		Assert.assertEquals("7", copy.attributes.get("leftTurn"));
+	}
+}
@@ -0,0 +1,152 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.gpx.GPXFile;
+import net.osmand.gpx.GPXUtilities;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+/**
+ * Tracks of {@link ApproximationTest} approximated in chunks by many threads (small chunk distance) should be
+ * approximated as well as sequentially: distance of both routes is within bounds of entry and expected ways are
+ * the same.
+ */
+@RunWith(Parameterized.class)
+public class GpxChunkedApproximationTest {
+	private static final String RESOURCES_PATH = "/approximation/";
+	private static final String FILES_PATH = "src/test/resources/approximation/";
+	private static final String[] TYPES = { "routing", "geometry" };
+	private static final int THREADS = 4;
+	private static final float CHUNK_DISTANCE = 1000;
+	private static final int TIMEOUT = 1500000;
+
+	private final ChunkedEntry entry;
+
+	public GpxChunkedApproximationTest(String name, ChunkedEntry entry) {
+		this.entry = entry;
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		String fileName = RESOURCES_PATH + "test.json";
+		Reader reader = new InputStreamReader(Objects.requireNonNull(GpxChunkedApproximationTest.class.getResourceAsStream(fileName)));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		ChunkedEntry[] entries = gson.fromJson(reader, ChunkedEntry[].class);
+		ArrayList<Object[]> array = new ArrayList<>();
+		for (ChunkedEntry entry : entries) {
+			if (!entry.ignore) array.add(new Object[]{entry.gpxFile, entry});
+		}
+		reader.close();
+		return array;
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testChunkedSameAsSequential() throws Exception {
+		String obfFilePath = FILES_PATH + entry.obfFile;
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obfFilePath, "r"), new File(obfFilePath));
+		try {
+			for (String type : TYPES) {
+				List<RouteSegmentResult> sequential = approximate(reader, type, 0);
+				List<RouteSegmentResult> chunked = approximate(reader, type, THREADS);
+				assertRoute(type + " sequential", sequential);
+				assertRoute(type + " chunked", chunked);
+				if (entry.expectedWays != null) {
+					Set<Long> sequentialWays = getWays(sequential);
+					Set<Long> chunkedWays = getWays(chunked);
+					for (long osmId : entry.expectedWays.keySet()) {
+						Assert.assertEquals(type + " way " + osmId, sequentialWays.contains(osmId),
+								chunkedWays.contains(osmId));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void assertRoute(String tag, List<RouteSegmentResult> route) {
+		Assert.assertFalse(tag + " route is not approximated", route.isEmpty());
+		double distance = 0;
+		for (RouteSegmentResult r : route) {
+			distance += getDistance(r);
+		}
+		Assert.assertTrue(String.format("%s distance (%.2f) is outside of min / max (%.2f / %.2f)", tag, distance,
+				entry.expectedDistMin, entry.expectedDistMax),
+				(entry.expectedDistMin == 0 || distance > entry.expectedDistMin)
+						&& (entry.expectedDistMax == 0 || distance < entry.expectedDistMax));
+	}
+
+	private List<RouteSegmentResult> approximate(BinaryMapIndexReader reader, String type, int threads)
+			throws IOException, InterruptedException {
+		RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
+		if ("geometry".equals(type)) {
+			GpxRouteApproximation.GPX_SEGMENT_ALGORITHM = GpxRouteApproximation.GPX_OSM_MULTISEGMENT_SCAN_ALGORITHM;
+			router.setUseGeometryBasedApproximation(true);
+		} else {
+			router.setUseGeometryBasedApproximation(false);
+		}
+		final int MEM_LIMIT = RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT * 8 * 2;
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(MEM_LIMIT, MEM_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		config.minPointApproximation = 50;
+		config.approximationThreads = threads;
+		config.approximationChunkDistance = CHUNK_DISTANCE;
+		RoutingContext ctx = router.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new File(FILES_PATH + entry.gpxFile));
+		List<GPXUtilities.WptPt> waypoints = gpxFile.tracks.get(0).segments.get(0).points;
+		List<RoutePlannerFrontEnd.GpxPoint> gpxPoints = router.generateGpxPoints(gctx, new LocationsHolder(waypoints));
+		return router.searchGpxRoute(gctx, gpxPoints, null, false).collectFinalPointsAsRoute();
+	}
+
+	private static Set<Long> getWays(List<RouteSegmentResult> route) {
+		Set<Long> ways = new HashSet<>();
+		for (RouteSegmentResult r : route) {
+			ways.add(r.getObject().getId() / 64);
+		}
+		return ways;
+	}
+
+	private static double getDistance(RouteSegmentResult r) {
+		double distance = 0;
+		int d = r.getStartPointIndex() < r.getEndPointIndex() ? 1 : -1;
+		for (int j = r.getStartPointIndex(); j != r.getEndPointIndex(); j += d) {
+			distance += MapUtils.squareRootDist31(r.getObject().getPoint31XTile(j), r.getObject().getPoint31YTile(j),
+					r.getObject().getPoint31XTile(j + d), r.getObject().getPoint31YTile(j + d));
+		}
+		return distance;
+	}
+
+	public static class ChunkedEntry {
+		private String gpxFile;
+		private String obfFile;
+		private boolean ignore;
+		private double expectedDistMin;
+		private double expectedDistMax;
+		private Map<Long, Boolean> expectedWays;
+	}
+}
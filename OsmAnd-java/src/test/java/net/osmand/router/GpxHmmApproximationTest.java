@@ -0,0 +1,130 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.gpx.GPXFile;
+import net.osmand.gpx.GPXUtilities;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+/**
+ * Tracks of {@link ApproximationTest} approximated by {@link GpxHmmApproximation}: distance of route is within bounds
+ * of entry and expected ways are matched. Approximation is run twice by the same reader to check that search state
+ * of transition context reused by Viterbi step doesn't change result.
+ */
+@RunWith(Parameterized.class)
+public class GpxHmmApproximationTest {
+	private static final String RESOURCES_PATH = "/approximation/";
+	private static final String FILES_PATH = "src/test/resources/approximation/";
+	private static final int TIMEOUT = 1500000;
+
+	private final HmmEntry entry;
+
+	public GpxHmmApproximationTest(String name, HmmEntry entry) {
+		this.entry = entry;
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		String fileName = RESOURCES_PATH + "test.json";
+		Reader reader = new InputStreamReader(Objects.requireNonNull(GpxHmmApproximationTest.class.getResourceAsStream(fileName)));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		HmmEntry[] entries = gson.fromJson(reader, HmmEntry[].class);
+		ArrayList<Object[]> array = new ArrayList<>();
+		for (HmmEntry entry : entries) {
+			if (!entry.ignore) array.add(new Object[]{entry.gpxFile, entry});
+		}
+		reader.close();
+		return array;
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testHmmApproximation() throws Exception {
+		String obfFilePath = FILES_PATH + entry.obfFile;
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obfFilePath, "r"), new File(obfFilePath));
+		try {
+			List<RouteSegmentResult> route = approximate(reader);
+			Assert.assertFalse("Route is not approximated", route.isEmpty());
+			double distance = 0;
+			Set<Long> ways = new HashSet<>();
+			for (RouteSegmentResult r : route) {
+				distance += getDistance(r);
+				ways.add(r.getObject().getId() / 64);
+			}
+			Assert.assertTrue(String.format("Distance (%.2f) is outside of min / max (%.2f / %.2f)", distance,
+					entry.expectedDistMin, entry.expectedDistMax),
+					distance > entry.expectedDistMin && distance < entry.expectedDistMax);
+			if (entry.expectedWays != null) {
+				for (long osmId : entry.expectedWays.keySet()) {
+					Assert.assertEquals("Way " + osmId, entry.expectedWays.get(osmId), ways.contains(osmId));
+				}
+			}
+			List<RouteSegmentResult> again = approximate(reader);
+			Assert.assertEquals(route.size(), again.size());
+			for (int i = 0; i < route.size(); i++) {
+				Assert.assertEquals(route.get(i).getObject().getId(), again.get(i).getObject().getId());
+				Assert.assertEquals(route.get(i).getStartPointIndex(), again.get(i).getStartPointIndex());
+				Assert.assertEquals(route.get(i).getEndPointIndex(), again.get(i).getEndPointIndex());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private List<RouteSegmentResult> approximate(BinaryMapIndexReader reader) throws IOException, InterruptedException {
+		RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
+		router.setUseHmmApproximation(true);
+		final int MEM_LIMIT = RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT * 8 * 2;
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(MEM_LIMIT, MEM_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		config.minPointApproximation = 50;
+		RoutingContext ctx = router.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new File(FILES_PATH + entry.gpxFile));
+		List<GPXUtilities.WptPt> waypoints = gpxFile.tracks.get(0).segments.get(0).points;
+		List<RoutePlannerFrontEnd.GpxPoint> gpxPoints = router.generateGpxPoints(gctx, new LocationsHolder(waypoints));
+		return router.searchGpxRoute(gctx, gpxPoints, null, false).collectFinalPointsAsRoute();
+	}
+
+	private static double getDistance(RouteSegmentResult r) {
+		double distance = 0;
+		int d = r.getStartPointIndex() < r.getEndPointIndex() ? 1 : -1;
+		for (int j = r.getStartPointIndex(); j != r.getEndPointIndex(); j += d) {
+			distance += MapUtils.squareRootDist31(r.getObject().getPoint31XTile(j), r.getObject().getPoint31YTile(j),
+					r.getObject().getPoint31XTile(j + d), r.getObject().getPoint31YTile(j + d));
+		}
+		return distance;
+	}
+
+	public static class HmmEntry {
+		private String gpxFile;
+		private String obfFile;
+		private boolean ignore;
+		private double expectedDistMin;
+		private double expectedDistMax;
+		private Map<Long, Boolean> expectedWays;
+	}
+}
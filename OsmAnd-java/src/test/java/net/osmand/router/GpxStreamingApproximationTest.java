@@ -0,0 +1,161 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.gpx.GPXFile;
+import net.osmand.gpx.GPXUtilities;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Route of tracks of {@link ApproximationTest} approximated by {@link GpxMultiSegmentsApproximation} in streaming
+ * mode (points are added in small batches) should be the same as route approximated for the whole track, also
+ * when streamed track indexes exceed range of window indexes.
+ */
+@RunWith(Parameterized.class)
+public class GpxStreamingApproximationTest {
+	private static final String RESOURCES_PATH = "/approximation/";
+	private static final String FILES_PATH = "src/test/resources/approximation/";
+	private static final int BATCH_SIZE = 10;
+	private static final int TIMEOUT = 300000;
+
+	private final StreamingEntry entry;
+
+	public GpxStreamingApproximationTest(String name, StreamingEntry entry) {
+		this.entry = entry;
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		String fileName = RESOURCES_PATH + "test.json";
+		Reader reader = new InputStreamReader(Objects.requireNonNull(GpxStreamingApproximationTest.class.getResourceAsStream(fileName)));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		StreamingEntry[] entries = gson.fromJson(reader, StreamingEntry[].class);
+		ArrayList<Object[]> array = new ArrayList<>();
+		for (StreamingEntry entry : entries) {
+			if (!entry.ignore) array.add(new Object[]{entry.gpxFile, entry});
+		}
+		reader.close();
+		return array;
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testStreamingSameAsBatch() throws Exception {
+		String obfFilePath = FILES_PATH + entry.obfFile;
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obfFilePath, "r"), new File(obfFilePath));
+		try {
+			List<String> expected = batchRoute(reader);
+			Assert.assertFalse("Route is not approximated", expected.isEmpty());
+			Assert.assertEquals(expected, streamingRoute(reader, 0));
+			// window indexes are used for visited segments, streamed indexes don't fit into their bits
+			Assert.assertEquals(expected, streamingRoute(reader, (1 << 30) - 100));
+		} finally {
+			reader.close();
+		}
+	}
+
+	private List<String> batchRoute(BinaryMapIndexReader reader) throws IOException {
+		RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
+		GpxRouteApproximation gctx = new GpxRouteApproximation(buildContext(router, reader));
+		gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		List<GpxPoint> gpxPoints = router.generateGpxPoints(gctx, new LocationsHolder(loadWaypoints()));
+		for (GpxPoint p : gpxPoints) {
+			// streamed points don't have straight line, start direction is calculated by next points
+			p.object = null;
+		}
+		new GpxMultiSegmentsApproximation(router, gctx, gpxPoints).gpxApproximation();
+		List<String> route = new ArrayList<>();
+		for (GpxPoint p : gpxPoints) {
+			if (p.routeToTarget != null) {
+				addRoutePoints(route, p.routeToTarget);
+			}
+		}
+		return route;
+	}
+
+	private List<String> streamingRoute(BinaryMapIndexReader reader, int gpxOffset) throws IOException {
+		RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
+		GpxRouteApproximation gctx = new GpxRouteApproximation(buildContext(router, reader));
+		final List<String> route = new ArrayList<>();
+		GpxMultiSegmentsApproximation app = gctx.searchGpxRouteStreaming(router,
+				new GpxMultiSegmentsApproximation.GpxStreamListener() {
+
+					@Override
+					public void routeApproximated(List<RouteSegmentResult> res, int gpxStart, int gpxEnd) {
+						addRoutePoints(route, res);
+					}
+				});
+		app.gpxOffset = gpxOffset;
+		List<GPXUtilities.WptPt> waypoints = loadWaypoints();
+		LocationsHolder holder = new LocationsHolder(waypoints);
+		List<GpxPoint> batch = new ArrayList<>();
+		for (int i = 0; i < holder.getSize(); i++) {
+			GpxPoint p = new GpxPoint();
+			p.loc = holder.getLatLon(i);
+			p.time = holder.getTime(i);
+			batch.add(p);
+			if (batch.size() == BATCH_SIZE) {
+				app.addPoints(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		app.addPoints(batch);
+		app.finish();
+		return route;
+	}
+
+	// route is compared by road points, published parts of route could split segments of the whole route
+	private static void addRoutePoints(List<String> route, List<RouteSegmentResult> res) {
+		for (RouteSegmentResult r : res) {
+			int inc = r.isForwardDirection() ? 1 : -1;
+			for (int i = r.getStartPointIndex(); ; i += inc) {
+				String pnt = r.getObject().getId() + ":" + i;
+				if (route.isEmpty() || !route.get(route.size() - 1).equals(pnt)) {
+					route.add(pnt);
+				}
+				if (i == r.getEndPointIndex()) {
+					break;
+				}
+			}
+		}
+	}
+
+	private List<GPXUtilities.WptPt> loadWaypoints() {
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new File(FILES_PATH + entry.gpxFile));
+		return gpxFile.tracks.get(0).segments.get(0).points;
+	}
+
+	private RoutingContext buildContext(RoutePlannerFrontEnd router, BinaryMapIndexReader reader) throws IOException {
+		final int MEM_LIMIT = RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT * 8 * 2;
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(MEM_LIMIT, MEM_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		config.minPointApproximation = 50;
+		return router.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+	}
+
+	public static class StreamingEntry {
+		private String gpxFile;
+		private String obfFile;
+		private boolean ignore;
+	}
+}
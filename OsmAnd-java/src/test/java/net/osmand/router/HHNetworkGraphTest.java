@@ -0,0 +1,343 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+
+/**
+ * Route search over {@link HHNetworkGraph} should find the same costs as search over network points
+ * (segments distances), costs corrected by detailed routing are used only by search of the same route.
+ * Contraction hierarchy query should find the same costs as search over points with contraction level filter of
+ * {@link HHRoutePlanner} (chInd 0 is top level, equal levels are passed in both directions).
+ * Graph is shared by searches of many threads, every thread uses own {@link HHNetworkGraph.RouteSearch}.
+ */
+public class HHNetworkGraphTest {
+
+	private static final int SIZE = 12;
+
+	private static List<NetworkDBPoint> buildGrid(Random r) {
+		List<NetworkDBPoint> points = new ArrayList<NetworkDBPoint>();
+		for (int i = 0; i < SIZE * SIZE; i++) {
+			NetworkDBPoint p = new NetworkDBPointCh();
+			// graph is sorted by index
+			p.index = 1000 - i * 3;
+			p.startX = p.endX = (1 << 20) + (i % SIZE) * 1000;
+			p.startY = p.endY = (1 << 20) + (i / SIZE) * 1000;
+			points.add(p);
+		}
+		for (int i = 0; i < points.size(); i++) {
+			int x = i % SIZE;
+			int y = i / SIZE;
+			if (x + 1 < SIZE) {
+				connect(points.get(i), points.get(i + 1), r);
+				connect(points.get(i + 1), points.get(i), r);
+			}
+			if (y + 1 < SIZE) {
+				connect(points.get(i), points.get(i + SIZE), r);
+				connect(points.get(i + SIZE), points.get(i), r);
+			}
+		}
+		return points;
+	}
+
+	private static void connect(NetworkDBPoint start, NetworkDBPoint end, Random r) {
+		NetworkDBSegment s = new NetworkDBSegment(start, end, 10 + r.nextInt(100), true, false);
+		start.connected(false).add(s);
+		end.connected(true).add(s);
+	}
+
+	/**
+	 * Contracts points in random order (shortcuts are added without witness search), pairs of points get the same
+	 * level and last points are not contracted (top level 0).
+	 */
+	private static void contract(List<NetworkDBPoint> points, int top, Random r) {
+		Map<NetworkDBPoint, Map<NetworkDBPoint, Double>> out = new LinkedHashMap<NetworkDBPoint, Map<NetworkDBPoint, Double>>();
+		Map<NetworkDBPoint, Map<NetworkDBPoint, Double>> in = new LinkedHashMap<NetworkDBPoint, Map<NetworkDBPoint, Double>>();
+		for (NetworkDBPoint p : points) {
+			out.put(p, new LinkedHashMap<NetworkDBPoint, Double>());
+			in.put(p, new LinkedHashMap<NetworkDBPoint, Double>());
+		}
+		for (NetworkDBPoint p : points) {
+			for (NetworkDBSegment s : p.connected(false)) {
+				out.get(p).put(s.end, s.dist);
+				in.get(s.end).put(p, s.dist);
+			}
+		}
+		List<NetworkDBPoint> order = new ArrayList<NetworkDBPoint>(points);
+		Collections.shuffle(order, r);
+		for (int i = 0; i < order.size(); i++) {
+			NetworkDBPointCh x = (NetworkDBPointCh) order.get(i);
+			if (i >= order.size() - top) {
+				x.chInd = 0;
+				continue;
+			}
+			x.chInd = i / 2 + 1;
+			for (Map.Entry<NetworkDBPoint, Double> u : in.get(x).entrySet()) {
+				for (Map.Entry<NetworkDBPoint, Double> v : out.get(x).entrySet()) {
+					if (u.getKey() == v.getKey()) {
+						continue;
+					}
+					double dist = u.getValue() + v.getValue();
+					Double ex = out.get(u.getKey()).get(v.getKey());
+					if (ex == null || dist < ex) {
+						NetworkDBSegment s = new NetworkDBSegment(u.getKey(), v.getKey(), dist, true, true);
+						u.getKey().connected(false).add(s);
+						v.getKey().connected(true).add(s);
+						out.get(u.getKey()).put(v.getKey(), dist);
+						in.get(v.getKey()).put(u.getKey(), dist);
+					}
+				}
+			}
+			for (NetworkDBPoint u : in.remove(x).keySet()) {
+				out.get(u).remove(x);
+			}
+			for (NetworkDBPoint v : out.remove(x).keySet()) {
+				in.get(v).remove(x);
+			}
+		}
+	}
+
+	// search over points as in HHRoutePlanner.runRoutingPointsToPoints (Dijkstra, disabled segments are skipped)
+	private static double pointsSearch(NetworkDBPoint start, NetworkDBPoint end) {
+		Map<NetworkDBPoint, Double> costs = pointsSearch(start, end, false, false);
+		return costs.containsKey(end) ? costs.get(end) : Double.POSITIVE_INFINITY;
+	}
+
+	// bidirectional search over points with contraction level filter of HHRoutePlanner.addConnectedToQueue
+	private static double pointsChSearch(NetworkDBPoint start, NetworkDBPoint end) {
+		Map<NetworkDBPoint, Double> pos = pointsSearch(start, null, false, true);
+		Map<NetworkDBPoint, Double> rev = pointsSearch(end, null, true, true);
+		double best = Double.POSITIVE_INFINITY;
+		for (Map.Entry<NetworkDBPoint, Double> e : pos.entrySet()) {
+			if (rev.containsKey(e.getKey())) {
+				best = Math.min(best, e.getValue() + rev.get(e.getKey()));
+			}
+		}
+		return best;
+	}
+
+	private static Map<NetworkDBPoint, Double> pointsSearch(NetworkDBPoint start, NetworkDBPoint end, boolean reverse,
+			boolean ch) {
+		final Map<NetworkDBPoint, Double> costs = new HashMap<NetworkDBPoint, Double>();
+		PriorityQueue<NetworkDBPoint> queue = new PriorityQueue<NetworkDBPoint>(11, new Comparator<NetworkDBPoint>() {
+
+			@Override
+			public int compare(NetworkDBPoint o1, NetworkDBPoint o2) {
+				return Double.compare(costs.get(o1), costs.get(o2));
+			}
+		});
+		costs.put(start, 0d);
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			NetworkDBPoint p = queue.poll();
+			if (p == end) {
+				break;
+			}
+			for (NetworkDBSegment s : p.connected(reverse)) {
+				NetworkDBPoint next = reverse ? s.start : s.end;
+				if (s.dist < 0 || (!ch && s.shortcut)) {
+					continue;
+				}
+				if (ch && next.chInd() > 0 && next.chInd() < p.chInd()) {
+					continue;
+				}
+				double c = costs.get(p) + s.dist;
+				Double ex = costs.get(next);
+				if (ex == null || c < ex) {
+					queue.remove(next);
+					costs.put(next, c);
+					queue.add(next);
+				}
+			}
+		}
+		return costs;
+	}
+
+	private static double graphSearch(HHNetworkGraph.RouteSearch search, HHNetworkGraph graph, NetworkDBPoint start,
+			NetworkDBPoint end) {
+		search.clear();
+		search.setHeuristic(0, 0, 0, 0, 0);
+		search.forward.addSource(graph.getId(start.index), 0, 0);
+		search.backward.addSource(graph.getId(end.index), 0, 0);
+		if (search.run(0, 0, 0, Double.POSITIVE_INFINITY, null) < 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return search.meetCost();
+	}
+
+	private static double graphChSearch(HHNetworkGraph graph, NetworkDBPoint start, NetworkDBPoint end) {
+		HHNetworkGraph.RouteSearch search = new HHNetworkGraph.RouteSearch(graph);
+		search.setHierarchy();
+		search.forward.addSource(graph.getId(start.index), 0, 0);
+		search.backward.addSource(graph.getId(end.index), 0, 0);
+		if (search.run(0, 0, 0, Double.POSITIVE_INFINITY, null) < 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return search.meetCost();
+	}
+
+	private static List<NetworkDBSegment> route(HHNetworkGraph.RouteSearch search, HHNetworkGraph graph,
+			List<NetworkDBPoint> points) {
+		List<NetworkDBSegment> route = new ArrayList<NetworkDBSegment>();
+		int meet = search.forward.meetCost <= search.backward.meetCost ? search.forward.meetPoint
+				: search.backward.meetPoint;
+		for (int p = meet; search.forward.parent[p] >= 0; p = graph.sources[search.forward.parent[p]]) {
+			route.add(segment(graph, points, search.forward.parent[p]));
+		}
+		for (int p = meet; search.backward.parent[p] >= 0; p = graph.targets[search.backward.parent[p]]) {
+			route.add(segment(graph, points, search.backward.parent[p]));
+		}
+		return route;
+	}
+
+	// graph doesn't keep segments, segment is found by points as HHRoutePlanner does for routing context
+	private static NetworkDBSegment segment(HHNetworkGraph graph, List<NetworkDBPoint> points, int e) {
+		for (NetworkDBPoint p : points) {
+			if (p.index != graph.pointIndexes[graph.sources[e]]) {
+				continue;
+			}
+			for (NetworkDBSegment s : p.connected(false)) {
+				if (graph.findEdge(graph.sources[e], graph.getId(s.end.index), s.shortcut) == e) {
+					return s;
+				}
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	@Test
+	public void testSameCostsAsPointsSearch() {
+		Random r = new Random(17);
+		List<NetworkDBPoint> points = buildGrid(r);
+		HHNetworkGraph graph = HHNetworkGraph.build(points, new TreeMap<String, String>(), false);
+		for (int i = 0; i < 50; i++) {
+			NetworkDBPoint start = points.get(r.nextInt(points.size()));
+			NetworkDBPoint end = points.get(r.nextInt(points.size()));
+			if (start == end) {
+				continue;
+			}
+			Assert.assertEquals(pointsSearch(start, end), graphSearch(new HHNetworkGraph.RouteSearch(graph), graph, start, end), 1e-3);
+		}
+	}
+
+	@Test
+	public void testCorrectedCostsAreKeptBySearch() {
+		Random r = new Random(19);
+		List<NetworkDBPoint> points = buildGrid(r);
+		HHNetworkGraph graph = HHNetworkGraph.build(points, new TreeMap<String, String>(), false);
+		float[] costs = Arrays.copyOf(graph.costs, graph.costs.length);
+		NetworkDBPoint start = points.get(0);
+		NetworkDBPoint end = points.get(points.size() - 1);
+		double initialCost = pointsSearch(start, end);
+
+		HHNetworkGraph.RouteSearch search = new HHNetworkGraph.RouteSearch(graph);
+		Map<NetworkDBSegment, Double> initialDist = new HashMap<NetworkDBSegment, Double>();
+		for (int iteration = 0; iteration < 5; iteration++) {
+			Assert.assertEquals(pointsSearch(start, end), graphSearch(search, graph, start, end), 1e-3);
+			// detailed routing corrects distances of found route (one segment is disabled)
+			List<NetworkDBSegment> route = route(search, graph, points);
+			Assert.assertFalse(route.isEmpty());
+			for (int k = 0; k < route.size(); k++) {
+				NetworkDBSegment s = route.get(k);
+				if (!initialDist.containsKey(s)) {
+					initialDist.put(s, s.dist);
+				}
+				s.dist = k == route.size() / 2 ? -1 : s.dist * 1.5;
+				search.updateCosts(s.start);
+			}
+		}
+		Assert.assertTrue("Graph costs are changed", Arrays.equals(costs, graph.costs));
+
+		// costs of one route are not used by other routes (distances are restored as graph is built from them)
+		for (Map.Entry<NetworkDBSegment, Double> e : initialDist.entrySet()) {
+			e.getKey().dist = e.getValue();
+		}
+		Assert.assertEquals(initialCost, graphSearch(new HHNetworkGraph.RouteSearch(graph), graph, start, end), 1e-3);
+	}
+
+	@Test
+	public void testHierarchySameCostsAsPointsSearch() {
+		Random r = new Random(23);
+		List<NetworkDBPoint> points = buildGrid(r);
+		contract(points, 10, r);
+		HHNetworkGraph graph = HHNetworkGraph.build(points, new TreeMap<String, String>(), true);
+		Assert.assertTrue(graph.hasHierarchy());
+		for (int i = 0; i < 100; i++) {
+			NetworkDBPoint start = points.get(r.nextInt(points.size()));
+			NetworkDBPoint end = points.get(r.nextInt(points.size()));
+			if (start == end) {
+				continue;
+			}
+			double cost = pointsSearch(start, end);
+			Assert.assertEquals(cost, pointsChSearch(start, end), 1e-3);
+			Assert.assertEquals(cost, graphChSearch(graph, start, end), 1e-3);
+		}
+	}
+
+	@Test
+	public void testConcurrentQueries() throws Exception {
+		Random r = new Random(29);
+		final List<NetworkDBPoint> points = buildGrid(r);
+		contract(points, 10, r);
+		final HHNetworkGraph graph = HHNetworkGraph.build(points, new TreeMap<String, String>(), true);
+		final int[][] queries = new int[200][2];
+		final double[] expected = new double[queries.length];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i][0] = r.nextInt(points.size());
+			queries[i][1] = r.nextInt(points.size());
+			expected[i] = pointsSearch(points.get(queries[i][0]), points.get(queries[i][1]));
+		}
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+			for (int t = 0; t < threads; t++) {
+				final int shift = t;
+				futures.add(executor.submit(new Callable<double[]>() {
+
+					@Override
+					public double[] call() {
+						double[] res = new double[queries.length];
+						HHNetworkGraph.RouteSearch search = new HHNetworkGraph.RouteSearch(graph);
+						for (int k = 0; k < queries.length; k++) {
+							// threads run queries in different order
+							int i = (k + shift * 37) % queries.length;
+							NetworkDBPoint start = points.get(queries[i][0]);
+							NetworkDBPoint end = points.get(queries[i][1]);
+							res[i] = shift % 2 == 0 ? graphSearch(search, graph, start, end)
+									: graphChSearch(graph, start, end);
+						}
+						return res;
+					}
+				}));
+			}
+			for (Future<double[]> f : futures) {
+				double[] res = f.get();
+				for (int i = 0; i < queries.length; i++) {
+					Assert.assertEquals(expected[i], res[i], 1e-3);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import net.osmand.data.LatLon;
+import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+
+/**
+ * Matrix between start / end points of {@link RouteTestingTest} calculated by {@link HHRoutePlanner#runMatrix}:
+ * result doesn't depend on number of threads, destination close to origin (route doesn't pass network points) is
+ * reachable with cost of short route of {@link HHRoutePlanner#runRouting}.
+ */
+@RunWith(Parameterized.class)
+public class HHRouteMatrixTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 20000;
+
+	public HHRouteMatrixTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, false);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testSameMatrixByThreads() throws Exception {
+		List<LatLon> points = Arrays.asList(te.getStartPoint(), te.getEndPoint());
+		HHRouteMatrix single = calculate(points, points, 1);
+		Assume.assumeTrue("Maps have no hh routing", single.error == null);
+		HHRouteMatrix parallel = calculate(points, points, 4);
+		Assert.assertNull(parallel.error);
+		for (int i = 0; i < points.size(); i++) {
+			Assert.assertEquals(0, single.getCost(i, i), 0);
+			for (int j = 0; j < points.size(); j++) {
+				Assert.assertEquals(single.getCost(i, j), parallel.getCost(i, j), 0);
+				Assert.assertEquals(single.getDistance(i, j), parallel.getDistance(i, j), 0);
+			}
+		}
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShortPair() throws Exception {
+		HHNetworkRouteRes route = route(te.getStartPoint(), te.getEndPoint());
+		Assume.assumeTrue("Maps have no hh routing", route.error == null);
+		Assert.assertFalse(route.detailed.isEmpty());
+		// end of first segment of route is close to start (network points are not passed)
+		LatLon close = route.detailed.get(0).getEndPoint();
+		Assume.assumeFalse(close.equals(te.getStartPoint()));
+		HHNetworkRouteRes shortRoute = route(te.getStartPoint(), close);
+		Assert.assertNull(shortRoute.error);
+
+		HHRouteMatrix matrix = calculate(Arrays.asList(te.getStartPoint()), Arrays.asList(close), 1);
+		Assert.assertNull(matrix.error);
+		Assert.assertTrue("Close destination is not reachable", matrix.isReachable(0, 0));
+		double expected = shortRoute.getHHRoutingDetailed();
+		Assert.assertEquals(expected, matrix.getCost(0, 0), expected * 0.1 + 1);
+	}
+
+	private HHRouteMatrix calculate(final List<LatLon> origins, final List<LatLon> destinations, final int threads)
+			throws Exception {
+		return run(new PlannerTask<HHRouteMatrix>() {
+
+			@Override
+			public HHRouteMatrix run(HHRoutePlanner<NetworkDBPoint> planner) throws Exception {
+				return planner.runMatrix(origins, destinations, HHRoutingConfig.astar(0).matrixThreads(threads),
+						false);
+			}
+		});
+	}
+
+	private HHNetworkRouteRes route(final LatLon start, final LatLon end) throws Exception {
+		return run(new PlannerTask<HHNetworkRouteRes>() {
+
+			@Override
+			public HHNetworkRouteRes run(HHRoutePlanner<NetworkDBPoint> planner) throws Exception {
+				return planner.runRouting(start, end, HHRoutingConfig.astar(0));
+			}
+		});
+	}
+
+	private interface PlannerTask<R> {
+		R run(HHRoutePlanner<NetworkDBPoint> planner) throws Exception;
+	}
+
+	private <R> R run(PlannerTask<R> task) throws Exception {
+		RoutingContext ctx = buildContext(buildConfig());
+		try {
+			return task.run(HHRoutePlanner.create(ctx));
+		} finally {
+			close(ctx);
+		}
+	}
+}
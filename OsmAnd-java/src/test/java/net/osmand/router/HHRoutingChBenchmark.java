@@ -0,0 +1,81 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
+
+/**
+ * Compares contraction hierarchy query ({@link HHRoutingConfig#ch()}, over points and over preloaded network arrays)
+ * with A* ({@link HHRoutingConfig#astar(int)}) on scenarios of {@link RouteTestingTest}. Network db should be prepared with contraction order and shortcuts,
+ * sqlite jdbc driver should be in classpath.
+ * Usage: HHRoutingChBenchmark [hh db file] [profile] [iterations]
+ */
+public class HHRoutingChBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: HHRoutingChBenchmark [hh db file] [profile] [iterations]");
+			return;
+		}
+		File file = new File(args[0]);
+		String profile = args.length > 1 ? args[1] : "car";
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		List<TestEntry> entries = new ArrayList<TestEntry>();
+		for (Object[] o : RouteTestingTest.data()) {
+			entries.add((TestEntry) o[1]);
+		}
+		HHRoutingConfig.STATS_VERBOSE_LEVEL = 0;
+		Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		RoutingContext ctx = HHRoutePlanner.prepareContext(profile);
+		HHRoutePlanner<NetworkDBPointCh> planner = HHRoutePlanner.createDB(ctx, new HHRoutingDB(file, conn),
+				NetworkDBPointCh.class);
+		String[] names = { "A*", "CH", "CH graph" };
+		HHRoutingConfig[] configs = { HHRoutingConfig.astar(0), HHRoutingConfig.ch(),
+				HHRoutingConfig.ch().preloadNetworkGraph() };
+		long[] totalTime = new long[configs.length];
+		long[] totalSettled = new long[configs.length];
+		try {
+			for (TestEntry te : entries) {
+				StringBuilder line = new StringBuilder(te.getTestName());
+				for (int c = 0; c < configs.length; c++) {
+					// first run to warm up (points, segments and network arrays are loaded once)
+					HHNetworkRouteRes res = runRoute(planner, ctx, te, configs[c]);
+					if (res.getError() != null || res.stats == null) {
+						line.append(String.format("; %s %s", names[c], res.getError()));
+						continue;
+					}
+					long time = 0;
+					for (int i = 0; i < iterations; i++) {
+						long ts = System.nanoTime();
+						runRoute(planner, ctx, te, configs[c]);
+						time += System.nanoTime() - ts;
+					}
+					totalTime[c] += time / iterations;
+					totalSettled[c] += res.stats.uniqueVisitedVertices;
+					line.append(String.format("; %s %.2f ms (settled %d, stalled %d, cost %.1f)", names[c],
+							time / iterations / 1e6, res.stats.uniqueVisitedVertices, res.stats.stalledVertices,
+							res.getHHRoutingTime()));
+				}
+				System.out.println(line);
+			}
+			for (int c = 0; c < configs.length; c++) {
+				System.out.println(String.format("Total %s: %.1f ms, settled %d", names[c], totalTime[c] / 1e6,
+						totalSettled[c]));
+			}
+		} finally {
+			planner.close();
+		}
+	}
+
+	private static HHNetworkRouteRes runRoute(HHRoutePlanner<NetworkDBPointCh> planner, RoutingContext ctx,
+			TestEntry te, HHRoutingConfig config) throws Exception {
+		ctx.calculationProgress = new RouteCalculationProgress();
+		return planner.runRouting(te.getStartPoint(), te.getEndPoint(), config);
+	}
+}
@@ -0,0 +1,210 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+import net.osmand.router.HHRouteDataStructure.RoutingStats;
+import net.osmand.util.Algorithms;
+
+/**
+ * Segments and geometries of synthetic network db loaded by batches (points of cluster, segments of route) should
+ * be the same as loaded point by point and segment by segment, with fewer sql queries. Sqlite jdbc driver should be
+ * in classpath, otherwise test is skipped.
+ */
+public class HHRoutingDBBatchTest {
+	private static final int POINTS = 600;
+	private static final int CLUSTERS = 5;
+	private static final int PROFILE = 0;
+	private static final short MAP_ID = 0;
+
+	private File file;
+	private HHRoutingDB db;
+	private final List<int[]> baseSegments = new ArrayList<>();
+	private final List<int[]> shortcuts = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException, SQLException {
+		file = File.createTempFile("network", HHRoutingDB.EXT);
+		Connection conn;
+		try {
+			conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		} catch (SQLException e) {
+			Assume.assumeNoException("Sqlite jdbc driver is not in classpath", e);
+			return;
+		}
+		db = new HHRoutingDB(file, conn);
+		conn.setAutoCommit(false);
+		PreparedStatement pnt = conn.prepareStatement("INSERT INTO points(idPoint, pointGeoId, clusterId, dualIdPoint, "
+				+ "dualClusterId, roadId, start, end, sx31, sy31, ex31, ey31) VALUES(?, ?, ?, ?, ?, ?, 0, 1, ?, ?, ?, ?)");
+		for (int i = 1; i <= POINTS; i++) {
+			int dual = i % 2 == 1 ? i + 1 : i - 1;
+			pnt.setInt(1, i);
+			pnt.setInt(2, i);
+			pnt.setInt(3, i % CLUSTERS);
+			pnt.setInt(4, dual);
+			pnt.setInt(5, dual % CLUSTERS);
+			pnt.setLong(6, i * 64L);
+			pnt.setInt(7, i * 100);
+			pnt.setInt(8, i * 200);
+			pnt.setInt(9, i * 100 + 50);
+			pnt.setInt(10, i * 200 + 50);
+			pnt.addBatch();
+		}
+		pnt.executeBatch();
+		pnt.close();
+
+		PreparedStatement seg = conn.prepareStatement(
+				"INSERT INTO segments(idPoint, idConnPoint, dist, shortcut, profile) VALUES(?, ?, ?, ?, ?)");
+		PreparedStatement geom = conn.prepareStatement(
+				"INSERT INTO geometry(idPoint, idConnPoint, geometry, shortcut, profile) VALUES(?, ?, ?, ?, ?)");
+		for (int i = 1; i <= POINTS; i++) {
+			for (int step : new int[] { 1, 7 }) {
+				int end = (i + step - 1) % POINTS + 1;
+				baseSegments.add(new int[] { i, end });
+				insert(seg, geom, i, end, false, points(i, end, 2 + i % 3));
+			}
+		}
+		for (int i = 1; i <= POINTS; i += 3) {
+			// shortcut i -> i + 8 by base segments i -> i + 1 -> i + 8
+			int mid = i % POINTS + 1;
+			int end = (mid + 6) % POINTS + 1;
+			byte[] g = new byte[8 * 3];
+			Algorithms.putIntToBytes(g, 0, HHRoutingDB.XY_SHORTCUT_GEOM);
+			Algorithms.putIntToBytes(g, 4, HHRoutingDB.XY_SHORTCUT_GEOM);
+			Algorithms.putIntToBytes(g, 8, i);
+			Algorithms.putIntToBytes(g, 12, mid);
+			Algorithms.putIntToBytes(g, 16, mid);
+			Algorithms.putIntToBytes(g, 20, end);
+			shortcuts.add(new int[] { i, end });
+			insert(seg, geom, i, end, true, g);
+		}
+		seg.executeBatch();
+		geom.executeBatch();
+		seg.close();
+		geom.close();
+		conn.commit();
+		conn.setAutoCommit(true);
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		if (db != null) {
+			db.close();
+		}
+		file.delete();
+	}
+
+	@Test(timeout = 60000)
+	public void testBatchedSegments() throws SQLException {
+		for (boolean reverse : new boolean[] { false, true }) {
+			HHRoutingContext<NetworkDBPoint> single = context(false);
+			List<String> expected = loadSegments(single, reverse);
+			Assert.assertEquals(POINTS, single.stats.sqlQueries);
+
+			HHRoutingContext<NetworkDBPoint> batched = context(true);
+			Assert.assertEquals("Batched segments, reverse " + reverse, expected, loadSegments(batched, reverse));
+			Assert.assertTrue("Segments are not batched", batched.stats.sqlQueries <= CLUSTERS * 2);
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testBatchedGeometry() throws SQLException {
+		HHRoutingContext<NetworkDBPoint> ctx = context(false);
+		List<NetworkDBSegment> segments = new ArrayList<>();
+		for (int[] s : baseSegments) {
+			segments.add(new NetworkDBSegment(ctx.pointsById.get(s[0]), ctx.pointsById.get(s[1]), 1, true, false));
+		}
+		for (int[] s : shortcuts) {
+			segments.add(new NetworkDBSegment(ctx.pointsById.get(s[0]), ctx.pointsById.get(s[1]), 1, true, true));
+		}
+		List<String> expected = new ArrayList<>();
+		RoutingStats singleStats = new RoutingStats();
+		for (NetworkDBSegment s : segments) {
+			Assert.assertTrue(db.loadGeometry(s, PROFILE, false, singleStats));
+			expected.add(s.getGeometry().toString());
+			s.getGeometry().clear();
+		}
+
+		RoutingStats batchedStats = new RoutingStats();
+		Assert.assertEquals(segments.size(), db.loadGeometry(segments, PROFILE, batchedStats));
+		List<String> batched = new ArrayList<>();
+		for (NetworkDBSegment s : segments) {
+			batched.add(s.getGeometry().toString());
+		}
+		Assert.assertEquals(expected, batched);
+		Assert.assertTrue("Geometries are not batched", batchedStats.sqlQueries * 10 < singleStats.sqlQueries);
+	}
+
+	private HHRoutingContext<NetworkDBPoint> context(boolean clusters) throws SQLException {
+		HHRoutingContext<NetworkDBPoint> ctx = new HHRoutingContext<NetworkDBPoint>();
+		ctx.pointsById = db.loadNetworkPoints(MAP_ID, NetworkDBPoint.class);
+		Assert.assertEquals(POINTS, ctx.pointsById.size());
+		for (NetworkDBPoint p : ctx.pointsById.valueCollection()) {
+			p.markSegmentsNotLoaded();
+		}
+		// without clusters segments are loaded point by point
+		ctx.clusterOutPoints = clusters ? HHRoutePlanner.groupByClusters(ctx.pointsById, true) : null;
+		return ctx;
+	}
+
+	// segments of all points in order of point ids
+	private List<String> loadSegments(HHRoutingContext<NetworkDBPoint> ctx, boolean reverse) throws SQLException {
+		HHRouteRegionPointsCtx<NetworkDBPoint> reg = new HHRouteRegionPointsCtx<NetworkDBPoint>(MAP_ID, db);
+		TLongObjectHashMap<NetworkDBPoint> points = ctx.pointsById;
+		List<String> res = new ArrayList<>();
+		for (int i = 1; i <= POINTS; i++) {
+			NetworkDBPoint p = points.get(i);
+			db.loadNetworkSegmentPoint(ctx, reg, p, reverse);
+			List<String> l = new ArrayList<>();
+			for (NetworkDBSegment s : p.connected(reverse)) {
+				l.add(s.start.index + " " + s.end.index + " " + s.dist + " " + s.shortcut + " " + s.direction);
+			}
+			Collections.sort(l);
+			res.add(i + ": " + l);
+		}
+		return res;
+	}
+
+	private static void insert(PreparedStatement seg, PreparedStatement geom, int start, int end, boolean shortcut,
+			byte[] geometry) throws SQLException {
+		seg.setInt(1, start);
+		seg.setInt(2, end);
+		seg.setDouble(3, start + end / 10.0);
+		seg.setInt(4, shortcut ? 1 : 0);
+		seg.setInt(5, PROFILE);
+		seg.addBatch();
+		geom.setInt(1, start);
+		geom.setInt(2, end);
+		geom.setBytes(3, geometry);
+		geom.setInt(4, shortcut ? 1 : 0);
+		geom.setInt(5, PROFILE);
+		geom.addBatch();
+	}
+
+	private static byte[] points(int start, int end, int count) {
+		byte[] g = new byte[8 * count];
+		for (int k = 0; k < count; k++) {
+			Algorithms.putIntToBytes(g, k * 8, start * 100 + end * 3 + k);
+			Algorithms.putIntToBytes(g, k * 8 + 4, start * 200 + k * 7);
+		}
+		return g;
+	}
+}
@@ -0,0 +1,55 @@
+package net.osmand.router;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+
+/**
+ * Routes of {@link RouteTestingTest} calculated by {@link HHRoutePlanner} over preloaded network arrays
+ * ({@link HHRoutingConfig#preloadNetworkGraph()}) should have the same cost as routes calculated over network points.
+ * Contraction hierarchy query is compared with search over points in {@link HHNetworkGraphTest} (maps don't keep
+ * contraction levels).
+ */
+@RunWith(Parameterized.class)
+public class HHRoutingGraphTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 10000;
+
+	public HHRoutingGraphTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, false);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testPreloadedGraph() throws Exception {
+		HHNetworkRouteRes expected = calculate(HHRoutingConfig.astar(0));
+		HHNetworkRouteRes actual = calculate(HHRoutingConfig.astar(0).preloadNetworkGraph());
+		Assert.assertEquals(expected.getError(), actual.getError());
+		Assume.assumeTrue("Maps have no hh routing", expected.getError() == null);
+		Assert.assertEquals("Route cost over network graph", expected.getHHRoutingTime(), actual.getHHRoutingTime(),
+				expected.getHHRoutingTime() * 1e-4);
+	}
+
+	private HHNetworkRouteRes calculate(HHRoutingConfig hhConfig) throws Exception {
+		RoutingContext ctx = buildContext(buildConfig());
+		try {
+			// new planner for every config: corrected segments distances of network points are not shared
+			HHRoutePlanner<NetworkDBPoint> planner = HHRoutePlanner.create(ctx);
+			return planner.runRouting(te.getStartPoint(), te.getEndPoint(), hhConfig);
+		} finally {
+			close(ctx);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.IsochroneCalculator.IsochroneBand;
+import net.osmand.router.IsochroneCalculator.IsochroneListener;
+
+/**
+ * Isochrone bands around start points of {@link RouteTestingTest}: every reached part belongs to the smallest band
+ * containing its cost, hull of band contains hull of smaller band. Test map has no hh files, so bands longer than
+ * detailed limit should be calculated by detailed routing as if limit wasn't set.
+ */
+@RunWith(Parameterized.class)
+public class IsochroneCalculatorTest extends RoutingTestFixture {
+	private static final float[] BUDGETS = { 60, 180, 300 };
+	private static final int TIMEOUT = 10000;
+
+	public IsochroneCalculatorTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(false, true);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testBands() throws Exception {
+		final List<IsochroneBand> bands = calculate(new IsochroneCalculator(), new IsochroneListener() {
+
+			@Override
+			public void roadReached(RouteDataObject road, int startPoint, int endPoint, float cost, int band) {
+				Assert.assertTrue(cost <= BUDGETS[band]);
+				Assert.assertTrue(band == 0 || cost > BUDGETS[band - 1]);
+			}
+
+			@Override
+			public void pointReached(int x31, int y31, float cost, int band) {
+				Assert.fail("Network is not used by short bands");
+			}
+		});
+		Assert.assertEquals(BUDGETS.length, bands.size());
+		for (int i = 0; i < bands.size(); i++) {
+			Assert.assertEquals(BUDGETS[i], bands.get(i).budget, 0);
+			Assert.assertFalse(bands.get(i).hull.isEmpty());
+			if (i > 0) {
+				assertContains(bands.get(i).hull, bands.get(i - 1).hull);
+			}
+		}
+		Assert.assertTrue(bands.get(0).roadParts > 0);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testDetailedWithoutNetworkFiles() throws Exception {
+		List<IsochroneBand> expected = calculate(new IsochroneCalculator(), null);
+		List<IsochroneBand> bands = calculate(new IsochroneCalculator().setDetailedTimeLimit(BUDGETS[0]), null);
+		Assert.assertEquals(expected.size(), bands.size());
+		for (int i = 0; i < bands.size(); i++) {
+			Assert.assertEquals(0, bands.get(i).networkPoints);
+			Assert.assertEquals(expected.get(i).roadParts, bands.get(i).roadParts);
+			Assert.assertEquals(expected.get(i).hull, bands.get(i).hull);
+		}
+	}
+
+	// hull is counter clockwise
+	private static void assertContains(List<LatLon> hull, List<LatLon> inner) {
+		for (LatLon p : inner) {
+			for (int i = 0; i < hull.size(); i++) {
+				LatLon a = hull.get(i);
+				LatLon b = hull.get((i + 1) % hull.size());
+				double cross = (a.getLongitude() - p.getLongitude()) * (b.getLatitude() - p.getLatitude())
+						- (a.getLatitude() - p.getLatitude()) * (b.getLongitude() - p.getLongitude());
+				Assert.assertTrue("Hull of band doesn't contain smaller band " + p, cross >= -1e-9);
+			}
+		}
+	}
+
+	private List<IsochroneBand> calculate(IsochroneCalculator calculator, IsochroneListener listener)
+			throws Exception {
+		RoutingContext ctx = buildContext(buildConfig());
+		try {
+			return calculator.calculate(ctx, te.getStartPoint(), BUDGETS, false, listener);
+		} finally {
+			close(ctx);
+		}
+	}
+}
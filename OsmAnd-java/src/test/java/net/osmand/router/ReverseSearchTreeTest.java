@@ -0,0 +1,95 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import net.osmand.data.LatLon;
+
+/**
+ * Route recalculated from the middle of route of {@link RouteTestingTest} with reverse search tree of the first
+ * calculation should have the same cost as route calculated without tree. Tree is neither saved nor reused with
+ * inadmissible heuristic.
+ */
+@RunWith(Parameterized.class)
+public class ReverseSearchTreeTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 3000;
+
+	public ReverseSearchTreeTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		// tree is kept only for calculation to final destination
+		return loadEntries(true, false);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testReusedTree() throws Exception {
+		RoutingContext first = buildContext();
+		List<RouteSegmentResult> route = calculate(first, te.getStartPoint());
+		ReverseSearchTree tree = first.reverseSearchTree;
+		Assert.assertNotNull("Reverse search tree is not saved", tree);
+		Assume.assumeTrue("Route has no middle segment", route.size() >= 2);
+		LatLon start = route.get(route.size() / 2).getStartPoint();
+
+		RoutingContext reused = buildContext();
+		reused.reverseSearchTree = tree;
+		calculate(reused, start);
+		Assert.assertEquals("Tree is not reused", 1, tree.reused);
+
+		RoutingContext fresh = buildContext();
+		calculate(fresh, start);
+		Assert.assertEquals("Route cost with reused tree", fresh.routingTime, reused.routingTime,
+				fresh.routingTime * 1e-4);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testInadmissibleHeuristic() throws Exception {
+		RoutingContext first = buildContext();
+		calculate(first, te.getStartPoint());
+		ReverseSearchTree tree = first.reverseSearchTree;
+		Assert.assertNotNull("Reverse search tree is not saved", tree);
+
+		RoutingContext inadmissible = buildContext(1.5f);
+		calculate(inadmissible, te.getStartPoint());
+		Assert.assertNull("Tree is saved with inadmissible heuristic", inadmissible.reverseSearchTree);
+
+		RoutingContext reused = buildContext(1.5f);
+		reused.reverseSearchTree = tree;
+		calculate(reused, te.getStartPoint());
+		Assert.assertEquals("Tree is reused with inadmissible heuristic", 0, tree.reused);
+	}
+
+	private RoutingContext buildContext() throws IOException {
+		// costs of reused tree are exact only with admissible heuristic
+		return buildContext(1);
+	}
+
+	private RoutingContext buildContext(float heuristicCoefficient) throws IOException {
+		RoutingConfiguration config = buildConfig();
+		config.heuristicCoefficient = heuristicCoefficient;
+		config.planRoadDirection = 0;
+		config.incrementalRerouting = true;
+		return buildContext(config);
+	}
+
+	private List<RouteSegmentResult> calculate(RoutingContext ctx, LatLon start) throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		fe.CALCULATE_MISSING_MAPS = false;
+		try {
+			List<RouteSegmentResult> route = fe.searchRoute(ctx, start, te.getEndPoint(), null).detailed;
+			Assert.assertNotNull(route);
+			return route;
+		} finally {
+			close(ctx);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import net.osmand.data.LatLon;
+
+/**
+ * Routes of {@link RouteTestingTest} with intermediate points (transit points of entry or middle of route)
+ * calculated with legs in parallel should have the same cost as legs calculated one by one, reverse search tree
+ * of the last leg is kept by context in both cases.
+ */
+@RunWith(Parameterized.class)
+public class RouteParallelLegsTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 10000;
+
+	public RouteParallelLegsTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, true);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		RoutePlannerFrontEnd.shutdownLegsExecutor();
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testParallelLegs() throws Exception {
+		List<LatLon> intermediates = new ArrayList<>(te.getTransitPoint());
+		if (intermediates.isEmpty()) {
+			RoutingContext ctx = buildContext(false);
+			List<RouteSegmentResult> route = calculate(ctx, intermediates);
+			Assume.assumeTrue("Route has no middle segment", route.size() >= 2);
+			intermediates.add(route.get(route.size() / 2).getStartPoint());
+		}
+		RoutingContext sequential = buildContext(false);
+		calculate(sequential, intermediates);
+		Assert.assertTrue("Route is not found", sequential.routingTime > 0);
+		Assert.assertNotNull("Reverse search tree of last leg is not kept", sequential.reverseSearchTree);
+
+		RoutingContext parallel = buildContext(true);
+		calculate(parallel, intermediates);
+		Assert.assertEquals("Parallel legs route cost", sequential.routingTime, parallel.routingTime,
+				sequential.routingTime * 1e-4);
+		Assert.assertNotNull("Reverse search tree of last leg is not kept", parallel.reverseSearchTree);
+	}
+
+	private RoutingContext buildContext(boolean parallelLegs) throws IOException {
+		RoutingConfiguration config = buildConfig();
+		// reverse search tree is kept only with admissible heuristic
+		config.heuristicCoefficient = 1;
+		config.planRoadDirection = 0;
+		config.incrementalRerouting = true;
+		config.parallelLegs = parallelLegs;
+		return buildContext(config);
+	}
+
+	private List<RouteSegmentResult> calculate(RoutingContext ctx, List<LatLon> intermediates) throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		fe.CALCULATE_MISSING_MAPS = false;
+		try {
+			List<RouteSegmentResult> route = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(),
+					intermediates).detailed;
+			Assert.assertNotNull(route);
+			return route;
+		} finally {
+			close(ctx);
+		}
+	}
+}
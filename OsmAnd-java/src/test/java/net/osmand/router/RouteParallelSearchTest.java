@@ -0,0 +1,56 @@
+package net.osmand.router;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Routes of {@link RouteTestingTest} calculated with parallel search (direct and reverse search in 2 threads)
+ * should have the same cost as routes calculated in one thread.
+ */
+@RunWith(Parameterized.class)
+public class RouteParallelSearchTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 3000;
+
+	public RouteParallelSearchTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, true);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testParallelSearch() throws Exception {
+		RoutingContext sequential = calculate(false);
+		Assert.assertTrue("Route is not found", sequential.routingTime > 0);
+		for (int i = 0; i < 3; i++) {
+			// threads timing differs between runs
+			RoutingContext parallel = calculate(true);
+			Assert.assertEquals("Parallel search route cost", sequential.routingTime, parallel.routingTime,
+					sequential.routingTime * 1e-4);
+		}
+	}
+
+	private RoutingContext calculate(boolean parallelSearch) throws Exception {
+		RoutingConfiguration config = buildConfig();
+		// parallel search is used only with admissible heuristic
+		config.heuristicCoefficient = 1;
+		config.planRoadDirection = 0;
+		config.parallelSearch = parallelSearch;
+		RoutingContext ctx = buildContext(config);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			fe.CALCULATE_MISSING_MAPS = false;
+			Assert.assertNotNull(fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint()).detailed);
+			return ctx;
+		} finally {
+			close(ctx);
+		}
+	}
+}
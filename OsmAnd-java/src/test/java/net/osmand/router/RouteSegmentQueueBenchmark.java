@@ -0,0 +1,86 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Compares A* queue implementations ({@link RouteSegmentQueue.Type}) on scenarios of {@link RouteTestingTest}.
+ * Usage: RouteSegmentQueueBenchmark [iterations]
+ */
+public class RouteSegmentQueueBenchmark {
+
+	private static final String ROUTING_DIR = "src/test/resources/routing/";
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		List<TestEntry> entries = new ArrayList<TestEntry>();
+		for (Object[] o : RouteTestingTest.data()) {
+			entries.add((TestEntry) o[1]);
+		}
+		RouteSegmentQueue.Type[] types = RouteSegmentQueue.Type.values();
+		long[] totalTime = new long[types.length];
+		for (TestEntry te : entries) {
+			StringBuilder line = new StringBuilder(te.getTestName());
+			for (int t = 0; t < types.length; t++) {
+				// first run to warm up
+				long visited = runRoute(te, types[t]);
+				long time = 0;
+				for (int i = 0; i < iterations; i++) {
+					long ts = System.nanoTime();
+					runRoute(te, types[t]);
+					time += System.nanoTime() - ts;
+				}
+				totalTime[t] += time / iterations;
+				line.append(String.format("; %s %.1f ms (visited %d)", types[t], time / iterations / 1e6, visited));
+			}
+			System.out.println(line);
+		}
+		for (int t = 0; t < types.length; t++) {
+			System.out.println(String.format("Total %s: %.1f ms", types[t], totalTime[t] / 1e6));
+		}
+	}
+
+	private static long runRoute(TestEntry te, RouteSegmentQueue.Type type) throws IOException, InterruptedException {
+		Map<String, String> params = te.getParams();
+		List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+		if (params.containsKey("map")) {
+			readers.add(openReader(ROUTING_DIR + params.get("map")));
+		}
+		readers.add(openReader(ROUTING_DIR + "Routing_test_archive.obf"));
+		try {
+			RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+					RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build(
+					params.containsKey("vehicle") ? params.get("vehicle") : "car", memoryLimits, params);
+			if (params.containsKey("routeCalculationTime")) {
+				config.routeCalculationTime = Long.parseLong(params.get("routeCalculationTime"));
+			}
+			if (params.containsKey("heuristicCoefficient")) {
+				config.heuristicCoefficient = Float.parseFloat(params.get("heuristicCoefficient"));
+			}
+			config.segmentQueue = type;
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			fe.CALCULATE_MISSING_MAPS = false;
+			RoutingContext ctx = fe.buildRoutingContext(config, null,
+					readers.toArray(new BinaryMapIndexReader[0]), RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+			return ctx.getVisitedSegments();
+		} finally {
+			for (BinaryMapIndexReader r : readers) {
+				r.close();
+			}
+		}
+	}
+
+	private static BinaryMapIndexReader openReader(String fileName) throws IOException {
+		return new BinaryMapIndexReader(new RandomAccessFile(fileName, "r"), new File(fileName));
+	}
+}
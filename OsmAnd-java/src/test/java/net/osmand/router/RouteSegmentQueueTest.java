@@ -0,0 +1,179 @@
+package net.osmand.router;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.RouteSegmentQueue.IndexedHeap;
+import net.osmand.router.RouteSegmentQueue.JavaPriorityQueue;
+import net.osmand.router.RouteSegmentQueue.LongIntMap;
+
+public class RouteSegmentQueueTest {
+
+	private static RouteSegment segment(long id) {
+		RouteDataObject road = new RouteDataObject((RouteRegion) null);
+		road.id = id;
+		road.pointsX = new int[] { 0, 1 };
+		road.pointsY = new int[] { 0, 1 };
+		return new RouteSegment(road, 0);
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		IndexedHeap heap = new IndexedHeap();
+		RouteSegment a = segment(1);
+		RouteSegment b = segment(2);
+		RouteSegment a2 = segment(1);
+		heap.add(a, 10, 1);
+		heap.add(b, 5, 2);
+		// higher cost for the same point is ignored
+		heap.add(segment(2), 7, 2);
+		Assert.assertEquals(2, heap.size());
+		// lower cost replaces segment and moves it up
+		heap.add(a2, 1, 1);
+		Assert.assertEquals(2, heap.size());
+		Assert.assertSame(a2, heap.peek());
+		Assert.assertEquals(1f, heap.peekCost(), 0);
+		Assert.assertSame(a2, heap.poll());
+		Assert.assertSame(b, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertNull(heap.poll());
+		Assert.assertEquals(Float.POSITIVE_INFINITY, heap.peekCost(), 0);
+	}
+
+	@Test
+	public void testRemoveOnPoll() {
+		IndexedHeap heap = new IndexedHeap();
+		heap.add(segment(1), 3, 1);
+		heap.add(segment(2), 4, 2);
+		heap.poll();
+		// polled point is not indexed anymore and could be added again with any cost
+		RouteSegment again = segment(1);
+		heap.add(again, 100, 1);
+		Assert.assertEquals(2, heap.size());
+		heap.poll();
+		Assert.assertSame(again, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testFinalSegmentsAreNotIndexed() {
+		IndexedHeap heap = new IndexedHeap();
+		RouteSegment s = segment(1);
+		FinalRouteSegment f = new FinalRouteSegment(s.getRoad(), 0, 1);
+		heap.add(s, 5, 1);
+		heap.add(f, 6, 1);
+		Assert.assertEquals(2, heap.size());
+		Assert.assertSame(s, heap.poll());
+		Assert.assertSame(f, heap.poll());
+	}
+
+	@Test
+	public void testLongIntMap() {
+		LongIntMap map = new LongIntMap();
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		Random r = new Random(7);
+		int initialCapacity = map.capacity();
+		for (int i = 0; i < 200000; i++) {
+			// small key range with clustered hashes makes long probe sequences and wraps around the table
+			long key = r.nextInt(3) == 0 ? r.nextInt(2000) : ((long) r.nextInt(500)) << 32;
+			int op = r.nextInt(10);
+			if (op < 5) {
+				map.put(key, i);
+				expected.put(key, i);
+			} else if (op < 8) {
+				map.remove(key);
+				expected.remove(key);
+			} else {
+				Integer v = expected.get(key);
+				Assert.assertEquals(v == null ? -1 : v.intValue(), map.get(key));
+			}
+		}
+		Assert.assertTrue(map.capacity() > initialCapacity);
+		for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+			Assert.assertEquals(e.getValue().intValue(), map.get(e.getKey()));
+		}
+		// removed keys are not found after growth
+		for (long k = 0; k < 2000; k++) {
+			if (!expected.containsKey(k)) {
+				Assert.assertEquals(-1, map.get(k));
+			}
+		}
+	}
+
+	@Test
+	public void testOrderEquivalence() {
+		Random r = new Random(11);
+		for (int test = 0; test < 20; test++) {
+			IndexedHeap heap = new IndexedHeap();
+			// reference: best cost of every point in queue (stale entries of java.util.PriorityQueue are skipped)
+			Map<Long, Float> best = new HashMap<Long, Float>();
+			int ops = 1000 + r.nextInt(5000);
+			for (int i = 0; i < ops; i++) {
+				if (r.nextInt(3) > 0 || heap.isEmpty()) {
+					long id = r.nextInt(ops / 2);
+					float cost = r.nextInt(10000) / 10f;
+					heap.add(segment(id), cost, id);
+					Float b = best.get(id);
+					if (b == null || cost < b) {
+						best.put(id, cost);
+					}
+				} else {
+					checkPoll(heap, best);
+				}
+				Assert.assertEquals(best.size(), heap.size());
+			}
+			while (!heap.isEmpty()) {
+				checkPoll(heap, best);
+			}
+			Assert.assertTrue(best.isEmpty());
+		}
+	}
+
+	private static void checkPoll(IndexedHeap heap, Map<Long, Float> best) {
+		float min = Float.POSITIVE_INFINITY;
+		for (Float c : best.values()) {
+			min = Math.min(min, c);
+		}
+		float cost = heap.peekCost();
+		RouteSegment s = heap.poll();
+		Assert.assertEquals(min, cost, 0);
+		Assert.assertEquals(best.remove(s.getRoad().getId()), cost, 0);
+	}
+
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		Random r = new Random(13);
+		IndexedHeap heap = new IndexedHeap();
+		JavaPriorityQueue javaQueue = new JavaPriorityQueue();
+		long id = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (r.nextInt(3) > 0 || heap.isEmpty()) {
+				// without repeated points both queues keep all segments
+				float cost = r.nextInt(1000);
+				RouteSegment s = segment(id);
+				heap.add(s, cost, id);
+				javaQueue.add(s, cost, id);
+				id++;
+			} else {
+				Assert.assertEquals(javaQueue.size(), heap.size());
+				Assert.assertEquals(javaQueue.peekCost(), heap.peekCost(), 0);
+				Assert.assertNotNull(javaQueue.poll());
+				Assert.assertNotNull(heap.poll());
+			}
+		}
+		while (!heap.isEmpty()) {
+			Assert.assertEquals(javaQueue.peekCost(), heap.peekCost(), 0);
+			javaQueue.poll();
+			heap.poll();
+		}
+		Assert.assertTrue(javaQueue.isEmpty());
+	}
+}
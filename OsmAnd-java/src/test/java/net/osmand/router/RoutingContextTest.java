@@ -0,0 +1,63 @@
+package net.osmand.router;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+
+/**
+ * Copy of context keeps router of current thread, but routers set for the copy (parallel search, distance router of
+ * HMM approximation) don't change routers of original context.
+ */
+public class RoutingContextTest {
+
+	private static RoutingContext createContext(GeneralRouter router) {
+		RoutingConfiguration config = new RoutingConfiguration();
+		config.router = router;
+		return new RoutingContext(config, null, new BinaryMapIndexReader[0],
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+	}
+
+	@Test
+	public void testCopyKeepsThreadRouter() {
+		GeneralRouter router = new GeneralRouter(GeneralRouterProfile.CAR, new HashMap<String, String>());
+		GeneralRouter threadRouter = router.copyForThread();
+		RoutingContext ctx = createContext(router);
+		ctx.setThreadRouter(threadRouter);
+		RoutingContext copy = new RoutingContext(ctx);
+		Assert.assertSame(threadRouter, copy.getRouter());
+		Assert.assertSame(router, new RoutingContext(createContext(router)).getRouter());
+	}
+
+	@Test
+	public void testCopyThreadRouterIsNotShared() throws Exception {
+		GeneralRouter router = new GeneralRouter(GeneralRouterProfile.CAR, new HashMap<String, String>());
+		GeneralRouter threadRouter = router.copyForThread();
+		RoutingContext ctx = createContext(router);
+		ctx.setThreadRouter(threadRouter);
+		final RoutingContext copy = new RoutingContext(ctx);
+
+		GeneralRouter copyRouter = router.copyForThread();
+		copy.setThreadRouter(copyRouter);
+		Assert.assertSame(copyRouter, copy.getRouter());
+		Assert.assertSame(threadRouter, ctx.getRouter());
+		copy.setThreadRouter(null);
+		Assert.assertSame(router, copy.getRouter());
+		Assert.assertSame(threadRouter, ctx.getRouter());
+
+		final GeneralRouter otherRouter = router.copyForThread();
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				copy.setThreadRouter(otherRouter);
+			}
+		});
+		t.start();
+		t.join();
+		Assert.assertSame(router, copy.getRouter());
+		Assert.assertSame(threadRouter, ctx.getRouter());
+	}
+}
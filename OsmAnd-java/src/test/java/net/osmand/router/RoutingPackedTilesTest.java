@@ -0,0 +1,87 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.util.MapUtils;
+
+/**
+ * Tiles loaded between start and end points of {@link RouteTestingTest} are unloaded with packing
+ * ({@link RoutingConfiguration#packedTiles}): memory of context drops, packed data is smaller than released objects
+ * and tiles reloaded from packed data have the same roads.
+ */
+@RunWith(Parameterized.class)
+public class RoutingPackedTilesTest extends RoutingTestFixture {
+
+	private static final int POINTS = 20;
+	private static final int TIMEOUT = 10000;
+
+	public RoutingPackedTilesTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, false);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testMemoryDropsAfterPacking() throws Exception {
+		RoutingConfiguration config = buildConfig();
+		config.packedTiles = true;
+		// tiles are unloaded only by test
+		config.memoryLimitation = Long.MAX_VALUE / 2;
+		RoutingContext ctx = buildContext(config);
+		try {
+			List<Set<Long>> roads = new ArrayList<>();
+			for (int i = 0; i < POINTS; i++) {
+				roads.add(loadRoads(ctx, i));
+			}
+			RoutingMemoryUsage before = ctx.getMemoryUsage();
+			int size = ctx.getCurrentEstimatedSize();
+			Assume.assumeTrue("Points are in one tile", before.loadedTiles > 5);
+
+			ctx.unloadUnusedTiles(size / 2);
+			RoutingMemoryUsage after = ctx.getMemoryUsage();
+			Assert.assertTrue(after.loadedTiles < before.loadedTiles);
+			Assert.assertTrue("Memory doesn't drop after packing", ctx.getCurrentEstimatedSize() < size);
+			Assert.assertTrue(after.getTilesSize() < before.getTilesSize());
+			Assert.assertTrue("Tiles are not packed", after.packedOnlyTiles > 0);
+			long released = before.tileObjects + before.tileSegments - after.tileObjects - after.tileSegments;
+			Assert.assertTrue("Packed data is not smaller than objects", after.packedTiles < released);
+
+			for (int i = 0; i < POINTS; i++) {
+				Assert.assertEquals("Roads of reloaded tiles", roads.get(i), loadRoads(ctx, i));
+			}
+			Assert.assertTrue(ctx.calculationProgress.loadedPackedTiles > 0);
+			Assert.assertEquals(0, ctx.getMemoryUsage().packedOnlyTiles);
+		} finally {
+			close(ctx);
+		}
+	}
+
+	// ids of roads of tiles around point i of line from start to end
+	private Set<Long> loadRoads(RoutingContext ctx, int i) {
+		double k = (double) i / (POINTS - 1);
+		double lat = te.getStartPoint().getLatitude() + k * (te.getEndPoint().getLatitude() - te.getStartPoint().getLatitude());
+		double lon = te.getStartPoint().getLongitude() + k * (te.getEndPoint().getLongitude() - te.getStartPoint().getLongitude());
+		List<RouteDataObject> objects = new ArrayList<>();
+		ctx.loadTileData(MapUtils.get31TileNumberX(lon), MapUtils.get31TileNumberY(lat), ctx.config.ZOOM_TO_LOAD_TILES,
+				objects);
+		Set<Long> ids = new TreeSet<>();
+		for (RouteDataObject o : objects) {
+			ids.add(o.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,92 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Base of parameterized tests over entries of {@link RouteTestingTest} (test_routing.json): routing context is
+ * built by readers of test map (and map of entry) and configuration with vehicle, params and conditional time of
+ * entry. Readers of context are closed by {@link #close(RoutingContext)}.
+ */
+public abstract class RoutingTestFixture {
+	private static final String TEST_ROUTING = "/test_routing.json";
+	private static final String ROUTING_PATH = "src/test/resources/routing/";
+	private static final String ROUTING_MAP = ROUTING_PATH + "Routing_test_archive.obf";
+
+	protected final TestEntry te;
+
+	protected RoutingTestFixture(TestEntry te) {
+		this.te = te;
+	}
+
+	/**
+	 * @param expectedResults only entries with expected results (not tests on hanging routing)
+	 * @param transitPoints entries with transit points
+	 */
+	protected static Collection<Object[]> loadEntries(boolean expectedResults, boolean transitPoints)
+			throws IOException {
+		Reader reader = new InputStreamReader(Objects.requireNonNull(
+				RoutingTestFixture.class.getResourceAsStream(TEST_ROUTING)));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		TestEntry[] testEntries = gson.fromJson(reader, TestEntry[].class);
+		ArrayList<Object[]> arrayList = new ArrayList<>();
+		for (TestEntry te : testEntries) {
+			if (te.isIgnore() || (expectedResults && te.getExpectedResults() == null)
+					|| (!transitPoints && !te.getTransitPoint().isEmpty())) {
+				continue;
+			}
+			arrayList.add(new Object[] { te.getTestName(), te });
+		}
+		reader.close();
+		return arrayList;
+	}
+
+	protected RoutingConfiguration buildConfig() {
+		Map<String, String> params = te.getParams();
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT
+		);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(
+				params.containsKey("vehicle") ? params.get("vehicle") : "car", memoryLimits, params);
+		if (params.containsKey("routeCalculationTime")) {
+			config.routeCalculationTime = Long.parseLong(params.get("routeCalculationTime")); // conditional
+		}
+		return config;
+	}
+
+	protected RoutingContext buildContext(RoutingConfiguration config) throws IOException {
+		List<BinaryMapIndexReader> readers = new ArrayList<>();
+		Map<String, String> params = te.getParams();
+		if (params.containsKey("map")) {
+			String fl = ROUTING_PATH + params.get("map");
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)));
+		}
+		readers.add(new BinaryMapIndexReader(new RandomAccessFile(ROUTING_MAP, "r"), new File(ROUTING_MAP)));
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null,
+				readers.toArray(new BinaryMapIndexReader[0]), RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		ctx.leftSideNavigation = false;
+		ctx.calculationProgress = new RouteCalculationProgress();
+		return ctx;
+	}
+
+	protected static void close(RoutingContext ctx) throws IOException {
+		for (BinaryMapIndexReader r : ctx.map.keySet()) {
+			r.close();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Routes of {@link RouteTestingTest} calculated by contexts sharing {@link RoutingTileCache} should be the same as
+ * routes without cache: the first context fills cache, the second one (with own readers of the same files) loads
+ * all tiles from it.
+ */
+@RunWith(Parameterized.class)
+public class RoutingTileCacheTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 20000;
+
+	public RoutingTileCacheTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, false);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testSharedTilesGiveSameRoute() throws Exception {
+		RoutingContext ctx = buildContext(buildConfig());
+		List<String> expected = calculate(ctx);
+		Assert.assertFalse("Route is not found", expected.isEmpty());
+		float cost = ctx.routingTime;
+
+		RoutingTileCache cache = new RoutingTileCache();
+		RoutingContext first = buildContext(cache);
+		Assert.assertEquals(expected, calculate(first));
+		Assert.assertEquals(cost, first.routingTime, cost * 1e-4);
+		// tiles could be loaded again by the same context (e.g. check of private access)
+		Assert.assertEquals(first.calculationProgress.loadedSharedTiles, cache.getHits());
+		Assert.assertTrue("Tiles are not cached", cache.getTilesCount() > 0);
+		long hits = cache.getHits();
+
+		RoutingContext second = buildContext(cache);
+		Assert.assertEquals("Route with shared tiles", expected, calculate(second));
+		Assert.assertEquals(cost, second.routingTime, cost * 1e-4);
+		RouteCalculationProgress p = second.calculationProgress;
+		Assert.assertTrue("Tiles are not shared", p.loadedSharedTiles > 0);
+		Assert.assertEquals("Tiles are read from file", p.loadedTiles, p.loadedSharedTiles);
+		Assert.assertEquals(p.loadedSharedTiles, cache.getHits() - hits);
+	}
+
+	private RoutingContext buildContext(RoutingTileCache cache) throws IOException {
+		RoutingConfiguration config = buildConfig();
+		config.sharedTileCache = cache;
+		return buildContext(config);
+	}
+
+	// roads and points of route segments
+	private List<String> calculate(RoutingContext ctx) throws Exception {
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			fe.CALCULATE_MISSING_MAPS = false;
+			List<RouteSegmentResult> route = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), null).detailed;
+			Assert.assertNotNull(route);
+			List<String> res = new ArrayList<>();
+			for (RouteSegmentResult r : route) {
+				res.add(r.getObject().getId() + " " + r.getStartPointIndex() + " " + r.getEndPointIndex());
+			}
+			return res;
+		} finally {
+			close(ctx);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package net.osmand.router;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Routes of {@link RouteTestingTest} calculated with memory limit lower than size of tiles loaded by route (the
+ * largest of halved limits which unloads tiles) should have the same cost with every {@link TileEvictionPolicy} as
+ * without limit, used policy and reloads of unloaded tiles are reported by {@link RouteCalculationProgress}.
+ */
+@RunWith(Parameterized.class)
+public class TileEvictionPolicyTest extends RoutingTestFixture {
+
+	private static final int TIMEOUT = 60000;
+	private static final long MAX_LIMIT = 16 << 20;
+	private static final long MIN_LIMIT = 256 << 10;
+
+	public TileEvictionPolicyTest(String name, TestEntry te) {
+		super(te);
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return loadEntries(true, false);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testPoliciesFindSameRoute() throws Exception {
+		RoutingContext unlimited = calculate(null, 0);
+		Assert.assertTrue("Route is not found", unlimited.routingTime > 0);
+		// maxLoadedTiles is set only when tiles are unloaded by memory limit
+		Assert.assertEquals(0, unlimited.calculationProgress.maxLoadedTiles);
+		long limit = MAX_LIMIT;
+		while (limit >= MIN_LIMIT
+				&& calculate(TileEvictionPolicy.Type.ACCESS_COUNT, limit).calculationProgress.maxLoadedTiles == 0) {
+			limit /= 2;
+		}
+		Assume.assumeTrue("Tiles are not unloaded by memory limit", limit >= MIN_LIMIT);
+
+		for (TileEvictionPolicy.Type policy : TileEvictionPolicy.Type.values()) {
+			RoutingContext ctx = calculate(policy, limit);
+			RouteCalculationProgress p = ctx.calculationProgress;
+			Assert.assertTrue(policy + " tiles are not unloaded", p.maxLoadedTiles > 0);
+			Assert.assertEquals(policy + " route cost", unlimited.routingTime, ctx.routingTime,
+					unlimited.routingTime * 1e-4);
+			Assert.assertEquals(policy.name(), p.tileEvictionPolicy);
+			Assert.assertEquals(policy + " reloaded tiles", p.loadedTiles - p.distinctLoadedTiles, p.reloadedTiles);
+		}
+	}
+
+	private RoutingContext calculate(TileEvictionPolicy.Type policy, long memoryLimit) throws Exception {
+		RoutingConfiguration config = buildConfig();
+		config.packedTiles = false;
+		if (policy != null) {
+			config.tileEvictionPolicy = policy;
+			config.memoryLimitation = memoryLimit;
+		} else {
+			// tiles are never unloaded
+			config.memoryLimitation = Long.MAX_VALUE / 2;
+		}
+		RoutingContext ctx = buildContext(config);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			fe.CALCULATE_MISSING_MAPS = false;
+			Assert.assertNotNull(fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), null).detailed);
+			return ctx;
+		} finally {
+			close(ctx);
+		}
+	}
+}
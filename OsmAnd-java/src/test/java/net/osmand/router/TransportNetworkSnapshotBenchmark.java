@@ -0,0 +1,139 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+/**
+ * Measures build time of {@link TransportNetworkSnapshot} and throughput of transport queries
+ * (contexts reading files vs contexts sharing snapshot in several threads) between random stops.
+ * Usage: TransportNetworkSnapshotBenchmark [obf files separated by ,] [queries] [threads] [raptor] [max distance km]
+ */
+public class TransportNetworkSnapshotBenchmark {
+
+	private static final String PROFILE = "public_transport";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: TransportNetworkSnapshotBenchmark [obf files separated by ,] [queries] [threads] [raptor] [max distance km]");
+			return;
+		}
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final boolean raptor = args.length > 3 && Boolean.parseBoolean(args[3]);
+		double maxDistance = (args.length > 4 ? Double.parseDouble(args[4]) : 15) * 1000;
+		final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+		for (String f : args[0].split(",")) {
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(f, "r"), new File(f)));
+		}
+		final GeneralRouter router = RoutingConfiguration.getDefault().getRouter(PROFILE);
+		if (router == null) {
+			System.out.println("Routing profile " + PROFILE + " is not found");
+			return;
+		}
+		PrintStream out = System.out;
+		try {
+			long ts = System.nanoTime();
+			final TransportNetworkSnapshot snapshot = TransportNetworkSnapshot.build(readers);
+			out.println(String.format("Build snapshot %.1f ms: %s", (System.nanoTime() - ts) / 1e6, snapshot));
+			ts = System.nanoTime();
+			TransportRaptorNetwork network = snapshot.getRaptorNetwork(createConfig(router, raptor));
+			out.println(String.format("Build raptor network %.1f ms: %s", (System.nanoTime() - ts) / 1e6, network));
+
+			final List<LatLon[]> points = randomQueries(snapshot, queries, maxDistance);
+			// planners print every result
+			System.setOut(new PrintStream(new OutputStream() {
+
+				@Override
+				public void write(int b) {
+				}
+			}));
+			ts = System.nanoTime();
+			int found = 0;
+			for (LatLon[] p : points) {
+				TransportRoutingContext ctx = new TransportRoutingContext(createConfig(router, raptor), null,
+						readers.toArray(new BinaryMapIndexReader[readers.size()]));
+				List<TransportRouteResult> res = new TransportRoutePlanner().buildRoute(ctx, p[0], p[1]);
+				found += res != null && !res.isEmpty() ? 1 : 0;
+			}
+			long filesTime = System.nanoTime() - ts;
+			out.println(String.format("Files: %d queries (%d found) %.1f ms, %.1f queries/s", points.size(), found,
+					filesTime / 1e6, points.size() / (filesTime / 1e9)));
+
+			for (int t : new int[] { 1, threads }) {
+				ExecutorService executor = Executors.newFixedThreadPool(t);
+				final AtomicInteger snapshotFound = new AtomicInteger();
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				ts = System.nanoTime();
+				for (final LatLon[] p : points) {
+					futures.add(executor.submit(new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								TransportRoutingContext ctx = new TransportRoutingContext(createConfig(router, raptor),
+										null, snapshot);
+								List<TransportRouteResult> res = new TransportRoutePlanner().buildRoute(ctx, p[0], p[1]);
+								if (res != null && !res.isEmpty()) {
+									snapshotFound.incrementAndGet();
+								}
+							} catch (Exception e) {
+								throw new IllegalStateException(e);
+							}
+						}
+					}));
+				}
+				for (Future<?> f : futures) {
+					f.get();
+				}
+				long time = System.nanoTime() - ts;
+				executor.shutdown();
+				out.println(String.format("Snapshot %d threads: %d queries (%d found) %.1f ms, %.1f queries/s", t,
+						points.size(), snapshotFound.get(), time / 1e6, points.size() / (time / 1e9)));
+			}
+		} finally {
+			System.setOut(out);
+			for (BinaryMapIndexReader r : readers) {
+				r.close();
+			}
+		}
+	}
+
+	private static TransportRoutingConfiguration createConfig(GeneralRouter router, boolean raptor) {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router, new HashMap<String, String>());
+		cfg.useRaptor = raptor;
+		return cfg;
+	}
+
+	private static List<LatLon[]> randomQueries(TransportNetworkSnapshot snapshot, int queries, double maxDistance) {
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		for (TransportRoute r : snapshot.getRoutes()) {
+			stops.addAll(r.getForwardStops());
+		}
+		List<LatLon[]> res = new ArrayList<LatLon[]>();
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries * 100 && res.size() < queries && !stops.isEmpty(); i++) {
+			LatLon s = stops.get(rnd.nextInt(stops.size())).getLocation();
+			LatLon e = stops.get(rnd.nextInt(stops.size())).getLocation();
+			if (MapUtils.getDistance(s, e) <= maxDistance) {
+				res.add(new LatLon[] { s, e });
+			}
+		}
+		return res;
+	}
+}
@@ -0,0 +1,212 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.util.MapUtils;
+
+/**
+ * Stops (by area and id) and routes of {@link TransportNetworkSnapshot} should be the same as read from files by
+ * {@link TransportStopsRouteReader}, routes between stops of test map calculated by contexts sharing snapshot should
+ * be the same as calculated by contexts reading files.
+ */
+public class TransportNetworkSnapshotTest {
+
+	private static final String OBF = "src/test/resources/routing/Routing_test_archive.obf";
+	private static final String PROFILE = "public_transport";
+	private static final int QUERIES = 20;
+	private static final int AREAS = 20;
+	private static final int AREA_ZOOM = 13;
+	private static final double MAX_DISTANCE = 15000;
+
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private TransportNetworkSnapshot snapshot;
+	private List<TransportStop> stops;
+
+	@Before
+	public void setUp() throws IOException {
+		readers.add(new BinaryMapIndexReader(new RandomAccessFile(OBF, "r"), new File(OBF)));
+		snapshot = TransportNetworkSnapshot.build(readers);
+		stops = new ArrayList<TransportStop>();
+		for (TransportRoute r : snapshot.getRoutes()) {
+			stops.addAll(r.getForwardStops());
+		}
+		Assume.assumeFalse("Map has no transport stops", stops.isEmpty());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	@Test
+	public void testStopsAndRoutesSameAsFiles() throws IOException {
+		Map<Long, String> all = readStops(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		Assert.assertEquals(all.size(), snapshot.getStopsCount());
+		Assert.assertEquals(all, toString(snapshot.getStops(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE,
+				new ArrayList<TransportStop>())));
+		for (Long id : all.keySet()) {
+			Assert.assertEquals(all.get(id), toString(snapshot.getStop(id)));
+		}
+
+		Random rnd = new Random(3);
+		int shift = 31 - AREA_ZOOM;
+		for (int i = 0; i < AREAS; i++) {
+			TransportStop s = stops.get(rnd.nextInt(stops.size()));
+			int left = (s.x31 >> shift) << shift;
+			int top = (s.y31 >> shift) << shift;
+			int right = left + (1 << shift) - 1;
+			int bottom = top + (1 << shift) - 1;
+			Map<Long, String> expected = readStops(left, top, right, bottom);
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals("Stops of area " + s.getLocation(), expected,
+					toString(snapshot.getStops(left, top, right, bottom, new ArrayList<TransportStop>())));
+		}
+
+		Map<Long, String> routes = new TreeMap<Long, String>();
+		for (TransportStop s : new TransportStopsRouteReader(readers).readMergedTransportStops(request(0, 0,
+				Integer.MAX_VALUE, Integer.MAX_VALUE))) {
+			if (s.getRoutes() != null) {
+				for (TransportRoute r : s.getRoutes()) {
+					routes.put(r.getId(), toString(r));
+				}
+			}
+		}
+		Assert.assertEquals(routes.size(), snapshot.getRoutesCount());
+		for (Long id : routes.keySet()) {
+			Assert.assertEquals(routes.get(id), toString(snapshot.getRoute(id)));
+		}
+	}
+
+	@Test
+	public void testSameRoutesAsFiles() throws Exception {
+		GeneralRouter router = RoutingConfiguration.getDefault().getRouter(PROFILE);
+		Assert.assertNotNull(router);
+		Random rnd = new Random(7);
+		int compared = 0;
+		for (int i = 0; i < QUERIES * 100 && compared < QUERIES; i++) {
+			LatLon s = stops.get(rnd.nextInt(stops.size())).getLocation();
+			LatLon e = stops.get(rnd.nextInt(stops.size())).getLocation();
+			if (MapUtils.getDistance(s, e) > MAX_DISTANCE) {
+				continue;
+			}
+			compared++;
+			TransportRoutingContext files = new TransportRoutingContext(createConfig(router, false), null,
+					readers.toArray(new BinaryMapIndexReader[0]));
+			TransportRoutingContext shared = new TransportRoutingContext(createConfig(router, false), null, snapshot);
+			Assert.assertEquals("Route " + s + " -> " + e, resultsToString(calculate(files, s, e)),
+					resultsToString(calculate(shared, s, e)));
+
+			// raptor network of snapshot isn't limited by area of start and end, so route could be only faster
+			List<TransportRouteResult> raptorFiles = calculate(new TransportRoutingContext(createConfig(router, true),
+					null, readers.toArray(new BinaryMapIndexReader[0])), s, e);
+			List<TransportRouteResult> raptorShared = calculate(new TransportRoutingContext(createConfig(router, true),
+					null, snapshot), s, e);
+			if (!raptorFiles.isEmpty()) {
+				Assert.assertFalse("Raptor route by snapshot is not found " + s + " -> " + e, raptorShared.isEmpty());
+				Assert.assertTrue("Raptor route by snapshot is slower " + s + " -> " + e,
+						bestTime(raptorShared) <= bestTime(raptorFiles) + 1e-3);
+			}
+		}
+		Assume.assumeTrue("No close stops", compared > 0);
+	}
+
+	private Map<Long, String> readStops(int left, int top, int right, int bottom) throws IOException {
+		Collection<TransportStop> loaded = new TransportStopsRouteReader(readers)
+				.readMergedTransportStops(request(left, top, right, bottom));
+		List<TransportStop> res = new ArrayList<TransportStop>();
+		for (TransportStop s : loaded) {
+			if (s.isDeleted() || s.isMissingStop() || s.getRoutes() == null || s.getRoutes().isEmpty()) {
+				continue;
+			}
+			res.add(s);
+		}
+		return toString(res);
+	}
+
+	private static BinaryMapIndexReader.SearchRequest<TransportStop> request(int left, int top, int right,
+			int bottom) {
+		return BinaryMapIndexReader.buildSearchTransportRequest(left, right, top, bottom, -1, null);
+	}
+
+	private static Map<Long, String> toString(List<TransportStop> stops) {
+		Map<Long, String> res = new TreeMap<Long, String>();
+		for (TransportStop s : stops) {
+			res.put(s.getId(), toString(s));
+		}
+		return res;
+	}
+
+	// location, name and ids of routes
+	private static String toString(TransportStop s) {
+		List<Long> routes = new ArrayList<Long>();
+		for (TransportRoute r : s.getRoutes()) {
+			routes.add(r.getId());
+		}
+		Collections.sort(routes);
+		return s.getId() + " " + s.getName() + " " + s.getLocation() + " " + routes;
+	}
+
+	// name, type and ids of forward stops
+	private static String toString(TransportRoute r) {
+		List<Long> stops = new ArrayList<Long>();
+		for (TransportStop s : r.getForwardStops()) {
+			stops.add(s.getId());
+		}
+		return r.getId() + " " + r.getName() + " " + r.getRef() + " " + r.getType() + " " + stops;
+	}
+
+	private static List<String> resultsToString(List<TransportRouteResult> results) {
+		List<String> res = new ArrayList<String>();
+		for (TransportRouteResult r : results) {
+			StringBuilder sb = new StringBuilder(String.format("%.3f", r.getRouteTime()));
+			for (TransportRouteResultSegment seg : r.getSegments()) {
+				sb.append(' ').append(seg.route.getId()).append(' ').append(seg.start).append('-').append(seg.end);
+			}
+			res.add(sb.toString());
+		}
+		return res;
+	}
+
+	private static TransportRoutingConfiguration createConfig(GeneralRouter router, boolean raptor) {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router, new HashMap<String, String>());
+		cfg.useRaptor = raptor;
+		return cfg;
+	}
+
+	private static List<TransportRouteResult> calculate(TransportRoutingContext ctx, LatLon s, LatLon e)
+			throws Exception {
+		List<TransportRouteResult> res = new TransportRoutePlanner().buildRoute(ctx, s, e);
+		return res == null ? Collections.<TransportRouteResult>emptyList() : res;
+	}
+
+	private static double bestTime(List<TransportRouteResult> results) {
+		double best = Double.POSITIVE_INFINITY;
+		for (TransportRouteResult r : results) {
+			best = Math.min(best, r.getRouteTime());
+		}
+		return best;
+	}
+}
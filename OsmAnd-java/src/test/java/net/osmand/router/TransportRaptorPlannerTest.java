@@ -0,0 +1,144 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+/**
+ * Routes between transport stops of test map calculated by {@link TransportRaptorPlanner} should be found whenever
+ * {@link TransportRoutePlanner} finds them and shouldn't be slower. Network of context is reused only for
+ * the same routing parameters and its area is limited.
+ */
+public class TransportRaptorPlannerTest {
+
+	private static final String PROFILE = "public_transport";
+	private static final int QUERIES = 20;
+	private static final double MAX_DISTANCE = 15000;
+
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private GeneralRouter router;
+	private List<LatLon[]> queries;
+
+	@Before
+	public void setUp() throws IOException {
+		String fl = "src/test/resources/routing/Routing_test_archive.obf";
+		readers.add(new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)));
+		router = RoutingConfiguration.getDefault().getRouter(PROFILE);
+		Assert.assertNotNull(router);
+		TransportNetworkSnapshot snapshot = TransportNetworkSnapshot.build(readers);
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		for (TransportRoute r : snapshot.getRoutes()) {
+			stops.addAll(r.getForwardStops());
+		}
+		queries = new ArrayList<LatLon[]>();
+		Random rnd = new Random(7);
+		for (int i = 0; i < QUERIES * 100 && queries.size() < QUERIES && !stops.isEmpty(); i++) {
+			LatLon s = stops.get(rnd.nextInt(stops.size())).getLocation();
+			LatLon e = stops.get(rnd.nextInt(stops.size())).getLocation();
+			if (MapUtils.getDistance(s, e) <= MAX_DISTANCE) {
+				queries.add(new LatLon[] { s, e });
+			}
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	@Test
+	public void testSameRoutesAsTransportRoutePlanner() throws Exception {
+		Assume.assumeFalse("Map has no transport stops", queries.isEmpty());
+		int compared = 0;
+		for (LatLon[] q : queries) {
+			List<TransportRouteResult> expected = calculate(createContext(false), q);
+			List<TransportRouteResult> actual = calculate(createContext(true), q);
+			if (expected.isEmpty()) {
+				// raptor may find route missed by heuristic limits of transport planner
+				continue;
+			}
+			compared++;
+			Assert.assertFalse("Raptor route is not found " + q[0] + " -> " + q[1], actual.isEmpty());
+			// raptor finds earliest arrival, transport planner stops search by heuristic limits
+			double expectedTime = bestTime(expected);
+			Assert.assertTrue("Raptor route is slower " + q[0] + " -> " + q[1],
+					bestTime(actual) <= expectedTime * 1.05);
+		}
+		Assert.assertTrue("Routes are not found by transport planner", compared > 0);
+	}
+
+	@Test
+	public void testNetworkIsReusedForSameParameters() throws Exception {
+		Assume.assumeFalse("Map has no transport stops", queries.isEmpty());
+		for (LatLon[] q : queries) {
+			TransportRoutingContext ctx = createContext(true);
+			calculate(ctx, q);
+			TransportRaptorNetwork network = ctx.raptorNetwork;
+			Assert.assertNotNull(network);
+			calculate(ctx, q);
+			Assert.assertSame(network, ctx.raptorNetwork);
+
+			ctx.cfg.walkChangeRadius = ctx.cfg.walkChangeRadius / 2;
+			calculate(ctx, q);
+			Assert.assertNotSame("Network is built with other walking transfers", network, ctx.raptorNetwork);
+			network = ctx.raptorNetwork;
+			ctx.cfg.stopTime = ctx.cfg.stopTime + 10;
+			calculate(ctx, q);
+			Assert.assertNotSame("Network is built with other stop time", network, ctx.raptorNetwork);
+		}
+	}
+
+	@Test
+	public void testNetworkAreaIsLimited() throws Exception {
+		Assume.assumeFalse("Map has no transport stops", queries.isEmpty());
+		for (LatLon[] q : queries) {
+			TransportRoutingContext ctx = createContext(true);
+			calculate(ctx, q);
+			TransportRaptorNetwork network = ctx.raptorNetwork;
+			int dx = Math.abs(MapUtils.get31TileNumberX(q[0].getLongitude()) - MapUtils.get31TileNumberX(q[1].getLongitude()));
+			int dy = Math.abs(MapUtils.get31TileNumberY(q[0].getLatitude()) - MapUtils.get31TileNumberY(q[1].getLatitude()));
+			// walk radius and max margin (10 km) around bbox of start and end
+			int margin31 = (int) ((ctx.cfg.walkRadius + 10000) / MapUtils.getTileDistanceWidth(31)) + 1;
+			Assert.assertTrue((long) network.right31 - network.left31 <= (long) dx + 2 * margin31);
+			Assert.assertTrue((long) network.bottom31 - network.top31 <= (long) dy + 2 * margin31);
+		}
+	}
+
+	private TransportRoutingContext createContext(boolean raptor) {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router, new HashMap<String, String>());
+		cfg.useRaptor = raptor;
+		return new TransportRoutingContext(cfg, null, readers.toArray(new BinaryMapIndexReader[0]));
+	}
+
+	private List<TransportRouteResult> calculate(TransportRoutingContext ctx, LatLon[] q) throws Exception {
+		List<TransportRouteResult> res = new TransportRoutePlanner().buildRoute(ctx, q[0], q[1]);
+		return res == null ? Collections.<TransportRouteResult>emptyList() : res;
+	}
+
+	private static double bestTime(List<TransportRouteResult> results) {
+		double best = Double.POSITIVE_INFINITY;
+		for (TransportRouteResult r : results) {
+			best = Math.min(best, r.getRouteTime());
+		}
+		return best;
+	}
+}